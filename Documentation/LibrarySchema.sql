@@ -12,10 +12,12 @@ CREATE TABLE symbols (
     'Created' TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, -- original creation
     'Modified' TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, -- date of most recent version.
     'Author' VARCHAR(255), -- name of original author.
+    'Format' TINYINT NOT NULL DEFAULT 0, -- encoding of the YAML column. 0 = YAML, 1 = EDAmame binary.
     'YAML' BLOB NOT NULL -- data for the graphics of the symbol. (serialization of java symbol object.
 );
 
--- the symbol is stored as YAML in a blob. All aspects such as lines, arc, strings depicted in the symbol
+-- the symbol is stored as a serialized blob. All aspects such as lines, arc, strings depicted in the symbol
 -- are not stored as individual elements in the library because there is no need. Symbols objects are
--- instantiated in EDAmame by deserializing this YAML data.
+-- instantiated in EDAmame by deserializing this data. EDAmame stores symbols in its compact binary
+-- encoding (Format 1) but YAML (Format 0) is always accepted so symbols can be imported and exchanged.
 
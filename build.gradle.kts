@@ -1,3 +1,5 @@
+import java.io.ByteArrayOutputStream
+
 plugins {
     id("java")
     id("application")
@@ -41,7 +43,7 @@ javafx {
 }
 
 dependencies {
-    implementation("org.yaml:snakeyaml:1.30")
+    implementation("org.yaml:snakeyaml:2.0")
     implementation("com.h2database:h2:2.1.212")
     implementation("org.jetbrains:annotations:20.1.0")
     testImplementation("org.junit.jupiter:junit-jupiter-api:5.8.2")
@@ -52,15 +54,210 @@ tasks.getByName<Test>("test") {
     useJUnitPlatform()
 }
 
+// Class data sharing: a training launch of the runtime image records the classes loaded on the way to the first
+// frame, and the launcher maps them from the archive instead of loading and verifying them again on every start.
+val cdsArchive = "lib/edamame.jsa"
+val firstFrameProperty = "edamame.exitAfterFirstFrame"
+val imageJava = if (System.getProperty("os.name").startsWith("Windows")) "bin/java.exe" else "bin/java"
+val mainModuleAndClass = "${application.mainModule.get()}/${application.mainClass.get()}"
+
+// Training and benchmark launches keep their library and window preferences in a scratch home and a preferences
+// node of their own, so they neither read nor change the user's. Preferences stored outside the home directory,
+// as on Windows and macOS, are removed again afterwards.
+val scratchHome = buildDir.resolve("cds-home")
+val scratchPreferencesNode = "EDAmame-build"
+val scratchOptions = listOf("-Duser.home=$scratchHome", "-Dedamame.preferencesNode=$scratchPreferencesNode")
+fun removeScratchPreferences() {
+    val preferences = java.util.prefs.Preferences.userRoot()
+    if (preferences.nodeExists(scratchPreferencesNode))
+        preferences.node(scratchPreferencesNode).removeNode()
+}
+
 jlink {
     imageZip.set(project.file("${buildDir}/distributions/app-${javafx.platform.classifier}.zip"))
     addExtraDependencies("javafx")
-    options.set(listOf("--strip-debug", "--compress", "2", "--no-header-files", "--no-man-pages"))
+    options.set(listOf("--strip-debug", "--compress", "2", "--no-header-files", "--no-man-pages",
+        "--generate-cds-archive"))
     launcher {
         name = "EDAmame"
+        jvmArgs = listOf("-XX:SharedArchiveFile={{BIN_DIR}}/../$cdsArchive", "-Xshare:auto")
     }
 }
 
 tasks.jlinkZip {
     group = "distribution"
-}
\ No newline at end of file
+    dependsOn("cdsArchive")
+}
+
+// Long enough after the first frame for the library to open and the editor pools to fill during training.
+val cdsTrainingMillis = 5000
+
+tasks.register("cdsArchive") {
+    group = "distribution"
+    description = "Trains the runtime image's class data sharing archive with one launch of the application."
+    dependsOn(tasks.jlink)
+    doLast {
+        val image = jlink.imageDir.get().asFile
+        delete(scratchHome)
+        scratchHome.mkdirs()
+        try {
+            exec {
+                commandLine(listOf(image.resolve(imageJava).path,
+                    "-XX:ArchiveClassesAtExit=${image.resolve(cdsArchive)}") + scratchOptions +
+                        listOf("-D$firstFrameProperty=$cdsTrainingMillis", "-m", mainModuleAndClass))
+            }
+        } finally {
+            removeScratchPreferences()
+        }
+    }
+}
+
+// Launches the runtime image repeatedly, without class data sharing, with only the JDK's archive and with the
+// application's, reporting the time from launch to first frame. -PstartupRuns sets the launches per configuration
+// and -PstartupBudgetMillis fails the build if the median with the application's archive is slower.
+tasks.register("startupBenchmark") {
+    group = "verification"
+    description = "Measures the runtime image's time from launch to first frame."
+    dependsOn("cdsArchive")
+    doLast {
+        val image = jlink.imageDir.get().asFile
+        val runs = (findProperty("startupRuns") as String?)?.toInt() ?: 10
+        val configurations = linkedMapOf(
+            "no class data sharing" to listOf("-Xshare:off"),
+            "JDK archive" to listOf("-Xshare:auto"),
+            "application archive" to listOf("-XX:SharedArchiveFile=${image.resolve(cdsArchive)}", "-Xshare:auto"))
+        val firstFrame = Regex("EDAmame first frame after (\\d+) ms")
+        fun launch(options: List<String>): Long {
+            val output = ByteArrayOutputStream()
+            exec {
+                commandLine(listOf(image.resolve(imageJava).path) + options + scratchOptions +
+                        listOf("-D$firstFrameProperty=0", "-m", mainModuleAndClass))
+                standardOutput = output
+            }
+            val match = firstFrame.find(output.toString()) ?: throw GradleException("No first frame was reported")
+            return match.groupValues[1].toLong()
+        }
+
+        val report = StringBuilder()
+        val medians = mutableMapOf<String, Long>()
+        try {
+            launch(configurations.values.first()) // warm the file system cache
+            for ((name, options) in configurations) {
+                val times = (1..runs).map { launch(options) }.sorted()
+                medians[name] = times[times.size / 2]
+                report.append(String.format("%-22s median %5d ms   min %5d ms   max %5d ms%n",
+                    name, medians[name], times.first(), times.last()))
+            }
+        } finally {
+            removeScratchPreferences()
+        }
+        val file = buildDir.resolve("reports/startup/startup.txt")
+        file.parentFile.mkdirs()
+        file.writeText(report.toString())
+        println(report)
+
+        val budget = (findProperty("startupBudgetMillis") as String?)?.toLong()
+        val median = medians.getValue("application archive")
+        if (budget != null && median > budget)
+            throw GradleException("Median time to first frame $median ms exceeds the budget of $budget ms")
+    }
+}
+
+// Compares the YAML and binary symbol encodings' size and throughput. -PcodecSymbols sets the number of symbols and
+// -PcodecPasses the number of measured passes over them.
+tasks.register<JavaExec>("codecBenchmark") {
+    group = "verification"
+    description = "Measures the size and speed of the symbol encodings."
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass.set("com.cyte.edamame.library.SymbolCodecBenchmark")
+    args((findProperty("codecSymbols") as String?) ?: "2000", (findProperty("codecPasses") as String?) ?: "5")
+}
+
+// Measures frame time with the renderer's level-of-detail rules off and on, zooming in on a large sheet. Needs a
+// display. -PdetailSymbols sets the number of symbols on the sheet and -PdetailFrames the frames per zoom level.
+tasks.register<JavaExec>("detailBenchmark") {
+    group = "verification"
+    description = "Measures the effect of the level-of-detail rules on frame time."
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass.set("com.cyte.edamame.render.DetailBenchmark")
+    args((findProperty("detailSymbols") as String?) ?: "20000", (findProperty("detailFrames") as String?) ?: "20")
+}
+
+// Compares the heap retained per 10k recorded edits by full-copy, structurally shared and delta mementos.
+// -PmementoTracks sets the size of the model, -PmementoEdits the number of edits and -PmementoCopies the number of
+// edits recorded as full copies.
+tasks.register<JavaExec>("mementoBenchmark") {
+    group = "verification"
+    description = "Measures the heap retained by undo history under each kind of memento."
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass.set("com.cyte.edamame.util.MementoBenchmark")
+    args((findProperty("mementoTracks") as String?) ?: "100000", (findProperty("mementoEdits") as String?) ?: "10000",
+        (findProperty("mementoCopies") as String?) ?: "100")
+}
+
+// Compares bulk importing a directory of YAML symbol files against storing them a row at a time. -PimportSymbols
+// sets the number of symbol files and -PimportChunk the number of symbols written per batch and transaction.
+tasks.register<JavaExec>("importBenchmark") {
+    group = "verification"
+    description = "Measures the throughput of bulk library imports."
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass.set("com.cyte.edamame.library.LibraryImportBenchmark")
+    args((findProperty("importSymbols") as String?) ?: "5000", (findProperty("importChunk") as String?) ?: "500")
+}
+
+// Measures the latency of picking, rubber-band selection, viewport queries and moves on a large board's spatial
+// index. -PindexPrimitives sets the number of primitives and -PindexQueries the number of queries of each kind.
+tasks.register<JavaExec>("indexBenchmark") {
+    group = "verification"
+    description = "Measures the latency of spatial queries on a large board."
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass.set("com.cyte.edamame.pcb.BoardIndexBenchmark")
+    maxHeapSize = "2g"
+    args((findProperty("indexPrimitives") as String?) ?: "1000000",
+        (findProperty("indexQueries") as String?) ?: "10000")
+}
+
+// Compares the heap and iteration rate of a board's primitives in a PrimitiveStore against an object per
+// primitive. -PstorePrimitives sets the number of primitives and -PstorePasses the number of measured passes.
+tasks.register<JavaExec>("storeBenchmark") {
+    group = "verification"
+    description = "Measures the heap and iteration rate of the primitive store against objects."
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass.set("com.cyte.edamame.pcb.PrimitiveStoreBenchmark")
+    maxHeapSize = "2g"
+    args((findProperty("storePrimitives") as String?) ?: "1000000", (findProperty("storePasses") as String?) ?: "20")
+}
+
+// Measures how design rule checking scales with threads on a large board. -PdrcPrimitives sets the number of
+// primitives, -PdrcChecks the number of measured checks per thread count and -PdrcThreads the most threads to use.
+tasks.register<JavaExec>("drcBenchmark") {
+    group = "verification"
+    description = "Measures how design rule checking scales with the number of threads."
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass.set("com.cyte.edamame.pcb.DesignRuleBenchmark")
+    args(listOfNotNull((findProperty("drcPrimitives") as String?) ?: "200000",
+        (findProperty("drcChecks") as String?) ?: "3", findProperty("drcThreads") as String?))
+}
+
+// Measures connectivity queries and incremental updates on schematic and board designs of many nets against
+// rebuilding from scratch. -PconnectivityNets sets the number of nets and -PconnectivityEdits the edits measured.
+tasks.register<JavaExec>("connectivityBenchmark") {
+    group = "verification"
+    description = "Measures incremental connectivity on designs of many nets."
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass.set("com.cyte.edamame.pcb.ConnectivityBenchmark")
+    args((findProperty("connectivityNets") as String?) ?: "100000",
+        (findProperty("connectivityEdits") as String?) ?: "10000")
+}
+
+// Measures filling a large ground plane with increasing threads and refilling it after a track moves.
+// -PzoneParts sets the number of parts on the board, -PzoneFills and -PzoneMoves the number of measured fills and
+// moves, and -PzoneThreads the most threads to use.
+tasks.register<JavaExec>("zoneBenchmark") {
+    group = "verification"
+    description = "Measures the time to fill a large ground plane."
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass.set("com.cyte.edamame.pcb.ZoneFillBenchmark")
+    args(listOfNotNull((findProperty("zoneParts") as String?) ?: "3000", (findProperty("zoneFills") as String?) ?: "5",
+        (findProperty("zoneMoves") as String?) ?: "1000", findProperty("zoneThreads") as String?))
+}
@@ -7,13 +7,18 @@
 
 package com.cyte.edamame;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
+import javafx.util.Duration;
 
 import java.io.IOException;
 import java.net.URL;
+import java.time.Instant;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -22,10 +27,21 @@ import java.util.ResourceBundle;
  *
  * The head JavaFX class that loads the initial stage, main scene, and UI controller.
  *
+ * When the system property {@value #EXIT_AFTER_FIRST_FRAME} is set, the application reports its first frame and
+ * closes itself that many milliseconds later as if the user had closed the window. The build uses this for its
+ * startup benchmark and to train the class data sharing archive shipped in the runtime image. The report is the
+ * benchmark's protocol: a single line on stdout, never printed without the property, of the form
+ * <pre>EDAmame first frame after <i>launch</i> ms (start <i>start</i> ms)</pre>
+ * where <i>launch</i> is measured from the JVM's launch and <i>start</i> from {@link #start}. The benchmark reads
+ * the launch time from the first line matching "EDAmame first frame after (\d+) ms".
+ *
  *  @author Jeff Wiegley, Ph.D.
  *  @author jeffrey.wiegley@gmail.com
  */
 public class EDAmameApplication extends Application {
+    /** The system property giving how long after the first frame to exit, in milliseconds. */
+    public static final String EXIT_AFTER_FIRST_FRAME = "edamame.exitAfterFirstFrame";
+
     /**
      * Override for {@link Application} start method that is called as a result of the launch method.
      *
@@ -39,6 +55,7 @@ public class EDAmameApplication extends Application {
      */
     @Override
     public void start(Stage stage) throws IOException {
+        long started = System.currentTimeMillis();
         Locale locale = new Locale("en", "US");
         ResourceBundle bundle = ResourceBundle.getBundle("com.cyte.edamame.strings", locale);
         FXMLLoader loader = new FXMLLoader(EDAmame.class.getResource("fxml/EDAmame.fxml"));
@@ -54,6 +71,41 @@ public class EDAmameApplication extends Application {
         stage.setScene(scene);
 
         stage.show();
+
+        String exitAfter = System.getProperty(EXIT_AFTER_FIRST_FRAME);
+        if (exitAfter != null)
+            reportFirstFrame(stage, started, Long.parseLong(exitAfter));
+    }
+
+    /**
+     * Print how long the application took to show its first frame, then close the window after a delay. The first
+     * frame is the one rendered by the first pulse laid out after the stage is shown. Only called when
+     * {@value #EXIT_AFTER_FIRST_FRAME} is set; the line printed is the benchmark protocol described above, so it is
+     * printed to stdout rather than logged, whose format and level the user controls.
+     *
+     * @param stage The primary stage, just shown.
+     * @param started When {@link #start} was called, in milliseconds since the epoch.
+     * @param exitDelayMillis How long after the first frame to close the window.
+     */
+    private static void reportFirstFrame(Stage stage, long started, long exitDelayMillis) {
+        Scene scene = stage.getScene();
+        boolean[] reported = {false};
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            if (reported[0])
+                return;
+            reported[0] = true;
+            long now = System.currentTimeMillis();
+            long launched = ProcessHandle.current().info().startInstant().map(Instant::toEpochMilli).orElse(started);
+            System.out.println("EDAmame first frame after " + (now - launched) + " ms (start " + (now - started)
+                    + " ms)");
+            // Pulse listeners are not to be removed while they are being run.
+            Platform.runLater(() -> scene.removePostLayoutPulseListener(listener[0]));
+            PauseTransition pause = new PauseTransition(Duration.millis(exitDelayMillis));
+            pause.setOnFinished(e -> stage.fireEvent(new WindowEvent(stage, WindowEvent.WINDOW_CLOSE_REQUEST)));
+            pause.play();
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
     }
 
     /**
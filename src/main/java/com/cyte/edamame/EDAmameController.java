@@ -7,12 +7,19 @@
 
 package com.cyte.edamame;
 
+import com.cyte.edamame.diagnostics.DiagnosticsTab;
 import com.cyte.edamame.editor.Editor;
+import com.cyte.edamame.editor.EditorFactory;
+import com.cyte.edamame.editor.PCBEditor;
+import com.cyte.edamame.editor.SchematicEditor;
 import com.cyte.edamame.editor.SymbolEditor;
+import com.cyte.edamame.library.LibraryBrowser;
+import com.cyte.edamame.library.LibrarySettings;
+import com.cyte.edamame.library.SymbolLibrary;
+import com.cyte.edamame.util.IOService;
 import com.cyte.edamame.util.TextAreaHandler;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.collections.ObservableMap;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
@@ -22,14 +29,10 @@ import javafx.scene.layout.StackPane;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
 
-import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.ListIterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ResourceBundle;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -49,12 +52,48 @@ public class EDAmameController implements Initializable {
     /** The logger for the entire application. All classes/modules should obtain and use this static logger. */
     private final static Logger LOGGER = Logger.getLogger(EDAmame.class.getName());
 
+    /**
+     * The system property naming the Java Preferences node the window context is kept in, "EDAmame" by default.
+     * The build's training and benchmark launches use a node of their own.
+     */
+    public static final String PREFERENCES_NODE = "edamame.preferencesNode";
+
+    /**
+     * The system property which, when set, runs the editor switch benchmark once the window is first shown and
+     * logs its result. Used when measuring tab switching; it has no place in the application's UI.
+     */
+    public static final String SWITCH_BENCHMARK = "edamame.switchBenchmark";
+
+    /** The number of editors the switch benchmark opens. */
+    private static final int BENCHMARK_EDITORS = 50;
+
+    /** The number of times the switch benchmark selects each editor. */
+    private static final int BENCHMARK_ROUNDS = 20;
+
     /** The stage hosting this controller. */
     private final Stage stage;
 
     /** All editors instantiated are remembered in a HashMap for fast lookup keyed by their main tab. */
     private final ObservableMap<Tab, Editor> editors = FXCollections.observableHashMap();
 
+    /** Runs all database and file I/O off the JavaFX application thread. */
+    private final IOService io = new IOService();
+
+    /** Opens editors from pools made in the background once the window is shown, so they open at once. */
+    private final EditorFactory editorFactory = EditorFactory.standard(io);
+
+    /** The component library. All library access is performed on the I/O service's workers. */
+    private final SymbolLibrary library = new SymbolLibrary(new LibrarySettings(), io);
+
+    /** The navigation tab listing the symbols of the component library. */
+    private LibraryBrowser libraryBrowser;
+
+    /** The tab showing the timings of the application's hot paths, next to the log tab. */
+    private final DiagnosticsTab diagnostics = new DiagnosticsTab();
+
+    /** Places the selected editor's menu items, toolbar and control tabs in the window. */
+    private EditorControls editorControls;
+
     // FXML injected members /////////////////////////////////////////////////////
     /** The tab used to hold the TextArea used for application logging. */
     @FXML
@@ -113,6 +152,9 @@ public class EDAmameController implements Initializable {
      */
     private void executeOnShown() {
         restoreDividerPosition();
+        editorFactory.start();
+        if (System.getProperty(SWITCH_BENCHMARK) != null)
+            Platform.runLater(this::runSwitchBenchmark);
     }
 
     /**
@@ -124,7 +166,7 @@ public class EDAmameController implements Initializable {
      * their controls. The user's selection of divider position is maintained between runs of the application.
      */
     private void restoreDividerPosition() {
-        Preferences prefs = Preferences.userRoot().node("EDAmame");
+        Preferences prefs = preferences();
 
         // Ugh. The windows/stage is supposedly "shown" at this point but the children are not
         // yet *really* shown. So really... what you probably need to work on here hasn't been rendered and its
@@ -159,6 +201,7 @@ public class EDAmameController implements Initializable {
 
         // Changing tabs in the main tab pane is a significant task for changing
         // between editors and modules. This logic is handled through tab change events.
+        editorControls = new EditorControls(menuBar, editorToolBarStack, controlTabPane);
         enableEditorTabSelectionLogic();
 
         // Restore the previous location and size of windows. (Location of split pane dividers needs
@@ -167,6 +210,29 @@ public class EDAmameController implements Initializable {
 
         // correct the text in the show log menu item
         correctViewLogItemText();
+
+        // Show the metrics gathered this session beside the log, which stays the right most tab.
+        mainTabPane.getTabs().add(Math.max(0, mainTabPane.getTabs().indexOf(logTab)), diagnostics.getTab());
+
+        // Prepare the component library in the background and list it once it is ready.
+        libraryBrowser = new LibraryBrowser(library);
+        controlTabPane.getTabs().add(libraryBrowser.getTab());
+        library.open().whenCompleteAsync((ignored, error) -> {
+            if (error != null) {
+                LOGGER.log(Level.WARNING, "Unable to open component library: {0}\n",
+                        IOService.unwrap(error).getMessage());
+            } else {
+                LOGGER.log(Level.INFO, "Component library opened.\n");
+                libraryBrowser.refresh();
+                library.buildIndex().whenCompleteAsync((count, failure) -> {
+                    if (failure != null)
+                        LOGGER.log(Level.WARNING, "Unable to index component library: {0}\n",
+                                IOService.unwrap(failure).getMessage());
+                    else
+                        LOGGER.log(Level.INFO, "Component library indexed {0} symbols.\n", count);
+                }, IOService.FX);
+            }
+        }, IOService.FX);
         LOGGER.log(Level.INFO, "Initialization Complete\n");
     }
 
@@ -194,10 +260,19 @@ public class EDAmameController implements Initializable {
     @FXML
     private void performExit() {
         saveWindowContext();
+        diagnostics.close();
+        editorFactory.close();
+        library.close();
+        io.close();
         LOGGER.log(Level.INFO, "EDAmame exited gracefully.\n");
         Platform.exit();
     }
 
+    /** Returns the Java Preferences node the window context is kept in. */
+    private static Preferences preferences() {
+        return Preferences.userRoot().node(System.getProperty(PREFERENCES_NODE, "EDAmame"));
+    }
+
     /**
      * Saves the window position and size of the application as Java Preferences.
      *
@@ -206,7 +281,7 @@ public class EDAmameController implements Initializable {
      * complicating platform dependent stores such as registries.
      */
     private void saveWindowContext() {
-        Preferences prefs = Preferences.userRoot().node("EDAmame");
+        Preferences prefs = preferences();
         prefs.putDouble("WINDOW_POSITION_X", stage.getX());
         prefs.putDouble("WINDOW_POSITION_Y", stage.getY());
         prefs.putDouble("WINDOW_WIDTH", stage.getWidth());
@@ -222,7 +297,7 @@ public class EDAmameController implements Initializable {
      * Context is typically saved when the application exits gracefully.
      */
     private void restoreWindowContext() {
-        Preferences prefs = Preferences.userRoot().node("EDAmame");
+        Preferences prefs = preferences();
 
         // Save the application's current size
         stage.setWidth(prefs.getDouble("WINDOW_WIDTH",800));
@@ -256,67 +331,12 @@ public class EDAmameController implements Initializable {
      *
      * enableEditorTabSelectionLogic provides the control for the presence and visibility of these items
      * based on tab selection. When a tab is selected the UI components for the previously selected editor
-     * are removed/hidden and the components for the newly selected editor are enabled/shown.
+     * are removed and the components for the newly selected editor are added, see {@link EditorControls}.
      */
     private void enableEditorTabSelectionLogic() {
+        // Swap the old editor's controls for the new one's, if either tab is an editor.
         mainTabPane.getSelectionModel().selectedItemProperty().addListener(
-                (observable, oldValue, newValue) -> {
-                    // if switching away from an editor tab, then deactivate the controls/visibility for it.
-                    Editor editor = editors.get(oldValue);
-                    if (editor != null) // if the old tab was an editor then deactivate it.
-                        deactivateEditor(editor);
-                    editor = editors.get(newValue);
-                    if (newValue != null) // if the new tab selected is an editor then activate it.
-                        activateEditor(editor);
-                }
-        );
-    }
-
-    /**
-     * Symbol Libraries, Footprint Libraries, Schematics, PCBs are all handled by their own editors. Editors
-     * supply their own controllers and controls. The EDAmameController folds these controls into its own
-     * menus, toolbars and windows by obtaining, reparenting and controlling the visibility of those controls.
-     *
-     * Editors are activated by EDAmame by making sure that only the selected tab's controls are visible and
-     * accessible.
-     *
-     * @param editor Which editor to make controls visible for.
-     */
-    private void activateEditor(Editor editor) {
-        // Select this editor in the panes and make all it's controls available.
-        if (editor != null) {
-            // set the editor ToolBars to not visible
-            ToolBar bar = editor.getToolBar();
-            if (bar != null)
-                editor.getToolBar().setVisible(true);
-
-            // add all the control tabs for the editor
-            controlTabPane.getTabs().addAll(editor.getControlTabs());
-
-            // change all of this editor's menu items to be visible.
-            for (ObservableList<MenuItem> items : editor.getMenus().values())
-                for (MenuItem menuitem : items)
-                    menuitem.setVisible(true);
-        }
-    }
-
-    /**
-     * Editors are deactivated by EDAmame by making sure that unselected editor tabs' controls are invisible and
-     * inaccessible.
-     *
-     * @param editor Which editor to make controls invisible for.
-     */
-    private void deactivateEditor(Editor editor) {
-        // set the editor ToolBars to not visible
-        editor.getToolBar().setVisible(false);
-
-        // remove all control tabs from the controls tab pane
-        controlTabPane.getTabs().removeAll(editor.getControlTabs());
-
-        // change all the menu items to not visible
-        for (ObservableList<MenuItem> items : editor.getMenus().values())
-            for (MenuItem menuitem : items)
-                menuitem.setVisible(false);
+                (observable, oldValue, newValue) -> editorControls.select(editors.get(newValue)));
     }
 
     /**
@@ -327,52 +347,24 @@ public class EDAmameController implements Initializable {
     private void addEditor(Editor editor) {
         editors.put(editor.getEditorTab(), editor);
 
+        // Group the editor's toolbar, control tabs and menu items, ready to be shown when its tab is selected.
+        editorControls.add(editor);
+
         // Place the main editor window in the TabPane
         if (editor.getEditorTab() != null) {
             editor.getEditorTab().setOnCloseRequest(e -> {
                 // attempt to close the editor
-                if (editor.close()) {
-                    deactivateEditor(editor);
+                if (editor.close())
                     removeEditor(editor);
-                } else
+                else
                     e.consume();
             });
             mainTabPane.getTabs().add(editor.getEditorTab());
         }
 
-        // Make sure the toolbar is invisible
-        editor.getToolBar().setVisible(false);
-        // add the editor's toolbar to the toolbar stack. The
-        editorToolBarStack.getChildren().add(editor.getToolBar());
-
-        // The control tabs don't need to be handled. Control of their
-        // visibility done through addition and removal from the children
-        // of the control TabPane.
-
-        // add all the menus of the editor to the EDAmame MenuBar
-        for (Menu menu : menuBar.getMenus()) {
-            // get all the editor's menu items for this menu name.
-            ObservableList<MenuItem> editoritems = editor.getMenus().get(menu.getText());
-            if (editoritems != null) {
-                // get an iterator for this menu's items
-                ListIterator<MenuItem> iterator = menu.getItems().listIterator();
-
-                // advance the iterator to the either the end of the menu or until a seperator with ID "editorItemsBegin"
-                boolean found = false;
-                while (iterator.hasNext() && !found) {
-                    MenuItem item = iterator.next();
-                    if (item.getId() != null && item.getId().equals("editorItemsBegin"))
-                        found = true;
-                }
-
-                for (MenuItem item : editoritems) {
-                    item.setVisible(false);
-                    iterator.add(item);
-                }
-            }
-        }
-
-        // move the log tab to the end.
+        // move the diagnostics and log tabs to the end.
+        mainTabPane.getTabs().remove(diagnostics.getTab());
+        mainTabPane.getTabs().add(diagnostics.getTab());
         if (mainTabPane.getTabs().contains(logTab)) {
             mainTabPane.getTabs().remove(logTab);
             mainTabPane.getTabs().add(logTab);
@@ -386,21 +378,12 @@ public class EDAmameController implements Initializable {
      * @param editor Which editor to remove controls for.
      */
     private void removeEditor(Editor editor) {
-        deactivateEditor(editor); // make sure the editor is not visible/active.
-
-        // remove the toolbar
-        editorToolBarStack.getChildren().remove(editor.getToolBar());
-
-        // remove control tabs
-        controlTabPane.getTabs().removeAll(editor.getControlTabs());
-
-        // remove all menu items
-        for (Menu menu: menuBar.getMenus())
-            for (ObservableList<MenuItem> itemlist: editor.getMenus().values())
-                menu.getItems().removeAll(itemlist);
+        // remove the toolbar, control tabs and menu items if they are shown.
+        editorControls.remove(editor);
 
         // remove the main editor tab itself.
         mainTabPane.getTabs().remove(editor.getEditorTab());
+        editors.remove(editor.getEditorTab());
     }
 
     /**
@@ -452,60 +435,88 @@ public class EDAmameController implements Initializable {
     }
 
     /**
-     * A test method for a test button to add a fake editor to the page to verify concept.
+     * Open an editor for a new, empty schematic sheet.
      */
     @FXML
-    protected void onTestButtonClick() {
+    protected void onNewSchematicClick() {
         try {
-            // create and add a new editor
-            addEditor(SymbolEditor.create());
-        } catch (IOException ignored) {
+            addEditor(editorFactory.open(SchematicEditor.class));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to open a schematic editor: {0}\n", e.getMessage());
         }
     }
 
-    /** A test method for checking database connectivity. */
+    /**
+     * Open an editor for a new, empty board.
+     */
     @FXML
-    protected void onTestButtonClickDatabase() {
-        System.out.println("hi");
+    protected void onNewPCBClick() {
+        try {
+            addEditor(editorFactory.open(PCBEditor.class));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to open a PCB editor: {0}\n", e.getMessage());
+        }
+    }
 
-        String classpath = System.getProperty("java.class.path");
-        String[] classPathValues = classpath.split(File.pathSeparator);
-        for (String classPath: classPathValues) {
-            System.out.println(classPath);
+    /**
+     * A test method for a test button to add a fake editor to the page to verify concept.
+     */
+    @FXML
+    protected void onTestButtonClick() {
+        try {
+            // create and add a new editor
+            addEditor(editorFactory.open(SymbolEditor.class));
+        } catch (IOException ignored) {
         }
+    }
 
+    /**
+     * Measure how quickly editor tabs switch with many editors open, when {@value #SWITCH_BENCHMARK} is set: opens
+     * {@value #BENCHMARK_EDITORS} symbol editors, selects each in turn for several rounds, logs the time taken to
+     * swap their controls and closes them again.
+     */
+    private void runSwitchBenchmark() {
+        List<Editor> opened = new ArrayList<>();
         try {
-            Class.forName ("org.h2.Driver");
-            System.out.println("HELLO");
-            Connection c = DriverManager.getConnection("jdbc:h2:~/testtest", "SA", "");
-
-            String statement = """
-                    CREATE TABLE symbols (
-                    SymbolID BINARY(16) NOT NULL PRIMARY KEY,
-                    Version SMALLINT NOT NULL DEFAULT 1,
-                    Created TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
-                    Modified TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
-                    Author VARCHAR(255),
-                    YAML BLOB NOT NULL);""";
-            System.out.println(statement);
-            try (Statement stmt = c.createStatement()) {
-                System.out.println("executing");
-                int result = stmt.executeUpdate("DROP TABLE symbols IF EXISTS;");
-                System.out.println("dropped");
-                Thread.sleep(5000);
-                stmt.executeUpdate(statement);
-                System.out.println("completed");
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+            for (int i = 0; i < BENCHMARK_EDITORS; i++) {
+                Editor editor = editorFactory.open(SymbolEditor.class);
+                addEditor(editor);
+                opened.add(editor);
             }
-            c.close();
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-            //e.printStackTrace();
-        } catch (ClassNotFoundException e) {
-            //e.printStackTrace();
+            EditorControls.SwitchStats before = editorControls.getSwitchStats();
+            long start = System.nanoTime();
+            for (int round = 0; round < BENCHMARK_ROUNDS; round++)
+                for (Editor editor : opened)
+                    mainTabPane.getSelectionModel().select(editor.getEditorTab());
+            long nanos = System.nanoTime() - start;
+            EditorControls.SwitchStats after = editorControls.getSwitchStats();
+            long switches = after.switches() - before.switches();
+            LOGGER.log(Level.INFO, "Switched {0} editors {1} times: {2} us per switch, controls swapped in {3} us "
+                    + "(max {4} us)\n", new Object[] {opened.size(), switches, nanos / 1000 / Math.max(1, switches),
+                    (after.totalNanos() - before.totalNanos()) / 1000 / Math.max(1, switches),
+                    after.maxNanos() / 1000});
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Switch benchmark failed: {0}\n", e.getMessage());
+        } finally {
+            for (Editor editor : opened)
+                if (editor.close())
+                    removeEditor(editor);
         }
+    }
 
+    /**
+     * A test method for checking database connectivity. Reads the first page of the library without changing it.
+     */
+    @FXML
+    protected void onTestButtonClickDatabase() {
+        library.page(null, 1)
+                .whenCompleteAsync((page, error) -> {
+                    if (error != null)
+                        LOGGER.log(Level.WARNING, "Library test failed: {0}\n", IOService.unwrap(error).getMessage());
+                    else
+                        LOGGER.log(Level.INFO, "Library test read the first page: {0} symbol(s), more: {1}\n",
+                                new Object[] {page.items().size(), page.hasNext()});
+                }, IOService.FX);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame;
+
+import com.cyte.edamame.editor.Editor;
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.control.Menu;
+import javafx.scene.control.MenuBar;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.control.ToolBar;
+import javafx.scene.layout.StackPane;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Places the controls editors contribute to the main window: their menu items, toolbar and control tabs. Only the
+ * selected editor's controls are in the window at any time. Each editor's contributions are grouped by where they
+ * go when the editor is added, so selecting another editor removes one group and inserts the next with a single
+ * change to each menu, the toolbar stack and the control tab pane, however many editors are open.<p>
+ *
+ * Editor items are inserted into a menu just after its separator with the ID {@value #ITEMS_BEGIN}, or at its end
+ * if it has none. The menus are indexed by name and their separators found once, when the registry is made.
+ */
+final class EditorControls {
+    /** The ID of the separator after which editors' items are inserted into a menu. */
+    static final String ITEMS_BEGIN = "editorItemsBegin";
+
+    /**
+     * How quickly the selected editor's controls have been swapped.
+     *
+     * @param switches The number of times the selected editor changed.
+     * @param totalNanos The total time taken to swap controls.
+     * @param maxNanos The longest time taken by one swap.
+     */
+    record SwitchStats(long switches, long totalNanos, long maxNanos) {
+        /**
+         * Returns the average time taken to swap controls.
+         * @return the mean in nanoseconds, or 0 if none have been swapped.
+         */
+        long meanNanos() { return (switches == 0) ? 0 : totalNanos / switches; }
+    }
+
+    /** Where editors' items go in one of the main menus. */
+    private record Slot(Menu menu, int begin) {
+        /** Returns the index the items are inserted at. */
+        int start() { return (begin < 0) ? menu.getItems().size() : begin; }
+    }
+
+    /** A run of controls inserted into one list. */
+    private record Placed<T>(ObservableList<T> target, int start, List<T> items) {
+        /** Remove the run in one change, or item by item if something else has moved it. */
+        void remove() {
+            int end = start + items.size();
+            if (end <= target.size() && target.get(start) == items.get(0)
+                    && target.get(end - 1) == items.get(items.size() - 1))
+                target.remove(start, end);
+            else
+                target.removeAll(items);
+        }
+    }
+
+    /** One editor's contributions, grouped by where they go. */
+    private static final class Group {
+        final Editor editor;
+        final List<Slot> slots = new ArrayList<>();
+        final List<ObservableList<MenuItem>> items = new ArrayList<>();
+
+        /** The runs inserted while the editor is selected, in order. */
+        final List<Placed<?>> placed = new ArrayList<>();
+
+        Group(Editor editor) {
+            this.editor = editor;
+        }
+    }
+
+    /** The main menus by name. */
+    private final Map<String, Slot> slots = new HashMap<>();
+
+    /** The stack holding the selected editor's toolbar. */
+    private final ObservableList<Node> toolBars;
+
+    /** The control tabs the selected editor's are appended to. */
+    private final ObservableList<Tab> controlTabs;
+
+    /** The added editors' contributions. */
+    private final Map<Editor, Group> groups = new HashMap<>();
+
+    /** The selected editor's contributions, or null if none is selected. */
+    private Group selected = null;
+
+    // Switch statistics.
+    private long switches = 0, totalNanos = 0, maxNanos = 0;
+
+    /**
+     * Construct a registry placing editors' controls in the main window.
+     *
+     * @param menuBar The main menu bar. Items above the menus' {@value #ITEMS_BEGIN} separators must not change.
+     * @param toolBarStack The stack holding the selected editor's toolbar.
+     * @param controlTabPane The tab pane the selected editor's control tabs are added to.
+     */
+    EditorControls(MenuBar menuBar, StackPane toolBarStack, TabPane controlTabPane) {
+        for (Menu menu : menuBar.getMenus()) {
+            List<MenuItem> items = menu.getItems();
+            int begin = -1;
+            for (int i = 0; i < items.size() && begin < 0; i++) {
+                if (ITEMS_BEGIN.equals(items.get(i).getId()))
+                    begin = i + 1;
+            }
+            slots.put(menu.getText(), new Slot(menu, begin));
+        }
+        toolBars = toolBarStack.getChildren();
+        controlTabs = controlTabPane.getTabs();
+    }
+
+    /**
+     * Add an editor, grouping its contributions. Items for menus the main window does not have are ignored.
+     * @param editor The editor, not yet selected.
+     */
+    void add(Editor editor) {
+        Group group = new Group(editor);
+        for (Map.Entry<String, ObservableList<MenuItem>> entry : editor.getMenus().entrySet()) {
+            Slot slot = slots.get(entry.getKey());
+            if (slot != null) {
+                group.slots.add(slot);
+                group.items.add(entry.getValue());
+            }
+        }
+        if (editor.getToolBar() != null)
+            editor.getToolBar().setVisible(true); // only ever in the stack while selected.
+        groups.put(editor, group);
+    }
+
+    /**
+     * Remove an editor, taking its controls out of the window if it is selected.
+     * @param editor The editor.
+     */
+    void remove(Editor editor) {
+        Group group = groups.remove(editor);
+        if (group != null && group == selected) {
+            hide(group);
+            selected = null;
+        }
+    }
+
+    /**
+     * Replace the selected editor's controls in the window with another's.
+     * @param editor The editor now selected, or null if none is.
+     */
+    void select(Editor editor) {
+        long start = System.nanoTime();
+        Group group = (editor == null) ? null : groups.get(editor);
+        if (group == selected)
+            return;
+        if (selected != null)
+            hide(selected);
+        if (group != null)
+            show(group);
+        selected = group;
+
+        long nanos = System.nanoTime() - start;
+        switches++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    /**
+     * Returns how quickly the selected editor's controls have been swapped.
+     * @return the statistics.
+     */
+    SwitchStats getSwitchStats() {
+        return new SwitchStats(switches, totalNanos, maxNanos);
+    }
+
+    private void show(Group group) {
+        for (int i = 0; i < group.slots.size(); i++) {
+            Slot slot = group.slots.get(i);
+            place(group, slot.menu().getItems(), slot.start(), group.items.get(i));
+        }
+        ToolBar bar = group.editor.getToolBar();
+        if (bar != null)
+            place(group, toolBars, toolBars.size(), List.of(bar));
+        place(group, controlTabs, controlTabs.size(), group.editor.getControlTabs());
+    }
+
+    private void hide(Group group) {
+        for (int i = group.placed.size() - 1; i >= 0; i--)
+            group.placed.get(i).remove();
+        group.placed.clear();
+    }
+
+    /** Insert a run of controls in one change and remember where, so it can be removed in one too. */
+    private static <T> void place(Group group, ObservableList<T> target, int start, List<? extends T> items) {
+        if (items.isEmpty())
+            return;
+        List<T> run = List.copyOf(items);
+        target.addAll(start, run);
+        group.placed.add(new Placed<>(target, start, run));
+    }
+}
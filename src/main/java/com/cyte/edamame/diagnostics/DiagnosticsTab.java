@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.diagnostics;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.control.Button;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TextArea;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+
+/**
+ * A tab showing the {@link Metrics} gathered this session: for each timed path the number of calls, their mean,
+ * longest and total durations, and the amount they handled. The table is refreshed every second while the tab is
+ * selected, and not at all otherwise.
+ */
+public class DiagnosticsTab {
+    /** How often the table is refreshed while shown, in milliseconds. */
+    public static final int REFRESH_MILLIS = 1000;
+
+    /** Shows the table of metrics. */
+    private final TextArea table = new TextArea();
+
+    /** Refreshes the table while the tab is selected. */
+    private final Timeline refresher = new Timeline(new KeyFrame(Duration.millis(REFRESH_MILLIS), e -> refresh()));
+
+    /** The tab holding the table. */
+    private final Tab tab;
+
+    /**
+     * Construct the tab, not yet refreshing.
+     */
+    public DiagnosticsTab() {
+        table.setEditable(false);
+        table.setFocusTraversable(false);
+        table.setStyle("-fx-font-family: monospace;");
+        VBox.setVgrow(table, Priority.ALWAYS);
+
+        Button reset = new Button("Reset");
+        reset.setOnAction(e -> {
+            Metrics.reset();
+            refresh();
+        });
+        Button refresh = new Button("Refresh");
+        refresh.setOnAction(e -> refresh());
+
+        refresher.setCycleCount(Animation.INDEFINITE);
+        tab = new Tab("diagnostics", new VBox(table, new HBox(refresh, reset)));
+        tab.setClosable(false);
+        tab.selectedProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue) {
+                refresh();
+                refresher.play();
+            } else {
+                refresher.stop();
+            }
+        });
+    }
+
+    /**
+     * Returns the tab showing the metrics.
+     * @return the diagnostics tab.
+     */
+    public Tab getTab() { return tab; }
+
+    /**
+     * Stop refreshing, such as when the application exits.
+     */
+    public void close() {
+        refresher.stop();
+    }
+
+    /** Show the current metrics. */
+    private void refresh() {
+        StringBuilder text = new StringBuilder(String.format("%-24s %10s %12s %12s %14s %14s %s%n",
+                "Metric", "Count", "Mean ms", "Max ms", "Total ms", "Amount", "Unit"));
+        for (Metrics.Snapshot metric : Metrics.snapshot()) {
+            text.append(String.format("%-24s %10d %12.3f %12.3f %14.1f %14d %s%n", metric.name(), metric.count(),
+                    metric.meanNanos() / 1e6, metric.maxNanos() / 1e6, metric.totalNanos() / 1e6, metric.amount(),
+                    metric.unit()));
+        }
+        double scroll = table.getScrollTop();
+        table.setText(text.toString());
+        table.setScrollTop(scroll);
+    }
+}
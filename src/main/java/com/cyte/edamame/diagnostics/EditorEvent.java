@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for making or opening an editor.
+ */
+@Name("com.cyte.edamame.Editor")
+@Label("Editor")
+@Category({"EDAmame", "Editors"})
+@Description("An editor made, or opened from a pool of editors made ahead of time")
+public final class EditorEvent extends jdk.jfr.Event {
+    @Label("Editor Type")
+    public String editor;
+
+    @Label("Operation")
+    @Description("create when made, open when opened")
+    public String operation;
+
+    @Label("From Pool")
+    @Description("Whether an opened editor had been made ahead of time")
+    public boolean fromPool;
+
+    @Label("Menu Items")
+    public int menuItems;
+
+    @Label("Control Tabs")
+    public int controlTabs;
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for reading or writing a file.
+ */
+@Name("com.cyte.edamame.FileIO")
+@Label("File I/O")
+@Category({"EDAmame", "Files"})
+@Description("A file, or part of one, read or written by the application")
+public final class FileEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    @Description("read or write")
+    public String operation;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
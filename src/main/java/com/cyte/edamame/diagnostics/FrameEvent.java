@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+
+/**
+ * A Java Flight Recorder event for a frame painted by a {@link com.cyte.edamame.render.CanvasRenderer}.
+ */
+@Name("com.cyte.edamame.Frame")
+@Label("Frame")
+@Category({"EDAmame", "Rendering"})
+@Description("The drawing commands issued for one frame of an editor's canvas")
+public final class FrameEvent extends jdk.jfr.Event {
+    @Label("Drawn")
+    @Description("Primitives drawn in full")
+    public int drawn;
+
+    @Label("Culled")
+    @Description("Primitives skipped for being too small")
+    public int culled;
+
+    @Label("Collapsed")
+    @Description("Primitives drawn as their group's bounding box")
+    public int collapsed;
+
+    @Label("Coverage")
+    @Description("The fraction of the canvas repainted")
+    @Percentage
+    public double coverage;
+}
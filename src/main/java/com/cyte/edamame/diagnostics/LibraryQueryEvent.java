@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for a component library database operation.
+ */
+@Name("com.cyte.edamame.LibraryQuery")
+@Label("Library Query")
+@Category({"EDAmame", "Library"})
+@Description("A database operation on the component library, timed on the I/O worker that ran it")
+public final class LibraryQueryEvent extends jdk.jfr.Event {
+    @Label("Query")
+    public String query;
+
+    @Label("Rows")
+    @Description("The number of rows read or changed")
+    public long rows;
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of how long the application's hot paths take, kept for the whole session so they can be viewed
+ * in the {@link DiagnosticsTab} without attaching a profiler. The same operations are also reported to Java Flight
+ * Recorder as events, one per call, when a recording is running.<p>
+ *
+ * Each path has a {@link Timer}, obtained once and kept in a static field by the code it measures, counting its
+ * calls, their durations and an amount each call handled, such as rows read or bytes written. Timers may be used
+ * from any thread.
+ */
+public final class Metrics {
+    /** The timers by name. */
+    private static final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * The totals of one timer at an instant.
+     *
+     * @param name The name of the timer.
+     * @param unit What the amount counts.
+     * @param count The number of calls timed.
+     * @param totalNanos Their total duration.
+     * @param maxNanos The longest call.
+     * @param amount The total amount handled.
+     */
+    public record Snapshot(String name, String unit, long count, long totalNanos, long maxNanos, long amount) {
+        /**
+         * Returns the average duration of a call.
+         * @return the mean in nanoseconds, or 0 if none have been timed.
+         */
+        public long meanNanos() { return (count == 0) ? 0 : totalNanos / count; }
+    }
+
+    /** Times one path through the application. */
+    public static final class Timer {
+        private final String name;
+        private final String unit;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder amount = new LongAdder();
+
+        private Timer(String name, String unit) {
+            this.name = name;
+            this.unit = unit;
+        }
+
+        /**
+         * Record one call.
+         *
+         * @param nanos How long the call took.
+         * @param handled The amount the call handled, in the timer's unit.
+         */
+        public void record(long nanos, long handled) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            amount.add(handled);
+        }
+
+        /**
+         * Returns the timer's totals.
+         * @return a snapshot of the totals, which may be slightly inconsistent if calls are being recorded.
+         */
+        public Snapshot snapshot() {
+            return new Snapshot(name, unit, count.sum(), totalNanos.sum(), maxNanos.get(), amount.sum());
+        }
+
+        private void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            amount.reset();
+        }
+    }
+
+    /**
+     * Returns the timer of a name, creating it the first time it is asked for.
+     *
+     * @param name The name of the timer, dotted by area such as "library.find".
+     * @param unit What the amounts recorded count, such as "rows".
+     * @return the timer.
+     */
+    public static Timer timer(String name, String unit) {
+        return timers.computeIfAbsent(name, key -> new Timer(key, unit));
+    }
+
+    /**
+     * Returns the totals of every timer.
+     * @return the snapshots, sorted by name.
+     */
+    public static List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (Timer timer : timers.values())
+            snapshots.add(timer.snapshot());
+        snapshots.sort(Comparator.comparing(Snapshot::name));
+        return snapshots;
+    }
+
+    /**
+     * Start every timer's totals again from zero.
+     */
+    public static void reset() {
+        for (Timer timer : timers.values())
+            timer.reset();
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for recording, undoing or redoing a change.
+ */
+@Name("com.cyte.edamame.Recorder")
+@Label("Undo Recorder")
+@Category({"EDAmame", "Undo"})
+@Description("A memento recorded, undone or redone, including telling the recorder's listeners")
+public final class RecorderEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Memento Size")
+    @Description("The memento's estimate of the memory it retains")
+    @DataAmount
+    public long mementoBytes;
+
+    @Label("Coalesced")
+    @Description("Whether a recorded memento was merged into the previous edit")
+    public boolean coalesced;
+
+    @Label("Reloaded")
+    @Description("Whether an undone or redone memento was read back from the spill file")
+    public boolean reloaded;
+
+    @Label("History Entries")
+    public int historySize;
+
+    @Label("Retained Size")
+    @DataAmount
+    public long retainedBytes;
+}
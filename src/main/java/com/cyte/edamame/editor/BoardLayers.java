@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.editor;
+
+import com.cyte.edamame.pcb.BoardIndex;
+import com.cyte.edamame.pcb.BoardWatcher;
+import com.cyte.edamame.pcb.PrimitiveStore;
+import com.cyte.edamame.render.CanvasRenderer;
+import com.cyte.edamame.render.DisplayList;
+import com.cyte.edamame.render.RenderLayer;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the renderer's copper and via layers showing the board's primitives as the board is edited, undone and
+ * redone.<p>
+ *
+ * Each board layer is painted by a render layer of its own, added the first time a primitive is placed on it
+ * and kept in board layer order below the vias, which span every layer. When primitives are touched, their
+ * drawing primitives are removed from the display lists, repainting where they were, and added again where they
+ * now are, repainting there. Arcs are drawn as chords of their width. Rebuilding bulk loads every display list.
+ */
+final class BoardLayers extends BoardWatcher {
+    /** The colours of the board layers, in turn. */
+    private static final Color[] COLORS = {Color.RED, Color.BLUE, Color.GREEN, Color.ORANGE, Color.CYAN,
+            Color.MAGENTA};
+
+    /** The greatest angle one chord of an arc may sweep, in microdegrees. */
+    private static final long CHORD_SWEEP = 10_000_000;
+
+    /** The renderer painting the board. */
+    private final CanvasRenderer renderer;
+
+    /** The render layer of the vias, above every board layer. */
+    private final RenderLayer vias;
+
+    /** The render layer of each board layer yet used, by board layer. */
+    private final TreeMap<Integer, RenderLayer> copper = new TreeMap<>();
+
+    /** The render layer showing each primitive, by handle, or null for primitives not shown. */
+    private RenderLayer[] shownOn = new RenderLayer[64];
+
+    /** The display list handle showing each primitive, by handle. */
+    private int[] shown = new int[64];
+
+    /** The display list handles of the chords of each arc shown, by handle. */
+    private final Map<Integer, int[]> chords = new HashMap<>();
+
+    /** Whether the display lists are being bulk loaded. */
+    private boolean loading = false;
+
+    /**
+     * Construct the layers showing a board, adding the via layer above the renderer's existing layers.
+     *
+     * @param index The board's spatial index.
+     * @param renderer The renderer painting the board.
+     */
+    BoardLayers(BoardIndex index, CanvasRenderer renderer) {
+        super(index);
+        this.renderer = renderer;
+        vias = renderer.addLayer("Vias", Color.YELLOW);
+    }
+
+    @Override
+    protected void rebuildAll() {
+        shownOn = new RenderLayer[Math.max(64, shownOn.length)];
+        chords.clear();
+        loading = true;
+        for (RenderLayer layer : renderer.getLayers()) {
+            if (layer == vias || copper.containsValue(layer)) {
+                layer.getDisplayList().clear();
+                layer.getDisplayList().beginBatch();
+            }
+        }
+        for (int s = 0; s < store.size(); s++)
+            show(store.handleAt(s));
+        loading = false;
+        vias.getDisplayList().endBatch();
+        for (RenderLayer layer : copper.values())
+            layer.getDisplayList().endBatch();
+    }
+
+    @Override
+    protected void forget(BitSet touched) {
+        for (int handle = touched.nextSetBit(0); handle >= 0; handle = touched.nextSetBit(handle + 1)) {
+            if (handle >= shownOn.length || shownOn[handle] == null)
+                continue;
+            DisplayList displayList = shownOn[handle].getDisplayList();
+            int[] pieces = chords.remove(handle);
+            if (pieces != null) {
+                for (int piece : pieces)
+                    displayList.remove(piece);
+            } else {
+                displayList.remove(shown[handle]);
+            }
+            shownOn[handle] = null;
+        }
+    }
+
+    @Override
+    protected void refresh(BitSet touched) {
+        for (int handle = touched.nextSetBit(0); handle >= 0; handle = touched.nextSetBit(handle + 1))
+            show(handle);
+    }
+
+    /** Add the drawing primitives of a primitive to the display list of its layer. */
+    private void show(int handle) {
+        if (handle >= shownOn.length) {
+            int capacity = Math.max(handle + 1, 2 * shownOn.length);
+            shownOn = Arrays.copyOf(shownOn, capacity);
+            shown = Arrays.copyOf(shown, capacity);
+        }
+        PrimitiveStore.Kind kind = store.kind(handle);
+        RenderLayer layer = (kind == PrimitiveStore.Kind.VIA) ? vias : layer(store.layer(handle));
+        DisplayList displayList = layer.getDisplayList();
+        long x0 = store.x0(handle), y0 = store.y0(handle), x1 = store.x1(handle), y1 = store.y1(handle);
+        long width = store.width(handle);
+        switch (kind) {
+            case SEGMENT -> shown[handle] = displayList.add(DisplayList.Kind.SEGMENT, x0, y0, x1, y1, width);
+            case ARC -> chords.put(handle, showArc(displayList, x0, y0, x1, y1, store.aux(handle), width));
+            case ROUND_PAD, VIA -> shown[handle] = displayList.add(DisplayList.Kind.CIRCLE, x0, y0, x0, y0, width);
+            case RECT_PAD -> shown[handle] = displayList.add(DisplayList.Kind.RECTANGLE, x0, y0, x1, y1, 0);
+        }
+        shownOn[handle] = layer;
+    }
+
+    /** Add the chords of an arc centred on (cx, cy) starting at (sx, sy), returning their handles. */
+    private static int[] showArc(DisplayList displayList, long cx, long cy, long sx, long sy, long sweep,
+                                 long width) {
+        int count = (int) Math.max(1, (Math.abs(sweep) + CHORD_SWEEP - 1) / CHORD_SWEEP);
+        double radius = Math.hypot(sx - cx, sy - cy);
+        double start = Math.atan2(sy - cy, sx - cx);
+        double step = Math.toRadians(sweep / 1e6) / count;
+        int[] pieces = new int[count];
+        long x = sx, y = sy;
+        for (int i = 1; i <= count; i++) {
+            long nextX = cx + Math.round(radius * Math.cos(start + i * step));
+            long nextY = cy + Math.round(radius * Math.sin(start + i * step));
+            pieces[i - 1] = displayList.add(DisplayList.Kind.SEGMENT, x, y, nextX, nextY, width);
+            x = nextX;
+            y = nextY;
+        }
+        return pieces;
+    }
+
+    /** Returns the render layer of a board layer, adding it in board layer order below the vias if new. */
+    private RenderLayer layer(int boardLayer) {
+        RenderLayer layer = copper.get(boardLayer);
+        if (layer == null) {
+            int position = renderer.getLayers().indexOf(vias) - copper.tailMap(boardLayer, false).size();
+            layer = renderer.addLayer(position, "Layer " + boardLayer, COLORS[boardLayer % COLORS.length]);
+            copper.put(boardLayer, layer);
+            if (loading)
+                layer.getDisplayList().beginBatch();
+        }
+        return layer;
+    }
+}
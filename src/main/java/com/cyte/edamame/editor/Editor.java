@@ -79,6 +79,17 @@ public abstract class Editor {
      */
     public ObservableMap<String, ObservableList<MenuItem>> getMenus() { return menus; }
 
+    /**
+     * Returns the number of menu items this editor contributes across all menus.
+     * @return the menu item count.
+     */
+    public int getMenuItemCount() {
+        int count = 0;
+        for (ObservableList<MenuItem> items : menus.values())
+            count += items.size();
+        return count;
+    }
+
     /** dissect a controller into its component for delivery to EDAmame<p>
      *
      * The design of editors is intended to be done through FXML and SceneBuilder. SceneBuilder doesn't
@@ -136,6 +147,14 @@ public abstract class Editor {
         }
     }
 
+    /**
+     * Called on the JavaFX application thread when the editor is handed out to be shown. An editor may wait in a
+     * pool long before then, so anything that runs while it is shown, such as an animation, starts here rather
+     * than when the editor is made.
+     */
+    public void opened() {
+    }
+
     /**
      * Request an editor to close. Handling any information/state saving as it needs.
      * @return true if the editor was able to close without unsaved information/state, false otherwise.
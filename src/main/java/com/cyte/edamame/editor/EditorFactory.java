@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.editor;
+
+import com.cyte.edamame.EDAmame;
+import com.cyte.edamame.diagnostics.EditorEvent;
+import com.cyte.edamame.diagnostics.Metrics;
+import com.cyte.edamame.util.IOService;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Opens editors from small pools of editors made ahead of time, so that opening one does not wait for its FXML
+ * to be parsed and its controller wired up.<p>
+ *
+ * Each editor type is registered with how to make one and how many to keep ready. Editors are made on the JavaFX
+ * application thread, between other events, since scenes may only be built there. Work that needs no scene, like
+ * parsing the {@link SymbolEditor}'s FXML, can be registered as a separate loading step run on a background
+ * thread first. Once {@link #start() started}, every pool is filled, and each editor opened from a pool is
+ * replaced at once. An editor asked for while its pool is empty is made on the spot. Each editor is told it has
+ * been {@link Editor#opened() opened} as it is handed out, so nothing it animates runs while it waits.<p>
+ *
+ * How long each open took is recorded per editor type. Editors are opened on the JavaFX application thread.
+ */
+public final class EditorFactory implements AutoCloseable {
+    /** The logger for the entire application. All classes/modules should obtain and use this static logger. */
+    private final static Logger LOGGER = Logger.getLogger(EDAmame.class.getName());
+
+    /** The number of editors of each type kept ready by default. */
+    public static final int DEFAULT_POOL_SIZE = 2;
+
+    /**
+     * Makes an editor.
+     * @param <T> The type of editor.
+     */
+    @FunctionalInterface
+    public interface Maker<T extends Editor> {
+        /**
+         * Make a new editor.
+         * @return the editor.
+         * @throws IOException if its UI could not be loaded.
+         */
+        T make() throws IOException;
+    }
+
+    /**
+     * Loads the parts of an editor that need no scene, such as its parsed FXML, off the JavaFX application thread.
+     * @param <P> The type of the parts loaded.
+     */
+    @FunctionalInterface
+    public interface Loader<P> {
+        /**
+         * Load the parts of a new editor.
+         * @return the parts.
+         * @throws IOException if its UI could not be loaded.
+         */
+        P load() throws IOException;
+    }
+
+    /**
+     * Makes an editor from parts loaded ahead of time, on the JavaFX application thread.
+     * @param <P> The type of the parts loaded.
+     * @param <T> The type of editor.
+     */
+    @FunctionalInterface
+    public interface Assembler<P, T extends Editor> {
+        /**
+         * Make a new editor from its parts.
+         * @param parts The parts returned by the editor type's {@link Loader}.
+         * @return the editor.
+         * @throws IOException if its UI could not be assembled.
+         */
+        T assemble(P parts) throws IOException;
+    }
+
+    /**
+     * How quickly editors of one type have opened.
+     *
+     * @param opens The number of editors opened.
+     * @param warmOpens How many of those came from the pool.
+     * @param totalNanos The total time taken to open them.
+     * @param maxNanos The longest time taken to open one.
+     */
+    public record OpenStats(long opens, long warmOpens, long totalNanos, long maxNanos) {
+        /**
+         * Returns the average time taken to open an editor.
+         * @return the mean in nanoseconds, or 0 if none have been opened.
+         */
+        public long meanNanos() { return (opens == 0) ? 0 : totalNanos / opens; }
+    }
+
+    /** The editors of one type made ahead of time, and how they are made. */
+    private static final class Pool<T extends Editor> {
+        final Class<T> type;
+        final Maker<T> maker;
+        final int size;
+
+        /** Loads an editor's parts, returning what makes the editor from them on the JavaFX application thread. */
+        final Loader<Maker<T>> loader;
+
+        /** Runs the loader. */
+        final Executor loadOn;
+
+        /** Times opening editors of the type, counting those opened from the pool. */
+        final Metrics.Timer openTimer;
+
+        /** The editors ready to open. */
+        final ConcurrentLinkedQueue<T> ready = new ConcurrentLinkedQueue<>();
+
+        /** The number of editors being made. */
+        final AtomicInteger making = new AtomicInteger();
+
+        /** Set once making an editor ahead of time has failed, after which they are only made on demand. */
+        volatile boolean failed = false;
+
+        // Open statistics, JavaFX application thread only.
+        long opens = 0, warmOpens = 0, totalNanos = 0, maxNanos = 0;
+
+        Pool(Class<T> type, Maker<T> maker, int size, Loader<Maker<T>> loader, Executor loadOn) {
+            this.type = type;
+            this.maker = maker;
+            this.size = size;
+            this.loader = loader;
+            this.loadOn = loadOn;
+            openTimer = Metrics.timer("editor.open." + type.getSimpleName(), "from pool");
+        }
+    }
+
+    /** The pools by editor type. */
+    private final Map<Class<? extends Editor>, Pool<?>> pools = new HashMap<>();
+
+    /** Whether the pools are being kept filled. */
+    private volatile boolean started = false;
+
+    /** Whether the factory has been closed. */
+    private volatile boolean closed = false;
+
+    /**
+     * Construct a factory for the standard editors: symbol editors have their FXML parsed in the background on the
+     * given executor, and every editor is finished on the JavaFX application thread. Only the editors the
+     * application's menus and buttons can open are made ahead of time; footprint editors, which nothing opens
+     * yet, are made on demand so that startup does not pay for editors that are never used.
+     *
+     * @param background Runs the background work, such as the application's {@link IOService}.
+     * @return the factory, not yet started.
+     */
+    public static EditorFactory standard(Executor background) {
+        EditorFactory factory = new EditorFactory();
+        factory.register(SymbolEditor.class, SymbolEditor::load, SymbolEditor::assemble, DEFAULT_POOL_SIZE,
+                background);
+        factory.register(FootprintEditor.class, FootprintEditor::new, 0);
+        factory.register(SchematicEditor.class, SchematicEditor::new, DEFAULT_POOL_SIZE);
+        factory.register(PCBEditor.class, PCBEditor::new, DEFAULT_POOL_SIZE);
+        return factory;
+    }
+
+    /**
+     * Register how to make an editor type whose editors are made entirely on the JavaFX application thread.
+     * Register every type before starting the factory.
+     *
+     * @param type The type of editor.
+     * @param maker Makes an editor of the type.
+     * @param size The number of editors to keep ready, or 0 to make each on demand.
+     * @param <T> The type of editor.
+     */
+    public <T extends Editor> void register(Class<T> type, Maker<T> maker, int size) {
+        pools.put(type, new Pool<>(type, maker, size, () -> maker, Runnable::run));
+    }
+
+    /**
+     * Register how to make an editor type whose editors are loaded in the background and assembled on the JavaFX
+     * application thread. Register every type before starting the factory.
+     *
+     * @param type The type of editor.
+     * @param loader Loads the parts of an editor of the type. Must not touch any scene.
+     * @param assembler Makes an editor of the type from its parts.
+     * @param size The number of editors to keep ready, or 0 to make each on demand.
+     * @param loadOn Runs the loading of editors ahead of time.
+     * @param <P> The type of the parts loaded.
+     * @param <T> The type of editor.
+     */
+    public <P, T extends Editor> void register(Class<T> type, Loader<P> loader, Assembler<P, T> assembler, int size,
+                                               Executor loadOn) {
+        Maker<T> maker = () -> assembler.assemble(loader.load());
+        pools.put(type, new Pool<>(type, maker, size, () -> {
+            P parts = loader.load();
+            return () -> assembler.assemble(parts);
+        }, loadOn));
+    }
+
+    /**
+     * Start making editors ahead of time, such as once the application's window has first been shown.
+     */
+    public void start() {
+        started = true;
+        for (Pool<?> pool : pools.values())
+            fill(pool);
+    }
+
+    /**
+     * Open an editor, from its pool if one is ready. Must be called on the JavaFX application thread.
+     *
+     * @param type The type of editor.
+     * @param <T> The type of editor.
+     * @return the editor.
+     * @throws IOException if the editor's UI could not be loaded.
+     * @throws IllegalArgumentException if the type was never registered.
+     */
+    public <T extends Editor> T open(Class<T> type) throws IOException {
+        long start = System.nanoTime();
+        EditorEvent event = new EditorEvent();
+        event.begin();
+        Pool<T> pool = pool(type);
+        T editor = pool.ready.poll();
+        boolean warm = editor != null;
+        if (!warm)
+            editor = pool.maker.make();
+        editor.opened();
+        fill(pool);
+
+        long nanos = System.nanoTime() - start;
+        pool.opens++;
+        pool.warmOpens += warm ? 1 : 0;
+        pool.totalNanos += nanos;
+        pool.maxNanos = Math.max(pool.maxNanos, nanos);
+        pool.openTimer.record(nanos, warm ? 1 : 0);
+        if (event.shouldCommit()) {
+            event.editor = type.getSimpleName();
+            event.operation = "open";
+            event.fromPool = warm;
+            event.menuItems = editor.getMenuItemCount();
+            event.controlTabs = editor.getControlTabs().size();
+            event.commit();
+        }
+        LOGGER.log(Level.FINE, "Opened {0} in {1} ms ({2})\n", new Object[] {type.getSimpleName(),
+                String.format("%.2f", nanos / 1e6), warm ? "ready" : "made on demand"});
+        return editor;
+    }
+
+    /**
+     * Returns how quickly editors of a type have opened.
+     * @param type The type of editor.
+     * @return the statistics. Read on the JavaFX application thread.
+     */
+    public OpenStats getStats(Class<? extends Editor> type) {
+        Pool<?> pool = pool(type);
+        return new OpenStats(pool.opens, pool.warmOpens, pool.totalNanos, pool.maxNanos);
+    }
+
+    /**
+     * Returns the number of editors of a type ready to open.
+     * @param type The type of editor.
+     * @return the number ready.
+     */
+    public int getReadyCount(Class<? extends Editor> type) {
+        return pool(type).ready.size();
+    }
+
+    /**
+     * Stop making editors and close those made but never opened. Editors still being made are closed as soon as
+     * they are done.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Pool<?> pool : pools.values()) {
+            for (Editor editor = pool.ready.poll(); editor != null; editor = pool.ready.poll())
+                IOService.FX.execute(editor::close);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Editor> Pool<T> pool(Class<T> type) {
+        Pool<T> pool = (Pool<T>) pools.get(type);
+        if (pool == null)
+            throw new IllegalArgumentException("No editor factory registered for " + type.getName());
+        return pool;
+    }
+
+    /** Make editors ahead of time until the pool will be full. */
+    private <T extends Editor> void fill(Pool<T> pool) {
+        while (started && !closed && !pool.failed && pool.ready.size() + pool.making.get() < pool.size) {
+            pool.making.incrementAndGet();
+            pool.loadOn.execute(() -> {
+                try {
+                    Maker<T> assembler = pool.loader.load();
+                    IOService.FX.execute(() -> assemble(pool, assembler));
+                } catch (IOException | RuntimeException e) {
+                    failed(pool, e);
+                }
+            });
+        }
+    }
+
+    /** Finish an editor made ahead of time and make it ready, on the JavaFX application thread. */
+    private <T extends Editor> void assemble(Pool<T> pool, Maker<T> assembler) {
+        try {
+            T editor = assembler.make();
+            if (closed)
+                editor.close();
+            else
+                pool.ready.add(editor);
+            pool.making.decrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            failed(pool, e);
+        }
+    }
+
+    /** Stop making editors of a type ahead of time, as making one has failed. */
+    private void failed(Pool<?> pool, Exception e) {
+        pool.failed = true;
+        pool.making.decrementAndGet();
+        LOGGER.log(Level.WARNING, "Unable to prepare {0} ahead of time: {1}\n",
+                new Object[] {pool.type.getSimpleName(), e.getMessage()});
+    }
+}
@@ -7,6 +7,7 @@
 
 package com.cyte.edamame.editor;
 
+import com.cyte.edamame.pcb.PrimitiveStore;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.Tab;
 import javafx.scene.control.ToolBar;
@@ -18,4 +19,12 @@ import java.util.Map;
  * Editor for managing footprint libraries.
  */
 public class FootprintEditor extends Editor {
+    /** The pads and outlines of the footprint being edited. */
+    protected final PrimitiveStore primitives = new PrimitiveStore();
+
+    /**
+     * Returns the pads and outlines of the footprint being edited.
+     * @return the footprint's primitives.
+     */
+    public PrimitiveStore getPrimitives() { return primitives; }
 }
@@ -7,10 +7,28 @@
 
 package com.cyte.edamame.editor;
 
+import com.cyte.edamame.pcb.BoardIndex;
+import com.cyte.edamame.pcb.CopperConnectivity;
+import com.cyte.edamame.pcb.DesignRuleChecker;
+import com.cyte.edamame.pcb.DesignRules;
+import com.cyte.edamame.pcb.IncrementalChecker;
+import com.cyte.edamame.pcb.PrimitiveStore;
+import com.cyte.edamame.pcb.Ratsnest;
+import com.cyte.edamame.pcb.Violation;
+import com.cyte.edamame.pcb.ZoneFiller;
+import com.cyte.edamame.render.CanvasRenderer;
+import com.cyte.edamame.render.DisplayList;
+import com.cyte.edamame.render.RenderLayer;
+import com.cyte.edamame.util.IOService;
+import com.cyte.edamame.util.Recorder;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.Tab;
 import javafx.scene.control.ToolBar;
+import javafx.scene.paint.Color;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,4 +36,177 @@ import java.util.Map;
  * Editor for developing Printed Circuit Boards
  */
 public class PCBEditor extends Editor {
+    /** The tracks, pads and vias of the board. */
+    protected final PrimitiveStore primitives = new PrimitiveStore();
+
+    /**
+     * The handles of the board's primitives by their bounding boxes, kept up to date from the recorder. Clicks,
+     * hovering, rubber-band selection and the design rule, connectivity, ratsnest, zone and layer watchers all
+     * query this one index instead of scanning every primitive. The renderer's layers index what they draw.
+     */
+    protected final BoardIndex spatialIndex = new BoardIndex(primitives, IOService.FX);
+
+    /**
+     * Returns the tracks, pads and vias of the board.
+     * @return the board's primitives.
+     */
+    public PrimitiveStore getPrimitives() { return primitives; }
+
+    /**
+     * Returns the spatial index of the board's primitives.
+     * @return the spatial index.
+     */
+    public BoardIndex getSpatialIndex() { return spatialIndex; }
+
+    /** The rules the board is checked against. */
+    protected DesignRules designRules = new DesignRules();
+
+    /**
+     * Returns the rules the board is checked against.
+     * @return the board's design rules.
+     */
+    public DesignRules getDesignRules() { return designRules; }
+
+    /**
+     * Change the rules the board is checked against, check the whole board against them and fill its zones again.
+     * @param designRules The board's design rules.
+     */
+    public void setDesignRules(DesignRules designRules) {
+        this.designRules = designRules;
+        spatialIndex.removeWatcher(drc);
+        drc = new IncrementalChecker(spatialIndex, new DesignRuleChecker(designRules));
+        spatialIndex.addWatcher(drc);
+        drc.rebuild();
+        zones.setRules(designRules);
+    }
+
+    /** The undo history of the board. */
+    protected final Recorder recorder = new Recorder();
+
+    /**
+     * Returns the undo history of the board.
+     * @return the board's recorder.
+     */
+    public Recorder getRecorder() { return recorder; }
+
+    /** Keeps the board's design rule violations up to date as it is edited, undone and redone. */
+    protected IncrementalChecker drc = new IncrementalChecker(spatialIndex, new DesignRuleChecker(designRules));
+
+    /** Keeps track of which copper is joined as the board is edited, undone and redone. */
+    protected final CopperConnectivity copper = new CopperConnectivity(spatialIndex);
+
+    /** Keeps the board's unrouted connections up to date as it is edited, undone and redone. */
+    protected final Ratsnest ratsnest = new Ratsnest(spatialIndex, copper);
+
+    /** Keeps the board's copper pours filled as it is edited, undone and redone. */
+    protected final ZoneFiller zones = new ZoneFiller(spatialIndex, designRules);
+
+    /** Shows the board's primitives in the renderer's copper and via layers. */
+    private final BoardLayers layers;
+
+    /** The display list handles of the lines of each net shown in the ratsnest layer. */
+    private final Map<Integer, List<Integer>> ratsnestLines = new HashMap<>();
+
+    /**
+     * Construct an editor for an empty board, shown in a tab of its own painted by the renderer.
+     */
+    public PCBEditor() {
+        tab = new Tab("PCB", renderer.getNode());
+        recorder.addListener(spatialIndex);
+        spatialIndex.addWatcher(drc);
+        spatialIndex.addWatcher(copper);
+        spatialIndex.addWatcher(ratsnest); // after the copper, whose islands it spans over.
+        spatialIndex.addWatcher(zones);
+        layers = new BoardLayers(spatialIndex, renderer);
+        spatialIndex.addWatcher(layers);
+        RenderLayer unrouted = renderer.addLayer("Ratsnest", Color.LIGHTGRAY);
+        ratsnest.addListener(() -> showRatsnest(unrouted.getDisplayList()));
+    }
+
+    /**
+     * Returns the islands of joined copper of the board.
+     * @return the board's copper connectivity.
+     */
+    public CopperConnectivity getCopper() { return copper; }
+
+    /**
+     * Returns the unrouted connections of the board.
+     * @return the board's ratsnest.
+     */
+    public Ratsnest getRatsnest() { return ratsnest; }
+
+    /**
+     * Returns the copper pours of the board.
+     * @return the board's zone filler.
+     */
+    public ZoneFiller getZones() { return zones; }
+
+    /**
+     * Returns the checker keeping the board's design rule violations up to date.
+     * @return the board's incremental checker.
+     */
+    public IncrementalChecker getDrc() { return drc; }
+
+    /**
+     * Make an undoable edit to the board's primitives. Their state is recorded, then the edit is made.
+     *
+     * @param handles The handles of every primitive the edit adds, changes or removes. For additions, see
+     *                {@link PrimitiveStore#nextHandle()}.
+     * @param edit Makes the edit.
+     */
+    public void edit(Collection<Integer> handles, Runnable edit) {
+        recorder.record(primitives.capture(handles));
+        edit.run();
+    }
+
+    /**
+     * Check the whole board against its design rules, using every core.
+     * @return the violations found.
+     */
+    public List<Violation> checkDesignRules() {
+        return new DesignRuleChecker(designRules).check(primitives);
+    }
+
+    /** Replace the lines of the nets the ratsnest last changed. */
+    private void showRatsnest(DisplayList displayList) {
+        displayList.beginBatch();
+        for (int net : ratsnest.getChangedNets()) {
+            List<Integer> shown = ratsnestLines.remove(net);
+            if (shown != null)
+                shown.forEach(displayList::remove);
+            ratsnest.forEachLine(net, (n, x0, y0, x1, y1) -> ratsnestLines.computeIfAbsent(n, k -> new ArrayList<>())
+                    .add(displayList.add(DisplayList.Kind.SEGMENT, x0, y0, x1, y1, 0)));
+        }
+        displayList.endBatch();
+    }
+
+    /** Paints the board. Each board layer is a layer of the renderer, below the vias and the ratsnest. */
+    protected final CanvasRenderer renderer = new CanvasRenderer();
+
+    /**
+     * Returns the renderer painting the board.
+     * @return the board's renderer.
+     */
+    public CanvasRenderer getRenderer() { return renderer; }
+
+    /**
+     * Start painting the board once the editor is shown.
+     */
+    @Override
+    public void opened() {
+        renderer.start();
+    }
+
+    /**
+     * Stop painting the board once the editor has closed.
+     * @return true if the editor was able to close without unsaved information/state, false otherwise.
+     */
+    @Override
+    public boolean close() {
+        if (!super.close())
+            return false;
+        renderer.dispose();
+        recorder.close();
+        return true;
+    }
 }
@@ -7,6 +7,8 @@
 
 package com.cyte.edamame.editor;
 
+import com.cyte.edamame.netlist.Connectivity;
+import com.cyte.edamame.render.CanvasRenderer;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.Tab;
 import javafx.scene.control.ToolBar;
@@ -18,4 +20,54 @@ import java.util.Map;
  * Editor for developing schematics
  */
 public class SchematicEditor extends Editor {
+    /**
+     * Which pins and wires of the sheet are connected. Each pin and wire is a node, connected to the wires whose
+     * ends touch it, so net membership follows edits without recomputing the netlist.
+     */
+    protected final Connectivity connectivity = new Connectivity();
+
+    /**
+     * Returns which pins and wires of the sheet are connected.
+     * @return the sheet's connectivity.
+     */
+    public Connectivity getConnectivity() { return connectivity; }
+
+    /**
+     * Paints the sheet. Level-of-detail rules keep large hierarchical sheets fast when zoomed out by drawing
+     * small symbols as boxes and skipping unreadable text.
+     */
+    protected final CanvasRenderer renderer = new CanvasRenderer();
+
+    /**
+     * Returns the renderer painting the sheet.
+     * @return the sheet's renderer.
+     */
+    public CanvasRenderer getRenderer() { return renderer; }
+
+    /**
+     * Construct an editor for an empty sheet, shown in a tab of its own painted by the renderer.
+     */
+    public SchematicEditor() {
+        tab = new Tab("Schematic", renderer.getNode());
+    }
+
+    /**
+     * Start painting the sheet once the editor is shown.
+     */
+    @Override
+    public void opened() {
+        renderer.start();
+    }
+
+    /**
+     * Stop painting the sheet once the editor has closed.
+     * @return true if the editor was able to close without unsaved information/state, false otherwise.
+     */
+    @Override
+    public boolean close() {
+        if (!super.close())
+            return false;
+        renderer.dispose();
+        return true;
+    }
 }
@@ -8,6 +8,8 @@
 package com.cyte.edamame.editor;
 
 import com.cyte.edamame.EDAmame;
+import com.cyte.edamame.diagnostics.EditorEvent;
+import com.cyte.edamame.diagnostics.Metrics;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -23,6 +25,9 @@ import java.io.InvalidClassException;
  * Editor for maintaining Symbol libraries.
  */
 public class SymbolEditor extends Editor {
+    /** Times making symbol editors, counting the menu items and control tabs they contribute. */
+    private static final Metrics.Timer CREATE_TIMER = Metrics.timer("editor.create.symbol", "controls");
+
     @FXML
     private Tab etab;
 
@@ -36,16 +41,53 @@ public class SymbolEditor extends Editor {
     private Button innerButton;
 
     /**
-     * Factory to create a single SymbolEditor and its UI attached to a particular symbol library.
+     * Factory to create a single SymbolEditor and its UI attached to a particular symbol library. Must be called on
+     * the JavaFX application thread.
+     *
+     * @throws IOException if there are problems loading the scene from FXML resources.
+     */
+    public static SymbolEditor create() throws IOException {
+        return assemble(load());
+    }
+
+    /**
+     * Parse a SymbolEditor's FXML into nodes not yet in any scene. May be called on any thread, so that the
+     * parsing can be done ahead of time in the background.
      *
+     * @return the loader holding the parsed nodes and their controller, for {@link #assemble}.
      * @throws IOException if there are problems loading the scene from FXML resources.
      */
-    public static Editor create() throws IOException {
+    public static FXMLLoader load() throws IOException {
         FXMLLoader fxmlLoader = new FXMLLoader(EDAmame.class.getResource("fxml/SymbolEditor.fxml"));
-        Scene scene = new Scene(fxmlLoader.load());
+        fxmlLoader.load();
+        return fxmlLoader;
+    }
+
+    /**
+     * Finish a SymbolEditor from its parsed FXML by placing the nodes in a scene and dissecting it. Must be called
+     * on the JavaFX application thread.
+     *
+     * @param fxmlLoader The loader returned by {@link #load}.
+     * @return the editor.
+     * @throws IOException if the FXML is not organised as an editor expects.
+     */
+    public static SymbolEditor assemble(FXMLLoader fxmlLoader) throws IOException {
+        long start = System.nanoTime();
+        EditorEvent event = new EditorEvent();
+        event.begin();
+        Scene scene = new Scene(fxmlLoader.getRoot());
         SymbolEditor editor = fxmlLoader.getController();
 
         editor.dissect(scene);
+        int menuItems = editor.getMenuItemCount();
+        CREATE_TIMER.record(System.nanoTime() - start, menuItems + editor.getControlTabs().size());
+        if (event.shouldCommit()) {
+            event.editor = SymbolEditor.class.getSimpleName();
+            event.operation = "create";
+            event.menuItems = menuItems;
+            event.controlTabs = editor.getControlTabs().size();
+            event.commit();
+        }
         return editor;
     }
 
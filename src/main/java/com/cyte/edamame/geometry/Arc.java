@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.geometry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A circular arc given by its centre, its start point and the angle it sweeps.<p>
+ *
+ * The centre and start are exact. The sweep is a whole number of microdegrees, so the end point, being
+ * generally irrational, is rounded to the nearest nanometre. Positive sweeps turn the same way as a positive
+ * {@link Predicates#orientation}: from the +x axis towards the +y axis.
+ *
+ * @param centre The centre.
+ * @param start The start point, which sets the radius.
+ * @param sweep The angle swept in microdegrees, at most one full turn either way.
+ */
+public record Arc(Point centre, Point start, long sweep) {
+    /** The number of microdegrees in one full turn. */
+    public static final long FULL_TURN = 360_000_000;
+
+    /**
+     * Construct an arc.
+     *
+     * @param centre The centre.
+     * @param start The start point, which sets the radius.
+     * @param sweep The angle swept in microdegrees, at most one full turn either way.
+     * @throws IllegalArgumentException if the sweep exceeds a full turn.
+     */
+    public Arc {
+        if (Math.abs(sweep) > FULL_TURN)
+            throw new IllegalArgumentException("Arc sweep exceeds a full turn: " + sweep);
+    }
+
+    /**
+     * Returns the arc's radius, rounded.
+     * @return the radius in nanometres.
+     */
+    public double radius() {
+        return centre.distance(start);
+    }
+
+    /**
+     * Returns the end point, rounded to the nearest nanometre.
+     * @return the end point.
+     */
+    public Point end() {
+        double angle = startAngle() + Math.toRadians(sweep / 1e6);
+        double r = radius();
+        return new Point(centre.x() + Math.round(r * Math.cos(angle)), centre.y() + Math.round(r * Math.sin(angle)));
+    }
+
+    /**
+     * Returns the smallest whole-nanometre box containing the arc.
+     * @return the bounding box.
+     */
+    public Box bounds() {
+        long[] box = new long[4];
+        bounds(centre.x(), centre.y(), start.x(), start.y(), sweep, box);
+        return new Box(box[0], box[1], box[2], box[3]);
+    }
+
+    /**
+     * Compute the smallest whole-nanometre box containing an arc, without creating any objects. For stores that
+     * keep arcs as columns of coordinates.
+     *
+     * @param cx The centre's x coordinate.
+     * @param cy The centre's y coordinate.
+     * @param sx The start point's x coordinate.
+     * @param sy The start point's y coordinate.
+     * @param sweep The angle swept in microdegrees.
+     * @param box Receives the box as minX, minY, maxX, maxY.
+     */
+    public static void bounds(long cx, long cy, long sx, long sy, long sweep, long[] box) {
+        double r = Math.hypot((double) (sx - cx), (double) (sy - cy));
+        double from = Math.atan2((double) (sy - cy), (double) (sx - cx));
+        double to = from + Math.toRadians(sweep / 1e6);
+        double ex = cx + r * Math.cos(to), ey = cy + r * Math.sin(to);
+        double minX = Math.min(sx, ex), minY = Math.min(sy, ey), maxX = Math.max(sx, ex), maxY = Math.max(sy, ey);
+        // Add each extreme of the circle (at multiples of 90 degrees) that the arc passes through.
+        double low = Math.min(from, to), high = Math.max(from, to);
+        for (double quadrant = Math.ceil(low / (Math.PI / 2)); quadrant * (Math.PI / 2) <= high; quadrant++) {
+            switch (Math.floorMod((long) quadrant, 4)) {
+                case 0 -> maxX = cx + r;
+                case 1 -> maxY = cy + r;
+                case 2 -> minX = cx - r;
+                default -> minY = cy - r;
+            }
+        }
+        box[0] = (long) Math.floor(minX);
+        box[1] = (long) Math.floor(minY);
+        box[2] = (long) Math.ceil(maxX);
+        box[3] = (long) Math.ceil(maxY);
+    }
+
+    /**
+     * Approximate the arc by straight segments, for polygon operations and filling.
+     *
+     * @param maxError The largest allowed distance between the arc and its approximation, in nanometres.
+     * @return the points of the approximation, from the start to the end inclusive.
+     */
+    public List<Point> toPolyline(long maxError) {
+        double r = radius();
+        double total = Math.toRadians(Math.abs(sweep) / 1e6);
+        // A chord subtending angle a strays r(1 - cos(a/2)) from the arc.
+        double step = (maxError >= r) ? Math.PI / 2 : 2 * Math.acos(1 - Math.max(1, maxError) / r);
+        int count = Math.max(1, (int) Math.ceil(total / step));
+        List<Point> points = new ArrayList<>(count + 1);
+        points.add(start);
+        double from = startAngle(), delta = Math.toRadians(sweep / 1e6) / count;
+        for (int i = 1; i < count; i++) {
+            double angle = from + i * delta;
+            points.add(new Point(centre.x() + Math.round(r * Math.cos(angle)),
+                    centre.y() + Math.round(r * Math.sin(angle))));
+        }
+        points.add(end());
+        return points;
+    }
+
+    /**
+     * Returns this arc moved by an offset.
+     *
+     * @param dx The distance to move right.
+     * @param dy The distance to move down.
+     * @return the moved arc.
+     */
+    public Arc translate(long dx, long dy) {
+        return new Arc(centre.translate(dx, dy), start.translate(dx, dy), sweep);
+    }
+
+    /** Returns the angle of the start point about the centre, in radians. */
+    private double startAngle() {
+        return Math.atan2((double) (start.y() - centre.y()), (double) (start.x() - centre.x()));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.geometry;
+
+/**
+ * A closed axis-aligned bounding box in nanometres. A box whose minimum exceeds its maximum on either axis is
+ * empty; {@link #EMPTY} is the identity for {@link #union}.
+ *
+ * @param minX The left edge.
+ * @param minY The top edge.
+ * @param maxX The right edge.
+ * @param maxY The bottom edge.
+ */
+public record Box(long minX, long minY, long maxX, long maxY) {
+    /** The box containing nothing. */
+    public static final Box EMPTY = new Box(Long.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE);
+
+    /**
+     * Returns the smallest box containing two points, in either order.
+     *
+     * @param a One corner.
+     * @param b The opposite corner.
+     * @return the box.
+     */
+    public static Box of(Point a, Point b) {
+        return new Box(Math.min(a.x(), b.x()), Math.min(a.y(), b.y()), Math.max(a.x(), b.x()), Math.max(a.y(), b.y()));
+    }
+
+    /**
+     * Returns whether the box contains nothing.
+     * @return true if the box is empty.
+     */
+    public boolean isEmpty() { return minX > maxX || minY > maxY; }
+
+    /**
+     * Returns the box's width.
+     * @return the width in nanometres, 0 for an empty box.
+     */
+    public long width() { return isEmpty() ? 0 : maxX - minX; }
+
+    /**
+     * Returns the box's height.
+     * @return the height in nanometres, 0 for an empty box.
+     */
+    public long height() { return isEmpty() ? 0 : maxY - minY; }
+
+    /**
+     * Returns whether a point is inside the box or on its edge.
+     * @param point The point.
+     * @return true if the box contains the point.
+     */
+    public boolean contains(Point point) {
+        return minX <= point.x() && point.x() <= maxX && minY <= point.y() && point.y() <= maxY;
+    }
+
+    /**
+     * Returns whether another box lies entirely within this one.
+     * @param other The other box.
+     * @return true if this box contains the other.
+     */
+    public boolean contains(Box other) {
+        return minX <= other.minX && other.maxX <= maxX && minY <= other.minY && other.maxY <= maxY;
+    }
+
+    /**
+     * Returns whether the boxes share at least one point.
+     * @param other The other box.
+     * @return true if the boxes touch or overlap.
+     */
+    public boolean intersects(Box other) {
+        return minX <= other.maxX && other.minX <= maxX && minY <= other.maxY && other.minY <= maxY;
+    }
+
+    /**
+     * Returns the smallest box containing both boxes.
+     * @param other The other box.
+     * @return the union.
+     */
+    public Box union(Box other) {
+        return new Box(Math.min(minX, other.minX), Math.min(minY, other.minY),
+                Math.max(maxX, other.maxX), Math.max(maxY, other.maxY));
+    }
+
+    /**
+     * Returns the box grown by a margin on every side, such as a clearance.
+     * @param margin The margin in nanometres. Negative values shrink the box.
+     * @return the grown box.
+     */
+    public Box inflate(long margin) {
+        return new Box(minX - margin, minY - margin, maxX + margin, maxY + margin);
+    }
+
+    /**
+     * Returns this box moved by an offset.
+     *
+     * @param dx The distance to move right.
+     * @param dy The distance to move down.
+     * @return the moved box.
+     */
+    public Box translate(long dx, long dy) {
+        return new Box(minX + dx, minY + dy, maxX + dx, maxY + dy);
+    }
+}
@@ -0,0 +1,698 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.geometry;
+
+import com.cyte.edamame.util.IndexSort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The engine behind the boolean operations of {@link Region}: the overlay of two sets of polygons, operands A and
+ * B, each filled by the non-zero winding rule.<p>
+ *
+ * The edges of both operands are first split wherever they cross or touch, so that they meet only at their ends.
+ * Crossings are found on a uniform grid, each cell's edges compared in parallel, and rounded to the nearest
+ * nanometre. Rounding can bend an edge across a neighbour, so splitting repeats, comparing only the new pieces,
+ * until nothing crosses. Identical pieces are then merged, keeping how much each operand's winding number changes
+ * across them. A sweep in lexicographic order of the vertices finds each piece's winding numbers from the piece
+ * below it, using exact orientation tests. Pieces with the operation's result inside on one side and outside on
+ * the other bound the result, and are linked into rings turning as far left as possible at each vertex, which
+ * separates rings that only touch. The result's outlines are counterclockwise and its holes clockwise.<p>
+ *
+ * Single use and not safe for concurrent use, though it uses a pool to split large inputs in parallel.
+ */
+final class Overlay {
+    /** The greatest number of splitting rounds; crossings left after that are so small as to be harmless. */
+    private static final int MAX_ROUNDS = 8;
+
+    /** The average number of edges in each cell of the grid crossings are searched for on. */
+    private static final int EDGES_PER_CELL = 4;
+
+    /** The number of grid cells below which a parallel task searches its cells itself. */
+    private static final int CELLS_PER_TASK = 4096;
+
+    /** Splits large inputs in parallel. */
+    private final ForkJoinPool pool;
+
+    /** The number of edges. */
+    private int count = 0;
+
+    /** The edges, from (ax, ay) to (bx, by), as given. */
+    private long[] ax = new long[64], ay = new long[64], bx = new long[64], by = new long[64];
+
+    /** The operand each edge belongs to: 0 for A, 1 for B. */
+    private byte[] operand = new byte[64];
+
+    /** Whether each edge was made by the last round of splitting, so must be checked for crossings again. */
+    private boolean[] fresh;
+
+    /** The vertices after merging, in lexicographic order. */
+    private long[] vx, vy;
+
+    /** The merged edges, from vertex u to a lexicographically greater vertex v. */
+    private int[] eu, ev;
+
+    /** How much each operand's winding number rises crossing each merged edge from its right to its left. */
+    private int[] deltaA, deltaB;
+
+    /** The winding numbers of each operand on the left of each merged edge. */
+    private int[] windA, windB;
+
+    /** The number of merged edges. */
+    private int edges = 0;
+
+    /**
+     * Construct an empty overlay.
+     * @param pool The pool large inputs are split on.
+     */
+    Overlay(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Add the edges of a polygon to an operand.
+     *
+     * @param polygon The polygon.
+     * @param b Whether the polygon belongs to operand B rather than A.
+     */
+    void add(Polygon polygon, boolean b) {
+        for (int i = 0, n = polygon.size(); i < n; i++) {
+            int j = (i + 1 == n) ? 0 : i + 1;
+            addEdge(polygon.x(i), polygon.y(i), polygon.x(j), polygon.y(j), (byte) (b ? 1 : 0));
+        }
+    }
+
+    /**
+     * Compute the overlay.
+     *
+     * @param operation How the operands combine.
+     * @return the rings bounding the result: outlines counterclockwise and holes clockwise.
+     */
+    List<Polygon> compute(Region.Operation operation) {
+        if (count == 0)
+            return new ArrayList<>();
+        fresh = new boolean[count];
+        Arrays.fill(fresh, true);
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            if (!split())
+                break;
+        }
+        merge();
+        sweep();
+        return link(operation);
+    }
+
+    private void addEdge(long x0, long y0, long x1, long y1, byte op) {
+        if (x0 == x1 && y0 == y1)
+            return;
+        if (count == ax.length) {
+            int capacity = 2 * count;
+            ax = Arrays.copyOf(ax, capacity);
+            ay = Arrays.copyOf(ay, capacity);
+            bx = Arrays.copyOf(bx, capacity);
+            by = Arrays.copyOf(by, capacity);
+            operand = Arrays.copyOf(operand, capacity);
+        }
+        ax[count] = x0;
+        ay[count] = y0;
+        bx[count] = x1;
+        by[count] = y1;
+        operand[count++] = op;
+    }
+
+    // ---------------------------------------------------------------------------------------------------------
+    // Splitting
+
+    /**
+     * Split every edge where a fresh edge crosses or touches it.
+     * @return true if any edge was split.
+     */
+    private boolean split() {
+        Grid grid = new Grid();
+        SplitTask task = new SplitTask(grid, 0, grid.columns * grid.rows);
+        if (ForkJoinTask.inForkJoinPool())
+            task.invoke();
+        else
+            pool.invoke(task);
+        if (task.found.size == 0)
+            return false;
+        apply(task.found);
+        return true;
+    }
+
+    /** A growable list of split points, three longs each: the edge, then the point. */
+    private static final class Splits {
+        long[] values = new long[48];
+        int size = 0;
+
+        void add(int edge, long x, long y) {
+            if (size + 3 > values.length)
+                values = Arrays.copyOf(values, 2 * values.length);
+            values[size++] = edge;
+            values[size++] = x;
+            values[size++] = y;
+        }
+
+        void addAll(Splits other) {
+            if (size + other.size > values.length)
+                values = Arrays.copyOf(values, Math.max(2 * values.length, size + other.size));
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+    }
+
+    /**
+     * The edges by the grid cells they pass through. Each crossing is reported only by the cell containing it, so
+     * edges sharing several cells are not split twice.
+     */
+    private final class Grid {
+        final long minX, minY;
+        final double cell;
+        final int columns, rows;
+
+        /** The edges in cell c are members[start[c]] to members[start[c + 1] - 1]. */
+        final int[] start, members;
+
+        Grid() {
+            long loX = Long.MAX_VALUE, loY = Long.MAX_VALUE, hiX = Long.MIN_VALUE, hiY = Long.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                loX = Math.min(loX, Math.min(ax[i], bx[i]));
+                loY = Math.min(loY, Math.min(ay[i], by[i]));
+                hiX = Math.max(hiX, Math.max(ax[i], bx[i]));
+                hiY = Math.max(hiY, Math.max(ay[i], by[i]));
+            }
+            minX = loX;
+            minY = loY;
+            double w = (double) hiX - loX, h = (double) hiY - loY, cells = Math.max(1.0, count / EDGES_PER_CELL);
+            cell = Math.max(1.0, Math.max(Math.sqrt(w * h / cells), Math.max(w, h) / cells));
+            columns = (int) Math.min(Integer.MAX_VALUE / 4, w / cell + 1);
+            rows = (int) Math.min(Integer.MAX_VALUE / 4 / columns, h / cell + 1);
+
+            start = new int[columns * rows + 1];
+            for (int i = 0; i < count; i++)
+                register(i, null);
+            for (int c = 0; c < columns * rows; c++)
+                start[c + 1] += start[c];
+            members = new int[start[columns * rows]];
+            int[] fill = Arrays.copyOf(start, columns * rows);
+            for (int i = 0; i < count; i++)
+                register(i, fill);
+        }
+
+        int column(double x) {
+            return (int) Math.max(0, Math.min(columns - 1, Math.floor((x - minX) / cell)));
+        }
+
+        int row(double y) {
+            return (int) Math.max(0, Math.min(rows - 1, Math.floor((y - minY) / cell)));
+        }
+
+        int cellOf(long x, long y) {
+            return row(y) * columns + column(x);
+        }
+
+        /**
+         * Count an edge in, or with fill add it to, every cell it passes within two nanometres of, which covers
+         * every point on it rounded to the nearest nanometre.
+         */
+        void register(int i, int[] fill) {
+            double x0 = ax[i], y0 = ay[i], x1 = bx[i], y1 = by[i];
+            if (x0 > x1) {
+                double t = x0;
+                x0 = x1;
+                x1 = t;
+                t = y0;
+                y0 = y1;
+                y1 = t;
+            }
+            double slope = (x1 == x0) ? 0 : (y1 - y0) / (x1 - x0);
+            int firstColumn = column(x0 - 2), lastColumn = column(x1 + 2);
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                double left = Math.max(x0, minX + c * cell - 2), right = Math.min(x1, minX + (c + 1) * cell + 2);
+                double ya = (x1 == x0) ? y0 : y0 + (left - x0) * slope;
+                double yb = (x1 == x0) ? y1 : y0 + (right - x0) * slope;
+                int firstRow = row(Math.min(ya, yb) - 2), lastRow = row(Math.max(ya, yb) + 2);
+                for (int r = firstRow; r <= lastRow; r++) {
+                    int index = r * columns + c;
+                    if (fill == null)
+                        start[index + 1]++;
+                    else
+                        members[fill[index]++] = i;
+                }
+            }
+        }
+    }
+
+    /** Finds the splits in a range of grid cells, dividing it among the pool. */
+    private final class SplitTask extends RecursiveAction {
+        private final Grid grid;
+        private final int from, to;
+        final Splits found = new Splits();
+
+        SplitTask(Grid grid, int from, int to) {
+            this.grid = grid;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CELLS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                SplitTask low = new SplitTask(grid, from, middle), high = new SplitTask(grid, middle, to);
+                invokeAll(low, high);
+                found.addAll(low.found);
+                found.addAll(high.found);
+                return;
+            }
+            for (int c = from; c < to; c++) {
+                for (int k = grid.start[c]; k < grid.start[c + 1]; k++) {
+                    int i = grid.members[k];
+                    for (int l = k + 1; l < grid.start[c + 1]; l++) {
+                        int j = grid.members[l];
+                        if (fresh[i] || fresh[j])
+                            intersect(grid, c, i, j, found);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Find where two edges cross or touch, keeping the points that lie in a given cell. */
+    private void intersect(Grid grid, int cell, int i, int j, Splits found) {
+        if (Math.max(ax[i], bx[i]) < Math.min(ax[j], bx[j]) || Math.max(ax[j], bx[j]) < Math.min(ax[i], bx[i])
+                || Math.max(ay[i], by[i]) < Math.min(ay[j], by[j]) || Math.max(ay[j], by[j]) < Math.min(ay[i], by[i]))
+            return;
+        int o1 = Predicates.orientation(ax[i], ay[i], bx[i], by[i], ax[j], ay[j]);
+        int o2 = Predicates.orientation(ax[i], ay[i], bx[i], by[i], bx[j], by[j]);
+        int o3 = Predicates.orientation(ax[j], ay[j], bx[j], by[j], ax[i], ay[i]);
+        int o4 = Predicates.orientation(ax[j], ay[j], bx[j], by[j], bx[i], by[i]);
+        if (o1 * o2 < 0 && o3 * o4 < 0) {
+            // A proper crossing, at a fraction t of the way along edge i.
+            double dxi = bx[i] - ax[i], dyi = by[i] - ay[i], dxj = bx[j] - ax[j], dyj = by[j] - ay[j];
+            double t = ((double) (ax[j] - ax[i]) * dyj - (double) (ay[j] - ay[i]) * dxj) / (dxi * dyj - dyi * dxj);
+            long x = ax[i] + Math.round(t * dxi), y = ay[i] + Math.round(t * dyi);
+            if (grid.cellOf(x, y) == cell) {
+                splitAt(i, x, y, found);
+                splitAt(j, x, y, found);
+            }
+            return;
+        }
+        // Touching or overlapping: split each edge at the other's ends that lie on it.
+        if (o1 == 0)
+            splitAtEnd(grid, cell, i, ax[j], ay[j], found);
+        if (o2 == 0)
+            splitAtEnd(grid, cell, i, bx[j], by[j], found);
+        if (o3 == 0)
+            splitAtEnd(grid, cell, j, ax[i], ay[i], found);
+        if (o4 == 0)
+            splitAtEnd(grid, cell, j, bx[i], by[i], found);
+    }
+
+    /** Split an edge at a point known to lie on its line, if the point is within it and in the given cell. */
+    private void splitAtEnd(Grid grid, int cell, int i, long x, long y, Splits found) {
+        if (Math.min(ax[i], bx[i]) <= x && x <= Math.max(ax[i], bx[i]) && Math.min(ay[i], by[i]) <= y
+                && y <= Math.max(ay[i], by[i]) && grid.cellOf(x, y) == cell)
+            splitAt(i, x, y, found);
+    }
+
+    private void splitAt(int i, long x, long y, Splits found) {
+        if ((x != ax[i] || y != ay[i]) && (x != bx[i] || y != by[i]))
+            found.add(i, x, y);
+    }
+
+    /** Replace every split edge by its pieces, which become the fresh edges. */
+    private void apply(Splits splits) {
+        int n = splits.size / 3;
+        int[] first = new int[count + 1];
+        for (int k = 0; k < n; k++)
+            first[(int) splits.values[3 * k] + 1]++;
+        for (int i = 0; i < count; i++)
+            first[i + 1] += first[i];
+        int[] order = new int[n], fill = Arrays.copyOf(first, count);
+        for (int k = 0; k < n; k++)
+            order[fill[(int) splits.values[3 * k]]++] = k;
+
+        long[] oldAx = ax, oldAy = ay, oldBx = bx, oldBy = by;
+        byte[] oldOperand = operand;
+        int oldCount = count;
+        ax = new long[oldCount + n + 16];
+        ay = new long[ax.length];
+        bx = new long[ax.length];
+        by = new long[ax.length];
+        operand = new byte[ax.length];
+        boolean[] made = new boolean[ax.length];
+        count = 0;
+        long[] along = new long[16];
+        int[] points = new int[16];
+        for (int i = 0; i < oldCount; i++) {
+            int splitCount = first[i + 1] - first[i];
+            if (splitCount == 0) {
+                addEdge(oldAx[i], oldAy[i], oldBx[i], oldBy[i], oldOperand[i]);
+                continue;
+            }
+            // Order the points along the edge by their projection onto it.
+            if (splitCount > points.length) {
+                points = new int[2 * splitCount];
+                along = new long[2 * splitCount];
+            }
+            double dx = oldBx[i] - oldAx[i], dy = oldBy[i] - oldAy[i];
+            for (int k = 0; k < splitCount; k++) {
+                int s = 3 * order[first[i] + k];
+                points[k] = s;
+                double projection = (splits.values[s + 1] - oldAx[i]) * dx + (splits.values[s + 2] - oldAy[i]) * dy;
+                along[k] = Double.doubleToLongBits(Math.max(0.0, projection));
+            }
+            IndexSort.sort(points, along, 0, splitCount - 1);
+            long x = oldAx[i], y = oldAy[i];
+            for (int k = 0; k < splitCount; k++) {
+                long nx = splits.values[points[k] + 1], ny = splits.values[points[k] + 2];
+                if (nx != x || ny != y) {
+                    made[count] = true;
+                    addEdge(x, y, nx, ny, oldOperand[i]);
+                    x = nx;
+                    y = ny;
+                }
+            }
+            made[count] = true;
+            addEdge(x, y, oldBx[i], oldBy[i], oldOperand[i]);
+        }
+        fresh = made;
+    }
+
+    // ---------------------------------------------------------------------------------------------------------
+    // Merging
+
+    /** Number the distinct vertices in lexicographic order and merge identical edges. */
+    private void merge() {
+        // Sort the ends of every edge by x, then each run of equal x by y.
+        int ends = 2 * count;
+        int[] order = new int[ends];
+        long[] key = new long[ends];
+        for (int k = 0; k < ends; k++) {
+            order[k] = k;
+            key[k] = ((k & 1) == 0) ? ax[k >> 1] : bx[k >> 1];
+        }
+        IndexSort.sort(order, key, 0, ends - 1);
+        for (int k = 0; k < ends; ) {
+            int run = k;
+            while (run < ends && key[run] == key[k])
+                run++;
+            if (run - k > 1) {
+                for (int m = k; m < run; m++)
+                    key[m] = ((order[m] & 1) == 0) ? ay[order[m] >> 1] : by[order[m] >> 1];
+                IndexSort.sort(order, key, k, run - 1);
+            }
+            k = run;
+        }
+        int[] vertexOf = new int[ends];
+        vx = new long[ends];
+        vy = new long[ends];
+        int vertices = 0;
+        for (int k = 0; k < ends; k++) {
+            int end = order[k];
+            long x = ((end & 1) == 0) ? ax[end >> 1] : bx[end >> 1];
+            long y = ((end & 1) == 0) ? ay[end >> 1] : by[end >> 1];
+            if (vertices == 0 || x != vx[vertices - 1] || y != vy[vertices - 1]) {
+                vx[vertices] = x;
+                vy[vertices++] = y;
+            }
+            vertexOf[end] = vertices - 1;
+        }
+        vx = Arrays.copyOf(vx, vertices);
+        vy = Arrays.copyOf(vy, vertices);
+
+        // Sort the edges by their lower then upper vertex, and merge runs of the same pair.
+        int[] edgeOrder = new int[count];
+        long[] pair = new long[count];
+        for (int i = 0; i < count; i++) {
+            int u = vertexOf[2 * i], v = vertexOf[2 * i + 1];
+            edgeOrder[i] = i;
+            pair[i] = ((long) Math.min(u, v) << 32) | Math.max(u, v);
+        }
+        if (count > 0)
+            IndexSort.sort(edgeOrder, pair, 0, count - 1);
+        eu = new int[count];
+        ev = new int[count];
+        deltaA = new int[count];
+        deltaB = new int[count];
+        edges = 0;
+        for (int k = 0; k < count; ) {
+            int a = 0, b = 0, run = k;
+            for (; run < count && pair[run] == pair[k]; run++) {
+                int i = edgeOrder[run];
+                // An edge rising lexicographically has its operand's inside on its left.
+                int rise = (vertexOf[2 * i] < vertexOf[2 * i + 1]) ? 1 : -1;
+                if (operand[i] == 0)
+                    a += rise;
+                else
+                    b += rise;
+            }
+            if (a != 0 || b != 0) {
+                eu[edges] = (int) (pair[k] >>> 32);
+                ev[edges] = (int) pair[k];
+                deltaA[edges] = a;
+                deltaB[edges++] = b;
+            }
+            k = run;
+        }
+        ax = ay = bx = by = null;
+        operand = null;
+        fresh = null;
+    }
+
+    // ---------------------------------------------------------------------------------------------------------
+    // Sweeping
+
+    /**
+     * Sweep the vertices in lexicographic order, keeping the edges that span the sweep ordered from bottom to top,
+     * and give each edge the winding numbers on its left from those of the edge below it.
+     */
+    private void sweep() {
+        int vertices = vx.length;
+        // The merged edges are ordered by their lower vertex; index them by their upper vertex too.
+        int[] startAt = new int[vertices + 1], endAt = new int[vertices + 1];
+        for (int e = 0; e < edges; e++) {
+            startAt[eu[e] + 1]++;
+            endAt[ev[e] + 1]++;
+        }
+        for (int p = 0; p < vertices; p++) {
+            startAt[p + 1] += startAt[p];
+            endAt[p + 1] += endAt[p];
+        }
+        windA = new int[edges];
+        windB = new int[edges];
+        int[] active = new int[Math.max(1, edges)];
+        int size = 0;
+        for (int p = 0, e = 0; p < vertices; p++) {
+            long px = vx[p], py = vy[p];
+            int ending = endAt[p + 1] - endAt[p];
+            if (ending > 0) {
+                int position = lowerBound(active, size, px, py);
+                int run = position;
+                while (run < size && ev[active[run]] == p)
+                    run++;
+                System.arraycopy(active, run, active, position, size - run);
+                size -= run - position;
+                ending -= run - position;
+                // Rounding can leave the order slightly inconsistent; find any stragglers the slow way.
+                for (int k = 0; k < size && ending > 0; ) {
+                    if (ev[active[k]] == p) {
+                        System.arraycopy(active, k + 1, active, k, size - k - 1);
+                        size--;
+                        ending--;
+                    } else {
+                        k++;
+                    }
+                }
+            }
+            if (e == startAt[p + 1])
+                continue;
+            int lowest = size;
+            for (; e < startAt[p + 1]; e++) {
+                int position = insertionPoint(active, size, e, px, py);
+                System.arraycopy(active, position, active, position + 1, size - position);
+                active[position] = e;
+                size++;
+                lowest = (position <= lowest) ? position : lowest;
+            }
+            // The edges starting here lie together in the order; wind them upwards from the edge below them all.
+            for (int k = lowest; k < size && eu[active[k]] == p; k++) {
+                int edge = active[k], below = (k > 0) ? active[k - 1] : -1;
+                windA[edge] = ((below < 0) ? 0 : windA[below]) + deltaA[edge];
+                windB[edge] = ((below < 0) ? 0 : windB[below]) + deltaB[edge];
+            }
+        }
+    }
+
+    /** Returns the number of active edges strictly below a point. */
+    private int lowerBound(int[] active, int size, long px, long py) {
+        int low = 0, high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int e = active[middle];
+            if (Predicates.orientation(vx[eu[e]], vy[eu[e]], vx[ev[e]], vy[ev[e]], px, py) > 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /** Returns the number of active edges below an edge starting at the point being swept. */
+    private int insertionPoint(int[] active, int size, int edge, long px, long py) {
+        long wx = vx[ev[edge]], wy = vy[ev[edge]];
+        int low = 0, high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int e = active[middle];
+            int side = Predicates.orientation(vx[eu[e]], vy[eu[e]], vx[ev[e]], vy[ev[e]], px, py);
+            // An edge starting at the same point is below if it heads clockwise of the new edge.
+            boolean below = (side != 0) ? side > 0 : Predicates.orientation(px, py, wx, wy, vx[ev[e]], vy[ev[e]]) < 0;
+            if (below)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    // ---------------------------------------------------------------------------------------------------------
+    // Linking
+
+    /** Select the edges bounding the result and link them into rings. */
+    private List<Polygon> link(Region.Operation operation) {
+        int[] from = new int[edges], to = new int[edges];
+        int kept = 0;
+        for (int e = 0; e < edges; e++) {
+            boolean left = inside(operation, windA[e], windB[e]);
+            boolean right = inside(operation, windA[e] - deltaA[e], windB[e] - deltaB[e]);
+            if (left != right) {
+                // Keep the result on the left.
+                from[kept] = left ? eu[e] : ev[e];
+                to[kept++] = left ? ev[e] : eu[e];
+            }
+        }
+        int vertices = vx.length;
+        int[] first = new int[vertices + 1];
+        for (int k = 0; k < kept; k++)
+            first[from[k] + 1]++;
+        for (int p = 0; p < vertices; p++)
+            first[p + 1] += first[p];
+        int[] out = new int[kept], fill = Arrays.copyOf(first, vertices);
+        for (int k = 0; k < kept; k++)
+            out[fill[from[k]]++] = k;
+
+        List<Polygon> rings = new ArrayList<>();
+        boolean[] used = new boolean[kept];
+        long[] xs = new long[16], ys = new long[16];
+        for (int s = 0; s < kept; s++) {
+            if (used[s])
+                continue;
+            int length = 0;
+            int current = s;
+            boolean closed = false;
+            while (true) {
+                used[current] = true;
+                if (length == xs.length) {
+                    xs = Arrays.copyOf(xs, 2 * length);
+                    ys = Arrays.copyOf(ys, 2 * length);
+                }
+                xs[length] = vx[from[current]];
+                ys[length++] = vy[from[current]];
+                int next = -1, at = to[current];
+                long dx = vx[at] - vx[from[current]], dy = vy[at] - vy[from[current]];
+                for (int k = first[at]; k < first[at + 1]; k++) {
+                    int candidate = out[k];
+                    if ((used[candidate] && candidate != s) || (next >= 0 && !turnsFurther(dx, dy,
+                            vx[to[candidate]] - vx[at], vy[to[candidate]] - vy[at], vx[to[next]] - vx[at],
+                            vy[to[next]] - vy[at])))
+                        continue;
+                    next = candidate;
+                }
+                if (next == s) {
+                    closed = true;
+                    break;
+                }
+                if (next < 0)
+                    break;
+                current = next;
+            }
+            if (closed) {
+                Polygon ring = simplify(xs, ys, length);
+                if (ring != null)
+                    rings.add(ring);
+            }
+        }
+        return rings;
+    }
+
+    private static boolean inside(Region.Operation operation, int a, int b) {
+        return switch (operation) {
+            case UNION -> a != 0 || b != 0;
+            case INTERSECTION -> a != 0 && b != 0;
+            case DIFFERENCE -> a != 0 && b == 0;
+            case XOR -> (a != 0) != (b != 0);
+        };
+    }
+
+    /**
+     * Returns whether, arriving along (dx, dy), leaving along (cx, cy) turns further left than leaving along
+     * (bx, by).
+     */
+    private static boolean turnsFurther(long dx, long dy, long cx, long cy, long bx, long by) {
+        int candidate = turn(dx, dy, cx, cy), best = turn(dx, dy, bx, by);
+        if (candidate != best)
+            return candidate > best;
+        // Both turn the same way: the one counterclockwise of the other turns further left.
+        return (candidate == 0 || candidate == 2) && Predicates.signOfDifferenceOfProducts(bx, cy, by, cx) > 0;
+    }
+
+    /** Classify a turn from (dx, dy) to (ox, oy): 0 right, 1 straight on, 2 left and 3 straight back. */
+    private static int turn(long dx, long dy, long ox, long oy) {
+        int cross = Predicates.signOfDifferenceOfProducts(dx, oy, dy, ox);
+        if (cross != 0)
+            return (cross > 0) ? 2 : 0;
+        return (Predicates.signOfDifferenceOfProducts(dx, ox, -dy, oy) > 0) ? 1 : 3;
+    }
+
+    /**
+     * Make a ring into a polygon, dropping the vertices that lie straight between their neighbours.
+     * @return the polygon, or null if nothing with any area is left.
+     */
+    private static Polygon simplify(long[] xs, long[] ys, int length) {
+        long[] px = new long[length], py = new long[length];
+        int m = 0;
+        for (int i = 0; i < length; i++) {
+            px[m] = xs[i];
+            py[m++] = ys[i];
+            while (m >= 3 && Predicates.orientation(px[m - 3], py[m - 3], px[m - 2], py[m - 2], px[m - 1],
+                    py[m - 1]) == 0) {
+                px[m - 2] = px[m - 1];
+                py[m - 2] = py[m - 1];
+                m--;
+            }
+        }
+        // The ring closes: check the vertices either side of where it starts.
+        while (m >= 3 && Predicates.orientation(px[m - 2], py[m - 2], px[m - 1], py[m - 1], px[0], py[0]) == 0)
+            m--;
+        int skip = 0;
+        while (m - skip >= 3 && Predicates.orientation(px[m - 1], py[m - 1], px[skip], py[skip], px[skip + 1],
+                py[skip + 1]) == 0)
+            skip++;
+        if (m - skip < 3)
+            return null;
+        Polygon polygon = new Polygon(Arrays.copyOfRange(px, skip, m), Arrays.copyOfRange(py, skip, m));
+        return (polygon.orientation() == 0) ? null : polygon;
+    }
+}
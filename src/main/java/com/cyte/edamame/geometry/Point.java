@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.geometry;
+
+/**
+ * A point in design space, in nanometres, with y increasing downwards as on screen.
+ *
+ * @param x The x coordinate.
+ * @param y The y coordinate.
+ */
+public record Point(long x, long y) {
+    /** The origin. */
+    public static final Point ORIGIN = new Point(0, 0);
+
+    /**
+     * Returns this point moved by an offset.
+     *
+     * @param dx The distance to move right.
+     * @param dy The distance to move down.
+     * @return the moved point.
+     */
+    public Point translate(long dx, long dy) {
+        return new Point(x + dx, y + dy);
+    }
+
+    /**
+     * Returns the distance to another point, rounded. For display and ordering; use {@link #compareDistance}
+     * for decisions.
+     *
+     * @param other The other point.
+     * @return the distance in nanometres.
+     */
+    public double distance(Point other) {
+        return Math.hypot((double) (other.x - x), (double) (other.y - y));
+    }
+
+    /**
+     * Compare the distance to another point with a given distance, exactly.
+     *
+     * @param other The other point.
+     * @param distance The distance to compare with. Must not be negative.
+     * @return -1, 0 or 1 as the points are nearer than, exactly at, or farther than the distance apart.
+     */
+    public int compareDistance(Point other, long distance) {
+        return Predicates.compareDistance(other.x, other.y, x, y, x, y, distance);
+    }
+
+    /**
+     * Returns whether the turn from a through b to this point is counterclockwise, clockwise or straight.
+     *
+     * @param a The first point.
+     * @param b The second point.
+     * @return the orientation, as {@link Predicates#orientation}.
+     */
+    public int orientation(Point a, Point b) {
+        return Predicates.orientation(a.x, a.y, b.x, b.y, x, y);
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.geometry;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable closed polygon with whole-nanometre vertices, such as a zone outline or a pad shape. The last
+ * vertex joins back to the first. Vertices are kept in two primitive arrays rather than as {@link Point}s, since
+ * zone outlines run to many thousands of them.
+ */
+public final class Polygon {
+    /** The x coordinates of the vertices. */
+    private final long[] xs;
+
+    /** The y coordinates of the vertices. */
+    private final long[] ys;
+
+    /**
+     * Construct a polygon from its vertex coordinates, which are copied.
+     *
+     * @param xs The x coordinates of the vertices.
+     * @param ys The y coordinates of the vertices, as many as there are x coordinates.
+     * @throws IllegalArgumentException if the arrays differ in length or hold fewer than three vertices.
+     */
+    public Polygon(long[] xs, long[] ys) {
+        if (xs.length != ys.length)
+            throw new IllegalArgumentException("Polygon has " + xs.length + " x but " + ys.length + " y coordinates");
+        if (xs.length < 3)
+            throw new IllegalArgumentException("Polygon needs at least 3 vertices, not " + xs.length);
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+    }
+
+    /**
+     * Construct a polygon from its vertices.
+     *
+     * @param points The vertices, at least three.
+     * @return the polygon.
+     */
+    public static Polygon of(List<Point> points) {
+        long[] xs = new long[points.size()];
+        long[] ys = new long[points.size()];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = points.get(i).x();
+            ys[i] = points.get(i).y();
+        }
+        return new Polygon(xs, ys);
+    }
+
+    /**
+     * Construct a rectangle.
+     * @param box The rectangle's extent.
+     * @return the polygon, counterclockwise.
+     */
+    public static Polygon of(Box box) {
+        return new Polygon(new long[] {box.minX(), box.maxX(), box.maxX(), box.minX()},
+                new long[] {box.minY(), box.minY(), box.maxY(), box.maxY()});
+    }
+
+    /**
+     * Construct a regular polygon around a circle, such as a round pad grown by its clearance. The circle touches
+     * the middle of every edge, so the polygon contains it and strays at most maxError outside it.
+     *
+     * @param cx The x coordinate of the centre.
+     * @param cy The y coordinate of the centre.
+     * @param radius The circle's radius.
+     * @param maxError The furthest the polygon may stray outside the circle, at least one nanometre.
+     * @return the polygon, counterclockwise.
+     */
+    public static Polygon circle(long cx, long cy, long radius, long maxError) {
+        int sides = sides(radius, maxError);
+        Builder builder = new Builder(sides);
+        builder.arc(cx, cy, radius, 0, 2 * Math.PI, sides, false);
+        return builder.build();
+    }
+
+    /**
+     * Construct a polygon around the points within a distance of a segment, such as a track grown by its
+     * clearance: a rectangle with a half circle at each end. Like {@link #circle}, it contains the exact shape.
+     *
+     * @param x0 The x coordinate of the segment's start.
+     * @param y0 The y coordinate of the segment's start.
+     * @param x1 The x coordinate of the segment's end.
+     * @param y1 The y coordinate of the segment's end.
+     * @param radius The distance, such as half the track's width plus the clearance.
+     * @param maxError The furthest the polygon may stray outside the exact shape, at least one nanometre.
+     * @return the polygon, counterclockwise.
+     */
+    public static Polygon stadium(long x0, long y0, long x1, long y1, long radius, long maxError) {
+        if (x0 == x1 && y0 == y1)
+            return circle(x0, y0, radius, maxError);
+        int sides = sides(radius, maxError);
+        double direction = Math.atan2(y1 - y0, x1 - x0);
+        Builder builder = new Builder(sides + 2);
+        builder.arc(x1, y1, radius, direction - Math.PI / 2, Math.PI, sides / 2, true);
+        builder.arc(x0, y0, radius, direction + Math.PI / 2, Math.PI, sides / 2, true);
+        return builder.build();
+    }
+
+    /**
+     * Construct a polygon around the points within a distance of a rectangle, such as a rectangular pad grown by
+     * its clearance: the rectangle grown by the distance with rounded corners. Like {@link #circle}, it contains
+     * the exact shape.
+     *
+     * @param core The rectangle.
+     * @param radius The distance, which is the radius of the corners.
+     * @param maxError The furthest the polygon may stray outside the exact shape, at least one nanometre.
+     * @return the polygon, counterclockwise.
+     */
+    public static Polygon roundedRectangle(Box core, long radius, long maxError) {
+        if (radius <= 0)
+            return of(core);
+        int sides = sides(radius, maxError);
+        Builder builder = new Builder(sides + 4);
+        builder.arc(core.maxX(), core.minY(), radius, -Math.PI / 2, Math.PI / 2, sides / 4, true);
+        builder.arc(core.maxX(), core.maxY(), radius, 0, Math.PI / 2, sides / 4, true);
+        builder.arc(core.minX(), core.maxY(), radius, Math.PI / 2, Math.PI / 2, sides / 4, true);
+        builder.arc(core.minX(), core.minY(), radius, Math.PI, Math.PI / 2, sides / 4, true);
+        return builder.build();
+    }
+
+    /**
+     * Returns how many sides a regular polygon around a circle needs to stray at most maxError outside it: a
+     * multiple of four, so half and quarter circles have whole numbers of sides.
+     */
+    private static int sides(long radius, long maxError) {
+        double ratio = radius / (double) (radius + Math.max(1, maxError));
+        int sides = (int) Math.ceil(Math.PI / Math.acos(ratio));
+        return Math.max(8, (sides + 3) & ~3);
+    }
+
+    /** Collects the vertices of a polygon around arcs of circles. */
+    private static final class Builder {
+        long[] xs, ys;
+        int size = 0;
+
+        Builder(int capacity) {
+            xs = new long[capacity];
+            ys = new long[capacity];
+        }
+
+        /**
+         * Add the vertices of the part of a regular polygon around a circle that spans an arc. With ends, the arc's
+         * two ends are added on the polygon's sides, so straight sides can continue from them; otherwise the
+         * vertices lie between sides.
+         */
+        void arc(long cx, long cy, long radius, double from, double sweep, int sides, boolean ends) {
+            double step = sweep / sides;
+            // Vertices lie beyond the circle so that the sides between them touch it.
+            double corner = radius / Math.cos(step / 2);
+            if (ends)
+                add(cx, cy, radius, from);
+            for (int k = 0; k < sides; k++)
+                add(cx, cy, corner, from + (k + (ends ? 0.5 : 0)) * step);
+            if (ends)
+                add(cx, cy, radius, from + sweep);
+        }
+
+        /** Add a vertex, rounded away from the centre so the polygon never shrinks. */
+        private void add(long cx, long cy, double distance, double angle) {
+            if (size == xs.length) {
+                xs = Arrays.copyOf(xs, 2 * size);
+                ys = Arrays.copyOf(ys, 2 * size);
+            }
+            double dx = distance * Math.cos(angle), dy = distance * Math.sin(angle);
+            xs[size] = cx + (long) ((dx < 0) ? Math.floor(dx) : Math.ceil(dx));
+            ys[size++] = cy + (long) ((dy < 0) ? Math.floor(dy) : Math.ceil(dy));
+        }
+
+        Polygon build() {
+            return new Polygon(Arrays.copyOf(xs, size), Arrays.copyOf(ys, size));
+        }
+    }
+
+    /**
+     * Returns the number of vertices.
+     * @return the vertex count.
+     */
+    public int size() { return xs.length; }
+
+    /**
+     * Returns a vertex's x coordinate.
+     * @param i The vertex's index.
+     * @return the x coordinate.
+     */
+    public long x(int i) { return xs[i]; }
+
+    /**
+     * Returns a vertex's y coordinate.
+     * @param i The vertex's index.
+     * @return the y coordinate.
+     */
+    public long y(int i) { return ys[i]; }
+
+    /**
+     * Returns a vertex.
+     * @param i The vertex's index.
+     * @return the vertex.
+     */
+    public Point point(int i) { return new Point(xs[i], ys[i]); }
+
+    /**
+     * Returns the smallest box containing the polygon.
+     * @return the bounding box.
+     */
+    public Box bounds() {
+        long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+        for (int i = 0; i < xs.length; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        return new Box(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Returns the polygon's signed area, rounded. For display; use {@link #orientation} for decisions.
+     * @return the area in square nanometres, positive for counterclockwise vertices.
+     */
+    public double area() {
+        double twice = 0;
+        for (int i = 1, n = xs.length; i < n - 1; i++)
+            twice += (double) (xs[i] - xs[0]) * (ys[i + 1] - ys[0]) - (double) (xs[i + 1] - xs[0]) * (ys[i] - ys[0]);
+        return twice / 2;
+    }
+
+    /**
+     * Returns the direction the vertices wind in, exactly, from the sign of the area summed to 128 bits.
+     * @return 1 for counterclockwise, -1 for clockwise and 0 for a polygon with no area.
+     */
+    public int orientation() {
+        long high = 0, low = 0;
+        for (int i = 1, n = xs.length; i < n - 1; i++) {
+            long ax = xs[i] - xs[0], ay = ys[i] - ys[0], bx = xs[i + 1] - xs[0], by = ys[i + 1] - ys[0];
+            // Add ax*by then subtract bx*ay, carrying between the 64-bit halves.
+            long product = ax * by;
+            long sum = low + product;
+            high += Math.multiplyHigh(ax, by) + (Long.compareUnsigned(sum, low) < 0 ? 1 : 0);
+            low = sum;
+            product = -bx * ay;
+            sum = low + product;
+            high += Math.multiplyHigh(-bx, ay) + (Long.compareUnsigned(sum, low) < 0 ? 1 : 0);
+            low = sum;
+        }
+        if (high != 0)
+            return (high < 0) ? -1 : 1;
+        return (low == 0) ? 0 : 1;
+    }
+
+    /**
+     * Returns whether a point lies inside the polygon or on its boundary, exactly. Self-intersecting polygons use
+     * the non-zero winding rule.
+     *
+     * @param px The point's x coordinate.
+     * @param py The point's y coordinate.
+     * @return true if the polygon contains the point.
+     */
+    public boolean contains(long px, long py) {
+        int winding = 0;
+        for (int i = 0, n = xs.length; i < n; i++) {
+            int j = (i + 1 == n) ? 0 : i + 1;
+            int side = Predicates.orientation(xs[i], ys[i], xs[j], ys[j], px, py);
+            if (side == 0 && Math.min(xs[i], xs[j]) <= px && px <= Math.max(xs[i], xs[j])
+                    && Math.min(ys[i], ys[j]) <= py && py <= Math.max(ys[i], ys[j]))
+                return true; // on the boundary.
+            if (ys[i] <= py) {
+                if (ys[j] > py && side > 0)
+                    winding++;
+            } else if (ys[j] <= py && side < 0) {
+                winding--;
+            }
+        }
+        return winding != 0;
+    }
+
+    /**
+     * Returns whether a point lies inside the polygon or on its boundary, exactly.
+     * @param point The point.
+     * @return true if the polygon contains the point.
+     */
+    public boolean contains(Point point) {
+        return contains(point.x(), point.y());
+    }
+
+    /**
+     * Returns this polygon moved by an offset.
+     *
+     * @param dx The distance to move right.
+     * @param dy The distance to move down.
+     * @return the moved polygon.
+     */
+    public Polygon translate(long dx, long dy) {
+        long[] movedX = xs.clone();
+        long[] movedY = ys.clone();
+        for (int i = 0; i < movedX.length; i++) {
+            movedX[i] += dx;
+            movedY[i] += dy;
+        }
+        return new Polygon(movedX, movedY);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Polygon polygon && Arrays.equals(xs, polygon.xs) && Arrays.equals(ys, polygon.ys);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(xs) + Arrays.hashCode(ys);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("Polygon[");
+        for (int i = 0; i < xs.length; i++)
+            text.append(i == 0 ? "" : ", ").append('(').append(xs[i]).append(", ").append(ys[i]).append(')');
+        return text.append(']').toString();
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.geometry;
+
+import java.math.BigInteger;
+
+/**
+ * Exact geometric predicates on integer nanometre coordinates.<p>
+ *
+ * Every predicate gives the mathematically correct answer for all coordinates of magnitude below
+ * {@link #LIMIT}, so design rule checks never depend on rounding or epsilons and give the same result on every
+ * machine. Orientation needs products of coordinate differences, which exceed 64 bits, so they are computed to
+ * 128 bits with {@link Math#multiplyHigh}. Distance comparisons are first decided in floating point and
+ * recomputed exactly only when the two are closer than a bound on the floating point error, which is rare.<p>
+ *
+ * Orientation follows the usual mathematical convention: positive means counterclockwise with the y axis
+ * pointing up, which appears clockwise on screen where y points down.
+ */
+public final class Predicates {
+    /** The magnitude all coordinates must stay below, about 4.6 million kilometres. */
+    public static final long LIMIT = 1L << 62;
+
+    /**
+     * The error of {@link #distance}, relative to the largest coordinate difference it is given, beyond which a
+     * floating point distance comparison is trusted.<p>
+     *
+     * With u = 2<sup>-53</sup> the unit roundoff and M the largest difference, converting the differences to
+     * double moves the point and segment by under 2&radic;2 uM, which moves the distance by no more. The
+     * projection's dot product errs by under 2u|ap||ab| and so the clamped parameter t by under 5u|ap|/|ab|,
+     * which moves the foot of the perpendicular by under 5u|ap|. Forming the offset and the final hypot add
+     * under 4u(|ap| + |ab|). As |ap| and |ab| are at most &radic;2 M, the total is under 21uM, so 32uM leaves a
+     * comfortable margin. The distance compared with adds its own conversion error of u times itself.
+     */
+    private static final double FILTER = 32 * 0x1p-53;
+
+    private Predicates() {
+    }
+
+    /**
+     * Returns the sign of a*b - c*d, computed exactly.
+     *
+     * @param a The first factor of the first product.
+     * @param b The second factor of the first product.
+     * @param c The first factor of the second product.
+     * @param d The second factor of the second product.
+     * @return -1, 0 or 1.
+     */
+    public static int signOfDifferenceOfProducts(long a, long b, long c, long d) {
+        long high1 = Math.multiplyHigh(a, b);
+        long high2 = Math.multiplyHigh(c, d);
+        if (high1 != high2)
+            return (high1 < high2) ? -1 : 1;
+        return Integer.signum(Long.compareUnsigned(a * b, c * d));
+    }
+
+    /**
+     * Returns which side of the directed line from a to b the point c lies on.
+     *
+     * @param ax The x coordinate of a.
+     * @param ay The y coordinate of a.
+     * @param bx The x coordinate of b.
+     * @param by The y coordinate of b.
+     * @param cx The x coordinate of c.
+     * @param cy The y coordinate of c.
+     * @return 1 if a, b, c turn counterclockwise, -1 if clockwise and 0 if they are collinear.
+     */
+    public static int orientation(long ax, long ay, long bx, long by, long cx, long cy) {
+        return signOfDifferenceOfProducts(bx - ax, cy - ay, by - ay, cx - ax);
+    }
+
+    /**
+     * Returns whether two closed segments share at least one point.
+     *
+     * @param ax The x coordinate of the first segment's start.
+     * @param ay The y coordinate of the first segment's start.
+     * @param bx The x coordinate of the first segment's end.
+     * @param by The y coordinate of the first segment's end.
+     * @param cx The x coordinate of the second segment's start.
+     * @param cy The y coordinate of the second segment's start.
+     * @param dx The x coordinate of the second segment's end.
+     * @param dy The y coordinate of the second segment's end.
+     * @return true if the segments touch or cross.
+     */
+    public static boolean segmentsIntersect(long ax, long ay, long bx, long by,
+                                            long cx, long cy, long dx, long dy) {
+        // Disjoint bounding boxes settle most pairs without any multiplication.
+        if (Math.max(ax, bx) < Math.min(cx, dx) || Math.max(cx, dx) < Math.min(ax, bx)
+                || Math.max(ay, by) < Math.min(cy, dy) || Math.max(cy, dy) < Math.min(ay, by))
+            return false;
+        int o1 = orientation(ax, ay, bx, by, cx, cy);
+        int o2 = orientation(ax, ay, bx, by, dx, dy);
+        int o3 = orientation(cx, cy, dx, dy, ax, ay);
+        int o4 = orientation(cx, cy, dx, dy, bx, by);
+        if (o1 * o2 < 0 && o3 * o4 < 0)
+            return true;
+        // Touching or collinear: an endpoint lying on the other segment. The boxes are known to overlap.
+        return (o1 == 0 && onSegment(ax, ay, bx, by, cx, cy)) || (o2 == 0 && onSegment(ax, ay, bx, by, dx, dy))
+                || (o3 == 0 && onSegment(cx, cy, dx, dy, ax, ay)) || (o4 == 0 && onSegment(cx, cy, dx, dy, bx, by));
+    }
+
+    /** Returns whether a point known to be collinear with a segment lies within it. */
+    private static boolean onSegment(long ax, long ay, long bx, long by, long px, long py) {
+        return Math.min(ax, bx) <= px && px <= Math.max(ax, bx) && Math.min(ay, by) <= py && py <= Math.max(ay, by);
+    }
+
+    /**
+     * Compare the distance between a point and a closed segment with a given distance, exactly.
+     *
+     * @param px The point's x coordinate.
+     * @param py The point's y coordinate.
+     * @param ax The x coordinate of the segment's start.
+     * @param ay The y coordinate of the segment's start.
+     * @param bx The x coordinate of the segment's end.
+     * @param by The y coordinate of the segment's end.
+     * @param distance The distance to compare with. Must not be negative.
+     * @return -1, 0 or 1 as the point is nearer than, exactly at, or farther than the distance from the segment.
+     */
+    public static int compareDistance(long px, long py, long ax, long ay, long bx, long by, long distance) {
+        double approximate = distance(px, py, ax, ay, bx, by);
+        long largest = Math.max(Math.max(Math.abs(bx - ax), Math.abs(by - ay)),
+                Math.max(Math.abs(px - ax), Math.abs(py - ay)));
+        double tolerance = FILTER * ((double) largest + distance);
+        if (approximate < distance - tolerance)
+            return -1;
+        if (approximate > distance + tolerance)
+            return 1;
+        return exactCompareDistance(px, py, ax, ay, bx, by, distance);
+    }
+
+    /**
+     * Compare the distance between two closed segments with a given distance, exactly. Used for clearance checks:
+     * a result below zero means the segments are closer than the distance.
+     *
+     * @param ax The x coordinate of the first segment's start.
+     * @param ay The y coordinate of the first segment's start.
+     * @param bx The x coordinate of the first segment's end.
+     * @param by The y coordinate of the first segment's end.
+     * @param cx The x coordinate of the second segment's start.
+     * @param cy The y coordinate of the second segment's start.
+     * @param dx The x coordinate of the second segment's end.
+     * @param dy The y coordinate of the second segment's end.
+     * @param distance The distance to compare with. Must not be negative.
+     * @return -1, 0 or 1 as the segments are nearer than, exactly at, or farther than the distance apart.
+     */
+    public static int compareSegmentDistance(long ax, long ay, long bx, long by,
+                                             long cx, long cy, long dx, long dy, long distance) {
+        if (segmentsIntersect(ax, ay, bx, by, cx, cy, dx, dy))
+            return (distance == 0) ? 0 : -1;
+        // Segments that do not cross are nearest at an endpoint of one of them.
+        int result = compareDistance(ax, ay, cx, cy, dx, dy, distance);
+        if (result > 0)
+            result = Math.min(result, compareDistance(bx, by, cx, cy, dx, dy, distance));
+        if (result > 0)
+            result = Math.min(result, compareDistance(cx, cy, ax, ay, bx, by, distance));
+        if (result > 0)
+            result = Math.min(result, compareDistance(dx, dy, ax, ay, bx, by, distance));
+        return result;
+    }
+
+    /**
+     * Returns the distance between a point and a closed segment, rounded. For display and ordering; use
+     * {@link #compareDistance} for decisions.
+     *
+     * @param px The point's x coordinate.
+     * @param py The point's y coordinate.
+     * @param ax The x coordinate of the segment's start.
+     * @param ay The y coordinate of the segment's start.
+     * @param bx The x coordinate of the segment's end.
+     * @param by The y coordinate of the segment's end.
+     * @return the distance in nanometres.
+     */
+    public static double distance(long px, long py, long ax, long ay, long bx, long by) {
+        double abx = (double) (bx - ax), aby = (double) (by - ay);
+        double apx = (double) (px - ax), apy = (double) (py - ay);
+        double length2 = abx * abx + aby * aby;
+        double t = (length2 == 0) ? 0 : Math.max(0, Math.min(1, (apx * abx + apy * aby) / length2));
+        return Math.hypot(apx - t * abx, apy - t * aby);
+    }
+
+    /** The exact comparison, with arbitrary precision, for the rare cases floating point cannot settle. */
+    private static int exactCompareDistance(long px, long py, long ax, long ay, long bx, long by, long distance) {
+        BigInteger abx = BigInteger.valueOf(bx).subtract(BigInteger.valueOf(ax));
+        BigInteger aby = BigInteger.valueOf(by).subtract(BigInteger.valueOf(ay));
+        BigInteger apx = BigInteger.valueOf(px).subtract(BigInteger.valueOf(ax));
+        BigInteger apy = BigInteger.valueOf(py).subtract(BigInteger.valueOf(ay));
+        BigInteger d2 = BigInteger.valueOf(distance).pow(2);
+        BigInteger length2 = abx.pow(2).add(aby.pow(2));
+        BigInteger dot = apx.multiply(abx).add(apy.multiply(aby));
+        if (dot.signum() <= 0 || length2.signum() == 0)
+            return apx.pow(2).add(apy.pow(2)).compareTo(d2);
+        if (dot.compareTo(length2) >= 0) {
+            BigInteger bpx = BigInteger.valueOf(px).subtract(BigInteger.valueOf(bx));
+            BigInteger bpy = BigInteger.valueOf(py).subtract(BigInteger.valueOf(by));
+            return bpx.pow(2).add(bpy.pow(2)).compareTo(d2);
+        }
+        // The nearest point is inside the segment: distance = |cross| / |ab|, so compare cross^2 with d^2 * |ab|^2.
+        BigInteger cross = abx.multiply(apy).subtract(aby.multiply(apx));
+        return cross.pow(2).compareTo(d2.multiply(length2));
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * An immutable area of the plane bounded by polygons with whole-nanometre vertices, such as a filled copper zone.
+ * Outlines are counterclockwise and the holes in them clockwise, and no two boundaries cross.<p>
+ *
+ * Regions are made and combined by union, intersection, difference and exclusive or, and grown or shrunk by a
+ * distance, all on integer coordinates. Polygons given to these operations are filled by the non-zero winding
+ * rule, so overlapping polygons simply merge and a region's own polygons can be given back unchanged. Where
+ * boundaries cross between vertices the crossing is rounded to the nearest nanometre, so results are exact to
+ * within a nanometre. See {@code Overlay} for how.
+ */
+public final class Region {
+    /** How two operands combine. */
+    public enum Operation {
+        /** Everything in either operand. */
+        UNION,
+        /** Everything in both operands. */
+        INTERSECTION,
+        /** Everything in the first operand but not the second. */
+        DIFFERENCE,
+        /** Everything in exactly one operand. */
+        XOR
+    }
+
+    /** The region containing nothing. */
+    public static final Region EMPTY = new Region(new ArrayList<>());
+
+    /** The boundaries: outlines counterclockwise, holes clockwise. */
+    private final List<Polygon> polygons;
+
+    private Region(List<Polygon> polygons) {
+        this.polygons = Collections.unmodifiableList(polygons);
+    }
+
+    /**
+     * Construct the region covered by some polygons.
+     * @param polygons The polygons, which may overlap.
+     * @return the region.
+     */
+    public static Region of(Collection<Polygon> polygons) {
+        return combine(Operation.UNION, polygons, List.of());
+    }
+
+    /**
+     * Construct the region covered by some polygons.
+     * @param polygons The polygons, which may overlap.
+     * @return the region.
+     */
+    public static Region of(Polygon... polygons) {
+        return of(Arrays.asList(polygons));
+    }
+
+    /**
+     * Join regions that do not overlap without combining them, such as the tiles of a zone filled a tile at a
+     * time. Boundaries shared by neighbouring regions are kept, so this is much cheaper than their union.
+     *
+     * @param regions The regions, which may touch but not overlap.
+     * @return the region made up of them.
+     */
+    public static Region join(Collection<Region> regions) {
+        List<Polygon> polygons = new ArrayList<>();
+        for (Region region : regions)
+            polygons.addAll(region.polygons);
+        return polygons.isEmpty() ? EMPTY : new Region(polygons);
+    }
+
+    /**
+     * Combine the regions covered by two sets of polygons, splitting large inputs on the common pool.
+     *
+     * @param operation How the regions combine.
+     * @param a The polygons covering the first region.
+     * @param b The polygons covering the second region.
+     * @return the combined region.
+     */
+    public static Region combine(Operation operation, Collection<Polygon> a, Collection<Polygon> b) {
+        return combine(operation, a, b, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Combine the regions covered by two sets of polygons in one pass. Cutting many shapes from one region, as
+     * when filling a zone, is much faster this way than one shape at a time.
+     *
+     * @param operation How the regions combine.
+     * @param a The polygons covering the first region.
+     * @param b The polygons covering the second region.
+     * @param pool The pool large inputs are split on. Ignored when called from a pool's task.
+     * @return the combined region.
+     */
+    public static Region combine(Operation operation, Collection<Polygon> a, Collection<Polygon> b,
+                                 ForkJoinPool pool) {
+        Overlay overlay = new Overlay(pool);
+        for (Polygon polygon : a)
+            overlay.add(polygon, false);
+        for (Polygon polygon : b)
+            overlay.add(polygon, true);
+        return new Region(overlay.compute(operation));
+    }
+
+    /**
+     * Returns everything in this region or another.
+     * @param other The other region.
+     * @return the union.
+     */
+    public Region union(Region other) {
+        return combine(Operation.UNION, polygons, other.polygons);
+    }
+
+    /**
+     * Returns everything in both this region and another.
+     * @param other The other region.
+     * @return the intersection.
+     */
+    public Region intersect(Region other) {
+        return combine(Operation.INTERSECTION, polygons, other.polygons);
+    }
+
+    /**
+     * Returns everything in this region but not another.
+     * @param other The region to remove.
+     * @return the difference.
+     */
+    public Region subtract(Region other) {
+        return combine(Operation.DIFFERENCE, polygons, other.polygons);
+    }
+
+    /**
+     * Returns everything in exactly one of this region and another.
+     * @param other The other region.
+     * @return the exclusive or.
+     */
+    public Region xor(Region other) {
+        return combine(Operation.XOR, polygons, other.polygons);
+    }
+
+    /**
+     * Returns this region grown or shrunk by a distance, with rounded corners where it grows. Growing adds every
+     * point within the distance of the region, the union of the region with a {@link Polygon#stadium} around each
+     * edge; shrinking removes every point within the distance of its boundary.
+     *
+     * @param distance How far to grow the region, or if negative shrink it.
+     * @param maxError The furthest the rounded corners may stray from exact, at least one nanometre.
+     * @return the grown or shrunk region.
+     */
+    public Region inflate(long distance, long maxError) {
+        if (distance == 0 || polygons.isEmpty())
+            return this;
+        long radius = Math.abs(distance);
+        List<Polygon> strokes = new ArrayList<>();
+        for (Polygon polygon : polygons) {
+            for (int i = 0, n = polygon.size(); i < n; i++) {
+                int j = (i + 1 == n) ? 0 : i + 1;
+                strokes.add(Polygon.stadium(polygon.x(i), polygon.y(i), polygon.x(j), polygon.y(j), radius,
+                        maxError));
+            }
+        }
+        return (distance > 0) ? combine(Operation.UNION, polygons, strokes)
+                : combine(Operation.DIFFERENCE, polygons, strokes);
+    }
+
+    /**
+     * Returns the boundaries of the region: outlines counterclockwise and holes clockwise.
+     * @return an unmodifiable list of polygons.
+     */
+    public List<Polygon> getPolygons() { return polygons; }
+
+    /**
+     * Returns whether the region contains nothing.
+     * @return true if the region is empty.
+     */
+    public boolean isEmpty() { return polygons.isEmpty(); }
+
+    /**
+     * Returns the total number of vertices of the region's boundaries.
+     * @return the vertex count.
+     */
+    public int getVertexCount() {
+        int count = 0;
+        for (Polygon polygon : polygons)
+            count += polygon.size();
+        return count;
+    }
+
+    /**
+     * Returns the smallest box containing the region.
+     * @return the bounding box, or {@link Box#EMPTY}.
+     */
+    public Box bounds() {
+        Box bounds = Box.EMPTY;
+        for (Polygon polygon : polygons)
+            bounds = bounds.union(polygon.bounds());
+        return bounds;
+    }
+
+    /**
+     * Returns the region's area, rounded. Holes count against their outlines.
+     * @return the area in square nanometres.
+     */
+    public double area() {
+        double area = 0;
+        for (Polygon polygon : polygons)
+            area += polygon.area();
+        return area;
+    }
+
+    @Override
+    public String toString() {
+        return "Region[" + polygons.size() + " polygons, " + getVertexCount() + " vertices]";
+    }
+}
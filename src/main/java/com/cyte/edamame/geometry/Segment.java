@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.geometry;
+
+/**
+ * A closed straight line segment between two points, such as the centre line of a track.
+ *
+ * @param start One end.
+ * @param end The other end.
+ */
+public record Segment(Point start, Point end) {
+    /**
+     * Returns the segment's length, rounded.
+     * @return the length in nanometres.
+     */
+    public double length() {
+        return start.distance(end);
+    }
+
+    /**
+     * Returns the smallest box containing the segment.
+     * @return the bounding box.
+     */
+    public Box bounds() {
+        return Box.of(start, end);
+    }
+
+    /**
+     * Returns whether the segments share at least one point, exactly.
+     * @param other The other segment.
+     * @return true if the segments touch or cross.
+     */
+    public boolean intersects(Segment other) {
+        return Predicates.segmentsIntersect(start.x(), start.y(), end.x(), end.y(),
+                other.start.x(), other.start.y(), other.end.x(), other.end.y());
+    }
+
+    /**
+     * Compare the distance to a point with a given distance, exactly.
+     *
+     * @param point The point.
+     * @param distance The distance to compare with. Must not be negative.
+     * @return -1, 0 or 1 as the point is nearer than, exactly at, or farther than the distance from the segment.
+     */
+    public int compareDistance(Point point, long distance) {
+        return Predicates.compareDistance(point.x(), point.y(), start.x(), start.y(), end.x(), end.y(), distance);
+    }
+
+    /**
+     * Compare the distance to another segment with a given distance, exactly. Two tracks of widths w1 and w2
+     * violate a clearance c when their centre lines compare below c + (w1 + w2) / 2.
+     *
+     * @param other The other segment.
+     * @param distance The distance to compare with. Must not be negative.
+     * @return -1, 0 or 1 as the segments are nearer than, exactly at, or farther than the distance apart.
+     */
+    public int compareDistance(Segment other, long distance) {
+        return Predicates.compareSegmentDistance(start.x(), start.y(), end.x(), end.y(),
+                other.start.x(), other.start.y(), other.end.x(), other.end.y(), distance);
+    }
+
+    /**
+     * Returns this segment moved by an offset.
+     *
+     * @param dx The distance to move right.
+     * @param dy The distance to move down.
+     * @return the moved segment.
+     */
+    public Segment translate(long dx, long dy) {
+        return new Segment(start.translate(dx, dy), end.translate(dx, dy));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.geometry;
+
+import java.util.Locale;
+
+/**
+ * The units lengths are entered and shown in, and conversion between them and the nanometres all geometry is
+ * stored in.<p>
+ *
+ * Designs hold every coordinate and dimension as a whole number of nanometres in a {@code long}. Millimetres,
+ * mils and inches are all whole numbers of nanometres, so values typed in any of them are stored without error,
+ * and converting only happens here, where lengths cross the user interface.
+ */
+public enum Units {
+    NANOMETRE("nm", 1),
+    MICROMETRE("um", 1_000),
+    MILLIMETRE("mm", 1_000_000),
+    MIL("mil", 25_400),
+    INCH("in", 25_400_000);
+
+    /** The suffix the unit is written with. */
+    private final String suffix;
+
+    /** The number of nanometres in one of the unit. */
+    private final long nanometres;
+
+    Units(String suffix, long nanometres) {
+        this.suffix = suffix;
+        this.nanometres = nanometres;
+    }
+
+    /**
+     * Returns the suffix the unit is written with, such as "mm".
+     * @return the unit's suffix.
+     */
+    public String getSuffix() { return suffix; }
+
+    /**
+     * Returns the number of nanometres in one of the unit.
+     * @return the unit's size in nanometres.
+     */
+    public long getNanometres() { return nanometres; }
+
+    /**
+     * Convert a length in this unit to the nearest whole nanometre.
+     *
+     * @param value The length in this unit.
+     * @return the length in nanometres.
+     */
+    public long toNanometres(double value) {
+        return Math.round(value * nanometres);
+    }
+
+    /**
+     * Convert a length in nanometres to this unit.
+     *
+     * @param nm The length in nanometres.
+     * @return the length in this unit.
+     */
+    public double fromNanometres(long nm) {
+        return (double) nm / nanometres;
+    }
+
+    /**
+     * Write a length in this unit, with its suffix.
+     *
+     * @param nm The length in nanometres.
+     * @param decimals The number of decimal places to show.
+     * @return the formatted length, such as "1.270mm".
+     */
+    public String format(long nm, int decimals) {
+        return String.format(Locale.ROOT, "%." + decimals + "f%s", fromNanometres(nm), suffix);
+    }
+
+    /**
+     * Read a length typed by the user, such as "1.27mm", "50 mil" or "0.1in".
+     *
+     * @param text The text to read.
+     * @param otherwise The unit to assume when the text has no suffix.
+     * @return the length in nanometres.
+     * @throws NumberFormatException if the text is not a number with an optional known suffix.
+     */
+    public static long parse(String text, Units otherwise) {
+        String trimmed = text.trim().toLowerCase(Locale.ROOT);
+        Units unit = otherwise;
+        for (Units candidate : values()) {
+            // No suffix ends with another, so the first match is the only one.
+            if (trimmed.endsWith(candidate.suffix)) {
+                unit = candidate;
+                trimmed = trimmed.substring(0, trimmed.length() - candidate.suffix.length()).trim();
+                break;
+            }
+        }
+        return unit.toNanometres(Double.parseDouble(trimmed));
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.model.Graphic;
+import com.cyte.edamame.model.Symbol;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes symbols in a compact, versioned binary encoding.<p>
+ *
+ * The body starts with a single version byte. Version 1 follows with the name, the attribute count and
+ * key/value pairs, then the graphic count and each graphic as its kind ordinal followed by its coordinates and
+ * text. Counts and lengths are unsigned varints, coordinates are zig-zag varints (so small coordinates take only
+ * a byte or two) and strings are UTF-8 prefixed by their length plus one, zero meaning null.
+ */
+public class BinarySymbolCodec implements SymbolCodec {
+    /** The version of the encoding written by this codec. */
+    public static final byte VERSION = 1;
+
+    /** Every graphic kind, indexed by ordinal. */
+    private static final Graphic.Kind[] KINDS = Graphic.Kind.values();
+
+    @Override
+    public byte[] encode(Symbol symbol) {
+        Writer out = new Writer();
+        out.writeByte(VERSION);
+        out.writeString(symbol.getName());
+        out.writeUnsigned(symbol.getAttributes().size());
+        for (Map.Entry<String, String> attribute : symbol.getAttributes().entrySet()) {
+            out.writeString(attribute.getKey());
+            out.writeString(attribute.getValue());
+        }
+        out.writeUnsigned(symbol.getGraphics().size());
+        for (Graphic graphic : symbol.getGraphics()) {
+            out.writeByte(graphic.getKind().ordinal());
+            out.writeSigned(graphic.getX1());
+            out.writeSigned(graphic.getY1());
+            out.writeSigned(graphic.getX2());
+            out.writeSigned(graphic.getY2());
+            out.writeSigned(graphic.getWidth());
+            out.writeString(graphic.getText());
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Symbol decode(byte[] body) throws IOException {
+        Reader in = new Reader(body);
+        int version = in.readByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported binary symbol version: " + version);
+
+        Symbol symbol = new Symbol();
+        symbol.setName(in.readString());
+        int attributeCount = in.readCount();
+        Map<String, String> attributes = new LinkedHashMap<>(Math.max(16, attributeCount * 2));
+        for (int i = 0; i < attributeCount; i++)
+            attributes.put(in.readString(), in.readString());
+        symbol.setAttributes(attributes);
+
+        int graphicCount = in.readCount();
+        List<Graphic> graphics = new ArrayList<>(graphicCount);
+        for (int i = 0; i < graphicCount; i++) {
+            int kind = in.readByte();
+            if (kind >= KINDS.length)
+                throw new IOException("Unknown graphic kind: " + kind);
+            graphics.add(new Graphic(KINDS[kind], in.readSigned(), in.readSigned(), in.readSigned(),
+                    in.readSigned(), in.readSigned(), in.readString()));
+        }
+        symbol.setGraphics(graphics);
+        return symbol;
+    }
+
+    /** A growable byte buffer for encoding. */
+    private static final class Writer {
+        private byte[] buffer = new byte[256];
+        private int length = 0;
+
+        private void ensure(int extra) {
+            if (length + extra > buffer.length)
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[length++] = (byte) value;
+        }
+
+        void writeUnsigned(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        void writeSigned(long value) {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeUnsigned(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeUnsigned(bytes.length + 1L);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+
+    /** A cursor over an encoded body. */
+    private static final class Reader {
+        private final byte[] buffer;
+        private int position = 0;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int readByte() throws IOException {
+            if (position >= buffer.length)
+                throw new IOException("Truncated binary symbol");
+            return buffer[position++] & 0xFF;
+        }
+
+        long readUnsigned() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IOException("Malformed varint in binary symbol");
+        }
+
+        long readSigned() throws IOException {
+            long value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readCount() throws IOException {
+            long count = readUnsigned();
+            if (count > buffer.length - position)
+                throw new IOException("Invalid count in binary symbol: " + count);
+            return (int) count;
+        }
+
+        String readString() throws IOException {
+            long length = readUnsigned();
+            if (length == 0)
+                return null;
+            if (length - 1 > buffer.length - position)
+                throw new IOException("Truncated string in binary symbol");
+            String value = new String(buffer, position, (int) (length - 1), StandardCharsets.UTF_8);
+            position += (int) (length - 1);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small, fixed size pool of JDBC connections to a library database.<p>
+ *
+ * Connections are opened on demand up to the configured pool size and then reused, so library queries do not
+ * pay connection setup costs. Each {@link PooledConnection} caches its prepared statements for the life of the
+ * underlying connection.
+ */
+public class ConnectionPool implements AutoCloseable {
+    /** The settings used to open connections. */
+    private final LibrarySettings settings;
+
+    /** Connections that are open and not currently leased. */
+    private final BlockingQueue<PooledConnection> idle;
+
+    /** Every connection opened by this pool. */
+    private final List<PooledConnection> all = new ArrayList<>();
+
+    /** Set once the pool is closed. No further connections are handed out. */
+    private volatile boolean closed = false;
+
+    /**
+     * Construct a pool for the database described by the settings. No connections are opened until needed.
+     *
+     * @param settings The library settings.
+     */
+    public ConnectionPool(LibrarySettings settings) {
+        if (settings.getPoolSize() <= 0)
+            throw new IllegalArgumentException("pool size must be positive: " + settings.getPoolSize());
+        this.settings = settings;
+        this.idle = new ArrayBlockingQueue<>(settings.getPoolSize());
+    }
+
+    /**
+     * Lease a connection. The connection must be closed to return it to the pool, preferably with
+     * try-with-resources.
+     *
+     * @return a leased connection.
+     * @throws SQLException if a connection cannot be opened or none becomes available in time.
+     */
+    public PooledConnection acquire() throws SQLException {
+        if (closed)
+            throw new SQLException("connection pool is closed");
+        PooledConnection connection = idle.poll();
+        if (connection == null)
+            connection = open();
+        if (connection == null) {
+            try {
+                connection = idle.poll(settings.getAcquireTimeout(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("interrupted waiting for a library connection", e);
+            }
+            if (connection == null)
+                throw new SQLException("timed out waiting for a library connection");
+        }
+        if (!connection.getConnection().isValid(1)) {
+            discard(connection);
+            return acquire();
+        }
+        return connection;
+    }
+
+    /**
+     * Open a new connection if the pool has not yet reached its size.
+     *
+     * @return the new connection or null if the pool is already full.
+     * @throws SQLException if the connection cannot be opened.
+     */
+    private PooledConnection open() throws SQLException {
+        synchronized (all) {
+            if (all.size() >= settings.getPoolSize())
+                return null;
+            Connection connection = DriverManager.getConnection(settings.toUrl(), settings.getUser(),
+                    settings.getPassword());
+            PooledConnection pooled = new PooledConnection(this, connection);
+            all.add(pooled);
+            return pooled;
+        }
+    }
+
+    /**
+     * Return a leased connection to the pool.
+     *
+     * @param connection The connection being returned.
+     */
+    void release(PooledConnection connection) {
+        if (closed || !idle.offer(connection))
+            discard(connection);
+    }
+
+    /**
+     * Close a connection and forget it so that a replacement can be opened.
+     *
+     * @param connection The connection to discard.
+     */
+    private void discard(PooledConnection connection) {
+        synchronized (all) {
+            all.remove(connection);
+        }
+        connection.closeQuietly();
+    }
+
+    /**
+     * Close every idle connection and refuse further leases. Leased connections are closed when returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idle.poll()) != null)
+            discard(connection);
+    }
+}
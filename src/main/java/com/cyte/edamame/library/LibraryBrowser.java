@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.EDAmame;
+import com.cyte.edamame.model.Symbol;
+import javafx.application.Platform;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A navigation tab listing the symbols of a {@link SymbolLibrary}.<p>
+ *
+ * The list is populated page by page with metadata only, fetching the next page as the user scrolls towards
+ * the end of what has been loaded. A symbol's body is fetched and decoded only once its cell becomes visible
+ * (to show its name) or it is selected (to show its preview), so opening the tab costs the same regardless of
+ * the size of the library.<p>
+ *
+ * Typing in the search field replaces the paged listing with the matches found by the library's
+ * {@link SymbolIndex}, updated on every keystroke.
+ */
+public class LibraryBrowser {
+    /** The logger for the entire application. All classes/modules should obtain and use this static logger. */
+    private final static Logger LOGGER = Logger.getLogger(EDAmame.class.getName());
+
+    /** The number of symbols fetched per page. */
+    public static final int PAGE_SIZE = 200;
+
+    /** How close to the end of the loaded items a visible cell must be to trigger fetching the next page. */
+    private static final int PREFETCH_DISTANCE = 50;
+
+    /** The maximum number of search results listed. */
+    public static final int SEARCH_LIMIT = 500;
+
+    /** The maximum number of symbol names remembered for display. */
+    private static final int MAX_NAMES = 10_000;
+
+    /** The library being browsed. */
+    private final SymbolLibrary library;
+
+    /** The list of symbol metadata. */
+    private final ListView<SymbolMetadata> list = new ListView<>();
+
+    /** Filters the listing to symbols matching what is typed. */
+    private final TextField search = new TextField();
+
+    /** Shows a summary of the selected symbol's body. */
+    private final Label preview = new Label();
+
+    /** The navigation tab holding the browser. */
+    private final Tab tab;
+
+    /** Names of recently displayed symbols, so scrolling back does not decode them again. */
+    private final Map<SymbolMetadata, String> names = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SymbolMetadata, String> eldest) {
+            return size() > MAX_NAMES;
+        }
+    };
+
+    /** Symbols whose names have been requested but not yet received. */
+    private final Set<SymbolMetadata> pending = new HashSet<>();
+
+    /** The key of the next page to fetch or null to fetch the first page. */
+    private UUID next = null;
+
+    /** Whether more pages remain to be fetched. */
+    private boolean more = true;
+
+    /** Whether a page is currently being fetched. */
+    private boolean fetching = false;
+
+    /** Incremented on every refresh or search so results requested before it are ignored. */
+    private int generation = 0;
+
+    /**
+     * Construct a browser for a library. Nothing is fetched until {@link #refresh()} is called.
+     *
+     * @param library The library to browse.
+     */
+    public LibraryBrowser(SymbolLibrary library) {
+        this.library = library;
+        list.setCellFactory(view -> new SymbolCell());
+        list.getSelectionModel().selectedItemProperty().addListener(
+                (observable, oldValue, newValue) -> showPreview(newValue));
+        search.setPromptText("Search");
+        search.textProperty().addListener((observable, oldValue, newValue) -> search(newValue));
+        VBox.setVgrow(list, Priority.ALWAYS);
+        tab = new Tab("Library", new VBox(search, list, preview));
+        tab.setClosable(false);
+    }
+
+    /**
+     * Returns the navigation tab holding the browser.
+     * @return the browser's tab.
+     */
+    public Tab getTab() { return tab; }
+
+    /**
+     * Discard everything listed and start again from the first page.
+     */
+    public void refresh() {
+        generation++;
+        list.getItems().clear();
+        names.clear();
+        pending.clear();
+        preview.setText(null);
+        next = null;
+        more = true;
+        fetching = false;
+        fetchNextPage();
+    }
+
+    /**
+     * List the symbols matching a query, or return to the paged listing if the query is blank.
+     *
+     * @param query The text typed in the search field.
+     */
+    private void search(String query) {
+        if (query == null || query.isBlank()) {
+            refresh();
+            return;
+        }
+        generation++;
+        pending.clear(); // names requested before the search are ignored when they arrive, so request them again.
+        more = false;
+        fetching = false;
+        list.getItems().setAll(library.getIndex().search(query, SEARCH_LIMIT));
+    }
+
+    /** Fetch the next page of metadata unless one is already being fetched or there are no more. */
+    private void fetchNextPage() {
+        if (fetching || !more)
+            return;
+        fetching = true;
+        int requested = generation;
+        library.page(next, PAGE_SIZE).whenComplete((page, error) -> Platform.runLater(() -> {
+            if (requested != generation)
+                return;
+            fetching = false;
+            if (error != null) {
+                more = false;
+                LOGGER.log(Level.WARNING, "Unable to list library symbols: {0}\n", error.getMessage());
+                return;
+            }
+            list.getItems().addAll(page.items());
+            next = page.next();
+            more = page.hasNext();
+        }));
+    }
+
+    /**
+     * Load and summarize the body of the selected symbol.
+     *
+     * @param selected The selected symbol's metadata, or null if nothing is selected.
+     */
+    private void showPreview(SymbolMetadata selected) {
+        if (selected == null) {
+            preview.setText(null);
+            return;
+        }
+        preview.setText("Loading...");
+        SymbolKey key = new SymbolKey(selected.id(), selected.version());
+        library.load(key).whenComplete((symbol, error) -> Platform.runLater(() -> {
+            if (list.getSelectionModel().getSelectedItem() != selected)
+                return;
+            if (error != null)
+                preview.setText("Unreadable symbol: " + error.getMessage());
+            else
+                preview.setText(symbol.map(LibraryBrowser::summarize).orElse("Symbol no longer in library"));
+        }));
+    }
+
+    /**
+     * Describe a symbol's body for the preview.
+     *
+     * @param symbol The symbol.
+     * @return a short multi-line description.
+     */
+    private static String summarize(Symbol symbol) {
+        StringBuilder text = new StringBuilder(String.valueOf(symbol.getName()));
+        symbol.getAttributes().forEach((key, value) -> text.append('\n').append(key).append(": ").append(value));
+        text.append('\n').append(symbol.getGraphics().size()).append(" graphics");
+        return text.toString();
+    }
+
+    /**
+     * Describe a symbol for its list cell.
+     *
+     * @param item The symbol's metadata.
+     * @param name The symbol's name, or null if not yet known.
+     * @return the cell text.
+     */
+    private static String describe(SymbolMetadata item, String name) {
+        return (name == null ? "..." : name) + "  v" + item.version()
+                + (item.author() == null ? "" : "  " + item.author());
+    }
+
+    /** A list cell that displays metadata immediately and fetches the symbol's name once it is shown. */
+    private class SymbolCell extends ListCell<SymbolMetadata> {
+        @Override
+        protected void updateItem(SymbolMetadata item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                setText(null);
+                return;
+            }
+            if (getIndex() >= list.getItems().size() - PREFETCH_DISTANCE)
+                fetchNextPage();
+
+            String name = names.get(item);
+            setText(describe(item, name));
+            if (name == null)
+                fetchName(item);
+        }
+
+        /**
+         * Fetch and decode a symbol's body to learn its name, updating this cell if it still shows the symbol.
+         *
+         * @param item The symbol to fetch the name of.
+         */
+        private void fetchName(SymbolMetadata item) {
+            if (!pending.add(item))
+                return;
+            int requested = generation;
+            SymbolKey key = new SymbolKey(item.id(), item.version());
+            library.load(key).whenComplete((symbol, error) -> Platform.runLater(() -> {
+                if (requested != generation)
+                    return;
+                pending.remove(item);
+                String name = (error != null) ? "<unreadable>" : symbol.map(Symbol::getName).orElse("<removed>");
+                names.put(item, name);
+                if (getItem() == item)
+                    setText(describe(item, name));
+                else
+                    list.refresh(); // the symbol moved to another cell while its name was being fetched.
+            }));
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.diagnostics.FileEvent;
+import com.cyte.edamame.diagnostics.Metrics;
+import com.cyte.edamame.model.Symbol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Imports large numbers of YAML symbol files into a {@link SymbolLibrary}.<p>
+ *
+ * The files of a directory tree or a zip archive are read and parsed in parallel as {@link SymbolDocument}s
+ * and deduplicated by UUID, keeping the highest version of each symbol. The survivors are then written with
+ * JDBC batches, committing one chunk at a time, and added to the library's search index. A symbol already in
+ * the library is only replaced by a higher version. Progress is reported to a {@link Listener} throughout.
+ */
+public class LibraryImporter {
+    /** The default number of symbols written per batch and transaction. */
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    /** Inserts a symbol, or replaces it if the library holds a lower version. */
+    private static final String MERGE = """
+            MERGE INTO symbols t
+            USING (VALUES (CAST(? AS BINARY(16)), CAST(? AS SMALLINT), CAST(? AS VARCHAR(255)),
+                           CAST(? AS TINYINT), CAST(? AS BLOB))) s(SymbolID, Version, Author, Format, YAML)
+            ON t.SymbolID = s.SymbolID
+            WHEN MATCHED AND t.Version < s.Version THEN
+                UPDATE SET Version = s.Version, Author = s.Author, Format = s.Format, YAML = s.YAML
+            WHEN NOT MATCHED THEN
+                INSERT (SymbolID, Version, Author, Format, YAML)
+                VALUES (s.SymbolID, s.Version, s.Author, s.Format, s.YAML)""";
+
+    /** Times reading symbol files, counting the bytes read. */
+    private static final Metrics.Timer READ_TIMER = Metrics.timer("file.read.symbol", "bytes");
+
+    /** The library being imported into. */
+    private final SymbolLibrary library;
+
+    /** The number of symbols written per batch and transaction. */
+    private final int chunkSize;
+
+    /**
+     * Construct an importer for a library using the default chunk size.
+     *
+     * @param library The library to import into.
+     */
+    public LibraryImporter(SymbolLibrary library) {
+        this(library, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Construct an importer for a library.
+     *
+     * @param library The library to import into.
+     * @param chunkSize The number of symbols written per batch and transaction.
+     */
+    public LibraryImporter(SymbolLibrary library, int chunkSize) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+        this.library = library;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Import every .yaml/.yml file in a directory tree or zip archive.
+     *
+     * @param source A directory or a .zip file.
+     * @param listener Receives progress reports, on whatever thread the import happens to be running on.
+     * @return a future of the import's final {@link Progress}.
+     */
+    public CompletableFuture<Progress> importFrom(Path source, Listener listener) {
+        return library.run("import", connection -> {
+            long start = System.nanoTime();
+            Map<UUID, Parsed> parsed = new ConcurrentHashMap<>();
+            AtomicInteger failures = new AtomicInteger();
+            int files = parse(source, parsed, failures, listener, start);
+
+            List<Parsed> symbols = new ArrayList<>(parsed.values());
+            write(connection, symbols, listener, start, failures.get());
+            Progress done = new Progress(Phase.DONE, symbols.size(), symbols.size(), files, failures.get(),
+                    System.nanoTime() - start);
+            listener.progress(done);
+            return done;
+        });
+    }
+
+    /**
+     * Read and parse every symbol file in parallel, keeping the highest version of each symbol.
+     *
+     * @return the number of files found.
+     */
+    private int parse(Path source, Map<UUID, Parsed> parsed, AtomicInteger failures, Listener listener,
+                      long start) throws SQLException {
+        AtomicInteger done = new AtomicInteger();
+        try {
+            if (Files.isDirectory(source)) {
+                List<Path> paths;
+                try (Stream<Path> walk = Files.walk(source)) {
+                    paths = walk.filter(Files::isRegularFile).filter(p -> isYaml(p.toString())).toList();
+                }
+                paths.parallelStream().forEach(path -> {
+                    accept(() -> read(path.toString(), () -> Files.readAllBytes(path)), parsed, failures);
+                    report(listener, Phase.PARSING, done.incrementAndGet(), paths.size(), failures, start);
+                });
+                return paths.size();
+            }
+            try (ZipFile zip = new ZipFile(source.toFile())) {
+                List<? extends ZipEntry> entries = zip.stream()
+                        .filter(e -> !e.isDirectory() && isYaml(e.getName())).toList();
+                entries.parallelStream().forEach(entry -> {
+                    accept(() -> read(source + "!" + entry.getName(), () -> {
+                        try (InputStream in = zip.getInputStream(entry)) {
+                            return in.readAllBytes();
+                        }
+                    }), parsed, failures);
+                    report(listener, Phase.PARSING, done.incrementAndGet(), entries.size(), failures, start);
+                });
+                return entries.size();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new SQLException("Unable to read symbols from " + source, e);
+        }
+    }
+
+    /**
+     * Read one symbol file, recording the time taken in the {@link Metrics} and as a {@link FileEvent}.
+     */
+    private static byte[] read(String path, Reader reader) throws IOException {
+        long start = System.nanoTime();
+        FileEvent event = new FileEvent();
+        event.begin();
+        byte[] bytes = reader.read();
+        READ_TIMER.record(System.nanoTime() - start, bytes.length);
+        if (event.shouldCommit()) {
+            event.operation = "read";
+            event.path = path;
+            event.bytes = bytes.length;
+            event.commit();
+        }
+        return bytes;
+    }
+
+    /**
+     * Parse one symbol file and keep it if it is the highest version of its symbol seen so far.
+     */
+    private static void accept(Reader reader, Map<UUID, Parsed> parsed, AtomicInteger failures) {
+        try {
+            byte[] bytes = reader.read();
+            SymbolDocument document = YamlSymbolCodec.load(bytes, SymbolDocument.class);
+            if (document.getSymbol() == null || document.getVersion() < 1 || document.getVersion() > Short.MAX_VALUE)
+                throw new IOException("Not a valid symbol document");
+            UUID id = (document.getId() != null) ? UUID.fromString(document.getId()) : UUID.nameUUIDFromBytes(bytes);
+            Symbol symbol = document.getSymbol();
+            byte[] body = SymbolFormat.DEFAULT.getCodec().encode(symbol);
+            Parsed candidate = new Parsed(id, (short) document.getVersion(), document.getAuthor(), symbol, body);
+            parsed.merge(id, candidate, (a, b) -> (a.version >= b.version) ? a : b);
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+        }
+    }
+
+    /**
+     * Write the parsed symbols in batches, one transaction per chunk, and index them.
+     */
+    private void write(PooledConnection pooled, List<Parsed> symbols, Listener listener, long start,
+                       int failures) throws SQLException {
+        Connection connection = pooled.getConnection();
+        connection.setAutoCommit(false);
+        PreparedStatement statement = pooled.prepare(MERGE);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int from = 0; from < symbols.size(); from += chunkSize) {
+            List<Parsed> chunk = symbols.subList(from, Math.min(from + chunkSize, symbols.size()));
+            for (Parsed symbol : chunk) {
+                statement.setBytes(1, SymbolLibrary.toBytes(symbol.id));
+                statement.setShort(2, symbol.version);
+                statement.setString(3, symbol.author);
+                statement.setByte(4, SymbolFormat.DEFAULT.getTag());
+                statement.setBytes(5, symbol.body);
+                statement.addBatch();
+            }
+            int[] counts = statement.executeBatch();
+            connection.commit();
+            // A symbol the library already holds at the same or a higher version is left alone and not re-indexed.
+            for (int i = 0; i < chunk.size(); i++) {
+                Parsed symbol = chunk.get(i);
+                if (counts[i] != 0)
+                    library.getIndex().put(new SymbolMetadata(symbol.id, symbol.version, symbol.author, now),
+                            symbol.symbol);
+            }
+            listener.progress(new Progress(Phase.WRITING, from + chunk.size(), symbols.size(), symbols.size(),
+                    failures, System.nanoTime() - start));
+        }
+        connection.setAutoCommit(true);
+    }
+
+    /** Report parsing progress periodically rather than for every file. */
+    private static void report(Listener listener, Phase phase, int done, int total, AtomicInteger failures,
+                               long start) {
+        if (done % 100 == 0 || done == total)
+            listener.progress(new Progress(phase, done, total, total, failures.get(), System.nanoTime() - start));
+    }
+
+    private static boolean isYaml(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".yaml") || lower.endsWith(".yml");
+    }
+
+    /** The phases of an import. */
+    public enum Phase { PARSING, WRITING, DONE }
+
+    /**
+     * A report of an import's progress.
+     *
+     * @param phase The current phase.
+     * @param done The number of items completed in this phase.
+     * @param total The number of items in this phase.
+     * @param files The number of symbol files found.
+     * @param failures The number of files that could not be parsed.
+     * @param elapsedNanos The time since the import started.
+     */
+    public record Progress(Phase phase, int done, int total, int files, int failures, long elapsedNanos) {
+        /**
+         * Returns the rate at which items of this phase have been completed.
+         * @return items per second since the import started.
+         */
+        public double throughput() {
+            return elapsedNanos == 0 ? 0 : done * 1e9 / elapsedNanos;
+        }
+    }
+
+    /** Receives progress reports from an import. */
+    @FunctionalInterface
+    public interface Listener {
+        void progress(Progress progress);
+    }
+
+    /** Reads the bytes of one symbol file. */
+    @FunctionalInterface
+    private interface Reader {
+        byte[] read() throws IOException;
+    }
+
+    /** A parsed symbol waiting to be written. */
+    private record Parsed(UUID id, short version, String author, Symbol symbol, byte[] body) {
+    }
+}
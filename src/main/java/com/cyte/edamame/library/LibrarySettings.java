@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class to represent, specify, serialize, store, and deserialize the settings used to access a component
+ * library database. The settings follow JavaBean conventions so they can be stored as YAML alongside the
+ * other EDAmame settings.
+ */
+public class LibrarySettings {
+    /** The H2 database path, without the "jdbc:h2:" prefix or any settings. */
+    private String path = "~/EDAmame/library";
+
+    /** The database user. */
+    private String user = "SA";
+
+    /** The database password. */
+    private String password = "";
+
+    /** The maximum number of connections kept open to the database. */
+    private int poolSize = 4;
+
+    /** How long to wait for a pooled connection before giving up, in milliseconds. */
+    private long acquireTimeout = 10_000;
+
+    /** The size of H2's page cache in KB. */
+    private int cacheSize = 64 * 1024;
+
+    /** Whether the MVStore compresses pages written to disk. */
+    private boolean compress = false;
+
+    /** The MVStore fill rate (percent) below which the store is compacted automatically. */
+    private int autoCompactFillRate = 90;
+
+    /** Additional H2 settings appended verbatim to the URL, in insertion order. */
+    private Map<String, String> options = new LinkedHashMap<>();
+
+    /**
+     * Returns the JDBC URL combining the path with all configured H2 settings.
+     * @return the JDBC URL used to open connections.
+     */
+    public String toUrl() {
+        StringBuilder url = new StringBuilder("jdbc:h2:").append(path);
+        url.append(";CACHE_SIZE=").append(cacheSize);
+        url.append(";COMPRESS=").append(compress ? "TRUE" : "FALSE");
+        url.append(";AUTO_COMPACT_FILL_RATE=").append(autoCompactFillRate);
+        for (Map.Entry<String, String> option : options.entrySet())
+            url.append(';').append(option.getKey()).append('=').append(option.getValue());
+        return url.toString();
+    }
+
+    public String getPath() { return path; }
+
+    public void setPath(String path) { this.path = path; }
+
+    public String getUser() { return user; }
+
+    public void setUser(String user) { this.user = user; }
+
+    public String getPassword() { return password; }
+
+    public void setPassword(String password) { this.password = password; }
+
+    public int getPoolSize() { return poolSize; }
+
+    public void setPoolSize(int poolSize) { this.poolSize = poolSize; }
+
+    public long getAcquireTimeout() { return acquireTimeout; }
+
+    public void setAcquireTimeout(long acquireTimeout) { this.acquireTimeout = acquireTimeout; }
+
+    public int getCacheSize() { return cacheSize; }
+
+    public void setCacheSize(int cacheSize) { this.cacheSize = cacheSize; }
+
+    public boolean isCompress() { return compress; }
+
+    public void setCompress(boolean compress) { this.compress = compress; }
+
+    public int getAutoCompactFillRate() { return autoCompactFillRate; }
+
+    public void setAutoCompactFillRate(int autoCompactFillRate) { this.autoCompactFillRate = autoCompactFillRate; }
+
+    public Map<String, String> getOptions() { return options; }
+
+    public void setOptions(Map<String, String> options) { this.options = options; }
+}
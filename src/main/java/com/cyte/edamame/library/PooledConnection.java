@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link Connection} leased from a {@link ConnectionPool}. Closing a {@link PooledConnection} returns it to
+ * the pool rather than closing the underlying connection.<p>
+ *
+ * Prepared statements obtained through {@link #prepare(String)} are cached by their SQL for the life of the
+ * underlying connection and must not be closed by the caller.
+ */
+public class PooledConnection implements AutoCloseable {
+    /** The pool this connection is returned to. */
+    private final ConnectionPool pool;
+
+    /** The underlying JDBC connection. */
+    private final Connection connection;
+
+    /** Prepared statements keyed by their SQL. */
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+    }
+
+    /**
+     * Returns the underlying JDBC connection for operations that are not cached.
+     * @return the JDBC connection.
+     */
+    public Connection getConnection() { return connection; }
+
+    /**
+     * Returns a prepared statement for the SQL, preparing it only the first time it is requested. The
+     * statement's parameters are cleared before it is returned.
+     *
+     * @param sql The SQL of the statement.
+     * @return the cached prepared statement.
+     * @throws SQLException if the statement cannot be prepared.
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        } else
+            statement.clearParameters();
+        return statement;
+    }
+
+    /**
+     * Return this connection to its pool. Any transaction left open is rolled back first.
+     */
+    @Override
+    public void close() {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            closeQuietly();
+        }
+        pool.release(this);
+    }
+
+    /** Close the underlying connection and its cached statements, ignoring any errors. */
+    void closeQuietly() {
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.model.Symbol;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of decoded {@link Symbol}s keyed by {@link SymbolKey}.<p>
+ *
+ * Library rows are versioned, so a cached symbol never goes stale; a newer version simply has a different key.
+ * The cache is bounded both by a number of entries and by the total size of the encoded bodies the entries were
+ * decoded from, which is a reasonable proxy for the memory they occupy. Cached symbols are shared between every
+ * user of the library and must be treated as immutable; copy a symbol before modifying it.<p>
+ *
+ * The cache is safe for use from multiple threads.
+ */
+public class SymbolCache {
+    /** The default maximum number of cached symbols. */
+    public static final int DEFAULT_MAX_ENTRIES = 5_000;
+
+    /** The default maximum total encoded size of cached symbols in bytes. */
+    public static final long DEFAULT_MAX_WEIGHT = 32L * 1024 * 1024;
+
+    /** The cached symbols in least to most recently used order. */
+    private final LinkedHashMap<SymbolKey, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    /** The maximum number of cached symbols. */
+    private final int maxEntries;
+
+    /** The maximum total weight of cached symbols. */
+    private final long maxWeight;
+
+    /** The current total weight of cached symbols. */
+    private long weight = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Construct a cache with the default bounds.
+     */
+    public SymbolCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT);
+    }
+
+    /**
+     * Construct a cache with the given bounds.
+     *
+     * @param maxEntries The maximum number of cached symbols.
+     * @param maxWeight The maximum total encoded size of cached symbols in bytes.
+     */
+    public SymbolCache(int maxEntries, long maxWeight) {
+        if (maxEntries <= 0 || maxWeight <= 0)
+            throw new IllegalArgumentException("cache bounds must be positive");
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Look up a cached symbol, counting the hit or miss.
+     *
+     * @param key The symbol version to look up.
+     * @return the cached symbol or null if it is not cached.
+     */
+    public synchronized Symbol get(SymbolKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.symbol;
+    }
+
+    /**
+     * Cache a decoded symbol, evicting the least recently used symbols as needed to stay within bounds.
+     *
+     * @param key The symbol version.
+     * @param symbol The decoded symbol.
+     * @param encodedSize The size of the body the symbol was decoded from.
+     */
+    public synchronized void put(SymbolKey key, Symbol symbol, long encodedSize) {
+        Entry previous = entries.put(key, new Entry(symbol, encodedSize));
+        if (previous != null)
+            weight -= previous.weight;
+        weight += encodedSize;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || weight > maxWeight) && entries.size() > 1) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            weight -= eldest.weight;
+            evictions++;
+        }
+    }
+
+    /**
+     * Forget every cached symbol. The counters are not reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Returns the current counters of the cache.
+     * @return a snapshot of the cache's statistics.
+     */
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, entries.size(), weight);
+    }
+
+    /**
+     * A snapshot of the cache's statistics.
+     *
+     * @param hits The number of lookups that found a cached symbol.
+     * @param misses The number of lookups that did not.
+     * @param evictions The number of symbols evicted to stay within bounds.
+     * @param size The number of symbols currently cached.
+     * @param weight The total encoded size of the symbols currently cached.
+     */
+    public record Stats(long hits, long misses, long evictions, int size, long weight) {
+        /**
+         * Returns the fraction of lookups that were hits.
+         * @return the hit ratio, or zero if there have been no lookups.
+         */
+        public double hitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    /** A cached symbol and its weight. */
+    private record Entry(Symbol symbol, long weight) {
+    }
+}
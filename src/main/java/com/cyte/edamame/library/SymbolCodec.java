@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.model.Symbol;
+
+import java.io.IOException;
+
+/**
+ * Converts {@link Symbol}s to and from the bytes stored in the body of a library row.
+ */
+public interface SymbolCodec {
+    /**
+     * Serialize a symbol.
+     *
+     * @param symbol The symbol to serialize.
+     * @return the serialized symbol.
+     * @throws IOException if the symbol cannot be serialized.
+     */
+    byte[] encode(Symbol symbol) throws IOException;
+
+    /**
+     * Deserialize a symbol.
+     *
+     * @param body The serialized symbol.
+     * @return the deserialized symbol.
+     * @throws IOException if the bytes are not a valid serialized symbol.
+     */
+    Symbol decode(byte[] body) throws IOException;
+}
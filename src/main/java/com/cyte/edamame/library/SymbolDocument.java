@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.model.Symbol;
+
+/**
+ * A symbol together with its library identity, as exchanged in YAML files between libraries. The id is the
+ * symbol's UUID in text form. Documents without an id are given one derived from their content so that
+ * importing the same document twice yields the same symbol.
+ */
+public class SymbolDocument {
+    private String id;
+    private int version = 1;
+    private String author;
+    private Symbol symbol;
+
+    public String getId() { return id; }
+
+    public void setId(String id) { this.id = id; }
+
+    public int getVersion() { return version; }
+
+    public void setVersion(int version) { this.version = version; }
+
+    public String getAuthor() { return author; }
+
+    public void setAuthor(String author) { this.author = author; }
+
+    public Symbol getSymbol() { return symbol; }
+
+    public void setSymbol(Symbol symbol) { this.symbol = symbol; }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+/**
+ * The encodings a symbol body may be stored in. The tag of the encoding is stored in the Format column of the
+ * library row so that rows of either encoding can coexist in the same library.
+ */
+public enum SymbolFormat {
+    /** Human readable YAML, used for import, export and interchange. The format of rows predating the tag. */
+    YAML(0, new YamlSymbolCodec()),
+
+    /** The compact binary encoding used for symbols stored by EDAmame. */
+    BINARY(1, new BinarySymbolCodec());
+
+    /** The format used for newly stored symbols. */
+    public static final SymbolFormat DEFAULT = BINARY;
+
+    /** The value stored in the Format column. */
+    private final byte tag;
+
+    /** The codec for this format. */
+    private final SymbolCodec codec;
+
+    SymbolFormat(int tag, SymbolCodec codec) {
+        this.tag = (byte) tag;
+        this.codec = codec;
+    }
+
+    /**
+     * Returns the value stored in the Format column for this format.
+     * @return the format tag.
+     */
+    public byte getTag() { return tag; }
+
+    /**
+     * Returns the codec that reads and writes this format.
+     * @return the codec.
+     */
+    public SymbolCodec getCodec() { return codec; }
+
+    /**
+     * Returns the format with the given tag.
+     *
+     * @param tag The value of a Format column.
+     * @return the format.
+     * @throws IllegalArgumentException if no format has the tag.
+     */
+    public static SymbolFormat of(byte tag) {
+        for (SymbolFormat format : values())
+            if (format.tag == tag)
+                return format;
+        throw new IllegalArgumentException("Unknown symbol format tag: " + tag);
+    }
+}
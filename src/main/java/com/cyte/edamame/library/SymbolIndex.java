@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.model.Symbol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory inverted index over the searchable fields of library symbols, supporting prefix-as-you-type
+ * queries.<p>
+ *
+ * A symbol's name, author and attribute values are split into lower case tokens. Each token maps to the
+ * symbols containing it in a sorted map, so every token beginning with a prefix is a contiguous range of the
+ * map. A query of several words matches symbols that have, for every word, some token beginning with that
+ * word. The index is updated incrementally as symbols are stored and is safe for use from multiple threads.
+ */
+public class SymbolIndex {
+    /** Symbols containing each token. */
+    private final NavigableMap<String, Set<UUID>> postings = new TreeMap<>();
+
+    /** The metadata and tokens of every indexed symbol. */
+    private final Map<UUID, Document> documents = new HashMap<>();
+
+    /** Guards the index. Queries run concurrently; updates are exclusive. */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Add a symbol to the index or replace its previously indexed version.
+     *
+     * @param metadata The symbol's metadata.
+     * @param symbol The symbol's decoded body.
+     */
+    public void put(SymbolMetadata metadata, Symbol symbol) {
+        Set<String> tokens = new LinkedHashSet<>();
+        tokenize(symbol.getName(), tokens);
+        tokenize(metadata.author(), tokens);
+        for (String value : symbol.getAttributes().values())
+            tokenize(value, tokens);
+        String[] array = tokens.toArray(new String[0]);
+
+        lock.writeLock().lock();
+        try {
+            Document previous = documents.put(metadata.id(), new Document(metadata, array));
+            if (previous != null)
+                unpost(metadata.id(), previous.tokens);
+            for (String token : array)
+                postings.computeIfAbsent(token, t -> new HashSet<>()).add(metadata.id());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a symbol from the index.
+     *
+     * @param id The UUID of the symbol.
+     */
+    public void remove(UUID id) {
+        lock.writeLock().lock();
+        try {
+            Document previous = documents.remove(id);
+            if (previous != null)
+                unpost(id, previous.tokens);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forget every indexed symbol.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of indexed symbols.
+     * @return the number of symbols in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the symbols matching a query. Every word of the query must be the prefix of some token of a
+     * matching symbol. Results are in no particular order.
+     *
+     * @param query The words to search for.
+     * @param limit The maximum number of results.
+     * @return the metadata of up to limit matching symbols.
+     */
+    public List<SymbolMetadata> search(String query, int limit) {
+        Set<String> words = new LinkedHashSet<>();
+        tokenize(query, words);
+        List<SymbolMetadata> results = new ArrayList<>();
+        if (words.isEmpty() || limit <= 0)
+            return results;
+
+        String[] terms = words.toArray(new String[0]);
+        lock.readLock().lock();
+        try {
+            // Drive the search from the word matching the fewest symbols and verify the other words against each
+            // candidate's own tokens rather than intersecting potentially huge posting sets.
+            int best = 0;
+            long bestCount = Long.MAX_VALUE;
+            for (int i = 0; i < terms.length; i++) {
+                long count = countMatches(terms[i], bestCount);
+                if (count < bestCount) {
+                    best = i;
+                    bestCount = count;
+                }
+            }
+            String driver = terms[best];
+            String[] others = new String[terms.length - 1];
+            for (int i = 0, j = 0; i < terms.length; i++)
+                if (i != best)
+                    others[j++] = terms[i];
+
+            Set<UUID> seen = new HashSet<>();
+            for (Set<UUID> ids : range(driver).values()) {
+                for (UUID id : ids) {
+                    if (!seen.add(id))
+                        continue;
+                    Document document = documents.get(id);
+                    if (document.matchesAll(others)) {
+                        results.add(document.metadata);
+                        if (results.size() >= limit)
+                            return results;
+                    }
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the postings of every token beginning with a prefix. Must be called with a lock held.
+     *
+     * @param prefix The prefix.
+     * @return the range of the postings map whose tokens begin with the prefix.
+     */
+    private NavigableMap<String, Set<UUID>> range(String prefix) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Count the postings of every token beginning with a prefix, giving up once the count reaches a limit.
+     * Must be called with a lock held.
+     *
+     * @param prefix The prefix.
+     * @param limit The count at which to stop counting.
+     * @return the number of postings, or a number at least as large as limit.
+     */
+    private long countMatches(String prefix, long limit) {
+        long count = 0;
+        for (Set<UUID> ids : range(prefix).values()) {
+            count += ids.size();
+            if (count >= limit)
+                break;
+        }
+        return count;
+    }
+
+    /**
+     * Remove a symbol from the postings of its tokens. Must be called with the write lock held.
+     *
+     * @param id The UUID of the symbol.
+     * @param tokens The tokens the symbol was indexed under.
+     */
+    private void unpost(UUID id, String[] tokens) {
+        for (String token : tokens) {
+            Set<UUID> ids = postings.get(token);
+            if (ids != null && ids.remove(id) && ids.isEmpty())
+                postings.remove(token);
+        }
+    }
+
+    /**
+     * Split text into lower case tokens of letters, digits and decimal points so that values such as "4.7k" or
+     * "SOT-23" remain searchable.
+     *
+     * @param text The text to split. May be null.
+     * @param tokens Receives the tokens.
+     */
+    static void tokenize(String text, Set<String> tokens) {
+        if (text == null)
+            return;
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean part = i < lower.length() && (Character.isLetterOrDigit(lower.charAt(i)) || lower.charAt(i) == '.');
+            if (part && start < 0)
+                start = i;
+            else if (!part && start >= 0) {
+                String token = lower.substring(start, i);
+                if (!token.chars().allMatch(c -> c == '.'))
+                    tokens.add(token);
+                start = -1;
+            }
+        }
+    }
+
+    /** An indexed symbol. */
+    private record Document(SymbolMetadata metadata, String[] tokens) {
+        /**
+         * Returns whether every word is the prefix of one of this document's tokens.
+         *
+         * @param words The words to check.
+         * @return true if all words match.
+         */
+        boolean matchesAll(String[] words) {
+            for (String word : words) {
+                boolean found = false;
+                for (String token : tokens) {
+                    if (token.startsWith(word)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found)
+                    return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import java.util.UUID;
+
+/**
+ * Identifies one version of a library symbol. A version of a symbol never changes once stored, so anything
+ * derived from it can be cached under its {@link SymbolKey} indefinitely.
+ *
+ * @param id The UUID of the symbol.
+ * @param version The version of the symbol.
+ */
+public record SymbolKey(UUID id, short version) {
+}
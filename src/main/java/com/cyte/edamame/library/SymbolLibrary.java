@@ -0,0 +1,473 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.diagnostics.LibraryQueryEvent;
+import com.cyte.edamame.diagnostics.Metrics;
+import com.cyte.edamame.model.Symbol;
+import com.cyte.edamame.util.IOService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Data access for the symbols of a component library database.<p>
+ *
+ * All operations run on a background executor using pooled connections and cached prepared statements, and
+ * report their results through {@link CompletableFuture}s, so they never block the JavaFX application thread.
+ * Callers that update the UI with a result must do so through {@link javafx.application.Platform#runLater}.
+ */
+public class SymbolLibrary implements AutoCloseable {
+    /** Creates the symbols table if the library is new. See Documentation/LibrarySchema.sql. */
+    private static final String CREATE_TABLE = """
+            CREATE TABLE IF NOT EXISTS symbols (
+            SymbolID BINARY(16) NOT NULL PRIMARY KEY,
+            Version SMALLINT NOT NULL DEFAULT 1,
+            Created TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+            Modified TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+            Author VARCHAR(255),
+            Format TINYINT NOT NULL DEFAULT 0,
+            YAML BLOB NOT NULL)""";
+
+    /** Libraries created before bodies were tagged with their format hold only YAML bodies. */
+    private static final String ADD_FORMAT = """
+            ALTER TABLE symbols ADD COLUMN IF NOT EXISTS Format TINYINT NOT NULL DEFAULT 0 BEFORE YAML""";
+
+    /** Looks up a single symbol by its UUID. */
+    private static final String SELECT = """
+            SELECT SymbolID, Version, Created, Modified, Author, Format, YAML FROM symbols WHERE SymbolID = ?""";
+
+    /** Looks up only the current version of a symbol so the cache can be consulted before reading the body. */
+    private static final String SELECT_VERSION = """
+            SELECT Version FROM symbols WHERE SymbolID = ?""";
+
+    /** The first page of metadata. Bodies are deliberately not selected. */
+    private static final String FIRST_PAGE = """
+            SELECT SymbolID, Version, Author, Modified FROM symbols ORDER BY SymbolID LIMIT ?""";
+
+    /** The page of metadata following a key. SymbolID is the primary key so this is an index range scan. */
+    private static final String NEXT_PAGE = """
+            SELECT SymbolID, Version, Author, Modified FROM symbols WHERE SymbolID > ? ORDER BY SymbolID LIMIT ?""";
+
+    /** Every symbol with the fields needed to build the search index. */
+    private static final String SELECT_ALL = """
+            SELECT SymbolID, Version, Author, Modified, Format, YAML FROM symbols""";
+
+    /** Stores a new symbol. */
+    private static final String INSERT = """
+            INSERT INTO symbols (SymbolID, Version, Author, Format, YAML) VALUES (?, ?, ?, ?, ?)""";
+
+    /** Stores a new version of a symbol, provided nobody else stored a newer version first. */
+    private static final String UPDATE = """
+            UPDATE symbols SET Version = Version + 1, Author = ?, Format = ?, YAML = ?
+            WHERE SymbolID = ? AND Version = ?""";
+
+    /** The timers of each kind of operation, counting the rows read or changed. */
+    private static final Map<String, Metrics.Timer> TIMERS = new ConcurrentHashMap<>();
+
+    /** The pool of connections to the library database. */
+    private final ConnectionPool pool;
+
+    /** Decoded symbols shared by every user of this library. */
+    private final SymbolCache cache = new SymbolCache();
+
+    /** The search index over every symbol in the library. */
+    private final SymbolIndex index = new SymbolIndex();
+
+    /** The executor every database operation is run on. */
+    private final Executor executor;
+
+    /** The executor created by this library, if it was not given one. Shut down when the library is closed. */
+    private final ExecutorService ownExecutor;
+
+    /**
+     * Construct a library that runs its operations on its own pool of background threads.
+     *
+     * @param settings The settings describing the library database.
+     */
+    public SymbolLibrary(LibrarySettings settings) {
+        this(settings, null);
+    }
+
+    /**
+     * Construct a library that runs its operations on the given executor.
+     *
+     * @param settings The settings describing the library database.
+     * @param executor The executor for database operations, or null to create a dedicated one.
+     */
+    public SymbolLibrary(LibrarySettings settings, Executor executor) {
+        this.pool = new ConnectionPool(settings);
+        if (executor == null) {
+            ownExecutor = Executors.newFixedThreadPool(settings.getPoolSize(), runnable -> {
+                Thread thread = new Thread(runnable, "EDAmame-library");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor = ownExecutor;
+        } else {
+            ownExecutor = null;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Prepare the library for use, creating its tables if the database is new.
+     *
+     * @return a future completed once the library is ready.
+     */
+    public CompletableFuture<Void> open() {
+        return run("open", connection -> {
+            try (Statement statement = connection.getConnection().createStatement()) {
+                statement.executeUpdate(CREATE_TABLE);
+                statement.executeUpdate(ADD_FORMAT);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Look up a symbol.
+     *
+     * @param id The UUID of the symbol.
+     * @return a future of the symbol's record, empty if the library has no such symbol.
+     */
+    public CompletableFuture<Optional<SymbolRecord>> find(UUID id) {
+        return run("find", connection -> find(connection, id));
+    }
+
+    /**
+     * Look up a symbol's row.
+     *
+     * @param connection The connection to read with.
+     * @param id The UUID of the symbol.
+     * @return the symbol's record, empty if the library has no such symbol.
+     * @throws SQLException if the row cannot be read.
+     */
+    private Optional<SymbolRecord> find(PooledConnection connection, UUID id) throws SQLException {
+        PreparedStatement statement = connection.prepare(SELECT);
+        statement.setBytes(1, toBytes(id));
+        try (ResultSet result = statement.executeQuery()) {
+            if (!result.next())
+                return Optional.empty();
+            return Optional.of(new SymbolRecord(fromBytes(result.getBytes(1)), result.getShort(2),
+                    result.getTimestamp(3), result.getTimestamp(4), result.getString(5),
+                    SymbolFormat.of(result.getByte(6)), result.getBytes(7)));
+        }
+    }
+
+    /**
+     * Look up and decode the current version of a symbol. Only the version is queried if that version is
+     * already cached; otherwise the body is read and decoded on the library's executor and cached.
+     *
+     * @param id The UUID of the symbol.
+     * @return a future of the decoded symbol, empty if the library has no such symbol.
+     */
+    public CompletableFuture<Optional<Symbol>> load(UUID id) {
+        return run("load", connection -> {
+            PreparedStatement statement = connection.prepare(SELECT_VERSION);
+            statement.setBytes(1, toBytes(id));
+            try (ResultSet result = statement.executeQuery()) {
+                if (!result.next())
+                    return Optional.empty();
+                Symbol cached = cache.get(new SymbolKey(id, result.getShort(1)));
+                if (cached != null)
+                    return Optional.of(cached);
+            }
+            return fetch(connection, id);
+        });
+    }
+
+    /**
+     * Look up and decode a particular version of a symbol, typically one listed in {@link SymbolMetadata}. A
+     * cached version is returned immediately without touching the database. Otherwise the current version is
+     * read, which is the requested version unless the symbol has since been updated.
+     *
+     * @param key The symbol version wanted.
+     * @return a future of the decoded symbol, empty if the library has no such symbol.
+     */
+    public CompletableFuture<Optional<Symbol>> load(SymbolKey key) {
+        Symbol cached = cache.get(key);
+        if (cached != null)
+            return CompletableFuture.completedFuture(Optional.of(cached));
+        return run("load", connection -> fetch(connection, key.id()));
+    }
+
+    /**
+     * (Re)build the search index from every symbol in the library. Symbols stored afterwards are indexed as they
+     * are stored. Symbols that cannot be decoded are left out of the index.
+     *
+     * @return a future of the number of symbols indexed.
+     */
+    public CompletableFuture<Integer> buildIndex() {
+        return run("buildIndex", connection -> {
+            index.clear();
+            int count = 0;
+            try (Statement statement = connection.getConnection().createStatement()) {
+                statement.setFetchSize(1000);
+                try (ResultSet result = statement.executeQuery(SELECT_ALL)) {
+                    while (result.next()) {
+                        SymbolMetadata metadata = new SymbolMetadata(fromBytes(result.getBytes(1)),
+                                result.getShort(2), result.getString(3), result.getTimestamp(4));
+                        try {
+                            SymbolCodec codec = SymbolFormat.of(result.getByte(5)).getCodec();
+                            index.put(metadata, codec.decode(result.getBytes(6)));
+                            count++;
+                        } catch (IOException | IllegalArgumentException ignored) {
+                        }
+                    }
+                }
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Returns the search index over the library's symbols. Searching the index is fast enough to be done
+     * directly on the JavaFX application thread as the user types.
+     * @return the library's search index.
+     */
+    public SymbolIndex getIndex() { return index; }
+
+    /**
+     * Returns the cache of decoded symbols, for monitoring.
+     * @return the library's symbol cache.
+     */
+    public SymbolCache getCache() { return cache; }
+
+    /**
+     * Read, decode and cache the current version of a symbol.
+     *
+     * @param connection The connection to read with.
+     * @param id The UUID of the symbol.
+     * @return the decoded symbol, empty if the library has no such symbol.
+     * @throws SQLException if the symbol cannot be read.
+     */
+    private Optional<Symbol> fetch(PooledConnection connection, UUID id) throws SQLException {
+        Optional<SymbolRecord> found = find(connection, id);
+        if (found.isEmpty())
+            return Optional.empty();
+        SymbolRecord record = found.get();
+        Symbol symbol = decode(record);
+        cache.put(new SymbolKey(id, record.version()), symbol, record.body().length);
+        return Optional.of(symbol);
+    }
+
+    /**
+     * Fetch a page of symbol metadata using keyset pagination, so every page costs the same regardless of how
+     * deep into the library it is. Symbol bodies are not read.
+     *
+     * @param after The {@link SymbolPage#next()} key of the previous page, or null for the first page.
+     * @param limit The maximum number of symbols on the page.
+     * @return a future of the page.
+     */
+    public CompletableFuture<SymbolPage> page(UUID after, int limit) {
+        if (limit <= 0)
+            throw new IllegalArgumentException("page limit must be positive: " + limit);
+        return run("page", connection -> {
+            PreparedStatement statement;
+            if (after == null) {
+                statement = connection.prepare(FIRST_PAGE);
+                statement.setInt(1, limit + 1);
+            } else {
+                statement = connection.prepare(NEXT_PAGE);
+                statement.setBytes(1, toBytes(after));
+                statement.setInt(2, limit + 1);
+            }
+            List<SymbolMetadata> items = new ArrayList<>(limit);
+            boolean more = false;
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    if (items.size() == limit) {
+                        more = true;
+                        break;
+                    }
+                    items.add(new SymbolMetadata(fromBytes(result.getBytes(1)), result.getShort(2),
+                            result.getString(3), result.getTimestamp(4)));
+                }
+            }
+            UUID next = more ? items.get(items.size() - 1).id() : null;
+            return new SymbolPage(items, next);
+        });
+    }
+
+    /**
+     * Store a new symbol and add it to the search index.
+     *
+     * @param symbol The symbol to store.
+     * @return a future completed once the symbol is stored.
+     */
+    public CompletableFuture<Void> insert(SymbolRecord symbol) {
+        return run("insert", connection -> {
+            Symbol decoded = decode(symbol);
+            PreparedStatement statement = connection.prepare(INSERT);
+            statement.setBytes(1, toBytes(symbol.id()));
+            statement.setShort(2, symbol.version());
+            statement.setString(3, symbol.author());
+            statement.setByte(4, symbol.format().getTag());
+            statement.setBytes(5, symbol.body());
+            statement.executeUpdate();
+            index.put(new SymbolMetadata(symbol.id(), symbol.version(), symbol.author(), now()), decoded);
+            return null;
+        });
+    }
+
+    /**
+     * Store a new version of an existing symbol. The update only succeeds if the record's version is still the
+     * latest version in the library.
+     *
+     * @param symbol The modified symbol, carrying the version it was derived from.
+     * @return a future of whether the update succeeded. False if the symbol was missing or already superseded.
+     */
+    public CompletableFuture<Boolean> update(SymbolRecord symbol) {
+        return run("update", connection -> {
+            Symbol decoded = decode(symbol);
+            PreparedStatement statement = connection.prepare(UPDATE);
+            statement.setString(1, symbol.author());
+            statement.setByte(2, symbol.format().getTag());
+            statement.setBytes(3, symbol.body());
+            statement.setBytes(4, toBytes(symbol.id()));
+            statement.setShort(5, symbol.version());
+            if (statement.executeUpdate() != 1)
+                return false;
+            short version = (short) (symbol.version() + 1);
+            index.put(new SymbolMetadata(symbol.id(), version, symbol.author(), now()), decoded);
+            return true;
+        });
+    }
+
+    /**
+     * Close all connections to the library. Operations already submitted may fail.
+     */
+    @Override
+    public void close() {
+        pool.close();
+        if (ownExecutor != null)
+            ownExecutor.shutdown();
+    }
+
+    /**
+     * Run a database operation on a pooled connection on the library's executor. Cancelling the returned future
+     * before the operation starts skips it. The time the operation takes once started, and the rows it reads or
+     * changes, are recorded in the {@link Metrics} and as a {@link LibraryQueryEvent}.
+     *
+     * @param query The name of the operation, such as "find".
+     * @param operation The operation to run.
+     * @param <T> The type of the operation's result.
+     * @return a future of the operation's result.
+     */
+    <T> CompletableFuture<T> run(String query, Operation<T> operation) {
+        Metrics.Timer timer = TIMERS.computeIfAbsent(query, name -> Metrics.timer("library." + name, "rows"));
+        return IOService.submit(executor, () -> {
+            long start = System.nanoTime();
+            LibraryQueryEvent event = new LibraryQueryEvent();
+            event.begin();
+            T result;
+            try (PooledConnection connection = pool.acquire()) {
+                result = operation.execute(connection);
+            }
+            long rows = rows(result);
+            timer.record(System.nanoTime() - start, rows);
+            if (event.shouldCommit()) {
+                event.query = query;
+                event.rows = rows;
+                event.commit();
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Returns the number of rows an operation's result stands for.
+     *
+     * @param result The result of a database operation.
+     * @return the rows found, listed, counted or changed, or 0 for operations that return nothing.
+     */
+    private static long rows(Object result) {
+        if (result instanceof Optional<?> optional)
+            return optional.isPresent() ? 1 : 0;
+        if (result instanceof SymbolPage page)
+            return page.items().size();
+        if (result instanceof LibraryImporter.Progress progress)
+            return progress.total();
+        if (result instanceof Number count)
+            return count.longValue();
+        if (result instanceof Boolean changed)
+            return changed ? 1 : 0;
+        return 0;
+    }
+
+    /**
+     * Decode a record's body, reporting failure as an unchecked exception suitable for completing a future.
+     *
+     * @param record The record to decode.
+     * @return the decoded symbol.
+     */
+    static Symbol decode(SymbolRecord record) {
+        try {
+            return record.decode();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to decode symbol " + record.id(), e);
+        }
+    }
+
+    /**
+     * Returns the current time as stored in the Modified column.
+     * @return the current time.
+     */
+    private static Timestamp now() {
+        return new Timestamp(System.currentTimeMillis());
+    }
+
+    /**
+     * Convert a UUID to the 16 bytes stored in BINARY(16) columns.
+     *
+     * @param id The UUID.
+     * @return the UUID's bytes, most significant first.
+     */
+    static byte[] toBytes(UUID id) {
+        return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits()).array();
+    }
+
+    /**
+     * Convert the 16 bytes stored in BINARY(16) columns back to a UUID.
+     *
+     * @param bytes The UUID's bytes, most significant first.
+     * @return the UUID.
+     */
+    static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    /**
+     * A database operation performed with a pooled connection.
+     *
+     * @param <T> The type of the operation's result.
+     */
+    @FunctionalInterface
+    interface Operation<T> {
+        T execute(PooledConnection connection) throws SQLException;
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+
+/**
+ * The metadata of a library symbol without its body. Cheap enough to list for every symbol in a library.
+ *
+ * @param id The UUID of the symbol.
+ * @param version The current version of the symbol.
+ * @param author The name of the original author.
+ * @param modified When the current version was stored.
+ */
+public record SymbolMetadata(UUID id, short version, String author, Timestamp modified) {
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One page of symbol metadata in SymbolID order.
+ *
+ * @param items The metadata of the symbols on this page.
+ * @param next The key to request the following page with, or null if this is the last page.
+ */
+public record SymbolPage(List<SymbolMetadata> items, UUID next) {
+    /**
+     * Returns whether more pages follow this one.
+     * @return true if there is a following page.
+     */
+    public boolean hasNext() { return next != null; }
+}
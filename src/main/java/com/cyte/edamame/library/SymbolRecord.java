@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.model.Symbol;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.UUID;
+
+/**
+ * A row of the symbols table of a component library.
+ *
+ * @param id The UUID of the symbol.
+ * @param version The version of the symbol. Incremented every time the symbol is updated.
+ * @param created When the symbol was originally created. Null for symbols not yet stored.
+ * @param modified When the current version was stored. Null for symbols not yet stored.
+ * @param author The name of the original author.
+ * @param format The encoding of the body.
+ * @param body The serialized symbol.
+ */
+public record SymbolRecord(UUID id, short version, Timestamp created, Timestamp modified, String author,
+                           SymbolFormat format, byte[] body) {
+    /**
+     * Create a record for a new symbol that has not yet been stored.
+     *
+     * @param id The UUID of the symbol.
+     * @param author The name of the author.
+     * @param format The encoding of the body.
+     * @param body The serialized symbol.
+     * @return a version 1 record without timestamps.
+     */
+    public static SymbolRecord create(UUID id, String author, SymbolFormat format, byte[] body) {
+        return new SymbolRecord(id, (short) 1, null, null, author, format, body);
+    }
+
+    /**
+     * Create a record for a new symbol that has not yet been stored, encoded in the default format.
+     *
+     * @param id The UUID of the symbol.
+     * @param author The name of the author.
+     * @param symbol The symbol.
+     * @return a version 1 record without timestamps.
+     * @throws IOException if the symbol cannot be encoded.
+     */
+    public static SymbolRecord create(UUID id, String author, Symbol symbol) throws IOException {
+        return create(id, author, SymbolFormat.DEFAULT, SymbolFormat.DEFAULT.getCodec().encode(symbol));
+    }
+
+    /**
+     * Decode the body of this record.
+     *
+     * @return the symbol stored in this record.
+     * @throws IOException if the body is not a valid symbol in its format.
+     */
+    public Symbol decode() throws IOException {
+        return format.getCodec().decode(body);
+    }
+}
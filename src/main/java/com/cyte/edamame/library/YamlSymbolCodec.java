@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.model.Graphic;
+import com.cyte.edamame.model.Symbol;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.representer.Representer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Reads and writes symbols as UTF-8 YAML documents. The documents carry no Java class tags so they remain
+ * suitable for interchange with other tools.<p>
+ *
+ * Documents come from outside, such as the files of a bulk import, so only the library's own JavaBeans are ever
+ * constructed from them. A document naming any other class in a tag is rejected rather than instantiating it.
+ */
+public class YamlSymbolCodec implements SymbolCodec {
+    /** The only classes documents may name in tags. */
+    private static final Set<String> BEANS = Set.of(SymbolDocument.class.getName(), Symbol.class.getName(),
+            Graphic.class.getName());
+
+    /** Yaml instances are not thread safe so each thread gets its own. */
+    private static final ThreadLocal<Yaml> YAML = ThreadLocal.withInitial(() -> {
+        DumperOptions dumperOptions = new DumperOptions();
+        dumperOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        LoaderOptions loaderOptions = new LoaderOptions();
+        loaderOptions.setTagInspector(tag -> BEANS.contains(tag.getClassName()));
+        return new Yaml(new Constructor(loaderOptions), new Representer(dumperOptions), dumperOptions,
+                loaderOptions);
+    });
+
+    @Override
+    public byte[] encode(Symbol symbol) throws IOException {
+        try {
+            return YAML.get().dumpAs(symbol, Tag.MAP, null).getBytes(StandardCharsets.UTF_8);
+        } catch (YAMLException e) {
+            throw new IOException("Unable to write symbol as YAML", e);
+        }
+    }
+
+    @Override
+    public Symbol decode(byte[] body) throws IOException {
+        return load(body, Symbol.class);
+    }
+
+    /**
+     * Read a JavaBean of any type from a YAML document.
+     *
+     * @param body The UTF-8 YAML document.
+     * @param type The type of JavaBean the document describes.
+     * @param <T> The type of JavaBean.
+     * @return the JavaBean.
+     * @throws IOException if the document is empty or does not describe the JavaBean.
+     */
+    static <T> T load(byte[] body, Class<T> type) throws IOException {
+        try {
+            T loaded = YAML.get().loadAs(new String(body, StandardCharsets.UTF_8), type);
+            if (loaded == null)
+                throw new IOException("Empty YAML document");
+            return loaded;
+        } catch (YAMLException e) {
+            throw new IOException("Unable to read " + type.getSimpleName() + " from YAML", e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.model;
+
+import java.util.Objects;
+
+/**
+ * A single graphical element of a {@link Symbol}. All coordinates and sizes are in nanometres.<p>
+ *
+ * The meaning of the coordinates depends on the {@link Kind}:
+ * <ul>
+ *     <li>{@link Kind#LINE}: from (x1, y1) to (x2, y2).</li>
+ *     <li>{@link Kind#RECTANGLE}: opposite corners (x1, y1) and (x2, y2).</li>
+ *     <li>{@link Kind#CIRCLE}: centered at (x1, y1) with radius x2.</li>
+ *     <li>{@link Kind#TEXT}: text anchored at (x1, y1) with height x2.</li>
+ *     <li>{@link Kind#PIN}: connection point (x1, y1) to the symbol body at (x2, y2). The text is the pin
+ *     name.</li>
+ * </ul>
+ */
+public class Graphic {
+    /** The kinds of graphical elements. Never reorder; the ordinal is part of the binary library format. */
+    public enum Kind { LINE, RECTANGLE, CIRCLE, TEXT, PIN }
+
+    private Kind kind = Kind.LINE;
+    private long x1;
+    private long y1;
+    private long x2;
+    private long y2;
+
+    /** The stroke width. */
+    private long width;
+
+    /** The text of {@link Kind#TEXT} and {@link Kind#PIN} elements, otherwise null. */
+    private String text;
+
+    public Graphic() {
+    }
+
+    public Graphic(Kind kind, long x1, long y1, long x2, long y2, long width, String text) {
+        this.kind = kind;
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        this.width = width;
+        this.text = text;
+    }
+
+    public Kind getKind() { return kind; }
+
+    public void setKind(Kind kind) { this.kind = kind; }
+
+    public long getX1() { return x1; }
+
+    public void setX1(long x1) { this.x1 = x1; }
+
+    public long getY1() { return y1; }
+
+    public void setY1(long y1) { this.y1 = y1; }
+
+    public long getX2() { return x2; }
+
+    public void setX2(long x2) { this.x2 = x2; }
+
+    public long getY2() { return y2; }
+
+    public void setY2(long y2) { this.y2 = y2; }
+
+    public long getWidth() { return width; }
+
+    public void setWidth(long width) { this.width = width; }
+
+    public String getText() { return text; }
+
+    public void setText(String text) { this.text = text; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Graphic graphic))
+            return false;
+        return kind == graphic.kind && x1 == graphic.x1 && y1 == graphic.y1 && x2 == graphic.x2
+                && y2 == graphic.y2 && width == graphic.width && Objects.equals(text, graphic.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, x1, y1, x2, y2, width, text);
+    }
+}
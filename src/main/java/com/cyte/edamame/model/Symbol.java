@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A schematic symbol as stored in a symbol library.<p>
+ *
+ * Symbols are abstract graphical representations of design concepts. A symbol is a name, a set of free form
+ * attributes (such as "value" or "package" hints) and the {@link Graphic}s that depict it. The identity,
+ * version and authorship of a symbol are kept by the library row that stores it, not by the symbol itself.
+ * Symbols follow JavaBean conventions so they can also be exchanged as YAML.
+ */
+public class Symbol {
+    /** The name of the symbol. */
+    private String name = "";
+
+    /** Free form attributes of the symbol in insertion order. */
+    private Map<String, String> attributes = new LinkedHashMap<>();
+
+    /** The graphics depicting the symbol. */
+    private List<Graphic> graphics = new ArrayList<>();
+
+    public String getName() { return name; }
+
+    public void setName(String name) { this.name = name; }
+
+    public Map<String, String> getAttributes() { return attributes; }
+
+    public void setAttributes(Map<String, String> attributes) { this.attributes = attributes; }
+
+    public List<Graphic> getGraphics() { return graphics; }
+
+    public void setGraphics(List<Graphic> graphics) { this.graphics = graphics; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Symbol symbol))
+            return false;
+        return Objects.equals(name, symbol.name) && attributes.equals(symbol.attributes)
+                && graphics.equals(symbol.graphics);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, attributes, graphics);
+    }
+}
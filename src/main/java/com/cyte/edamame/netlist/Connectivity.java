@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.netlist;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * Which items of a design are electrically connected, kept up to date edit by edit.<p>
+ *
+ * Items are numbered nodes: the pins and wires of a schematic, or the copper primitives of a board. Connecting two
+ * nodes merges their nets with a disjoint-set union, so adding connections never revisits the rest of the
+ * design, and asking which net a node belongs to costs O(&alpha;(n)), effectively constant. Each net also keeps its
+ * members in a circular list, which merging splices in constant time, so a net's members can be listed without a
+ * search.<p>
+ *
+ * A union cannot be undone, so removing a node or a connection rebuilds just the net it belonged to: its members
+ * become separate again and are reconnected by their remaining connections. Nothing outside that net is touched.
+ * Not safe for concurrent use.
+ */
+public class Connectivity {
+    /** The number of nodes allocated for initially. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The parent of each node in its net's tree; a net's root is its own parent. */
+    private int[] parent = new int[INITIAL_CAPACITY];
+
+    /** The number of members of each root's net. */
+    private int[] size = new int[INITIAL_CAPACITY];
+
+    /** The next member of each node's net, in a circular list. */
+    private int[] next = new int[INITIAL_CAPACITY];
+
+    /** The nodes each node is connected to directly. */
+    private int[][] neighbours = new int[INITIAL_CAPACITY][];
+
+    /** The number of direct connections of each node. */
+    private int[] degree = new int[INITIAL_CAPACITY];
+
+    /** The nodes present. */
+    private final BitSet present = new BitSet();
+
+    /** The number of nets. */
+    private int netCount = 0;
+
+    /** The number of direct connections. */
+    private int connectionCount = 0;
+
+    /**
+     * Add an unconnected node, on a net of its own. Adding a node already present does nothing.
+     * @param node The node, not negative.
+     */
+    public void add(int node) {
+        if (node < 0)
+            throw new IllegalArgumentException("invalid node: " + node);
+        if (present.get(node))
+            return;
+        if (node >= parent.length)
+            grow(Math.max(node + 1, parent.length * 2));
+        present.set(node);
+        parent[node] = node;
+        size[node] = 1;
+        next[node] = node;
+        degree[node] = 0;
+        netCount++;
+    }
+
+    /**
+     * Connect two nodes directly, adding them if absent and merging their nets.
+     *
+     * @param a One node.
+     * @param b The other node.
+     */
+    public void connect(int a, int b) {
+        add(a);
+        add(b);
+        if (a == b || linked(a, b))
+            return;
+        link(a, b);
+        link(b, a);
+        connectionCount++;
+        union(a, b);
+    }
+
+    /**
+     * Remove the direct connection between two nodes, splitting their net if nothing else connects them.
+     *
+     * @param a One node.
+     * @param b The other node.
+     */
+    public void disconnect(int a, int b) {
+        if (!present.get(a) || !present.get(b) || !unlink(a, b))
+            return;
+        unlink(b, a);
+        connectionCount--;
+        rebuild(a, -1);
+    }
+
+    /**
+     * Remove a node and its connections, splitting its net if it held the net together.
+     * @param node The node.
+     */
+    public void remove(int node) {
+        if (!present.get(node))
+            return;
+        for (int i = 0; i < degree[node]; i++)
+            unlink(neighbours[node][i], node);
+        connectionCount -= degree[node];
+        degree[node] = 0;
+        rebuild(node, node);
+    }
+
+    /**
+     * Remove several nodes and their connections at once, rebuilding each affected net only once.
+     * @param nodes The nodes, which are not modified.
+     */
+    public void removeAll(BitSet nodes) {
+        BitSet nets = new BitSet();
+        for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1)) {
+            if (!present.get(node))
+                continue;
+            for (int i = 0; i < degree[node]; i++) {
+                if (unlink(neighbours[node][i], node))
+                    connectionCount--;
+            }
+            degree[node] = 0;
+            nets.set(find(node));
+        }
+        for (int root = nets.nextSetBit(0); root >= 0; root = nets.nextSetBit(root + 1))
+            split(root);
+        for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1)) {
+            if (present.get(node)) {
+                present.clear(node);
+                netCount--;
+            }
+        }
+        for (int root = nets.nextSetBit(0); root >= 0; root = nets.nextSetBit(root + 1))
+            rejoin(root);
+    }
+
+    /**
+     * Remove every node and connection.
+     */
+    public void clear() {
+        present.clear();
+        netCount = 0;
+        connectionCount = 0;
+    }
+
+    /**
+     * Returns whether a node is present.
+     * @param node The node.
+     * @return true if the node has been added and not removed.
+     */
+    public boolean contains(int node) {
+        return node >= 0 && present.get(node);
+    }
+
+    /**
+     * Returns the net a node belongs to, as the node representing it. The representative changes when nets are
+     * merged or split, so it identifies a net only until the next edit.
+     *
+     * @param node The node.
+     * @return the representative of the node's net.
+     */
+    public int netOf(int node) {
+        check(node);
+        return find(node);
+    }
+
+    /**
+     * Returns whether two nodes are on the same net.
+     *
+     * @param a One node.
+     * @param b The other node.
+     * @return true if the nodes are connected, directly or not.
+     */
+    public boolean connected(int a, int b) {
+        return netOf(a) == netOf(b);
+    }
+
+    /**
+     * Returns the number of members of a node's net.
+     * @param node The node.
+     * @return the net's size, including the node.
+     */
+    public int netSize(int node) {
+        return size[netOf(node)];
+    }
+
+    /**
+     * Perform an action for every member of a node's net, including the node.
+     *
+     * @param node The node.
+     * @param action The action to perform on each member.
+     */
+    public void forEachMember(int node, IntConsumer action) {
+        check(node);
+        int member = node;
+        do {
+            action.accept(member);
+            member = next[member];
+        } while (member != node);
+    }
+
+    /**
+     * Perform an action for every node connected directly to a node.
+     *
+     * @param node The node.
+     * @param action The action to perform on each neighbour.
+     */
+    public void forEachNeighbour(int node, IntConsumer action) {
+        check(node);
+        for (int i = 0; i < degree[node]; i++)
+            action.accept(neighbours[node][i]);
+    }
+
+    /**
+     * Perform an action for one representative of every net.
+     * @param action The action to perform on each representative.
+     */
+    public void forEachNet(IntConsumer action) {
+        for (int node = present.nextSetBit(0); node >= 0; node = present.nextSetBit(node + 1)) {
+            if (parent[node] == node)
+                action.accept(node);
+        }
+    }
+
+    /**
+     * Returns the number of nodes present.
+     * @return the node count.
+     */
+    public int getNodeCount() { return present.cardinality(); }
+
+    /**
+     * Returns the number of separate nets, counting each unconnected node as a net.
+     * @return the net count.
+     */
+    public int getNetCount() { return netCount; }
+
+    /**
+     * Returns the number of direct connections.
+     * @return the connection count.
+     */
+    public int getConnectionCount() { return connectionCount; }
+
+    /** Returns the root of a node's tree, halving the path to it on the way. */
+    private int find(int node) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    /** Merge the nets of two nodes, hanging the smaller tree under the larger. */
+    private void union(int a, int b) {
+        int rootA = find(a), rootB = find(b);
+        if (rootA == rootB)
+            return;
+        if (size[rootA] < size[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        // Swapping successors splices the two circular member lists into one.
+        int after = next[rootA];
+        next[rootA] = next[rootB];
+        next[rootB] = after;
+        netCount--;
+    }
+
+    /**
+     * Split the net of a node into separate members and reconnect them by their remaining connections,
+     * optionally removing one member first.
+     *
+     * @param node A member of the net.
+     * @param removed The member to remove, or -1.
+     */
+    private void rebuild(int node, int removed) {
+        int[] members = split(node);
+        for (int m : members)
+            next[m] = m;
+        if (removed >= 0) {
+            present.clear(removed);
+            netCount--;
+        }
+        for (int m : members)
+            join(m);
+    }
+
+    /**
+     * Split the net of a node into separate members, still linked in a circular list from the node so the
+     * former net can be rejoined with {@link #rejoin}.
+     *
+     * @param node A member of the net.
+     * @return the former members.
+     */
+    private int[] split(int node) {
+        int[] members = new int[size[find(node)]];
+        int count = 0;
+        int member = node;
+        do {
+            members[count++] = member;
+            member = next[member];
+        } while (member != node);
+
+        netCount += count - 1;
+        for (int m : members) {
+            parent[m] = m;
+            size[m] = 1;
+        }
+        return members;
+    }
+
+    /** Reconnect the members of a net split by {@link #split}, given the node it was split from. */
+    private void rejoin(int node) {
+        int[] members = new int[0];
+        int count = 0;
+        int member = node;
+        do {
+            if (count == members.length)
+                members = Arrays.copyOf(members, Math.max(16, 2 * count));
+            members[count++] = member;
+            member = next[member];
+        } while (member != node);
+        for (int i = 0; i < count; i++)
+            next[members[i]] = members[i];
+        for (int i = 0; i < count; i++) {
+            if (present.get(members[i]))
+                join(members[i]);
+        }
+    }
+
+    /** Merge a node's net with the nets of all its neighbours. */
+    private void join(int node) {
+        for (int j = 0; j < degree[node]; j++)
+            union(node, neighbours[node][j]);
+    }
+
+    private boolean linked(int from, int to) {
+        for (int i = 0; i < degree[from]; i++) {
+            if (neighbours[from][i] == to)
+                return true;
+        }
+        return false;
+    }
+
+    private void link(int from, int to) {
+        int[] list = neighbours[from];
+        if (list == null)
+            list = neighbours[from] = new int[4];
+        else if (degree[from] == list.length)
+            list = neighbours[from] = Arrays.copyOf(list, list.length * 2);
+        list[degree[from]++] = to;
+    }
+
+    private boolean unlink(int from, int to) {
+        int[] list = neighbours[from];
+        for (int i = 0; i < degree[from]; i++) {
+            if (list[i] == to) {
+                list[i] = list[--degree[from]];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void check(int node) {
+        if (!contains(node))
+            throw new IllegalArgumentException("no such node: " + node);
+    }
+
+    private void grow(int capacity) {
+        parent = Arrays.copyOf(parent, capacity);
+        size = Arrays.copyOf(size, capacity);
+        next = Arrays.copyOf(next, capacity);
+        neighbours = Arrays.copyOf(neighbours, capacity);
+        degree = Arrays.copyOf(degree, capacity);
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import com.cyte.edamame.spatial.RTree;
+import com.cyte.edamame.util.CompositeMemento;
+import com.cyte.edamame.util.DeltaMemento;
+import com.cyte.edamame.util.Memento;
+import com.cyte.edamame.util.Recorder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
+
+/**
+ * The spatial index of a board's primitives, kept up to date as the board is edited, and the one place edits are
+ * followed from.<p>
+ *
+ * The index listens to the board's {@link Recorder}. Every edit, undo and redo of the board's primitives passes
+ * through the recorder as a {@link DeltaMemento} naming the primitives it touches, and those primitives are
+ * marked dirty. Shortly afterwards, once the edit has been applied, {@link #update} lets every
+ * {@link BoardWatcher} forget what it derived from the touched primitives, moves them in the index to where they
+ * now are, and lets the watchers derive their state again, in the order they were added. Clicks, hovering,
+ * rubber-band selection, repainting and every watcher therefore share a single tree. The index holds where each
+ * primitive was when last updated, which is where the watchers' derived state says it is. Queries made from
+ * outside an update bring the index up to date first, so they always see the board as it is.<p>
+ *
+ * Accessed on one thread only, normally the JavaFX application thread.
+ */
+public class BoardIndex implements Recorder.Listener {
+    /** The board's primitives. */
+    private final PrimitiveStore store;
+
+    /** Runs the update after an edit, once the edit has been applied. */
+    private final Executor scheduler;
+
+    /** The state derived from the primitives, updated in order. */
+    private final List<BoardWatcher> watchers = new ArrayList<>();
+
+    /** The primitives by where they were when last updated. */
+    private RTree<Integer> index = new RTree<>();
+
+    /** Where each indexed primitive was when last updated, four coordinates per handle. */
+    private long[] indexed = new long[4 * 64];
+
+    /** The handles of the indexed primitives. */
+    private final BitSet indexedHandles = new BitSet();
+
+    /** The handles of the primitives touched since the last update. */
+    private final BitSet dirty = new BitSet();
+
+    /** Whether an update has been scheduled but not yet run. */
+    private boolean scheduled = false;
+
+    /** Whether an update is in progress, during which the watchers see the index as it is. */
+    private boolean updating = false;
+
+    /**
+     * Construct the index of a board. Call {@link #rebuild} to index the whole board first, and register the
+     * index with the board's recorder.
+     *
+     * @param store The board's primitives.
+     * @param scheduler Runs updates after the edits that require them. Updates must run after the current edit
+     *                  has been applied, as when posted to the JavaFX application thread.
+     */
+    public BoardIndex(PrimitiveStore store, Executor scheduler) {
+        this.store = store;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Returns the board's primitives.
+     * @return the primitive store the index follows.
+     */
+    public PrimitiveStore getStore() { return store; }
+
+    /**
+     * Add a watcher, updated after the watchers already added. Call its {@link BoardWatcher#rebuild} to derive
+     * its state for the whole board.
+     *
+     * @param watcher The watcher, constructed for this index.
+     */
+    public void addWatcher(BoardWatcher watcher) {
+        if (watcher.index != this)
+            throw new IllegalArgumentException("watcher of another board");
+        watchers.add(watcher);
+    }
+
+    /**
+     * Remove a watcher added with {@link #addWatcher}. It is no longer updated.
+     * @param watcher The watcher.
+     */
+    public void removeWatcher(BoardWatcher watcher) {
+        watchers.remove(watcher);
+    }
+
+    /**
+     * Index the whole board from scratch, such as after loading it, and derive every watcher's state again.
+     */
+    public void rebuild() {
+        dirty.clear();
+        indexedHandles.clear();
+        int size = store.size();
+        List<Integer> handles = new ArrayList<>(size);
+        long[] minX = new long[size], minY = new long[size], maxX = new long[size], maxY = new long[size];
+        long[] box = new long[4];
+        for (int s = 0; s < size; s++) {
+            int handle = store.handleAt(s);
+            store.boundsAt(s, box);
+            remember(handle, box);
+            handles.add(handle);
+            minX[s] = box[0];
+            minY[s] = box[1];
+            maxX[s] = box[2];
+            maxY[s] = box[3];
+        }
+        index = RTree.bulkLoad(handles, minX, minY, maxX, maxY);
+        for (BoardWatcher watcher : List.copyOf(watchers))
+            watcher.rebuildNow();
+    }
+
+    /**
+     * Mark the primitives a recorded or restored memento touches as dirty.
+     * @param memento The memento.
+     */
+    @Override
+    public void changed(Memento memento) {
+        if (memento instanceof CompositeMemento composite) {
+            for (Memento member : composite.getMembers())
+                changed(member);
+        } else if (memento instanceof DeltaMemento<?, ?> delta && delta.getTarget() == store) {
+            delta.forEachKey(handle -> markDirty((Integer) handle));
+        }
+    }
+
+    /**
+     * Mark a primitive as needing to be updated, scheduling an update if none is pending.
+     * @param handle The primitive's handle, which may have been or be about to be removed.
+     */
+    public void markDirty(int handle) {
+        dirty.set(handle);
+        if (!scheduled) {
+            scheduled = true;
+            scheduler.execute(() -> {
+                scheduled = false;
+                update();
+            });
+        }
+    }
+
+    /**
+     * Move the dirty primitives in the index and update every watcher's state derived from them now. Normally
+     * run by the scheduler.
+     */
+    public void update() {
+        if (dirty.isEmpty() || updating)
+            return;
+        updating = true;
+        try {
+            BitSet touched = (BitSet) dirty.clone();
+            dirty.clear();
+            for (BoardWatcher watcher : watchers)
+                watcher.forgetNow((BitSet) touched.clone());
+
+            long[] box = new long[4];
+            for (int handle = touched.nextSetBit(0); handle >= 0; handle = touched.nextSetBit(handle + 1)) {
+                if (indexedHandles.get(handle)) {
+                    int i = 4 * handle;
+                    index.remove(handle, indexed[i], indexed[i + 1], indexed[i + 2], indexed[i + 3]);
+                    indexedHandles.clear(handle);
+                }
+                if (store.contains(handle)) {
+                    store.bounds(handle, box);
+                    index.insert(handle, box[0], box[1], box[2], box[3]);
+                    remember(handle, box);
+                } else {
+                    touched.clear(handle); // removed: nothing left to derive.
+                }
+            }
+            for (BoardWatcher watcher : watchers)
+                watcher.refreshNow((BitSet) touched.clone());
+        } finally {
+            updating = false;
+        }
+    }
+
+    /**
+     * Returns the number of primitives indexed.
+     * @return the number of primitives in the index.
+     */
+    public int size() { return index.size(); }
+
+    /**
+     * Find the primitives whose bounds intersect a box, such as those to repaint or those under a click.
+     *
+     * @param minX The box's least x coordinate.
+     * @param minY The box's least y coordinate.
+     * @param maxX The box's greatest x coordinate.
+     * @param maxY The box's greatest y coordinate.
+     * @param action The action to perform on the handle of each primitive found.
+     */
+    public void search(long minX, long minY, long maxX, long maxY, IntConsumer action) {
+        update();
+        index.search(minX, minY, maxX, maxY, action::accept);
+    }
+
+    /**
+     * Find the primitives whose bounds lie entirely within a box, as a rubber-band selection does.
+     *
+     * @param minX The box's least x coordinate.
+     * @param minY The box's least y coordinate.
+     * @param maxX The box's greatest x coordinate.
+     * @param maxY The box's greatest y coordinate.
+     * @param action The action to perform on the handle of each primitive found.
+     */
+    public void searchContained(long minX, long minY, long maxX, long maxY, IntConsumer action) {
+        update();
+        index.searchContained(minX, minY, maxX, maxY, action::accept);
+    }
+
+    /**
+     * Find the candidates for a click: the primitives whose bounds lie within a tolerance of a point.
+     *
+     * @param x The point's x coordinate.
+     * @param y The point's y coordinate.
+     * @param tolerance How far from the point a primitive's bounds may be.
+     * @param action The action to perform on the handle of each candidate.
+     */
+    public void pick(long x, long y, long tolerance, IntConsumer action) {
+        search(x - tolerance, y - tolerance, x + tolerance, y + tolerance, action);
+    }
+
+    /**
+     * Find the primitives whose bounds, where they were when last updated, intersect a box, without updating
+     * first. For watchers, whose state matches the index as it is.
+     */
+    void within(long minX, long minY, long maxX, long maxY, IntConsumer action) {
+        index.search(minX, minY, maxX, maxY, action::accept);
+    }
+
+    /** Get where an indexed primitive was when last updated. */
+    void indexedBounds(int handle, long[] box) {
+        System.arraycopy(indexed, 4 * handle, box, 0, 4);
+    }
+
+    /** Returns whether a primitive is in the index, as it is from its first update until it is removed. */
+    boolean isIndexed(int handle) {
+        return indexedHandles.get(handle);
+    }
+
+    /** Note where a primitive is as it is indexed. */
+    private void remember(int handle, long[] box) {
+        if (4 * handle + 4 > indexed.length)
+            indexed = Arrays.copyOf(indexed, Math.max(4 * handle + 4, 2 * indexed.length));
+        System.arraycopy(box, 0, indexed, 4 * handle, 4);
+        indexedHandles.set(handle);
+    }
+}
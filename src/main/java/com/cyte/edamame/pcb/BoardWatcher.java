@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Base class for state derived from a board's primitives that is kept up to date edit by edit, such as design
+ * rule violations and connectivity.<p>
+ *
+ * Watchers are added to the board's {@link BoardIndex}, which follows the board's edits. When primitives are
+ * touched by an edit, undo or redo, the index lets every watcher's subclass forget what it derived from the
+ * touched primitives, moves them in the index to where they now are, and lets the subclass derive their state
+ * again, typically from their neighbours found with {@link #near}. Every watcher of a board queries the same
+ * index, which holds where each primitive was when last updated, which is where the subclass's derived state
+ * says it is.<p>
+ *
+ * Accessed on one thread only, normally the JavaFX application thread.
+ */
+public abstract class BoardWatcher {
+    /** The board's primitives. */
+    protected final PrimitiveStore store;
+
+    /** The board's spatial index, which tells the watcher of edits. */
+    final BoardIndex index;
+
+    /** Told whenever the derived state changes. */
+    private final List<Runnable> listeners = new ArrayList<>();
+
+    /** How long the last update took, in nanoseconds. */
+    private long lastUpdateNanos = 0;
+
+    /** How long forgetting the touched primitives took in the update in progress. */
+    private long forgetNanos = 0;
+
+    /**
+     * Construct a watcher for a board. Call {@link #rebuild} to derive state for the whole board first, and add
+     * the watcher to the index.
+     *
+     * @param index The board's spatial index.
+     */
+    protected BoardWatcher(BoardIndex index) {
+        this.index = index;
+        this.store = index.getStore();
+    }
+
+    /**
+     * Returns how long the last update or rebuild took.
+     * @return the duration in nanoseconds.
+     */
+    public long getLastUpdateNanos() { return lastUpdateNanos; }
+
+    /**
+     * Add an action to run whenever the derived state changes.
+     * @param listener The action.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove an action added with {@link #addListener}.
+     * @param listener The action.
+     */
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Derive the state of the whole board from scratch, such as after loading it or changing the rules. The index
+     * is brought up to date first.
+     */
+    public void rebuild() {
+        index.update();
+        rebuildNow();
+    }
+
+    /**
+     * Bring the index, and so this and every other watcher of the board, up to date with the edits made so far.
+     */
+    public void update() {
+        index.update();
+    }
+
+    /** Derive the state of the whole board, the index being up to date. */
+    void rebuildNow() {
+        long start = System.nanoTime();
+        rebuildAll();
+        lastUpdateNanos = System.nanoTime() - start;
+        fireChanged();
+    }
+
+    /** Forget the touched primitives as the index begins an update. */
+    void forgetNow(BitSet touched) {
+        long start = System.nanoTime();
+        forget(touched);
+        forgetNanos = System.nanoTime() - start;
+    }
+
+    /** Derive the touched primitives' state again once the index has moved them. */
+    void refreshNow(BitSet touched) {
+        long start = System.nanoTime();
+        refresh(touched);
+        lastUpdateNanos = forgetNanos + System.nanoTime() - start;
+        fireChanged();
+    }
+
+    /**
+     * Find the primitives whose bounds come within a margin of a primitive's bounds, including the primitive.
+     *
+     * @param handle The primitive's handle, which must have been updated.
+     * @param margin How far beyond the primitive's bounds to look.
+     * @param action The action to perform on the handle of each primitive found.
+     */
+    protected void near(int handle, long margin, IntConsumer action) {
+        long[] box = new long[4];
+        index.indexedBounds(handle, box);
+        index.within(box[0] - margin, box[1] - margin, box[2] + margin, box[3] + margin, action);
+    }
+
+    /**
+     * Find the primitives whose bounds, where they were when last updated, intersect a box.
+     *
+     * @param minX The box's least x coordinate.
+     * @param minY The box's least y coordinate.
+     * @param maxX The box's greatest x coordinate.
+     * @param maxY The box's greatest y coordinate.
+     * @param action The action to perform on the handle of each primitive found.
+     */
+    protected void within(long minX, long minY, long maxX, long maxY, IntConsumer action) {
+        index.within(minX, minY, maxX, maxY, action);
+    }
+
+    /**
+     * Get where an indexed primitive was when last updated, such as where a primitive being forgotten was before
+     * the edit.
+     *
+     * @param handle The primitive's handle, which must be indexed.
+     * @param box Receives the bounds: minX, minY, maxX then maxY.
+     */
+    protected void indexedBounds(int handle, long[] box) {
+        index.indexedBounds(handle, box);
+    }
+
+    /**
+     * Returns whether a primitive is in the spatial index, as it is from its first update until it is removed.
+     * @param handle The primitive's handle.
+     * @return true if {@link #near} may be asked about the primitive.
+     */
+    protected boolean isIndexed(int handle) {
+        return index.isIndexed(handle);
+    }
+
+    /**
+     * Derive the state of the whole board from scratch. The spatial index is already up to date.
+     */
+    protected abstract void rebuildAll();
+
+    /**
+     * Forget the state derived from primitives about to be updated.
+     * @param touched The handles of the primitives touched, including any removed.
+     */
+    protected abstract void forget(BitSet touched);
+
+    /**
+     * Derive the state of primitives that were touched and remain on the board.
+     * @param touched The handles of the primitives, which may be modified.
+     */
+    protected abstract void refresh(BitSet touched);
+
+    /** Tell the listeners the derived state has changed, such as after work finished outside an update. */
+    protected void fireChanged() {
+        for (Runnable listener : listeners)
+            listener.run();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import com.cyte.edamame.netlist.Connectivity;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Keeps track of which copper primitives of a board are physically joined, as they are edited.<p>
+ *
+ * Every primitive is a node of a {@link Connectivity}, named by its handle, connected to each primitive its
+ * copper overlaps on a common layer. Vias join every layer. Each resulting net is an island of copper, so a
+ * signal net split across several islands still needs routing, and an island spanning two signal nets is a short.
+ * When primitives are touched by an edit, undo or redo, they leave the connectivity, which rebuilds only the
+ * islands they were part of, and rejoin it connected to the primitives they now overlap. See
+ * {@link BoardWatcher} for how edits are followed.
+ */
+public class CopperConnectivity extends BoardWatcher {
+    /** The islands of copper. */
+    private final Connectivity connectivity = new Connectivity();
+
+    /**
+     * Construct the connectivity of a board. Call {@link #rebuild} to find the islands of the whole board first,
+     * and add it to the board's index.
+     *
+     * @param index The board's spatial index.
+     */
+    public CopperConnectivity(BoardIndex index) {
+        super(index);
+    }
+
+    /**
+     * Returns the islands of copper, whose nodes are primitive handles. Not to be modified.
+     * @return the connectivity.
+     */
+    public Connectivity getConnectivity() { return connectivity; }
+
+    /**
+     * Returns whether the copper of two primitives is joined, directly or through other copper.
+     *
+     * @param a One primitive's handle.
+     * @param b The other primitive's handle.
+     * @return true if the primitives are on the same island.
+     */
+    public boolean connected(int a, int b) {
+        return connectivity.connected(a, b);
+    }
+
+    @Override
+    protected void rebuildAll() {
+        connectivity.clear();
+        DesignRuleChecker.Snapshot snapshot = snapshot(null);
+        int[] position = new int[maxHandle(snapshot) + 1];
+        for (int i = 0; i < snapshot.size; i++) {
+            position[snapshot.handle[i]] = i;
+            connectivity.add(snapshot.handle[i]);
+        }
+        for (int i = 0; i < snapshot.size; i++) {
+            int handle = snapshot.handle[i], self = i;
+            near(handle, 0, other -> {
+                if (other > handle && snapshot.touches(self, position[other]))
+                    connectivity.connect(handle, other);
+            });
+        }
+    }
+
+    @Override
+    protected void forget(BitSet touched) {
+        connectivity.removeAll(touched);
+    }
+
+    @Override
+    protected void refresh(BitSet touched) {
+        BitSet chosen = (BitSet) touched.clone();
+        for (int handle = touched.nextSetBit(0); handle >= 0; handle = touched.nextSetBit(handle + 1))
+            near(handle, 0, chosen::set);
+        int[] slots = new int[chosen.cardinality()];
+        Map<Integer, Integer> position = new HashMap<>();
+        for (int handle = chosen.nextSetBit(0), k = 0; handle >= 0; handle = chosen.nextSetBit(handle + 1), k++) {
+            slots[k] = store.slot(handle);
+            position.put(handle, k);
+        }
+        DesignRuleChecker.Snapshot snapshot = snapshot(slots);
+        for (int handle = touched.nextSetBit(0); handle >= 0; handle = touched.nextSetBit(handle + 1)) {
+            int self = handle, i = position.get(handle);
+            connectivity.add(handle);
+            near(handle, 0, other -> {
+                if (other != self && snapshot.touches(i, position.get(other)))
+                    connectivity.connect(self, other);
+            });
+        }
+    }
+
+    /** Reduce primitives to their copper, with no clearance. */
+    private DesignRuleChecker.Snapshot snapshot(int[] slots) {
+        return new DesignRuleChecker.Snapshot(store, slots, null, 0, ForkJoinPool.commonPool());
+    }
+
+    private static int maxHandle(DesignRuleChecker.Snapshot snapshot) {
+        int max = 0;
+        for (int i = 0; i < snapshot.size; i++)
+            max = Math.max(max, snapshot.handle[i]);
+        return max;
+    }
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import com.cyte.edamame.geometry.Arc;
+import com.cyte.edamame.geometry.Box;
+import com.cyte.edamame.geometry.Point;
+import com.cyte.edamame.geometry.Predicates;
+import com.cyte.edamame.util.IndexSort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+
+/**
+ * Checks the primitives of a board against its {@link DesignRules}, in parallel.<p>
+ *
+ * The checker first copies the primitives, so the board may be edited while a check runs, and reduces each to
+ * a core of line segments and a radius: a track is its centre line widened by half its width, a round pad or via
+ * a point widened by its radius, a rectangular pad its four edges and interior. The board is then divided into a
+ * grid of square tiles. Each primitive joins every tile its bounding box overlaps once grown by half the
+ * clearance, so tiles overlap by that margin and any two primitives close enough to break the clearance share at
+ * least one tile. The tiles are checked as independent tasks on a {@link ForkJoinPool}, each sorting its own
+ * primitives along x and sweeping across them, so the work is split evenly with nothing shared between tasks.<p>
+ *
+ * A pair sharing several tiles is checked only by the tile holding the corner where their grown boxes begin to
+ * overlap, and a single primitive only by the tile holding its own corner, so merging the tiles' results needs
+ * no deduplication. Distances are compared exactly with {@link Predicates}, except that arcs are checked as
+ * chords, widened by {@link #ARC_TOLERANCE} so no violation is missed.
+ */
+public class DesignRuleChecker {
+    /** How far the chords standing in for an arc may stray from it, in nanometres. */
+    public static final long ARC_TOLERANCE = 100;
+
+    /** The number of primitives per tile aimed for when choosing a tile size. */
+    private static final int PRIMITIVES_PER_TILE = 256;
+
+    /** The most tiles the board is divided into. */
+    private static final long MAX_TILES = 1 << 20;
+
+    /** The number of primitives copied by each task while taking a snapshot. */
+    private static final int CHUNK = 4096;
+
+    /** The number of tiles below which a task checks them itself instead of splitting. */
+    private static final int TILES_PER_TASK = 4;
+
+    /** The rules checked. */
+    private final DesignRules rules;
+
+    /** The pool the tiles are checked on. */
+    private final ForkJoinPool pool;
+
+    /**
+     * Construct a checker using the common fork-join pool.
+     * @param rules The rules to check.
+     */
+    public DesignRuleChecker(DesignRules rules) {
+        this(rules, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construct a checker.
+     *
+     * @param rules The rules to check.
+     * @param pool The pool to check tiles on.
+     */
+    public DesignRuleChecker(DesignRules rules, ForkJoinPool pool) {
+        this.rules = rules;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the rules checked.
+     * @return the design rules.
+     */
+    public DesignRules getRules() { return rules; }
+
+    /**
+     * Check every primitive of a board. The primitives are copied before this returns control to the pool, but
+     * the store must not be modified by another thread during the call.
+     *
+     * @param store The board's primitives.
+     * @return the violations found, ordered by rule and then by the primitives involved.
+     */
+    public List<Violation> check(PrimitiveStore store) {
+        return check(store, null, null);
+    }
+
+    /**
+     * Check some of the primitives of a board, as an incremental check does for those near an edit.
+     *
+     * @param store The board's primitives.
+     * @param slots The slots of the primitives to check, or null for all.
+     * @param focus Which of those primitives to report violations for, indexed like slots: a pair is reported
+     *              when either of its primitives is in focus. Null puts every primitive in focus.
+     * @return the violations found, ordered by rule and then by the primitives involved.
+     */
+    List<Violation> check(PrimitiveStore store, int[] slots, boolean[] focus) {
+        Snapshot snapshot = new Snapshot(store, slots, focus, rules.getClearance(), pool);
+        if (snapshot.size == 0)
+            return new ArrayList<>();
+        Tiles tiles = new Tiles(snapshot, rules.getTileSize());
+        List<Violation> violations = pool.invoke(new TileTask(tiles, 0, tiles.count()));
+        Collections.sort(violations);
+        return violations;
+    }
+
+    /**
+     * The primitives of a board reduced to what the checks need. Core segment coordinates and radii are doubled,
+     * so half-widths stay whole and every comparison is exact.
+     */
+    static final class Snapshot {
+        final int size;
+
+        /** The store's slot of each primitive, or null if primitive i is in slot i. */
+        final int[] slots;
+
+        /** Which primitives violations are reported for, or null for all. */
+        final boolean[] focus;
+
+        final int[] handle;
+        final byte[] kind;
+        final byte[] layer;
+        final int[] net;
+        final long[] width;
+        final long[] drill;
+
+        /** The bounds of each primitive, including its width. */
+        final long[] minX, minY, maxX, maxY;
+
+        /** Half the clearance, rounded up: how far each primitive's bounds are grown to find its neighbours. */
+        final long reach;
+
+        /** The doubled clearance. */
+        final long clearance2;
+
+        /** The doubled radius each primitive's core is widened by. */
+        final long[] radius2;
+
+        /** The first core segment of each primitive; primitive i has segments first[i] to first[i + 1] - 1. */
+        final int[] first;
+
+        /** The doubled core segments, four coordinates each. */
+        final long[] segments;
+
+        Snapshot(PrimitiveStore store, int[] slots, boolean[] focus, long clearance, ForkJoinPool pool) {
+            size = (slots == null) ? store.size() : slots.length;
+            this.slots = slots;
+            this.focus = focus;
+            handle = new int[size];
+            kind = new byte[size];
+            layer = new byte[size];
+            net = new int[size];
+            width = new long[size];
+            drill = new long[size];
+            minX = new long[size];
+            minY = new long[size];
+            maxX = new long[size];
+            maxY = new long[size];
+            radius2 = new long[size];
+            first = new int[size + 1];
+            reach = (clearance + 1) / 2;
+            clearance2 = 2 * clearance;
+
+            // Reduce the primitives in parallel chunks, each building its own cores, then join the cores up.
+            int chunks = (size + CHUNK - 1) / CHUNK;
+            long[][] cores = new long[chunks][];
+            int[] counts = new int[chunks];
+            List<Callable<Void>> tasks = new ArrayList<>(chunks);
+            for (int c = 0; c < chunks; c++) {
+                int chunk = c;
+                tasks.add(() -> {
+                    cores[chunk] = reduce(store, chunk * CHUNK, Math.min(size, (chunk + 1) * CHUNK), counts, chunk);
+                    return null;
+                });
+            }
+            for (Future<Void> task : pool.invokeAll(tasks)) {
+                try {
+                    task.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException("Unable to copy the board for checking", e);
+                }
+            }
+            int count = 0;
+            for (int c = 0; c < chunks; c++)
+                count += counts[c];
+            segments = new long[4 * count];
+            for (int c = 0, offset = 0; c < chunks; offset += counts[c++]) {
+                for (int i = c * CHUNK, to = Math.min(size, i + CHUNK); i < to; i++)
+                    first[i] += offset;
+                System.arraycopy(cores[c], 0, segments, 4 * offset, 4 * counts[c]);
+            }
+            first[size] = count;
+        }
+
+        /**
+         * Reduce primitives from to to - 1, returning their cores and storing how many there are.
+         * Until the chunks are joined up, first[i] counts from the start of the chunk.
+         */
+        private long[] reduce(PrimitiveStore store, int from, int to, int[] counts, int chunk) {
+            long[] box = new long[4];
+            long[] cores = new long[4 * (to - from) + 16];
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                int s = (slots == null) ? i : slots[i];
+                handle[i] = store.handleOf[s];
+                kind[i] = store.kind[s];
+                layer[i] = store.layer[s];
+                net[i] = store.net[s];
+                width[i] = store.width[s];
+                drill[i] = store.drill[s];
+                store.boundsAt(s, box);
+                minX[i] = box[0];
+                minY[i] = box[1];
+                maxX[i] = box[2];
+                maxY[i] = box[3];
+                first[i] = count;
+                long x0 = store.x0[s], y0 = store.y0[s], x1 = store.x1[s], y1 = store.y1[s];
+                switch (store.kindAt(s)) {
+                    case SEGMENT -> {
+                        cores = ensure(cores, count + 1);
+                        count = put(cores, count, x0, y0, x1, y1);
+                        radius2[i] = width[i];
+                    }
+                    case ARC -> {
+                        List<Point> chords = new Arc(new Point(x0, y0), new Point(x1, y1), store.aux[s])
+                                .toPolyline(ARC_TOLERANCE - 1); // leaving a nanometre for rounding.
+                        cores = ensure(cores, count + chords.size() - 1);
+                        for (int c = 1; c < chords.size(); c++)
+                            count = put(cores, count, chords.get(c - 1).x(), chords.get(c - 1).y(),
+                                    chords.get(c).x(), chords.get(c).y());
+                        radius2[i] = width[i] + 2 * ARC_TOLERANCE;
+                    }
+                    case ROUND_PAD, VIA -> {
+                        cores = ensure(cores, count + 1);
+                        count = put(cores, count, x0, y0, x0, y0);
+                        radius2[i] = width[i];
+                    }
+                    case RECT_PAD -> {
+                        // The edges, plus the interior tested separately by containment.
+                        cores = ensure(cores, count + 4);
+                        count = put(cores, count, minX[i], minY[i], maxX[i], minY[i]);
+                        count = put(cores, count, maxX[i], minY[i], maxX[i], maxY[i]);
+                        count = put(cores, count, maxX[i], maxY[i], minX[i], maxY[i]);
+                        count = put(cores, count, minX[i], maxY[i], minX[i], minY[i]);
+                        radius2[i] = 0;
+                    }
+                }
+            }
+            counts[chunk] = count;
+            return cores;
+        }
+
+        private static long[] ensure(long[] cores, int segments) {
+            if (4 * segments <= cores.length)
+                return cores;
+            return Arrays.copyOf(cores, Math.max(4 * segments, 2 * cores.length));
+        }
+
+        private static int put(long[] cores, int count, long x0, long y0, long x1, long y1) {
+            int i = 4 * count;
+            cores[i] = 2 * x0;
+            cores[i + 1] = 2 * y0;
+            cores[i + 2] = 2 * x1;
+            cores[i + 3] = 2 * y1;
+            return count + 1;
+        }
+
+        /** Returns the box to highlight for a primitive, or two. */
+        Box location(int i, int j) {
+            return new Box(Math.min(minX[i], minX[j]), Math.min(minY[i], minY[j]),
+                    Math.max(maxX[i], maxX[j]), Math.max(maxY[i], maxY[j]));
+        }
+
+        /** Returns whether two primitives can conflict at all: copper on a common layer of different nets. */
+        boolean interacts(int i, int j) {
+            if (net[i] != 0 && net[i] == net[j])
+                return false;
+            int via = PrimitiveStore.Kind.VIA.ordinal();
+            return layer[i] == layer[j] || kind[i] == via || kind[j] == via;
+        }
+
+        /** Returns whether the copper of two primitives overlaps, connecting them. Needs a clearance of zero. */
+        boolean touches(int i, int j) {
+            int via = PrimitiveStore.Kind.VIA.ordinal();
+            return (layer[i] == layer[j] || kind[i] == via || kind[j] == via) && tooClose(i, j);
+        }
+
+        /** Returns whether two interacting primitives are closer than the clearance. */
+        boolean tooClose(int i, int j) {
+            long required = clearance2 + radius2[i] + radius2[j];
+            for (int a = 4 * first[i]; a < 4 * first[i + 1]; a += 4) {
+                for (int b = 4 * first[j]; b < 4 * first[j + 1]; b += 4) {
+                    if (Predicates.compareSegmentDistance(segments[a], segments[a + 1], segments[a + 2],
+                            segments[a + 3], segments[b], segments[b + 1], segments[b + 2], segments[b + 3],
+                            required) < 0)
+                        return true;
+                }
+            }
+            // Apart from their edges, rectangular pads are solid: anything starting inside one overlaps it.
+            return (inside(i, j) || inside(j, i)) && required > 0;
+        }
+
+        /** Returns whether primitive i is a rectangular pad containing the start of primitive j's core. */
+        private boolean inside(int i, int j) {
+            if (kind[i] != PrimitiveStore.Kind.RECT_PAD.ordinal())
+                return false;
+            long x = segments[4 * first[j]], y = segments[4 * first[j] + 1];
+            return 2 * minX[i] <= x && x <= 2 * maxX[i] && 2 * minY[i] <= y && y <= 2 * maxY[i];
+        }
+    }
+
+    /** The grid of tiles covering a snapshot, and which primitives belong to each tile. */
+    static final class Tiles {
+        final Snapshot snapshot;
+        final long originX, originY, size;
+        final int columns, rows;
+
+        /** The primitives of tile t are members[start[t]] to members[start[t + 1] - 1]. */
+        final int[] start;
+        final int[] members;
+
+        Tiles(Snapshot snapshot, long requestedSize) {
+            this.snapshot = snapshot;
+            long r = snapshot.reach;
+            long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+            for (int i = 0; i < snapshot.size; i++) {
+                minX = Math.min(minX, snapshot.minX[i] - r);
+                minY = Math.min(minY, snapshot.minY[i] - r);
+                maxX = Math.max(maxX, snapshot.maxX[i] + r);
+                maxY = Math.max(maxY, snapshot.maxY[i] + r);
+            }
+            double width = maxX - minX + 1.0, height = maxY - minY + 1.0;
+            long tile = requestedSize;
+            if (tile <= 0)
+                tile = (long) Math.ceil(Math.sqrt(width * height * PRIMITIVES_PER_TILE / snapshot.size));
+            tile = Math.max(tile, Math.max(1, 4 * r));
+            while (Math.ceil(width / tile) * Math.ceil(height / tile) > MAX_TILES)
+                tile *= 2;
+            originX = minX;
+            originY = minY;
+            size = tile;
+            columns = (int) Math.ceil(width / tile);
+            rows = (int) Math.ceil(height / tile);
+
+            // Two passes: count each tile's primitives, then place them, keeping each tile's list contiguous.
+            start = new int[columns * rows + 1];
+            for (int i = 0; i < snapshot.size; i++)
+                forEachTile(i, t -> start[t + 1]++);
+            for (int t = 0; t < columns * rows; t++)
+                start[t + 1] += start[t];
+            members = new int[start[columns * rows]];
+            int[] next = Arrays.copyOf(start, columns * rows);
+            for (int i = 0; i < snapshot.size; i++) {
+                int primitive = i;
+                forEachTile(i, t -> members[next[t]++] = primitive);
+            }
+        }
+
+        int count() { return columns * rows; }
+
+        int column(long x) {
+            return (int) Math.max(0, Math.min(columns - 1, Math.floorDiv(x - originX, size)));
+        }
+
+        int row(long y) {
+            return (int) Math.max(0, Math.min(rows - 1, Math.floorDiv(y - originY, size)));
+        }
+
+        /** Returns the tile holding a point. */
+        int tileOf(long x, long y) {
+            return row(y) * columns + column(x);
+        }
+
+        private void forEachTile(int i, IntConsumer action) {
+            long r = snapshot.reach;
+            int c0 = column(snapshot.minX[i] - r), c1 = column(snapshot.maxX[i] + r);
+            int r0 = row(snapshot.minY[i] - r), r1 = row(snapshot.maxY[i] + r);
+            for (int row = r0; row <= r1; row++)
+                for (int column = c0; column <= c1; column++)
+                    action.accept(row * columns + column);
+        }
+    }
+
+    /** Checks a range of tiles, splitting it among further tasks while it is large. */
+    private final class TileTask extends RecursiveTask<List<Violation>> {
+        private final Tiles tiles;
+        private final int from, to;
+
+        TileTask(Tiles tiles, int from, int to) {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Violation> compute() {
+            if (to - from <= TILES_PER_TASK) {
+                List<Violation> violations = new ArrayList<>();
+                for (int t = from; t < to; t++)
+                    checkTile(tiles, t, violations);
+                return violations;
+            }
+            int middle = (from + to) >>> 1;
+            TileTask left = new TileTask(tiles, from, middle);
+            left.fork();
+            List<Violation> violations = new TileTask(tiles, middle, to).compute();
+            violations.addAll(left.join());
+            return violations;
+        }
+    }
+
+    /** Check the primitives of one tile, adding the violations it owns. */
+    private void checkTile(Tiles tiles, int t, List<Violation> violations) {
+        int count = tiles.start[t + 1] - tiles.start[t];
+        if (count == 0)
+            return;
+        Snapshot s = tiles.snapshot;
+        long r = s.reach;
+        int[] order = Arrays.copyOfRange(tiles.members, tiles.start[t], tiles.start[t + 1]);
+        long[] left = new long[count];
+        for (int k = 0; k < count; k++)
+            left[k] = s.minX[order[k]];
+        IndexSort.sort(order, left, 0, count - 1);
+
+        for (int a = 0; a < count; a++) {
+            int i = order[a];
+            if (tiles.tileOf(s.minX[i] - r, s.minY[i] - r) == t && (s.focus == null || s.focus[i]))
+                checkAlone(s, i, violations);
+            long right = s.maxX[i] + r;
+            for (int b = a + 1; b < count && left[b] - r <= right; b++) {
+                int j = order[b];
+                if (s.minY[j] - r > s.maxY[i] + r || s.minY[i] - r > s.maxY[j] + r)
+                    continue;
+                if (s.focus != null && !s.focus[i] && !s.focus[j])
+                    continue;
+                // Only the tile holding the corner where the grown boxes begin to overlap reports the pair.
+                if (tiles.tileOf(Math.max(s.minX[i], s.minX[j]) - r, Math.max(s.minY[i], s.minY[j]) - r) != t)
+                    continue;
+                if (s.interacts(i, j) && s.tooClose(i, j)) {
+                    int hi = s.handle[i], hj = s.handle[j];
+                    violations.add(new Violation(Violation.Rule.CLEARANCE, Math.min(hi, hj), Math.max(hi, hj),
+                            s.location(i, j)));
+                }
+            }
+        }
+    }
+
+    /** Check the rules concerning a single primitive. */
+    private void checkAlone(Snapshot s, int i, List<Violation> violations) {
+        Violation.Rule broken = null;
+        long ring = 2 * rules.getMinAnnularRing();
+        switch (PrimitiveStore.Kind.values()[s.kind[i]]) {
+            case SEGMENT, ARC -> {
+                if (s.width[i] < rules.getMinTrackWidth())
+                    broken = Violation.Rule.TRACK_WIDTH;
+            }
+            case ROUND_PAD, VIA -> {
+                if (s.drill[i] > 0 && s.width[i] - s.drill[i] < ring)
+                    broken = Violation.Rule.ANNULAR_RING;
+            }
+            case RECT_PAD -> {
+                long side = Math.min(s.maxX[i] - s.minX[i], s.maxY[i] - s.minY[i]);
+                if (s.drill[i] > 0 && side - s.drill[i] < ring)
+                    broken = Violation.Rule.ANNULAR_RING;
+            }
+        }
+        if (broken != null)
+            violations.add(new Violation(broken, s.handle[i], -1, s.location(i, i)));
+    }
+}
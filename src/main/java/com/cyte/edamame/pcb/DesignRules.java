@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+/**
+ * Class to represent, specify, serialize, store, and deserialize the design rules a board is checked against by
+ * the {@link DesignRuleChecker}. All lengths are in nanometres. The rules follow JavaBean conventions so they can
+ * be stored as YAML alongside the other EDAmame settings.
+ */
+public class DesignRules {
+    /** The smallest allowed gap between copper of different nets. */
+    private long clearance = 150_000;
+
+    /** The narrowest allowed track. */
+    private long minTrackWidth = 125_000;
+
+    /** The narrowest allowed ring of copper around a drilled hole. */
+    private long minAnnularRing = 125_000;
+
+    /** The side of the square tiles the board is divided into for checking in parallel, or 0 to choose one. */
+    private long tileSize = 0;
+
+    public long getClearance() { return clearance; }
+
+    public void setClearance(long clearance) { this.clearance = clearance; }
+
+    public long getMinTrackWidth() { return minTrackWidth; }
+
+    public void setMinTrackWidth(long minTrackWidth) { this.minTrackWidth = minTrackWidth; }
+
+    public long getMinAnnularRing() { return minAnnularRing; }
+
+    public void setMinAnnularRing(long minAnnularRing) { this.minAnnularRing = minAnnularRing; }
+
+    public long getTileSize() { return tileSize; }
+
+    public void setTileSize(long tileSize) { this.tileSize = tileSize; }
+}
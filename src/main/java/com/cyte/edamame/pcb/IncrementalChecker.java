@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the design rule violations of a board up to date as it is edited.<p>
+ *
+ * When primitives are touched by an edit, undo or redo, the checker forgets the violations they were involved in
+ * and checks them again, together with every primitive within the clearance of where they now are. Violations
+ * between primitives that were not touched cannot have changed, so the cost of an edit is proportional to its
+ * size rather than to the board's. See {@link BoardWatcher} for how edits are followed.
+ */
+public class IncrementalChecker extends BoardWatcher {
+    /** Checks the primitives near each edit. */
+    private final DesignRuleChecker checker;
+
+    /** The current violations. */
+    private final Set<Violation> violations = new HashSet<>();
+
+    /** The current violations by the handles of the primitives involved. */
+    private final Map<Integer, List<Violation>> byPrimitive = new HashMap<>();
+
+    /** The number of primitives the last update checked. */
+    private int lastCheckedCount = 0;
+
+    /**
+     * Construct a checker for a board. Call {@link #rebuild} to check the whole board first, and add the checker
+     * to the board's index.
+     *
+     * @param index The board's spatial index.
+     * @param checker Checks the primitives.
+     */
+    public IncrementalChecker(BoardIndex index, DesignRuleChecker checker) {
+        super(index);
+        this.checker = checker;
+    }
+
+    /**
+     * Returns the current violations.
+     * @return an unmodifiable view of the violations.
+     */
+    public Set<Violation> getViolations() { return Collections.unmodifiableSet(violations); }
+
+    /**
+     * Returns how many primitives the last update checked, including the neighbours of those edited.
+     * @return the primitive count.
+     */
+    public int getLastCheckedCount() { return lastCheckedCount; }
+
+    @Override
+    protected void rebuildAll() {
+        violations.clear();
+        byPrimitive.clear();
+        for (Violation violation : checker.check(store))
+            add(violation);
+        lastCheckedCount = store.size();
+    }
+
+    @Override
+    protected void forget(BitSet touched) {
+        for (int handle = touched.nextSetBit(0); handle >= 0; handle = touched.nextSetBit(handle + 1)) {
+            List<Violation> involved = byPrimitive.remove(handle);
+            if (involved != null) {
+                for (Violation violation : involved)
+                    remove(violation, handle);
+            }
+        }
+    }
+
+    @Override
+    protected void refresh(BitSet touched) {
+        // Check the touched primitives against everything within the clearance of them.
+        BitSet chosen = (BitSet) touched.clone();
+        long clearance = checker.getRules().getClearance();
+        for (int handle = touched.nextSetBit(0); handle >= 0; handle = touched.nextSetBit(handle + 1))
+            near(handle, clearance, chosen::set);
+        int count = chosen.cardinality();
+        int[] slots = new int[count];
+        boolean[] focus = new boolean[count];
+        for (int handle = chosen.nextSetBit(0), k = 0; handle >= 0; handle = chosen.nextSetBit(handle + 1), k++) {
+            slots[k] = store.slot(handle);
+            focus[k] = touched.get(handle);
+        }
+        if (count > 0) {
+            for (Violation violation : checker.check(store, slots, focus))
+                add(violation);
+        }
+        lastCheckedCount = count;
+    }
+
+    /** Add a violation found. */
+    private void add(Violation violation) {
+        if (!violations.add(violation))
+            return;
+        byPrimitive.computeIfAbsent(violation.first(), handle -> new ArrayList<>()).add(violation);
+        if (violation.second() >= 0)
+            byPrimitive.computeIfAbsent(violation.second(), handle -> new ArrayList<>()).add(violation);
+    }
+
+    /** Remove a violation whose entry for one of its primitives has already been removed. */
+    private void remove(Violation violation, int handle) {
+        violations.remove(violation);
+        int other = (violation.first() == handle) ? violation.second() : violation.first();
+        List<Violation> involved = (other < 0) ? null : byPrimitive.get(other);
+        if (involved != null) {
+            involved.remove(violation);
+            if (involved.isEmpty())
+                byPrimitive.remove(other);
+        }
+    }
+}
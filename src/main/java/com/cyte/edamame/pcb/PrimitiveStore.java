@@ -0,0 +1,535 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import com.cyte.edamame.geometry.Arc;
+import com.cyte.edamame.geometry.Box;
+import com.cyte.edamame.util.DeltaMemento;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The copper and mechanical primitives of a footprint or board, stored column by column.<p>
+ *
+ * Each attribute of every primitive lives in its own primitive array, so a board of a million primitives is a
+ * handful of arrays rather than a million objects with headers, padding and boxed coordinates, and loops over
+ * one attribute (as DRC and rendering do) read memory sequentially. Live primitives always occupy slots
+ * {@code 0..size()-1}. Removing a primitive moves the last primitive into its slot, so slots change but the
+ * integer handle returned by {@link #add} remains valid until that primitive is removed. Handles of removed
+ * primitives are reused.<p>
+ *
+ * Coordinates and lengths are integer nanometres, as everywhere in the {@link com.cyte.edamame.geometry} kernel.
+ * Layers are numbered from 0 and net 0 means no net. The meaning of the coordinates depends on the {@link Kind}.
+ * The store is not safe for concurrent modification; concurrent reads of an unchanging store are safe.<p>
+ *
+ * Edits are made undoable by recording a {@link DeltaMemento} from {@link #capture} before making them. Since
+ * the store is the memento's target, anything watching the {@link com.cyte.edamame.util.Recorder} can tell
+ * which primitives each edit, undo or redo touched.
+ */
+public final class PrimitiveStore implements DeltaMemento.Target<Integer, PrimitiveStore.Primitive> {
+    /** The kinds of primitive and how each uses the coordinate columns. */
+    public enum Kind {
+        /** A track from (x0, y0) to (x1, y1) of the given width with round ends. */
+        SEGMENT,
+        /**
+         * A track arc centred on (x0, y0) starting at (x1, y1) of the given width. aux is the sweep in
+         * microdegrees, positive counterclockwise.
+         */
+        ARC,
+        /** A round pad centred on (x0, y0) whose diameter is the width, drilled if drill is non-zero. */
+        ROUND_PAD,
+        /**
+         * A rectangular pad with opposite corners (x0, y0) and (x1, y1), drilled at its centre if drill is
+         * non-zero.
+         */
+        RECT_PAD,
+        /** A via centred on (x0, y0) whose diameter is the width, spanning every layer. */
+        VIA
+    }
+
+    /**
+     * Every attribute of one primitive, as captured for undo.
+     *
+     * @param kind The kind of primitive.
+     * @param layer The layer.
+     * @param net The net, or 0 for none.
+     * @param x0 The first x coordinate.
+     * @param y0 The first y coordinate.
+     * @param x1 The second x coordinate.
+     * @param y1 The second y coordinate.
+     * @param width The width or diameter.
+     * @param drill The drill diameter, or 0 if not drilled.
+     * @param aux A value whose meaning depends on the kind.
+     */
+    public record Primitive(Kind kind, int layer, int net, long x0, long y0, long x1, long y1, long width,
+                            long drill, long aux) implements Serializable {
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    /** The number of net and primitive slots allocated initially. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    // The columns, indexed by slot. Package-private so the engines of this package can loop over them directly.
+    byte[] kind = new byte[INITIAL_CAPACITY];
+    byte[] layer = new byte[INITIAL_CAPACITY];
+    int[] net = new int[INITIAL_CAPACITY];
+    long[] x0 = new long[INITIAL_CAPACITY];
+    long[] y0 = new long[INITIAL_CAPACITY];
+    long[] x1 = new long[INITIAL_CAPACITY];
+    long[] y1 = new long[INITIAL_CAPACITY];
+    long[] width = new long[INITIAL_CAPACITY];
+    long[] drill = new long[INITIAL_CAPACITY];
+    long[] aux = new long[INITIAL_CAPACITY];
+
+    /** The handle of the primitive in each slot. */
+    int[] handleOf = new int[INITIAL_CAPACITY];
+
+    /** The slot of each handle, or -1 for handles not in use, including those never issued. */
+    private int[] slotOf = resize(new int[0], INITIAL_CAPACITY);
+
+    /** The number of live primitives, which occupy slots 0..size-1. */
+    private int size = 0;
+
+    /** The number of handles ever issued. */
+    private int handles = 0;
+
+    /** Handles of removed primitives, available for reuse. */
+    private int[] free = new int[16];
+
+    /** The number of handles available for reuse. */
+    private int freeCount = 0;
+
+    /**
+     * Add a primitive.
+     *
+     * @param kind The kind of primitive.
+     * @param layer The layer, from 0 to 127.
+     * @param net The net, or 0 for none.
+     * @param x0 The first x coordinate.
+     * @param y0 The first y coordinate.
+     * @param x1 The second x coordinate.
+     * @param y1 The second y coordinate.
+     * @param width The width or diameter.
+     * @param drill The drill diameter, or 0 if not drilled.
+     * @param aux A value whose meaning depends on the kind.
+     * @return the primitive's handle.
+     */
+    public int add(Kind kind, int layer, int net, long x0, long y0, long x1, long y1, long width, long drill,
+                   long aux) {
+        checkLayer(layer);
+        if (size == this.kind.length)
+            grow(Math.max(INITIAL_CAPACITY, size * 2));
+        int handle;
+        if (freeCount > 0)
+            handle = free[--freeCount];
+        else {
+            if (handles == slotOf.length)
+                slotOf = resize(slotOf, handles * 2);
+            handle = handles++;
+        }
+        int s = size++;
+        slotOf[handle] = s;
+        handleOf[s] = handle;
+        this.kind[s] = (byte) kind.ordinal();
+        this.layer[s] = (byte) layer;
+        this.net[s] = net;
+        this.x0[s] = x0;
+        this.y0[s] = y0;
+        this.x1[s] = x1;
+        this.y1[s] = y1;
+        this.width[s] = width;
+        this.drill[s] = drill;
+        this.aux[s] = aux;
+        return handle;
+    }
+
+    /**
+     * Returns the handle the next call to {@link #add} will return, so an addition can be captured for undo
+     * before it is made.
+     *
+     * @return the next handle.
+     */
+    public int nextHandle() {
+        return (freeCount > 0) ? free[freeCount - 1] : handles;
+    }
+
+    /**
+     * Capture the current state of primitives about to be added, changed or removed. Recording the memento
+     * makes the edit undoable.
+     *
+     * @param handles The handles of the primitives the edit will touch, including any it will add.
+     * @return a memento restoring those primitives to their current state.
+     */
+    public DeltaMemento<Integer, Primitive> capture(Collection<Integer> handles) {
+        return DeltaMemento.capture(this, handles);
+    }
+
+    /**
+     * Returns every attribute of a primitive.
+     *
+     * @param handle The primitive's handle.
+     * @return the primitive, or null if no primitive has the handle.
+     */
+    @Override
+    public Primitive get(Integer handle) {
+        if (!contains(handle))
+            return null;
+        int s = slotOf[handle];
+        return new Primitive(KINDS[kind[s]], layer[s], net[s], x0[s], y0[s], x1[s], y1[s], width[s], drill[s],
+                aux[s]);
+    }
+
+    /**
+     * Replace, add or remove the primitive with a given handle, as undo and redo do. A removed handle is brought
+     * back into use rather than a new one issued, so handles held elsewhere stay valid across undo.
+     *
+     * @param handle The primitive's handle.
+     * @param primitive Its attributes, or null to remove it.
+     */
+    @Override
+    public void set(Integer handle, Primitive primitive) {
+        if (primitive == null) {
+            if (contains(handle))
+                remove(handle);
+            return;
+        }
+        checkLayer(primitive.layer());
+        if (!contains(handle))
+            revive(handle);
+        int s = slotOf[handle];
+        kind[s] = (byte) primitive.kind().ordinal();
+        layer[s] = (byte) primitive.layer();
+        net[s] = primitive.net();
+        x0[s] = primitive.x0();
+        y0[s] = primitive.y0();
+        x1[s] = primitive.x1();
+        y1[s] = primitive.y1();
+        width[s] = primitive.width();
+        drill[s] = primitive.drill();
+        aux[s] = primitive.aux();
+    }
+
+    /** Give an unused handle a slot at the end, taking it out of the free handles. */
+    private void revive(int handle) {
+        if (handle < 0)
+            throw new IllegalArgumentException("invalid primitive handle: " + handle);
+        if (handle >= handles) {
+            if (handle >= slotOf.length)
+                slotOf = resize(slotOf, Math.max(handle + 1, slotOf.length * 2));
+            // Handles skipped over become free.
+            while (handles < handle) {
+                if (freeCount == free.length)
+                    free = Arrays.copyOf(free, free.length * 2);
+                slotOf[handles] = -1;
+                free[freeCount++] = handles++;
+            }
+            handles++;
+        } else {
+            for (int i = 0; i < freeCount; i++) {
+                if (free[i] == handle) {
+                    free[i] = free[--freeCount];
+                    break;
+                }
+            }
+        }
+        if (size == kind.length)
+            grow(Math.max(INITIAL_CAPACITY, size * 2));
+        int s = size++;
+        slotOf[handle] = s;
+        handleOf[s] = handle;
+    }
+
+    /**
+     * Remove a primitive. Its handle becomes invalid and the last primitive moves into its slot.
+     *
+     * @param handle The primitive's handle.
+     */
+    public void remove(int handle) {
+        int s = slot(handle);
+        int last = --size;
+        if (s != last) {
+            kind[s] = kind[last];
+            layer[s] = layer[last];
+            net[s] = net[last];
+            x0[s] = x0[last];
+            y0[s] = y0[last];
+            x1[s] = x1[last];
+            y1[s] = y1[last];
+            width[s] = width[last];
+            drill[s] = drill[last];
+            aux[s] = aux[last];
+            handleOf[s] = handleOf[last];
+            slotOf[handleOf[s]] = s;
+        }
+        slotOf[handle] = -1;
+        if (freeCount == free.length)
+            free = Arrays.copyOf(free, free.length * 2);
+        free[freeCount++] = handle;
+    }
+
+    /**
+     * Remove every primitive.
+     */
+    public void clear() {
+        Arrays.fill(slotOf, 0, handles, -1);
+        size = 0;
+        handles = 0;
+        freeCount = 0;
+    }
+
+    /**
+     * Returns whether a handle refers to a live primitive.
+     *
+     * @param handle The handle.
+     * @return true if the primitive has not been removed.
+     */
+    public boolean contains(int handle) {
+        return handle >= 0 && handle < handles && slotOf[handle] >= 0;
+    }
+
+    /**
+     * Returns the number of primitives.
+     * @return the number of live primitives.
+     */
+    public int size() { return size; }
+
+    /**
+     * Returns the slot a primitive currently occupies. Slots change when other primitives are removed.
+     *
+     * @param handle The primitive's handle.
+     * @return the slot, between 0 and size() - 1.
+     */
+    public int slot(int handle) {
+        if (!contains(handle))
+            throw new IllegalArgumentException("invalid primitive handle: " + handle);
+        return slotOf[handle];
+    }
+
+    /**
+     * Returns the handle of the primitive in a slot.
+     *
+     * @param slot The slot, between 0 and size() - 1.
+     * @return the primitive's handle.
+     */
+    public int handleAt(int slot) {
+        checkSlot(slot);
+        return handleOf[slot];
+    }
+
+    // Attributes of a primitive by handle.
+
+    public Kind kind(int handle) { return KINDS[kind[slot(handle)]]; }
+
+    public int layer(int handle) { return layer[slot(handle)]; }
+
+    public int net(int handle) { return net[slot(handle)]; }
+
+    public long x0(int handle) { return x0[slot(handle)]; }
+
+    public long y0(int handle) { return y0[slot(handle)]; }
+
+    public long x1(int handle) { return x1[slot(handle)]; }
+
+    public long y1(int handle) { return y1[slot(handle)]; }
+
+    public long width(int handle) { return width[slot(handle)]; }
+
+    public long drill(int handle) { return drill[slot(handle)]; }
+
+    public long aux(int handle) { return aux[slot(handle)]; }
+
+    /**
+     * Returns the kind of the primitive in a slot, for loops over every slot.
+     *
+     * @param slot The slot.
+     * @return the primitive's kind.
+     */
+    public Kind kindAt(int slot) {
+        checkSlot(slot);
+        return KINDS[kind[slot]];
+    }
+
+    /**
+     * Change a primitive's net.
+     *
+     * @param handle The primitive's handle.
+     * @param net The net, or 0 for none.
+     */
+    public void setNet(int handle, int net) {
+        this.net[slot(handle)] = net;
+    }
+
+    /**
+     * Move a primitive to another layer.
+     *
+     * @param handle The primitive's handle.
+     * @param layer The layer, from 0 to 127.
+     */
+    public void setLayer(int handle, int layer) {
+        checkLayer(layer);
+        this.layer[slot(handle)] = (byte) layer;
+    }
+
+    /**
+     * Change a primitive's coordinates and width.
+     *
+     * @param handle The primitive's handle.
+     * @param x0 The first x coordinate.
+     * @param y0 The first y coordinate.
+     * @param x1 The second x coordinate.
+     * @param y1 The second y coordinate.
+     * @param width The width or diameter.
+     */
+    public void setGeometry(int handle, long x0, long y0, long x1, long y1, long width) {
+        int s = slot(handle);
+        this.x0[s] = x0;
+        this.y0[s] = y0;
+        this.x1[s] = x1;
+        this.y1[s] = y1;
+        this.width[s] = width;
+    }
+
+    /**
+     * Move a primitive.
+     *
+     * @param handle The primitive's handle.
+     * @param dx The distance to move right.
+     * @param dy The distance to move down.
+     */
+    public void translate(int handle, long dx, long dy) {
+        int s = slot(handle);
+        x0[s] += dx;
+        y0[s] += dy;
+        x1[s] += dx;
+        y1[s] += dy;
+    }
+
+    /**
+     * Compute the bounding box of a primitive, including its width.
+     *
+     * @param handle The primitive's handle.
+     * @param box Receives the box as minX, minY, maxX, maxY.
+     */
+    public void bounds(int handle, long[] box) {
+        boundsAt(slot(handle), box);
+    }
+
+    /**
+     * Returns the bounding box of a primitive, including its width.
+     *
+     * @param handle The primitive's handle.
+     * @return the bounding box.
+     */
+    public Box bounds(int handle) {
+        long[] box = new long[4];
+        boundsAt(slot(handle), box);
+        return new Box(box[0], box[1], box[2], box[3]);
+    }
+
+    /**
+     * Compute the bounding box of the primitive in a slot, including its width.
+     *
+     * @param slot The slot.
+     * @param box Receives the box as minX, minY, maxX, maxY.
+     */
+    public void boundsAt(int slot, long[] box) {
+        checkSlot(slot);
+        long r = (width[slot] + 1) / 2;
+        switch (KINDS[kind[slot]]) {
+            case SEGMENT -> {
+                box[0] = Math.min(x0[slot], x1[slot]) - r;
+                box[1] = Math.min(y0[slot], y1[slot]) - r;
+                box[2] = Math.max(x0[slot], x1[slot]) + r;
+                box[3] = Math.max(y0[slot], y1[slot]) + r;
+            }
+            case ARC -> {
+                Arc.bounds(x0[slot], y0[slot], x1[slot], y1[slot], aux[slot], box);
+                box[0] -= r;
+                box[1] -= r;
+                box[2] += r;
+                box[3] += r;
+            }
+            case ROUND_PAD, VIA -> {
+                box[0] = x0[slot] - r;
+                box[1] = y0[slot] - r;
+                box[2] = x0[slot] + r;
+                box[3] = y0[slot] + r;
+            }
+            case RECT_PAD -> {
+                box[0] = Math.min(x0[slot], x1[slot]);
+                box[1] = Math.min(y0[slot], y1[slot]);
+                box[2] = Math.max(x0[slot], x1[slot]);
+                box[3] = Math.max(y0[slot], y1[slot]);
+            }
+        }
+    }
+
+    /**
+     * Release the capacity beyond what the live primitives need, such as after deleting much of a board.
+     */
+    public void compact() {
+        int capacity = Math.max(INITIAL_CAPACITY, size);
+        if (capacity < kind.length)
+            grow(capacity);
+        // Trailing handles not in use can be forgotten entirely.
+        while (handles > 0 && slotOf[handles - 1] < 0)
+            handles--;
+        int kept = 0;
+        for (int i = 0; i < freeCount; i++)
+            if (free[i] < handles)
+                free[kept++] = free[i];
+        freeCount = kept;
+        slotOf = resize(slotOf, Math.max(INITIAL_CAPACITY, handles));
+        free = Arrays.copyOf(free, Math.max(16, freeCount));
+    }
+
+    /**
+     * Returns the approximate heap occupied by the store's arrays.
+     * @return the size in bytes.
+     */
+    public long getMemoryBytes() {
+        long perSlot = 2 * Byte.BYTES + 2L * Integer.BYTES + 7L * Long.BYTES;
+        return perSlot * kind.length + (long) Integer.BYTES * (slotOf.length + free.length) + 13 * 16;
+    }
+
+    /** Resize every column. */
+    private void grow(int capacity) {
+        kind = Arrays.copyOf(kind, capacity);
+        layer = Arrays.copyOf(layer, capacity);
+        net = Arrays.copyOf(net, capacity);
+        x0 = Arrays.copyOf(x0, capacity);
+        y0 = Arrays.copyOf(y0, capacity);
+        x1 = Arrays.copyOf(x1, capacity);
+        y1 = Arrays.copyOf(y1, capacity);
+        width = Arrays.copyOf(width, capacity);
+        drill = Arrays.copyOf(drill, capacity);
+        aux = Arrays.copyOf(aux, capacity);
+        handleOf = Arrays.copyOf(handleOf, capacity);
+    }
+
+    /** Returns a copy of the slots of handles of a new length, with any handles added marked as not in use. */
+    private static int[] resize(int[] slots, int length) {
+        int[] copy = Arrays.copyOf(slots, length);
+        if (length > slots.length)
+            Arrays.fill(copy, slots.length, length, -1);
+        return copy;
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= size)
+            throw new IndexOutOfBoundsException("slot " + slot + " of " + size);
+    }
+
+    private static void checkLayer(int layer) {
+        if (layer < 0 || layer > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("invalid layer: " + layer);
+    }
+}
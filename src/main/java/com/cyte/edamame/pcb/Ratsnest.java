@@ -0,0 +1,548 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import com.cyte.edamame.geometry.Arc;
+import com.cyte.edamame.geometry.Point;
+import com.cyte.edamame.netlist.Connectivity;
+import com.cyte.edamame.util.IndexSort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The unrouted connections of a board, kept up to date as it is edited, such as while parts are dragged.<p>
+ *
+ * Each signal net's primitives are reduced to anchor points: pad and via centres and track ends. Anchors on the
+ * same island of copper, as found by {@link CopperConnectivity}, are already joined, and the ratsnest of the net is
+ * the shortest set of lines joining its islands: a minimum spanning tree of its anchors in which joined anchors
+ * cost nothing. Small nets compare every pair of anchors. Larger nets only consider, for each anchor, the nearest
+ * anchor in each of eight 45 degree sectors around it, found on a grid. That graph contains a minimum spanning tree
+ * of the anchors, so the result is the same but costs about O(n log n) rather than O(n&sup2;).<p>
+ *
+ * When primitives are touched, only the nets they were or are now on, and those of the primitives they touch
+ * before or after, are spanned again, independent nets in parallel. Dragging a part therefore costs in proportion
+ * to the nets of its pads. A net shorted to another through copper the edit did not touch is respanned when one
+ * of its own primitives or their neighbours is next touched. See {@link BoardWatcher} for how edits are followed.
+ */
+public class Ratsnest extends BoardWatcher {
+    /** Nets with at most this many anchors are spanned by comparing every pair of anchors. */
+    static final int DENSE_LIMIT = 256;
+
+    /** Roughly how many anchors each parallel task spans; fewer in all are spanned on the calling thread. */
+    private static final int BATCH = 4096;
+
+    /** The number of sectors around each anchor searched for its nearest neighbours. */
+    private static final int SECTORS = 8;
+
+    /**
+     * Receives the lines of a ratsnest.
+     */
+    @FunctionalInterface
+    public interface LineConsumer {
+        /**
+         * Accept one unrouted connection.
+         *
+         * @param net The net the line belongs to.
+         * @param x0 The x coordinate of one end.
+         * @param y0 The y coordinate of one end.
+         * @param x1 The x coordinate of the other end.
+         * @param y1 The y coordinate of the other end.
+         */
+        void accept(int net, long x0, long y0, long x1, long y1);
+    }
+
+    /** The islands of copper anchors on the same island are joined by. */
+    private final CopperConnectivity copper;
+
+    /** Spans large updates in parallel. */
+    private final ForkJoinPool pool;
+
+    /** The handles of the primitives of each net, as last updated. */
+    private final Map<Integer, Set<Integer>> members = new HashMap<>();
+
+    /** The net of each primitive when last updated, or 0 for none. */
+    private int[] netOf = new int[64];
+
+    /** The lines of each net with unrouted connections, four coordinates each. */
+    private final Map<Integer, long[]> lines = new HashMap<>();
+
+    /** The number of lines of all nets. */
+    private int lineCount = 0;
+
+    /** The nets to span again on the next refresh. */
+    private final Set<Integer> dirtyNets = new HashSet<>();
+
+    /** The nets spanned by the last update or rebuild. */
+    private Set<Integer> changedNets = Collections.emptySet();
+
+    /**
+     * Construct the ratsnest of a board, spanning large updates on the common pool. Call {@link #rebuild} after
+     * the copper connectivity's to span the whole board first, and add it to the board's index after the copper
+     * connectivity, so the islands reflect each edit before the nets are spanned over them.
+     *
+     * @param index The board's spatial index.
+     * @param copper The board's copper connectivity.
+     */
+    public Ratsnest(BoardIndex index, CopperConnectivity copper) {
+        this(index, copper, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construct the ratsnest of a board, spanning large updates on the given pool.
+     *
+     * @param index The board's spatial index.
+     * @param copper The board's copper connectivity.
+     * @param pool The pool independent nets are spanned on.
+     */
+    public Ratsnest(BoardIndex index, CopperConnectivity copper, ForkJoinPool pool) {
+        super(index);
+        this.copper = copper;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the number of unrouted connections of the board.
+     * @return the line count.
+     */
+    public int getLineCount() { return lineCount; }
+
+    /**
+     * Returns the nets whose lines the last update or rebuild recomputed, so their display can be refreshed.
+     * @return an unmodifiable set of nets.
+     */
+    public Set<Integer> getChangedNets() { return Collections.unmodifiableSet(changedNets); }
+
+    /**
+     * Perform an action for every unrouted connection of the board.
+     * @param action The action to perform on each line.
+     */
+    public void forEachLine(LineConsumer action) {
+        for (int net : lines.keySet())
+            forEachLine(net, action);
+    }
+
+    /**
+     * Perform an action for every unrouted connection of one net.
+     *
+     * @param net The net.
+     * @param action The action to perform on each line.
+     */
+    public void forEachLine(int net, LineConsumer action) {
+        long[] netLines = lines.get(net);
+        if (netLines == null)
+            return;
+        for (int i = 0; i < netLines.length; i += 4)
+            action.accept(net, netLines[i], netLines[i + 1], netLines[i + 2], netLines[i + 3]);
+    }
+
+    @Override
+    protected void rebuildAll() {
+        members.clear();
+        Arrays.fill(netOf, 0);
+        Set<Integer> nets = new HashSet<>(lines.keySet());
+        for (int s = 0; s < store.size(); s++) {
+            int handle = store.handleAt(s);
+            join(handle, store.net(handle));
+        }
+        nets.addAll(members.keySet());
+        respan(nets);
+    }
+
+    @Override
+    protected void forget(BitSet touched) {
+        for (int handle = touched.nextSetBit(0); handle >= 0; handle = touched.nextSetBit(handle + 1)) {
+            // The primitives it touched before the edit may have been joined through it.
+            if (isIndexed(handle))
+                near(handle, 0, other -> markNet(netOf(other)));
+            int net = netOf(handle);
+            markNet(net);
+            if (net != 0) {
+                Set<Integer> handles = members.get(net);
+                handles.remove(handle);
+                if (handles.isEmpty())
+                    members.remove(net);
+                netOf[handle] = 0;
+            }
+        }
+    }
+
+    @Override
+    protected void refresh(BitSet touched) {
+        // The copper connectivity, updated before the ratsnest, already has the islands as the edit left them.
+        for (int handle = touched.nextSetBit(0); handle >= 0; handle = touched.nextSetBit(handle + 1)) {
+            int net = store.net(handle);
+            join(handle, net);
+            markNet(net);
+            near(handle, 0, other -> markNet(netOf(other)));
+        }
+        Set<Integer> nets = new HashSet<>(dirtyNets);
+        dirtyNets.clear();
+        respan(nets);
+    }
+
+    /** Note that a primitive is on a net. */
+    private void join(int handle, int net) {
+        if (net == 0)
+            return;
+        if (handle >= netOf.length)
+            netOf = Arrays.copyOf(netOf, Math.max(handle + 1, 2 * netOf.length));
+        netOf[handle] = net;
+        members.computeIfAbsent(net, n -> new HashSet<>()).add(handle);
+    }
+
+    private int netOf(int handle) {
+        return (handle < netOf.length) ? netOf[handle] : 0;
+    }
+
+    private void markNet(int net) {
+        if (net != 0)
+            dirtyNets.add(net);
+    }
+
+    /** Span some nets again, in parallel when there is enough work. */
+    private void respan(Set<Integer> nets) {
+        List<Span> spans = new ArrayList<>();
+        int total = 0;
+        for (int net : nets) {
+            Span span = gather(net);
+            if (span != null) {
+                spans.add(span);
+                total += span.count;
+            }
+        }
+        if (total <= BATCH) {
+            for (Span span : spans)
+                span.run();
+        } else {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < spans.size(); ) {
+                int from = i;
+                for (int anchors = 0; i < spans.size() && anchors < BATCH; i++)
+                    anchors += spans.get(i).count;
+                List<Span> batch = spans.subList(from, i);
+                tasks.add(() -> {
+                    for (Span span : batch)
+                        span.run();
+                    return null;
+                });
+            }
+            for (Future<Void> task : pool.invokeAll(tasks)) {
+                try {
+                    task.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException("Unable to compute the ratsnest", e);
+                }
+            }
+        }
+
+        for (int net : nets) {
+            long[] old = lines.remove(net);
+            if (old != null)
+                lineCount -= old.length / 4;
+        }
+        for (Span span : spans) {
+            if (span.lines.length > 0) {
+                lines.put(span.net, span.lines);
+                lineCount += span.lines.length / 4;
+            }
+        }
+        changedNets = nets;
+    }
+
+    /** Collect the anchors of a net, or return null if it has nothing to join. */
+    private Span gather(int net) {
+        Set<Integer> handles = members.get(net);
+        if (handles == null || handles.size() < 2)
+            return null;
+        Connectivity islands = copper.getConnectivity();
+        Map<Integer, Integer> islandIds = new HashMap<>();
+        Span span = new Span(net, 2 * handles.size());
+        for (int handle : handles) {
+            int root = islands.contains(handle) ? islands.netOf(handle) : -1 - handle;
+            int island = islandIds.computeIfAbsent(root, r -> islandIds.size());
+            int s = store.slot(handle);
+            switch (store.kindAt(s)) {
+                case SEGMENT -> {
+                    span.add(store.x0[s], store.y0[s], island);
+                    span.add(store.x1[s], store.y1[s], island);
+                }
+                case ARC -> {
+                    Point end = new Arc(new Point(store.x0[s], store.y0[s]), new Point(store.x1[s], store.y1[s]),
+                            store.aux[s]).end();
+                    span.add(store.x1[s], store.y1[s], island);
+                    span.add(end.x(), end.y(), island);
+                }
+                case RECT_PAD -> span.add((store.x0[s] + store.x1[s]) / 2, (store.y0[s] + store.y1[s]) / 2, island);
+                default -> span.add(store.x0[s], store.y0[s], island);
+            }
+        }
+        span.islands = islandIds.size();
+        return (span.islands < 2) ? null : span;
+    }
+
+    /**
+     * The anchors of one net and, once run, the lines joining its islands. Runs without touching the board, so
+     * spans of different nets may run in parallel.
+     */
+    static final class Span implements Runnable {
+        final int net;
+        int count = 0;
+        long[] xs, ys;
+
+        /** The island of each anchor, numbered from 0. */
+        int[] island;
+
+        /** The number of islands. */
+        int islands;
+
+        /** The lines found, four coordinates each. */
+        long[] lines = new long[0];
+
+        /** The number of lines found so far. */
+        private int found = 0;
+
+        Span(int net, int capacity) {
+            this.net = net;
+            xs = new long[capacity];
+            ys = new long[capacity];
+            island = new int[capacity];
+        }
+
+        void add(long x, long y, int anchorIsland) {
+            if (count == xs.length) {
+                xs = Arrays.copyOf(xs, 2 * count);
+                ys = Arrays.copyOf(ys, 2 * count);
+                island = Arrays.copyOf(island, 2 * count);
+            }
+            xs[count] = x;
+            ys[count] = y;
+            island[count++] = anchorIsland;
+        }
+
+        @Override
+        public void run() {
+            lines = new long[4 * (islands - 1)];
+            found = 0;
+            if (count <= DENSE_LIMIT)
+                spanDense();
+            else
+                spanSparse();
+        }
+
+        /**
+         * Prim's algorithm over every pair of anchors. Reaching an anchor reaches its whole island, so the tree
+         * grows an island at a time and only the step onto each new island is a line.
+         */
+        private void spanDense() {
+            int[] start = new int[islands + 1], order = new int[count];
+            groupByIsland(start, order);
+            double[] cost = new double[count];
+            Arrays.fill(cost, Double.POSITIVE_INFINITY);
+            int[] from = new int[count];
+            boolean[] reached = new boolean[count];
+            int next = 0;
+            from[0] = -1;
+            while (next >= 0) {
+                if (from[next] >= 0)
+                    line(from[next], next);
+                int isl = island[next];
+                for (int k = start[isl]; k < start[isl + 1]; k++)
+                    reached[order[k]] = true;
+                for (int k = start[isl]; k < start[isl + 1]; k++) {
+                    int a = order[k];
+                    for (int b = 0; b < count; b++) {
+                        if (!reached[b]) {
+                            double d = distance2(a, b);
+                            if (d < cost[b]) {
+                                cost[b] = d;
+                                from[b] = a;
+                            }
+                        }
+                    }
+                }
+                next = -1;
+                double best = Double.POSITIVE_INFINITY;
+                for (int b = 0; b < count; b++) {
+                    if (!reached[b] && cost[b] < best) {
+                        best = cost[b];
+                        next = b;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Kruskal's algorithm over the edges from each anchor to its nearest neighbour in each sector. The
+         * neighbours are found by searching rings of grid cells outward until no unsearched anchor could be
+         * nearer in any sector still open.
+         */
+        private void spanSparse() {
+            long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                minX = Math.min(minX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxX = Math.max(maxX, xs[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+            // About one anchor per cell, and never many more cells than anchors however thin the net.
+            double w = maxX - minX, h = maxY - minY;
+            double cell = Math.max(1.0, Math.max(Math.sqrt(w * h / count), Math.max(w, h) / count));
+            int columns = (int) (w / cell) + 1, rows = (int) (h / cell) + 1;
+            int[] cellOf = new int[count], start = new int[columns * rows + 1], order = new int[count];
+            for (int i = 0; i < count; i++) {
+                int cx = Math.min(columns - 1, (int) ((xs[i] - minX) / cell));
+                int cy = Math.min(rows - 1, (int) ((ys[i] - minY) / cell));
+                cellOf[i] = cy * columns + cx;
+                start[cellOf[i] + 1]++;
+            }
+            for (int c = 0; c < columns * rows; c++)
+                start[c + 1] += start[c];
+            int[] fill = Arrays.copyOf(start, columns * rows);
+            for (int i = 0; i < count; i++)
+                order[fill[cellOf[i]]++] = i;
+
+            int[] ends = new int[2 * SECTORS * count];
+            long[] key = new long[SECTORS * count];
+            int edges = 0;
+            double[] best = new double[SECTORS];
+            int[] nearest = new int[SECTORS];
+            for (int i = 0; i < count; i++) {
+                Arrays.fill(best, Double.POSITIVE_INFINITY);
+                Arrays.fill(nearest, -1);
+                int cx = cellOf[i] % columns, cy = cellOf[i] / columns;
+                long x0 = xs[i], y0 = ys[i];
+                for (int r = 0; ; r++) {
+                    for (int y = Math.max(0, cy - r); y <= Math.min(rows - 1, cy + r); y++) {
+                        boolean edge = (y == cy - r || y == cy + r);
+                        for (int x = cx - r; x <= cx + r; x += (edge || r == 0) ? 1 : 2 * r) {
+                            if (x < 0 || x >= columns)
+                                continue;
+                            int c = y * columns + x;
+                            for (int k = start[c]; k < start[c + 1]; k++) {
+                                int j = order[k];
+                                if (j == i)
+                                    continue;
+                                long dx = xs[j] - x0, dy = ys[j] - y0;
+                                int sector = sector(dx, dy);
+                                double d = (double) dx * dx + (double) dy * dy;
+                                if (d < best[sector]) {
+                                    best[sector] = d;
+                                    nearest[sector] = j;
+                                }
+                            }
+                        }
+                    }
+                    // Every unsearched anchor is more than r cells away along its sector's major axis.
+                    double reach = r * cell;
+                    boolean open = false;
+                    for (int sector = 0; sector < SECTORS && !open; sector++) {
+                        if (nearest[sector] >= 0)
+                            open = best[sector] > reach * reach;
+                        else
+                            open = beyond(sector, i, minX, minY, maxX, maxY) > reach;
+                    }
+                    if (!open)
+                        break;
+                }
+                for (int sector = 0; sector < SECTORS; sector++) {
+                    int j = nearest[sector];
+                    if (j >= 0 && island[j] != island[i]) {
+                        ends[2 * edges] = i;
+                        ends[2 * edges + 1] = j;
+                        key[edges++] = Double.doubleToLongBits(best[sector]);
+                    }
+                }
+            }
+
+            // Non-negative doubles order the same as their bits.
+            int[] sorted = new int[edges];
+            for (int e = 0; e < edges; e++)
+                sorted[e] = e;
+            if (edges > 0)
+                IndexSort.sort(sorted, key, 0, edges - 1);
+            int[] parent = new int[islands];
+            for (int k = 0; k < islands; k++)
+                parent[k] = k;
+            for (int k = 0; k < edges && found < lines.length; k++) {
+                int a = ends[2 * sorted[k]], b = ends[2 * sorted[k] + 1];
+                int ra = find(parent, island[a]), rb = find(parent, island[b]);
+                if (ra != rb) {
+                    parent[ra] = rb;
+                    line(a, b);
+                }
+            }
+            if (found < lines.length)
+                lines = Arrays.copyOf(lines, 4 * found);
+        }
+
+        /** How far the anchors extend beyond an anchor along the major axis of one of its sectors. */
+        private long beyond(int sector, int i, long minX, long minY, long maxX, long maxY) {
+            return switch (sector) {
+                case 0, 7 -> maxX - xs[i];
+                case 1, 2 -> maxY - ys[i];
+                case 3, 4 -> xs[i] - minX;
+                default -> ys[i] - minY;
+            };
+        }
+
+        /**
+         * Returns which 45 degree sector around an anchor an offset lies in, counterclockwise from the positive
+         * x axis. Each sector lies within 45 degrees of one axis, its major axis.
+         */
+        private static int sector(long dx, long dy) {
+            long ax = Math.abs(dx), ay = Math.abs(dy);
+            if (ax >= ay)
+                return (dx >= 0) ? ((dy >= 0) ? 0 : 7) : ((dy >= 0) ? 3 : 4);
+            return (dy > 0) ? ((dx >= 0) ? 1 : 2) : ((dx < 0) ? 5 : 6);
+        }
+
+        /** Order the anchors by island, island k's being order[start[k]] to order[start[k + 1] - 1]. */
+        private void groupByIsland(int[] start, int[] order) {
+            for (int i = 0; i < count; i++)
+                start[island[i] + 1]++;
+            for (int k = 0; k < islands; k++)
+                start[k + 1] += start[k];
+            int[] fill = Arrays.copyOf(start, islands);
+            for (int i = 0; i < count; i++)
+                order[fill[island[i]]++] = i;
+        }
+
+        private double distance2(int a, int b) {
+            double dx = xs[b] - xs[a], dy = ys[b] - ys[a];
+            return dx * dx + dy * dy;
+        }
+
+        private void line(int a, int b) {
+            lines[4 * found] = xs[a];
+            lines[4 * found + 1] = ys[a];
+            lines[4 * found + 2] = xs[b];
+            lines[4 * found + 3] = ys[b];
+            found++;
+        }
+
+        private static int find(int[] parent, int k) {
+            while (parent[k] != k) {
+                parent[k] = parent[parent[k]];
+                k = parent[k];
+            }
+            return k;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import com.cyte.edamame.geometry.Box;
+
+/**
+ * A breach of the {@link DesignRules} found by the {@link DesignRuleChecker}. Violations are equal when they
+ * break the same rule with the same primitives, so a violation found twice is only reported once.
+ *
+ * @param rule The rule broken.
+ * @param first The handle of the offending primitive. For clearance violations, the lower of the two handles.
+ * @param second The handle of the other primitive of a clearance violation, or -1.
+ * @param location The region to highlight: the offending primitive, or both primitives of a clearance violation.
+ */
+public record Violation(Rule rule, int first, int second, Box location) implements Comparable<Violation> {
+    /** The rules that can be broken. */
+    public enum Rule {
+        /** Copper of different nets closer than the clearance. */
+        CLEARANCE,
+        /** A track narrower than the minimum track width. */
+        TRACK_WIDTH,
+        /** A drilled pad or via whose ring of copper is thinner than the minimum annular ring. */
+        ANNULAR_RING
+    }
+
+    /**
+     * Returns whether the violation involves a primitive.
+     * @param handle The primitive's handle.
+     * @return true if the primitive is one of the offenders.
+     */
+    public boolean involves(int handle) {
+        return first == handle || second == handle;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Violation violation && rule == violation.rule && first == violation.first
+                && second == violation.second;
+    }
+
+    @Override
+    public int hashCode() {
+        return (rule.hashCode() * 31 + first) * 31 + second;
+    }
+
+    /** Orders violations by rule and then by the primitives involved, as they are reported. */
+    @Override
+    public int compareTo(Violation other) {
+        int result = rule.compareTo(other.rule);
+        if (result == 0)
+            result = Integer.compare(first, other.first);
+        return (result == 0) ? Integer.compare(second, other.second) : result;
+    }
+}
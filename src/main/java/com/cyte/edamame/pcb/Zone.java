@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import com.cyte.edamame.geometry.Polygon;
+import com.cyte.edamame.geometry.Region;
+
+import java.util.Arrays;
+
+/**
+ * A copper pour: an outline on one layer filled with copper of one net, such as a ground plane. The copper is
+ * kept clear of the board's other copper by the {@link ZoneFiller}, which fills the zone a tile at a time. Zones
+ * are compared by identity.
+ */
+public final class Zone {
+    /** The net the copper belongs to, or 0 for none. */
+    private final int net;
+
+    /** The layer the zone is poured on. */
+    private final int layer;
+
+    /** The outline the copper is poured within. */
+    private final Polygon outline;
+
+    /** The copper of each tile, as last filled. */
+    private Region[] tiles = new Region[0];
+
+    /** The copper of every tile, or null to join the tiles again when next asked for. */
+    private Region fill = Region.EMPTY;
+
+    /**
+     * Construct an unfilled zone.
+     *
+     * @param net The net the copper belongs to, or 0 for none.
+     * @param layer The layer the zone is poured on.
+     * @param outline The outline the copper is poured within.
+     */
+    public Zone(int net, int layer, Polygon outline) {
+        this.net = net;
+        this.layer = layer;
+        this.outline = outline;
+    }
+
+    public int getNet() { return net; }
+
+    public int getLayer() { return layer; }
+
+    public Polygon getOutline() { return outline; }
+
+    /**
+     * Returns the copper as last filled: the outline less everything within the clearance of other nets' copper.
+     * Copper crossing from one tile to the next is split where the tiles meet.
+     *
+     * @return the fill, empty until the zone is first filled.
+     */
+    public Region getFill() {
+        if (fill == null)
+            fill = Region.join(Arrays.asList(tiles));
+        return fill;
+    }
+
+    /** Empty the zone, ready to be filled in the given number of tiles. */
+    void clearTiles(int count) {
+        tiles = new Region[count];
+        Arrays.fill(tiles, Region.EMPTY);
+        fill = Region.EMPTY;
+    }
+
+    int getTileCount() { return tiles.length; }
+
+    void setTile(int tile, Region copper) {
+        tiles[tile] = copper;
+        fill = null;
+    }
+
+    @Override
+    public String toString() {
+        return "Zone[net " + net + ", layer " + layer + ", " + getFill() + "]";
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import com.cyte.edamame.geometry.Arc;
+import com.cyte.edamame.geometry.Box;
+import com.cyte.edamame.geometry.Point;
+import com.cyte.edamame.geometry.Polygon;
+import com.cyte.edamame.geometry.Region;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The copper pours of a board, kept filled as it is edited.<p>
+ *
+ * A zone is filled with its outline less a cutout around every piece of copper of another net on its layer, and
+ * every via of another net: the copper grown by the clearance of the {@link DesignRules}. Copper of the zone's
+ * own net is joined to it solidly. Cutouts are polygons around the exact grown copper, which stray up to
+ * {@link #MAX_ERROR} beyond it, so the fill is never closer than the clearance. The cutouts are taken from the
+ * outline in one {@link Region} operation, on integer coordinates, for each square tile of the zone's bounds.<p>
+ *
+ * When primitives are touched, only the tiles of the zones on their layers that come within the clearance of
+ * where the primitives were or now are are filled again. Moving a track across a ground plane therefore refills
+ * a tile or two of the plane, and nothing of the pours of other layers. Tiles are filled in parallel, of one zone
+ * or many. See {@link BoardWatcher} for how edits are followed.
+ */
+public class ZoneFiller extends BoardWatcher {
+    /** The side of the square tiles zones are filled in, in nanometres. */
+    static final long TILE_SIZE = 10_000_000;
+
+    /** The furthest the polygons around rounded copper may stray beyond it, in nanometres. */
+    static final long MAX_ERROR = 2_000;
+
+    /** The layer recorded for vias, which cut every zone. */
+    private static final int ALL_LAYERS = -1;
+
+    /** Fills tiles in parallel. */
+    private final ForkJoinPool pool;
+
+    /** The rules giving the clearance. */
+    private DesignRules rules;
+
+    /** The zones, in the order added. */
+    private final List<Zone> zones = new ArrayList<>();
+
+    /** The layer of each primitive when last updated, or ALL_LAYERS for vias. */
+    private int[] layerOf = new int[64];
+
+    /** The net of each primitive when last updated, or 0 for none. */
+    private int[] netOf = new int[64];
+
+    /** The tiles of each zone to fill again on the next refresh. */
+    private final Map<Zone, BitSet> dirtyTiles = new LinkedHashMap<>();
+
+    /** The zones filled or removed by the last change. */
+    private List<Zone> changedZones = Collections.emptyList();
+
+    /**
+     * Construct the zone filler of a board, filling on the common pool. Call {@link #rebuild} to fill the whole
+     * board first, and add it to the board's index.
+     *
+     * @param index The board's spatial index.
+     * @param rules The rules giving the clearance.
+     */
+    public ZoneFiller(BoardIndex index, DesignRules rules) {
+        this(index, rules, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construct the zone filler of a board, filling on the given pool.
+     *
+     * @param index The board's spatial index.
+     * @param rules The rules giving the clearance.
+     * @param pool The pool tiles are filled on.
+     */
+    public ZoneFiller(BoardIndex index, DesignRules rules, ForkJoinPool pool) {
+        super(index);
+        this.rules = rules;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the zones of the board.
+     * @return an unmodifiable list of zones, in the order added.
+     */
+    public List<Zone> getZones() { return Collections.unmodifiableList(zones); }
+
+    /**
+     * Returns the zones the last change filled or removed, so their display can be refreshed.
+     * @return an unmodifiable list of zones.
+     */
+    public List<Zone> getChangedZones() { return Collections.unmodifiableList(changedZones); }
+
+    /**
+     * Add a zone to the board and fill it.
+     * @param zone The zone.
+     */
+    public void addZone(Zone zone) {
+        zones.add(zone);
+        fillAll(List.of(zone));
+        fireChanged();
+    }
+
+    /**
+     * Remove a zone from the board.
+     * @param zone The zone.
+     */
+    public void removeZone(Zone zone) {
+        if (!zones.remove(zone))
+            return;
+        dirtyTiles.remove(zone);
+        changedZones = List.of(zone);
+        fireChanged();
+    }
+
+    /**
+     * Change the rules giving the clearance, and fill every zone again.
+     * @param rules The rules.
+     */
+    public void setRules(DesignRules rules) {
+        this.rules = rules;
+        fillAll(zones);
+        fireChanged();
+    }
+
+    @Override
+    protected void rebuildAll() {
+        for (int s = 0, size = store.size(); s < size; s++)
+            remember(store.handleAt(s));
+        fillAll(zones);
+    }
+
+    @Override
+    protected void forget(BitSet touched) {
+        long[] box = new long[4];
+        for (int handle = touched.nextSetBit(0); handle >= 0; handle = touched.nextSetBit(handle + 1)) {
+            if (isIndexed(handle)) {
+                indexedBounds(handle, box);
+                markTiles(box, layerOf[handle], netOf[handle]);
+            }
+        }
+    }
+
+    @Override
+    protected void refresh(BitSet touched) {
+        long[] box = new long[4];
+        for (int handle = touched.nextSetBit(0); handle >= 0; handle = touched.nextSetBit(handle + 1)) {
+            remember(handle);
+            store.bounds(handle, box);
+            markTiles(box, layerOf[handle], netOf[handle]);
+        }
+        Map<Zone, BitSet> work = new LinkedHashMap<>(dirtyTiles);
+        dirtyTiles.clear();
+        fill(work);
+    }
+
+    /** Note the layer and net of a primitive, which decide the zones it cuts. */
+    private void remember(int handle) {
+        if (handle >= layerOf.length) {
+            layerOf = Arrays.copyOf(layerOf, Math.max(handle + 1, 2 * layerOf.length));
+            netOf = Arrays.copyOf(netOf, layerOf.length);
+        }
+        int slot = store.slot(handle);
+        layerOf[handle] = (store.kindAt(slot) == PrimitiveStore.Kind.VIA) ? ALL_LAYERS : store.layer[slot];
+        netOf[handle] = store.net[slot];
+    }
+
+    /** Mark the tiles copper with the given bounds, layer and net could cut. */
+    private void markTiles(long[] box, int layer, int net) {
+        long clearance = rules.getClearance();
+        for (Zone zone : zones) {
+            if ((layer != zone.getLayer() && layer != ALL_LAYERS) || (net != 0 && net == zone.getNet()))
+                continue;
+            Box bounds = zone.getOutline().bounds();
+            if (zone.getTileCount() == 0 || box[2] + clearance < bounds.minX() || box[0] - clearance > bounds.maxX()
+                    || box[3] + clearance < bounds.minY() || box[1] - clearance > bounds.maxY())
+                continue;
+            int columns = columns(bounds), rows = zone.getTileCount() / columns;
+            int firstColumn = tileIndex(box[0] - clearance - bounds.minX(), columns);
+            int lastColumn = tileIndex(box[2] + clearance - bounds.minX(), columns);
+            int firstRow = tileIndex(box[1] - clearance - bounds.minY(), rows);
+            int lastRow = tileIndex(box[3] + clearance - bounds.minY(), rows);
+            BitSet tiles = dirtyTiles.computeIfAbsent(zone, z -> new BitSet());
+            for (int row = firstRow; row <= lastRow; row++)
+                tiles.set(row * columns + firstColumn, row * columns + lastColumn + 1);
+        }
+    }
+
+    /** Returns the number of columns of tiles covering a zone's bounds. */
+    private static int columns(Box bounds) {
+        return (int) Math.max(1, (bounds.width() + TILE_SIZE - 1) / TILE_SIZE);
+    }
+
+    /** Returns the column or row of tiles an offset from the zone's bounds falls in. */
+    private static int tileIndex(long offset, int count) {
+        return (int) Math.max(0, Math.min(count - 1, Math.floorDiv(offset, TILE_SIZE)));
+    }
+
+    /** Empty zones and fill every tile of them again. */
+    private void fillAll(Collection<Zone> targets) {
+        Map<Zone, BitSet> work = new LinkedHashMap<>();
+        for (Zone zone : targets) {
+            Box bounds = zone.getOutline().bounds();
+            int count = bounds.isEmpty() ? 0 : columns(bounds)
+                    * (int) Math.max(1, (bounds.height() + TILE_SIZE - 1) / TILE_SIZE);
+            zone.clearTiles(count);
+            BitSet tiles = new BitSet(count);
+            tiles.set(0, count);
+            work.put(zone, tiles);
+            dirtyTiles.remove(zone);
+        }
+        fill(work);
+    }
+
+    /**
+     * Fill tiles of zones again. The cutouts are gathered here, the tiles filled on the pool and the fills set
+     * here, so the zones are only ever changed on the calling thread.
+     */
+    private void fill(Map<Zone, BitSet> work) {
+        List<Zone> owners = new ArrayList<>();
+        List<Integer> tiles = new ArrayList<>();
+        List<Callable<Region>> tasks = new ArrayList<>();
+        for (Map.Entry<Zone, BitSet> entry : work.entrySet()) {
+            Zone zone = entry.getKey();
+            Box bounds = zone.getOutline().bounds();
+            int columns = columns(bounds);
+            List<Polygon> outline = List.of(zone.getOutline());
+            for (int tile = entry.getValue().nextSetBit(0); tile >= 0; tile = entry.getValue().nextSetBit(tile + 1)) {
+                long minX = bounds.minX() + (tile % columns) * TILE_SIZE;
+                long minY = bounds.minY() + (tile / columns) * TILE_SIZE;
+                Box box = new Box(minX, minY, Math.min(bounds.maxX(), minX + TILE_SIZE),
+                        Math.min(bounds.maxY(), minY + TILE_SIZE));
+                List<Polygon> square = List.of(Polygon.of(box)), cutouts = cutouts(zone, box);
+                tasks.add(() -> Region.combine(Region.Operation.DIFFERENCE,
+                        Region.combine(Region.Operation.INTERSECTION, outline, square, pool).getPolygons(), cutouts,
+                        pool));
+                owners.add(zone);
+                tiles.add(tile);
+            }
+        }
+        try {
+            if (tasks.size() == 1) {
+                // A lone tile is split across the pool by the overlay itself.
+                owners.get(0).setTile(tiles.get(0), tasks.get(0).call());
+            } else if (!tasks.isEmpty()) {
+                List<Future<Region>> fills = pool.invokeAll(tasks);
+                for (int i = 0; i < tasks.size(); i++)
+                    owners.get(i).setTile(tiles.get(i), fills.get(i).get());
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to fill the zones", e);
+        }
+        changedZones = new ArrayList<>(work.keySet());
+    }
+
+    /** Returns the polygons around the copper a tile of a zone must keep clear of. */
+    private List<Polygon> cutouts(Zone zone, Box tile) {
+        long clearance = rules.getClearance();
+        List<Polygon> cutouts = new ArrayList<>();
+        within(tile.minX() - clearance, tile.minY() - clearance, tile.maxX() + clearance, tile.maxY() + clearance,
+                handle -> addCutout(zone, store.slot(handle), clearance, cutouts));
+        return cutouts;
+    }
+
+    /** Add the polygons around the copper in a slot, grown by the clearance, if a zone must keep clear of it. */
+    private void addCutout(Zone zone, int s, long clearance, List<Polygon> cutouts) {
+        PrimitiveStore.Kind kind = store.kindAt(s);
+        if ((store.layer[s] != zone.getLayer() && kind != PrimitiveStore.Kind.VIA)
+                || (store.net[s] != 0 && store.net[s] == zone.getNet()))
+            return;
+        long x0 = store.x0[s], y0 = store.y0[s], x1 = store.x1[s], y1 = store.y1[s];
+        long radius = (store.width[s] + 1) / 2 + clearance;
+        switch (kind) {
+            case SEGMENT -> cutouts.add(Polygon.stadium(x0, y0, x1, y1, radius, MAX_ERROR));
+            case ARC -> {
+                // Chords lie up to the tolerance inside the arc, so their cutouts are widened by as much.
+                List<Point> chords = new Arc(new Point(x0, y0), new Point(x1, y1), store.aux[s])
+                        .toPolyline(DesignRuleChecker.ARC_TOLERANCE);
+                for (int c = 1; c < chords.size(); c++)
+                    cutouts.add(Polygon.stadium(chords.get(c - 1).x(), chords.get(c - 1).y(), chords.get(c).x(),
+                            chords.get(c).y(), radius + DesignRuleChecker.ARC_TOLERANCE, MAX_ERROR));
+            }
+            case ROUND_PAD, VIA -> cutouts.add(Polygon.circle(x0, y0, radius, MAX_ERROR));
+            case RECT_PAD -> cutouts.add(Polygon.roundedRectangle(new Box(Math.min(x0, x1), Math.min(y0, y1),
+                    Math.max(x0, x1), Math.max(y0, y1)), clearance, MAX_ERROR));
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.render;
+
+import com.cyte.edamame.diagnostics.FrameEvent;
+import com.cyte.edamame.diagnostics.Metrics;
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineCap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A retained-mode renderer painting layers of primitives onto a single {@link Canvas}.<p>
+ *
+ * A scene graph node per trace, pad and via cannot cope with the object counts of real boards, so editors
+ * instead keep their primitives in each layer's {@link DisplayList}. Changing a primitive only marks the
+ * rectangle it covers as dirty. Once per pulse the renderer repaints the dirty rectangles, clipped, drawing
+ * only the primitives the spatial index finds within them. Panning, zooming, resizing and layer changes repaint
+ * the whole canvas, which still draws only the visible primitives. Nothing is painted on pulses when nothing
+ * changed. When zoomed out, {@link DetailSettings} rules skip or simplify detail too small to see. The time
+ * taken by every frame, and how much was skipped, is recorded in the renderer's {@link FrameStats}.<p>
+ *
+ * Scrolling zooms about the cursor and dragging with the middle or secondary button pans. Accessed on the JavaFX
+ * application thread only.
+ */
+public class CanvasRenderer implements DisplayList.Invalidator {
+    /** The number of separate dirty rectangles tracked before they are merged into one. */
+    private static final int MAX_DIRTY = 8;
+
+    /** The fraction of the canvas beyond which a dirty region is repainted whole rather than clipped. */
+    private static final double FULL_REPAINT_COVERAGE = 0.5;
+
+    /** The zoom factor of one scroll step. */
+    private static final double ZOOM_STEP = 1.2;
+
+    /** Times the frames of every renderer, counting the primitives drawn. */
+    private static final Metrics.Timer FRAME_TIMER = Metrics.timer("render.frame", "drawn");
+
+    /** The canvas painted on. */
+    private final Canvas canvas = new Canvas();
+
+    /** The resizable pane hosting the canvas, which the canvas always fills. */
+    private final Pane pane = new Pane(canvas);
+
+    /** The mapping between design and canvas coordinates. */
+    private final Viewport viewport = new Viewport();
+
+    /** The layers, painted in order. */
+    private final List<RenderLayer> layers = new ArrayList<>();
+
+    /** Timing of painted frames. */
+    private final FrameStats stats = new FrameStats();
+
+    /** The dirty rectangles in canvas pixels, four coordinates (left, top, right, bottom) per rectangle. */
+    private final double[] dirty = new double[MAX_DIRTY * 4];
+
+    /** The number of dirty rectangles. */
+    private int dirtyCount = 0;
+
+    /** Whether the entire canvas must be repainted. */
+    private boolean allDirty = true;
+
+    /** The level-of-detail rules. */
+    private DetailSettings detail = new DetailSettings();
+
+    /** The colour behind all layers. */
+    private Color background = Color.BLACK;
+
+    /** Where the last drag event happened, for panning. */
+    private double dragX, dragY;
+
+    /** Paints dirty regions once per pulse. */
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            paint();
+        }
+    };
+
+    /**
+     * Construct a renderer with no layers. It paints nothing until {@link #start() started}.
+     */
+    public CanvasRenderer() {
+        canvas.setManaged(false); // so the pane can shrink below the canvas's current size.
+        canvas.widthProperty().bind(pane.widthProperty());
+        canvas.heightProperty().bind(pane.heightProperty());
+        canvas.widthProperty().addListener((observable, oldValue, newValue) -> invalidateAll());
+        canvas.heightProperty().addListener((observable, oldValue, newValue) -> invalidateAll());
+
+        pane.setOnScroll(event -> zoom(event.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP, event.getX(), event.getY()));
+        pane.setOnMousePressed(event -> {
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+        pane.setOnMouseDragged(event -> {
+            if (event.isMiddleButtonDown() || event.isSecondaryButtonDown())
+                pan(event.getX() - dragX, event.getY() - dragY);
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+    }
+
+    /**
+     * Returns the node to place in the scene graph to show the renderer.
+     * @return the renderer's node.
+     */
+    public Node getNode() { return pane; }
+
+    /**
+     * Returns the mapping between design and canvas coordinates.
+     * @return the viewport.
+     */
+    public Viewport getViewport() { return viewport; }
+
+    /**
+     * Returns the timing of painted frames.
+     * @return the frame statistics.
+     */
+    public FrameStats getStats() { return stats; }
+
+    /**
+     * Add a layer, painted above every existing layer.
+     *
+     * @param name The layer's name.
+     * @param color The colour of the layer's primitives.
+     * @return the new layer.
+     */
+    public RenderLayer addLayer(String name, Color color) {
+        return addLayer(layers.size(), name, color);
+    }
+
+    /**
+     * Add a layer, painted below the layer at a position and those after it.
+     *
+     * @param index The position of the new layer in the order layers are painted.
+     * @param name The layer's name.
+     * @param color The colour of the layer's primitives.
+     * @return the new layer.
+     */
+    public RenderLayer addLayer(int index, String name, Color color) {
+        RenderLayer layer = new RenderLayer(this, name, color);
+        layers.add(index, layer);
+        invalidateAll();
+        return layer;
+    }
+
+    /**
+     * Returns the layers in the order they are painted.
+     * @return an unmodifiable list of layers.
+     */
+    public List<RenderLayer> getLayers() { return Collections.unmodifiableList(layers); }
+
+    /**
+     * Returns the level-of-detail rules. Changes to them take effect once {@link #setDetail} is called.
+     * @return the level-of-detail settings.
+     */
+    public DetailSettings getDetail() { return detail; }
+
+    /**
+     * Change the level-of-detail rules and repaint with them.
+     * @param detail The level-of-detail settings.
+     */
+    public void setDetail(DetailSettings detail) {
+        this.detail = detail;
+        invalidateAll();
+    }
+
+    /**
+     * Change the colour behind all layers.
+     * @param background The background colour.
+     */
+    public void setBackground(Color background) {
+        this.background = background;
+        invalidateAll();
+    }
+
+    /**
+     * Move the view so the design appears to move by a number of pixels.
+     *
+     * @param dx Pixels to move the design right.
+     * @param dy Pixels to move the design down.
+     */
+    public void pan(double dx, double dy) {
+        viewport.pan(dx, dy);
+        invalidateAll();
+    }
+
+    /**
+     * Zoom about a canvas position, keeping the design under it still.
+     *
+     * @param factor The factor to multiply the scale by. Greater than one zooms in.
+     * @param x The canvas x coordinate to zoom about.
+     * @param y The canvas y coordinate to zoom about.
+     */
+    public void zoom(double factor, double x, double y) {
+        if (viewport.zoom(factor, x, y))
+            invalidateAll();
+    }
+
+    /**
+     * Show a world region, as large as possible, in the middle of the canvas.
+     *
+     * @param minX The region's left edge.
+     * @param minY The region's top edge.
+     * @param maxX The region's right edge.
+     * @param maxY The region's bottom edge.
+     */
+    public void fit(long minX, long minY, long maxX, long maxY) {
+        viewport.fit(minX, minY, maxX, maxY, canvas.getWidth(), canvas.getHeight());
+        invalidateAll();
+    }
+
+    /**
+     * Mark a world region for repainting on the next pulse.
+     *
+     * @param minX The region's left edge.
+     * @param minY The region's top edge.
+     * @param maxX The region's right edge.
+     * @param maxY The region's bottom edge.
+     */
+    @Override
+    public void invalidate(long minX, long minY, long maxX, long maxY) {
+        if (allDirty)
+            return;
+        // Whole pixels, plus one for antialiasing, so clipped repaints leave no seams.
+        double left = Math.max(0, Math.floor(viewport.toScreenX(minX)) - 1);
+        double top = Math.max(0, Math.floor(viewport.toScreenY(minY)) - 1);
+        double right = Math.min(canvas.getWidth(), Math.ceil(viewport.toScreenX(maxX)) + 1);
+        double bottom = Math.min(canvas.getHeight(), Math.ceil(viewport.toScreenY(maxY)) + 1);
+        if (left >= right || top >= bottom)
+            return; // off screen.
+
+        for (int i = 0; i < dirtyCount * 4; i += 4) {
+            if (left <= dirty[i + 2] && right >= dirty[i] && top <= dirty[i + 3] && bottom >= dirty[i + 1]) {
+                union(i, left, top, right, bottom);
+                return;
+            }
+        }
+        if (dirtyCount == MAX_DIRTY) {
+            for (int i = 4; i < dirtyCount * 4; i += 4)
+                union(0, dirty[i], dirty[i + 1], dirty[i + 2], dirty[i + 3]);
+            dirtyCount = 1;
+            union(0, left, top, right, bottom);
+            return;
+        }
+        int i = 4 * dirtyCount++;
+        dirty[i] = left;
+        dirty[i + 1] = top;
+        dirty[i + 2] = right;
+        dirty[i + 3] = bottom;
+    }
+
+    /**
+     * Mark the entire canvas for repainting on the next pulse.
+     */
+    @Override
+    public void invalidateAll() {
+        allDirty = true;
+        dirtyCount = 0;
+    }
+
+    /**
+     * Start painting dirty regions once per pulse. Called on the JavaFX application thread when the renderer's
+     * editor is opened.
+     */
+    public void start() {
+        timer.start();
+    }
+
+    /**
+     * Stop painting. Called when the renderer's editor closes.
+     */
+    public void dispose() {
+        timer.stop();
+    }
+
+    /** Grow a dirty rectangle to include another rectangle. */
+    private void union(int i, double left, double top, double right, double bottom) {
+        dirty[i] = Math.min(dirty[i], left);
+        dirty[i + 1] = Math.min(dirty[i + 1], top);
+        dirty[i + 2] = Math.max(dirty[i + 2], right);
+        dirty[i + 3] = Math.max(dirty[i + 3], bottom);
+    }
+
+    /** Repaint whatever is dirty, recording the frame. */
+    private void paint() {
+        if (!allDirty && dirtyCount == 0)
+            return;
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        if (width <= 0 || height <= 0)
+            return;
+
+        long start = System.nanoTime();
+        FrameEvent event = new FrameEvent();
+        event.begin();
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        double area = 0;
+        for (int i = 0; i < dirtyCount * 4 && !allDirty; i += 4)
+            area += (dirty[i + 2] - dirty[i]) * (dirty[i + 3] - dirty[i + 1]);
+
+        FrameCounts counts = new FrameCounts();
+        if (allDirty || area > FULL_REPAINT_COVERAGE * width * height) {
+            paint(gc, counts, 0, 0, width, height, false);
+            area = width * height;
+        } else {
+            for (int i = 0; i < dirtyCount * 4; i += 4)
+                paint(gc, counts, dirty[i], dirty[i + 1], dirty[i + 2] - dirty[i], dirty[i + 3] - dirty[i + 1], true);
+        }
+        allDirty = false;
+        dirtyCount = 0;
+        long nanos = System.nanoTime() - start;
+        double coverage = Math.min(1.0, area / (width * height));
+        stats.record(nanos, counts, coverage);
+        FRAME_TIMER.record(nanos, counts.getDrawn());
+        if (event.shouldCommit()) {
+            event.drawn = counts.getDrawn();
+            event.culled = counts.getCulled();
+            event.collapsed = counts.getCollapsed();
+            event.coverage = coverage;
+            event.commit();
+        }
+    }
+
+    /**
+     * Repaint one rectangle of the canvas, adding what became of the primitives visited to the frame's counts.
+     */
+    private void paint(GraphicsContext gc, FrameCounts counts, double x, double y, double width, double height,
+                       boolean clip) {
+        gc.save();
+        if (clip) {
+            gc.beginPath();
+            gc.rect(x, y, width, height);
+            gc.clip();
+        }
+        gc.setFill(background);
+        gc.fillRect(x, y, width, height);
+        gc.setLineCap(StrokeLineCap.ROUND);
+
+        long minX = viewport.toWorldX(x);
+        long minY = viewport.toWorldY(y);
+        long maxX = viewport.toWorldX(x + width);
+        long maxY = viewport.toWorldY(y + height);
+        for (RenderLayer layer : layers) {
+            if (!layer.isVisible())
+                continue;
+            gc.setStroke(layer.getColor());
+            gc.setFill(layer.getColor());
+            layer.getDisplayList().draw(gc, viewport, detail, counts, minX, minY, maxX, maxY);
+        }
+        gc.restore();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.render;
+
+/**
+ * Class to represent, specify, serialize, store, and deserialize the level-of-detail rules of a
+ * {@link CanvasRenderer}. When zoomed out, drawing detail too small to see is wasted work, so anything that
+ * would appear smaller than these thresholds (in pixels) is simplified or skipped. The settings follow JavaBean
+ * conventions so they can be stored as YAML alongside the other EDAmame settings.
+ */
+public class DetailSettings {
+    /** Whether the rules are applied at all. When false everything is drawn at full detail. */
+    private boolean enabled = true;
+
+    /** Primitives whose larger dimension is smaller than this many pixels are not drawn. */
+    private double minFeaturePixels = 0.5;
+
+    /** Groups, such as footprints, smaller than this many pixels are drawn as their bounding box alone. */
+    private double collapseGroupPixels = 12;
+
+    /** Text shorter than this many pixels is not drawn. */
+    private double minTextPixels = 5;
+
+    public boolean isEnabled() { return enabled; }
+
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public double getMinFeaturePixels() { return minFeaturePixels; }
+
+    public void setMinFeaturePixels(double minFeaturePixels) { this.minFeaturePixels = minFeaturePixels; }
+
+    public double getCollapseGroupPixels() { return collapseGroupPixels; }
+
+    public void setCollapseGroupPixels(double collapseGroupPixels) { this.collapseGroupPixels = collapseGroupPixels; }
+
+    public double getMinTextPixels() { return minTextPixels; }
+
+    public void setMinTextPixels(double minTextPixels) { this.minTextPixels = minTextPixels; }
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.render;
+
+import com.cyte.edamame.spatial.RTree;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.text.Font;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The drawing primitives of one {@link RenderLayer}, retained between frames.<p>
+ *
+ * Primitives are stored in parallel primitive arrays and indexed by an {@link RTree}, so a repaint draws only
+ * the primitives intersecting the region being repainted. Every change reports the region it affects to the
+ * renderer, which repaints just that region on the next pulse. Primitives are identified by integer handles
+ * that remain valid until the primitive is removed. Handles of removed primitives are reused.<p>
+ *
+ * Primitives may belong to a group, such as the pads and outline of one footprint, whose bounding box is given
+ * when the group is created. Level-of-detail rules ({@link DetailSettings}) decide while drawing whether a
+ * group is drawn as its members or, when it would appear too small to make out, as its bounding box alone.
+ * Accessed on the JavaFX application thread only.
+ */
+public class DisplayList {
+    /** The shapes a primitive can have. */
+    public enum Kind {
+        /** A line from (x0, y0) to (x1, y1) of the given width with round ends. */
+        SEGMENT,
+        /** A filled rectangle with opposite corners (x0, y0) and (x1, y1). */
+        RECTANGLE,
+        /** A filled circle centred on (x0, y0) whose diameter is the width. */
+        CIRCLE,
+        /** Text starting at (x0, y0) on its baseline and extending to (x1, y1). The width is its height. */
+        TEXT
+    }
+
+    /** The group of a primitive that belongs to none. */
+    public static final int NO_GROUP = -1;
+
+    private static final Kind[] KINDS = Kind.values();
+
+    /** Marks a free slot in the kinds array. */
+    private static final byte FREE = -1;
+
+    /** Receives the region affected by every change. */
+    private final Invalidator invalidator;
+
+    /** The primitives by their bounding boxes. */
+    private RTree<Integer> index = new RTree<>();
+
+    private byte[] kinds = new byte[64];
+    private long[] x0 = new long[64];
+    private long[] y0 = new long[64];
+    private long[] x1 = new long[64];
+    private long[] y1 = new long[64];
+    private long[] widths = new long[64];
+    private int[] groups = new int[64];
+
+    /** The text of TEXT primitives, null for other kinds. */
+    private String[] texts = new String[64];
+
+    /** The bounding boxes of groups, four coordinates per group. An empty box marks a removed group. */
+    private long[] groupBoxes = new long[0];
+
+    /** The number of groups ever created. */
+    private int groupCount = 0;
+
+    /** The draw call in which each group's bounding box was last drawn, so it is drawn only once per call. */
+    private int[] groupDrawn = new int[0];
+
+    /** Counts calls to draw. */
+    private int drawCount = 0;
+
+    /** The font last used for text, and its size in pixels. */
+    private Font font = null;
+    private double fontSize = 0;
+
+    /** The number of slots ever used. */
+    private int used = 0;
+
+    /** Handles of removed primitives, available for reuse. */
+    private int[] free = new int[16];
+
+    /** The number of handles available for reuse. */
+    private int freeCount = 0;
+
+    /** Primitives added since {@link #beginBatch()} and not yet indexed, or null outside a batch. */
+    private BitSet batch = null;
+
+    /**
+     * Construct an empty display list.
+     *
+     * @param invalidator Receives the region affected by every change.
+     */
+    DisplayList(Invalidator invalidator) {
+        this.invalidator = invalidator;
+    }
+
+    /**
+     * Add a primitive.
+     *
+     * @param kind The primitive's shape.
+     * @param x0 The first x coordinate.
+     * @param y0 The first y coordinate.
+     * @param x1 The second x coordinate. Ignored for circles.
+     * @param y1 The second y coordinate. Ignored for circles.
+     * @param width The line width or diameter. Ignored for rectangles.
+     * @return the primitive's handle.
+     */
+    public int add(Kind kind, long x0, long y0, long x1, long y1, long width) {
+        return add(NO_GROUP, kind, x0, y0, x1, y1, width);
+    }
+
+    /**
+     * Add a primitive to a group.
+     *
+     * @param group The group the primitive belongs to, or {@link #NO_GROUP}.
+     * @param kind The primitive's shape. Text is added with {@link #addText}.
+     * @param x0 The first x coordinate.
+     * @param y0 The first y coordinate.
+     * @param x1 The second x coordinate. Ignored for circles.
+     * @param y1 The second y coordinate. Ignored for circles.
+     * @param width The line width or diameter. Ignored for rectangles.
+     * @return the primitive's handle.
+     */
+    public int add(int group, Kind kind, long x0, long y0, long x1, long y1, long width) {
+        if (kind == Kind.TEXT)
+            throw new IllegalArgumentException("text is added with addText");
+        return add(group, kind, x0, y0, x1, y1, width, null);
+    }
+
+    /**
+     * Add text.
+     *
+     * @param group The group the text belongs to, or {@link #NO_GROUP}.
+     * @param text The text.
+     * @param x The x coordinate of the start of the text's baseline.
+     * @param y The y coordinate of the start of the text's baseline.
+     * @param endX The x coordinate of the corner of the text's box opposite the start.
+     * @param endY The y coordinate of the corner of the text's box opposite the start.
+     * @param height The height of the text.
+     * @return the text's handle.
+     */
+    public int addText(int group, String text, long x, long y, long endX, long endY, long height) {
+        return add(group, Kind.TEXT, x, y, endX, endY, height, text);
+    }
+
+    private int add(int group, Kind kind, long x0, long y0, long x1, long y1, long width, String text) {
+        checkGroup(group);
+        int handle;
+        if (freeCount > 0)
+            handle = free[--freeCount];
+        else {
+            if (used == kinds.length)
+                grow();
+            handle = used++;
+        }
+        groups[handle] = group;
+        write(handle, kind, x0, y0, x1, y1, width, text);
+        if (batch != null)
+            batch.set(handle);
+        else
+            insert(handle);
+        return handle;
+    }
+
+    /**
+     * Start adding many primitives at once, such as when a board is opened. Primitives added before
+     * {@link #endBatch()} are not indexed or painted until the batch ends.
+     */
+    public void beginBatch() {
+        if (batch == null)
+            batch = new BitSet();
+    }
+
+    /**
+     * Index and paint the primitives added since {@link #beginBatch()}. If the list held nothing else they are
+     * bulk loaded, which is several times faster than indexing them one at a time and gives a better index.
+     */
+    public void endBatch() {
+        if (batch == null)
+            return;
+        BitSet added = batch;
+        batch = null;
+        if (index.isEmpty()) {
+            List<Integer> handles = new ArrayList<>(added.cardinality());
+            long[][] boxes = new long[4][added.cardinality()];
+            for (int h = added.nextSetBit(0); h >= 0; h = added.nextSetBit(h + 1)) {
+                long[] box = box(h);
+                for (int k = 0; k < 4; k++)
+                    boxes[k][handles.size()] = box[k];
+                handles.add(h);
+            }
+            index = RTree.bulkLoad(handles, boxes[0], boxes[1], boxes[2], boxes[3]);
+            invalidator.invalidateAll();
+        } else {
+            for (int h = added.nextSetBit(0); h >= 0; h = added.nextSetBit(h + 1))
+                insert(h);
+        }
+    }
+
+    /**
+     * Change a primitive.
+     *
+     * @param handle The primitive's handle.
+     * @param kind The primitive's new shape.
+     * @param x0 The first x coordinate.
+     * @param y0 The first y coordinate.
+     * @param x1 The second x coordinate. Ignored for circles.
+     * @param y1 The second y coordinate. Ignored for circles.
+     * @param width The line width or diameter. Ignored for rectangles.
+     */
+    public void set(int handle, Kind kind, long x0, long y0, long x1, long y1, long width) {
+        if (kind == Kind.TEXT)
+            throw new IllegalArgumentException("text is changed with setText");
+        set(handle, kind, x0, y0, x1, y1, width, null);
+    }
+
+    /**
+     * Change a primitive into text.
+     *
+     * @param handle The primitive's handle.
+     * @param text The text.
+     * @param x The x coordinate of the start of the text's baseline.
+     * @param y The y coordinate of the start of the text's baseline.
+     * @param endX The x coordinate of the corner of the text's box opposite the start.
+     * @param endY The y coordinate of the corner of the text's box opposite the start.
+     * @param height The height of the text.
+     */
+    public void setText(int handle, String text, long x, long y, long endX, long endY, long height) {
+        set(handle, Kind.TEXT, x, y, endX, endY, height, text);
+    }
+
+    private void set(int handle, Kind kind, long x0, long y0, long x1, long y1, long width, String text) {
+        check(handle);
+        if (batch != null && batch.get(handle)) {
+            write(handle, kind, x0, y0, x1, y1, width, text);
+            return;
+        }
+        delete(handle);
+        write(handle, kind, x0, y0, x1, y1, width, text);
+        insert(handle);
+    }
+
+    /**
+     * Create a group of primitives, such as a footprint.
+     *
+     * @param minX The left edge of the group's bounding box.
+     * @param minY The top edge of the group's bounding box.
+     * @param maxX The right edge of the group's bounding box.
+     * @param maxY The bottom edge of the group's bounding box.
+     * @return the group's handle.
+     */
+    public int addGroup(long minX, long minY, long maxX, long maxY) {
+        if (4 * groupCount == groupBoxes.length) {
+            int capacity = Math.max(16, 2 * groupCount);
+            groupBoxes = Arrays.copyOf(groupBoxes, 4 * capacity);
+            groupDrawn = Arrays.copyOf(groupDrawn, capacity);
+        }
+        int group = groupCount++;
+        setGroupBox(group, minX, minY, maxX, maxY);
+        return group;
+    }
+
+    /**
+     * Change the bounding box of a group, as when a footprint is moved.
+     *
+     * @param group The group's handle.
+     * @param minX The left edge of the group's bounding box.
+     * @param minY The top edge of the group's bounding box.
+     * @param maxX The right edge of the group's bounding box.
+     * @param maxY The bottom edge of the group's bounding box.
+     */
+    public void setGroup(int group, long minX, long minY, long maxX, long maxY) {
+        checkGroup(group);
+        if (group == NO_GROUP)
+            throw new IllegalArgumentException("invalid group handle: " + group);
+        invalidateGroup(group);
+        setGroupBox(group, minX, minY, maxX, maxY);
+        invalidateGroup(group);
+    }
+
+    /**
+     * Remove a group once all its members have been removed. Its handle is not reused.
+     *
+     * @param group The group's handle.
+     */
+    public void removeGroup(int group) {
+        setGroup(group, 0, 0, -1, -1);
+    }
+
+    /**
+     * Remove a primitive. Its handle becomes invalid.
+     *
+     * @param handle The primitive's handle.
+     */
+    public void remove(int handle) {
+        check(handle);
+        if (batch != null && batch.get(handle))
+            batch.clear(handle);
+        else
+            delete(handle);
+        kinds[handle] = FREE;
+        texts[handle] = null;
+        if (freeCount == free.length)
+            free = Arrays.copyOf(free, free.length * 2);
+        free[freeCount++] = handle;
+    }
+
+    /**
+     * Remove every primitive.
+     */
+    public void clear() {
+        if (used == 0)
+            return;
+        index.clear();
+        if (batch != null)
+            batch.clear();
+        Arrays.fill(kinds, 0, used, FREE);
+        Arrays.fill(texts, 0, used, null);
+        used = 0;
+        groupCount = 0;
+        freeCount = 0;
+        invalidator.invalidateAll();
+    }
+
+    /**
+     * Returns the number of primitives.
+     * @return the number of primitives in the list.
+     */
+    public int size() { return used - freeCount; }
+
+    /**
+     * Draw every primitive intersecting a world region, simplified according to the level-of-detail rules. The
+     * caller has already set the layer's colours.
+     *
+     * @param gc The graphics context to draw on.
+     * @param viewport The mapping from world to canvas coordinates.
+     * @param detail The level-of-detail rules.
+     * @param counts Receives the numbers of primitives drawn, simplified and skipped.
+     * @param minX The region's left edge.
+     * @param minY The region's top edge.
+     * @param maxX The region's right edge.
+     * @param maxY The region's bottom edge.
+     */
+    void draw(GraphicsContext gc, Viewport viewport, DetailSettings detail, FrameCounts counts,
+              long minX, long minY, long maxX, long maxY) {
+        int call = ++drawCount;
+        if (!detail.isEnabled()) {
+            index.search(minX, minY, maxX, maxY, h -> {
+                draw(gc, viewport, h);
+                counts.drawn++;
+            });
+            return;
+        }
+
+        // The thresholds in nanometres at the current scale, so each test is a single integer comparison.
+        long minFeature = viewport.toWorld(detail.getMinFeaturePixels());
+        long collapseGroup = viewport.toWorld(detail.getCollapseGroupPixels());
+        long minText = viewport.toWorld(detail.getMinTextPixels());
+        index.search(minX, minY, maxX, maxY, h -> {
+            int group = groups[h];
+            if (group != NO_GROUP && groupSize(group) < collapseGroup) {
+                counts.collapsed++;
+                if (groupDrawn[group] != call) {
+                    groupDrawn[group] = call;
+                    drawGroup(gc, viewport, group);
+                    counts.groups++;
+                }
+            } else if (kinds[h] == Kind.TEXT.ordinal() && widths[h] < minText)
+                counts.skippedText++;
+            else if (size(h) < minFeature)
+                counts.culled++;
+            else {
+                draw(gc, viewport, h);
+                counts.drawn++;
+            }
+        });
+    }
+
+    /** Draw one primitive. Lines are never drawn thinner than a pixel so thin traces remain visible. */
+    private void draw(GraphicsContext gc, Viewport viewport, int h) {
+        switch (KINDS[kinds[h]]) {
+            case SEGMENT -> {
+                gc.setLineWidth(Math.max(1.0, viewport.toScreen(widths[h])));
+                gc.strokeLine(viewport.toScreenX(x0[h]), viewport.toScreenY(y0[h]),
+                        viewport.toScreenX(x1[h]), viewport.toScreenY(y1[h]));
+            }
+            case RECTANGLE -> {
+                double left = viewport.toScreenX(Math.min(x0[h], x1[h]));
+                double top = viewport.toScreenY(Math.min(y0[h], y1[h]));
+                gc.fillRect(left, top, Math.max(1.0, viewport.toScreen(Math.abs(x1[h] - x0[h]))),
+                        Math.max(1.0, viewport.toScreen(Math.abs(y1[h] - y0[h]))));
+            }
+            case CIRCLE -> {
+                double diameter = Math.max(1.0, viewport.toScreen(widths[h]));
+                gc.fillOval(viewport.toScreenX(x0[h]) - diameter / 2, viewport.toScreenY(y0[h]) - diameter / 2,
+                        diameter, diameter);
+            }
+            case TEXT -> {
+                double size = viewport.toScreen(widths[h]);
+                if (font == null || Math.abs(size - fontSize) > 0.5) {
+                    font = Font.font(size);
+                    fontSize = size;
+                }
+                gc.setFont(font);
+                gc.fillText(texts[h], viewport.toScreenX(x0[h]), viewport.toScreenY(y0[h]));
+            }
+        }
+    }
+
+    /** Draw the outline of a group's bounding box in place of its members. */
+    private void drawGroup(GraphicsContext gc, Viewport viewport, int group) {
+        int g = 4 * group;
+        gc.setLineWidth(1.0);
+        gc.strokeRect(viewport.toScreenX(groupBoxes[g]), viewport.toScreenY(groupBoxes[g + 1]),
+                Math.max(1.0, viewport.toScreen(groupBoxes[g + 2] - groupBoxes[g])),
+                Math.max(1.0, viewport.toScreen(groupBoxes[g + 3] - groupBoxes[g + 1])));
+    }
+
+    /** Returns the larger dimension of a primitive. */
+    private long size(int h) {
+        return Math.max(widths[h], Math.max(Math.abs(x1[h] - x0[h]), Math.abs(y1[h] - y0[h])));
+    }
+
+    /** Returns the larger dimension of a group, or the largest long for a removed group so it never collapses. */
+    private long groupSize(int group) {
+        int g = 4 * group;
+        if (groupBoxes[g] > groupBoxes[g + 2])
+            return Long.MAX_VALUE;
+        return Math.max(groupBoxes[g + 2] - groupBoxes[g], groupBoxes[g + 3] - groupBoxes[g + 1]);
+    }
+
+    private void setGroupBox(int group, long minX, long minY, long maxX, long maxY) {
+        int g = 4 * group;
+        groupBoxes[g] = minX;
+        groupBoxes[g + 1] = minY;
+        groupBoxes[g + 2] = maxX;
+        groupBoxes[g + 3] = maxY;
+    }
+
+    /** Repaint the region of a group's bounding box, where its outline may be drawn. */
+    private void invalidateGroup(int group) {
+        int g = 4 * group;
+        if (groupBoxes[g] <= groupBoxes[g + 2])
+            invalidator.invalidate(groupBoxes[g], groupBoxes[g + 1], groupBoxes[g + 2], groupBoxes[g + 3]);
+    }
+
+    private void write(int h, Kind kind, long x0, long y0, long x1, long y1, long width, String text) {
+        kinds[h] = (byte) kind.ordinal();
+        texts[h] = text;
+        this.x0[h] = x0;
+        this.y0[h] = y0;
+        this.x1[h] = (kind == Kind.CIRCLE) ? x0 : x1;
+        this.y1[h] = (kind == Kind.CIRCLE) ? y0 : y1;
+        widths[h] = (kind == Kind.RECTANGLE) ? 0 : width;
+    }
+
+    /** Index a primitive and repaint its region. */
+    private void insert(int h) {
+        long[] box = box(h);
+        index.insert(h, box[0], box[1], box[2], box[3]);
+        invalidator.invalidate(box[0], box[1], box[2], box[3]);
+    }
+
+    /** Remove a primitive from the index and repaint its region. */
+    private void delete(int h) {
+        long[] box = box(h);
+        index.remove(h, box[0], box[1], box[2], box[3]);
+        invalidator.invalidate(box[0], box[1], box[2], box[3]);
+    }
+
+    /** Returns a primitive's bounding box, allowing half the line width plus a nanometre for rounding. */
+    private long[] box(int h) {
+        long r = widths[h] / 2 + 1;
+        return new long[] {Math.min(x0[h], x1[h]) - r, Math.min(y0[h], y1[h]) - r,
+                Math.max(x0[h], x1[h]) + r, Math.max(y0[h], y1[h]) + r};
+    }
+
+    private void check(int handle) {
+        if (handle < 0 || handle >= used || kinds[handle] == FREE)
+            throw new IllegalArgumentException("invalid primitive handle: " + handle);
+    }
+
+    private void checkGroup(int group) {
+        if (group < NO_GROUP || group >= groupCount)
+            throw new IllegalArgumentException("invalid group handle: " + group);
+    }
+
+    private void grow() {
+        int capacity = kinds.length * 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        x0 = Arrays.copyOf(x0, capacity);
+        y0 = Arrays.copyOf(y0, capacity);
+        x1 = Arrays.copyOf(x1, capacity);
+        y1 = Arrays.copyOf(y1, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        groups = Arrays.copyOf(groups, capacity);
+        texts = Arrays.copyOf(texts, capacity);
+    }
+
+    /** Receives the world regions that need repainting. */
+    interface Invalidator {
+        void invalidate(long minX, long minY, long maxX, long maxY);
+
+        void invalidateAll();
+    }
+}
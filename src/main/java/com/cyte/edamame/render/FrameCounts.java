@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.render;
+
+/**
+ * What became of the primitives visited while painting one frame. Filled in by each {@link DisplayList} as it
+ * draws and kept by {@link FrameStats} for the most recent frame.
+ */
+public class FrameCounts {
+    /** Primitives drawn in full. */
+    int drawn;
+
+    /** Primitives not drawn because they would appear smaller than the minimum feature size. */
+    int culled;
+
+    /** Primitives not drawn because their group was drawn as its bounding box instead. */
+    int collapsed;
+
+    /** Group bounding boxes drawn in place of their members. */
+    int groups;
+
+    /** Text not drawn because it would be too small to read. */
+    int skippedText;
+
+    /**
+     * Returns the number of primitives drawn in full.
+     * @return the drawn count.
+     */
+    public int getDrawn() { return drawn; }
+
+    /**
+     * Returns the number of primitives skipped for being smaller than the minimum feature size.
+     * @return the culled count.
+     */
+    public int getCulled() { return culled; }
+
+    /**
+     * Returns the number of primitives represented by their group's bounding box.
+     * @return the collapsed count.
+     */
+    public int getCollapsed() { return collapsed; }
+
+    /**
+     * Returns the number of group bounding boxes drawn.
+     * @return the group count.
+     */
+    public int getGroups() { return groups; }
+
+    /**
+     * Returns the number of texts skipped for being too small to read.
+     * @return the skipped text count.
+     */
+    public int getSkippedText() { return skippedText; }
+
+    @Override
+    public String toString() {
+        return String.format("%d drawn, %d culled, %d collapsed into %d groups, %d texts skipped",
+                drawn, culled, collapsed, groups, skippedText);
+    }
+}
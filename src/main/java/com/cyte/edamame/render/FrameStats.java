@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.render;
+
+import java.util.Arrays;
+
+/**
+ * Timing of the frames painted by a {@link CanvasRenderer}.<p>
+ *
+ * A frame's time is how long the renderer took to issue its drawing commands on the JavaFX application thread,
+ * which is the part of a frame the renderer controls. Statistics cover the most recent {@link #WINDOW} frames.
+ * Only pulses that actually repaint something count as frames. Accessed on the JavaFX application thread only.
+ */
+public class FrameStats {
+    /** The number of recent frames the statistics cover. */
+    public static final int WINDOW = 120;
+
+    /** The duration of each recent frame, oldest overwritten first. */
+    private final long[] durations = new long[WINDOW];
+
+    /** The number of frames painted since the renderer was created. */
+    private long frames = 0;
+
+    /** What became of the primitives visited by the most recent frame. */
+    private FrameCounts lastCounts = new FrameCounts();
+
+    /** The area repainted by the most recent frame as a fraction of the canvas. */
+    private double lastCoverage = 0;
+
+    /**
+     * Record a frame.
+     *
+     * @param nanos How long the frame took.
+     * @param counts What became of the primitives visited.
+     * @param coverage The fraction of the canvas repainted.
+     */
+    void record(long nanos, FrameCounts counts, double coverage) {
+        durations[(int) (frames % WINDOW)] = nanos;
+        frames++;
+        lastCounts = counts;
+        lastCoverage = coverage;
+    }
+
+    /**
+     * Returns the number of frames painted.
+     * @return the total frame count.
+     */
+    public long getFrameCount() { return frames; }
+
+    /**
+     * Returns how long the most recent frame took.
+     * @return the duration in nanoseconds, or 0 if nothing has been painted.
+     */
+    public long getLastFrameNanos() {
+        return (frames == 0) ? 0 : durations[(int) ((frames - 1) % WINDOW)];
+    }
+
+    /**
+     * Returns the average duration of the recent frames.
+     * @return the mean duration in nanoseconds.
+     */
+    public long getAverageFrameNanos() {
+        int n = recent();
+        long total = 0;
+        for (int i = 0; i < n; i++)
+            total += durations[i];
+        return (n == 0) ? 0 : total / n;
+    }
+
+    /**
+     * Returns the duration of the slowest recent frame.
+     * @return the maximum duration in nanoseconds.
+     */
+    public long getMaxFrameNanos() {
+        return getPercentileFrameNanos(100);
+    }
+
+    /**
+     * Returns a percentile of the recent frame durations.
+     *
+     * @param percent The percentile, between 0 and 100.
+     * @return the duration in nanoseconds that the given percentage of recent frames did not exceed.
+     */
+    public long getPercentileFrameNanos(double percent) {
+        int n = recent();
+        if (n == 0)
+            return 0;
+        long[] sorted = Arrays.copyOf(durations, n);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percent / 100 * n) - 1;
+        return sorted[Math.max(0, Math.min(n - 1, index))];
+    }
+
+    /**
+     * Returns the number of objects drawn in the most recent frame.
+     * @return the object count.
+     */
+    public int getLastDrawnCount() { return lastCounts.getDrawn(); }
+
+    /**
+     * Returns what became of the primitives visited by the most recent frame, including those simplified or
+     * skipped by the level-of-detail rules.
+     * @return the most recent frame's counts.
+     */
+    public FrameCounts getLastCounts() { return lastCounts; }
+
+    /**
+     * Returns how much of the canvas the most recent frame repainted.
+     * @return the repainted fraction of the canvas, between 0 and 1.
+     */
+    public double getLastCoverage() { return lastCoverage; }
+
+    private int recent() {
+        return (int) Math.min(frames, WINDOW);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d frames, last %.2f ms, mean %.2f ms, p95 %.2f ms, max %.2f ms, %s",
+                frames, getLastFrameNanos() / 1e6, getAverageFrameNanos() / 1e6, getPercentileFrameNanos(95) / 1e6,
+                getMaxFrameNanos() / 1e6, lastCounts);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.render;
+
+import javafx.scene.paint.Color;
+
+/**
+ * A named, coloured layer of a {@link CanvasRenderer}, such as a copper or silkscreen layer of a board. Layers
+ * are painted in the order they were added, each holding its own {@link DisplayList}.
+ */
+public class RenderLayer {
+    /** The renderer painting this layer. */
+    private final CanvasRenderer renderer;
+
+    /** The layer's name. */
+    private final String name;
+
+    /** The layer's primitives. */
+    private final DisplayList displayList;
+
+    /** The colour the layer's primitives are painted in. */
+    private Color color;
+
+    /** Whether the layer is painted. */
+    private boolean visible = true;
+
+    RenderLayer(CanvasRenderer renderer, String name, Color color) {
+        this.renderer = renderer;
+        this.name = name;
+        this.color = color;
+        this.displayList = new DisplayList(renderer);
+    }
+
+    /**
+     * Returns the layer's name.
+     * @return the name.
+     */
+    public String getName() { return name; }
+
+    /**
+     * Returns the layer's primitives. Changes to them are repainted on the next pulse.
+     * @return the layer's display list.
+     */
+    public DisplayList getDisplayList() { return displayList; }
+
+    /**
+     * Returns the colour of the layer.
+     * @return the colour.
+     */
+    public Color getColor() { return color; }
+
+    /**
+     * Change the colour of the layer.
+     * @param color The new colour.
+     */
+    public void setColor(Color color) {
+        this.color = color;
+        renderer.invalidateAll();
+    }
+
+    /**
+     * Returns whether the layer is painted.
+     * @return true if the layer is visible.
+     */
+    public boolean isVisible() { return visible; }
+
+    /**
+     * Show or hide the layer.
+     * @param visible Whether the layer is painted.
+     */
+    public void setVisible(boolean visible) {
+        if (this.visible != visible) {
+            this.visible = visible;
+            renderer.invalidateAll();
+        }
+    }
+}
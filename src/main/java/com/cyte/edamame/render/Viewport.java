@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.render;
+
+/**
+ * The mapping between design coordinates in integer nanometres and canvas pixels.<p>
+ *
+ * The world point at the canvas's top left corner is the origin and the scale is the number of pixels per
+ * nanometre. Both axes increase in the same direction on screen and in the design. The viewport is changed only
+ * through its {@link CanvasRenderer}, which repaints whenever it changes.
+ */
+public class Viewport {
+    /** The smallest scale allowed: one pixel per ten metres. */
+    public static final double MIN_SCALE = 1e-10;
+
+    /** The largest scale allowed: one pixel per nanometre. */
+    public static final double MAX_SCALE = 1.0;
+
+    /** Pixels per nanometre. Initially ten pixels per millimetre. */
+    private double scale = 1e-5;
+
+    /** The world x coordinate at the left edge of the canvas. */
+    private long originX = 0;
+
+    /** The world y coordinate at the top edge of the canvas. */
+    private long originY = 0;
+
+    /**
+     * Returns the number of pixels per nanometre.
+     * @return the scale.
+     */
+    public double getScale() { return scale; }
+
+    /**
+     * Returns the world x coordinate shown at the left edge of the canvas.
+     * @return the origin's x coordinate in nanometres.
+     */
+    public long getOriginX() { return originX; }
+
+    /**
+     * Returns the world y coordinate shown at the top edge of the canvas.
+     * @return the origin's y coordinate in nanometres.
+     */
+    public long getOriginY() { return originY; }
+
+    /**
+     * Convert a world x coordinate to a canvas x coordinate.
+     *
+     * @param x The world x coordinate in nanometres.
+     * @return the canvas x coordinate in pixels.
+     */
+    public double toScreenX(long x) { return (x - originX) * scale; }
+
+    /**
+     * Convert a world y coordinate to a canvas y coordinate.
+     *
+     * @param y The world y coordinate in nanometres.
+     * @return the canvas y coordinate in pixels.
+     */
+    public double toScreenY(long y) { return (y - originY) * scale; }
+
+    /**
+     * Convert a world distance to a canvas distance.
+     *
+     * @param length The distance in nanometres.
+     * @return the distance in pixels.
+     */
+    public double toScreen(long length) { return length * scale; }
+
+    /**
+     * Convert a canvas x coordinate to a world x coordinate.
+     *
+     * @param x The canvas x coordinate in pixels.
+     * @return the world x coordinate in nanometres.
+     */
+    public long toWorldX(double x) { return originX + Math.round(x / scale); }
+
+    /**
+     * Convert a canvas y coordinate to a world y coordinate.
+     *
+     * @param y The canvas y coordinate in pixels.
+     * @return the world y coordinate in nanometres.
+     */
+    public long toWorldY(double y) { return originY + Math.round(y / scale); }
+
+    /**
+     * Convert a canvas distance to a world distance.
+     *
+     * @param length The distance in pixels.
+     * @return the distance in nanometres.
+     */
+    public long toWorld(double length) { return Math.round(length / scale); }
+
+    /**
+     * Move the view so the design appears to move by a number of pixels.
+     *
+     * @param dx Pixels to move the design right.
+     * @param dy Pixels to move the design down.
+     */
+    void pan(double dx, double dy) {
+        originX -= Math.round(dx / scale);
+        originY -= Math.round(dy / scale);
+    }
+
+    /**
+     * Change the scale while keeping the world point under a canvas position fixed.
+     *
+     * @param factor The factor to multiply the scale by.
+     * @param x The canvas x coordinate to zoom about.
+     * @param y The canvas y coordinate to zoom about.
+     * @return true if the scale changed.
+     */
+    boolean zoom(double factor, double x, double y) {
+        double target = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+        if (target == scale)
+            return false;
+        long worldX = toWorldX(x);
+        long worldY = toWorldY(y);
+        scale = target;
+        originX = worldX - Math.round(x / scale);
+        originY = worldY - Math.round(y / scale);
+        return true;
+    }
+
+    /**
+     * Show a world region, as large as possible, centred in a canvas of the given size.
+     *
+     * @param minX The region's left edge.
+     * @param minY The region's top edge.
+     * @param maxX The region's right edge.
+     * @param maxY The region's bottom edge.
+     * @param width The canvas width in pixels.
+     * @param height The canvas height in pixels.
+     */
+    void fit(long minX, long minY, long maxX, long maxY, double width, double height) {
+        double sx = width / Math.max(1.0, (double) maxX - minX);
+        double sy = height / Math.max(1.0, (double) maxY - minY);
+        scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, Math.min(sx, sy)));
+        originX = (minX + (maxX - minX) / 2) - Math.round(width / 2 / scale);
+        originY = (minY + (maxY - minY) / 2) - Math.round(height / 2 / scale);
+    }
+}
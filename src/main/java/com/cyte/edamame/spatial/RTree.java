@@ -0,0 +1,582 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.spatial;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A spatial index of items by their axis aligned bounding boxes, used by editors for hit-testing, rubber-band
+ * selection and finding what lies within the viewport without scanning every item.<p>
+ *
+ * Coordinates are integer nanometres. Boxes are closed, so boxes that merely touch intersect, and a box may be
+ * a single point. A tree is normally built all at once with {@link #bulkLoad} (Sort-Tile-Recursive packing,
+ * which produces nearly full nodes with little overlap) when a design is opened and then kept current with
+ * {@link #insert} and {@link #remove} as the design is edited. Nodes hold their children's boxes in primitive
+ * arrays so a query touches only a few cache lines per level.<p>
+ *
+ * An item may be present more than once, but removal must name the box it was inserted with. The tree is not
+ * safe for concurrent modification; concurrent queries of an unchanging tree are safe.
+ *
+ * @param <T> the type of indexed items.
+ */
+public final class RTree<T> {
+    /** The maximum number of entries per node. */
+    static final int MAX_ENTRIES = 16;
+
+    /** The minimum number of entries of every node but the root. */
+    static final int MIN_ENTRIES = 6;
+
+    /** The root node. A leaf while the tree holds no more than {@link #MAX_ENTRIES} items. */
+    private Node root = new Node(true);
+
+    /** The number of levels of nodes. */
+    private int height = 1;
+
+    /** The number of items. */
+    private int size = 0;
+
+    /**
+     * Build a tree holding many items at once. Much faster than inserting them one at a time and produces a
+     * better tree. The i-th item's box is given by the i-th element of each coordinate array.
+     *
+     * @param items The items to index.
+     * @param minX The left edge of each item.
+     * @param minY The bottom edge of each item.
+     * @param maxX The right edge of each item.
+     * @param maxY The top edge of each item.
+     * @param <T> the type of indexed items.
+     * @return a tree holding the items.
+     */
+    public static <T> RTree<T> bulkLoad(List<? extends T> items, long[] minX, long[] minY, long[] maxX,
+                                        long[] maxY) {
+        int n = items.size();
+        if (minX.length < n || minY.length < n || maxX.length < n || maxY.length < n)
+            throw new IllegalArgumentException("a box is required for every item");
+        RTree<T> tree = new RTree<>();
+        if (n == 0)
+            return tree;
+
+        Object[] entries = items.toArray();
+        long[][] boxes = {minX.clone(), minY.clone(), maxX.clone(), maxY.clone()};
+        boolean leaf = true;
+        while (true) {
+            Node[] nodes = pack(entries, boxes, n, leaf);
+            tree.height += leaf ? 0 : 1;
+            if (nodes.length == 1) {
+                tree.root = nodes[0];
+                break;
+            }
+            n = nodes.length;
+            entries = nodes;
+            boxes = new long[4][n];
+            for (int i = 0; i < n; i++)
+                nodes[i].bounds(boxes[0], boxes[1], boxes[2], boxes[3], i);
+            leaf = false;
+        }
+        tree.size = items.size();
+        return tree;
+    }
+
+    /**
+     * Pack one level of entries into nodes, grouping entries that lie close together.
+     *
+     * @return the nodes of the level.
+     */
+    private static Node[] pack(Object[] entries, long[][] boxes, int n, boolean leaf) {
+        int leaves = (n + MAX_ENTRIES - 1) / MAX_ENTRIES;
+        int slices = (int) Math.ceil(Math.sqrt(leaves));
+        int sliceSize = slices * MAX_ENTRIES;
+
+        int[] order = new int[n];
+        long[] key = new long[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            key[i] = (boxes[0][i] >> 1) + (boxes[2][i] >> 1);
+        }
+        sort(order, key, 0, n);
+        for (int i = 0; i < n; i++)
+            key[i] = (boxes[1][i] >> 1) + (boxes[3][i] >> 1);
+        for (int from = 0; from < n; from += sliceSize)
+            sort(order, key, from, Math.min(from + sliceSize, n));
+
+        // Divide each slice evenly so no node is left with fewer than the minimum number of entries.
+        List<Node> nodes = new ArrayList<>(leaves);
+        for (int from = 0; from < n; from += sliceSize) {
+            int to = Math.min(from + sliceSize, n);
+            int count = (to - from + MAX_ENTRIES - 1) / MAX_ENTRIES;
+            for (int k = 0; k < count; k++) {
+                Node node = new Node(leaf);
+                int start = from + (int) ((long) (to - from) * k / count);
+                int end = from + (int) ((long) (to - from) * (k + 1) / count);
+                for (int i = start; i < end; i++) {
+                    int e = order[i];
+                    node.add(entries[e], boxes[0][e], boxes[1][e], boxes[2][e], boxes[3][e]);
+                }
+                nodes.add(node);
+            }
+        }
+        return nodes.toArray(new Node[0]);
+    }
+
+    /**
+     * Add an item.
+     *
+     * @param item The item. Must not be null.
+     * @param minX The item's left edge.
+     * @param minY The item's bottom edge.
+     * @param maxX The item's right edge.
+     * @param maxY The item's top edge.
+     */
+    public void insert(T item, long minX, long minY, long maxX, long maxY) {
+        Objects.requireNonNull(item, "item");
+        if (minX > maxX || minY > maxY)
+            throw new IllegalArgumentException("empty box");
+        insertEntry(item, minX, minY, maxX, maxY);
+        size++;
+    }
+
+    /**
+     * Remove an item.
+     *
+     * @param item The item.
+     * @param minX The left edge the item was inserted with.
+     * @param minY The bottom edge the item was inserted with.
+     * @param maxX The right edge the item was inserted with.
+     * @param maxY The top edge the item was inserted with.
+     * @return true if the item was found and removed.
+     */
+    public boolean remove(Object item, long minX, long minY, long maxX, long maxY) {
+        Node leaf = findLeaf(root, item, minX, minY, maxX, maxY);
+        if (leaf == null)
+            return false;
+        for (int i = 0; i < leaf.count; i++) {
+            if (leaf.minX[i] == minX && leaf.minY[i] == minY && leaf.maxX[i] == maxX && leaf.maxY[i] == maxY
+                    && item.equals(leaf.entries[i])) {
+                leaf.removeAt(i);
+                break;
+            }
+        }
+        size--;
+        condense(leaf);
+        return true;
+    }
+
+    /**
+     * Remove every item.
+     */
+    public void clear() {
+        root = new Node(true);
+        height = 1;
+        size = 0;
+    }
+
+    /**
+     * Returns the number of items.
+     * @return the number of items in the tree.
+     */
+    public int size() { return size; }
+
+    /**
+     * Returns whether the tree is empty.
+     * @return true if the tree holds no items.
+     */
+    public boolean isEmpty() { return size == 0; }
+
+    /**
+     * Returns the number of levels of nodes, which is the number of nodes visited to reach any item.
+     * @return the height of the tree.
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Find every item whose box intersects a region, such as the items visible in a viewport.
+     *
+     * @param minX The region's left edge.
+     * @param minY The region's bottom edge.
+     * @param maxX The region's right edge.
+     * @param maxY The region's top edge.
+     * @param action Receives each item found.
+     */
+    public void search(long minX, long minY, long maxX, long maxY, Consumer<? super T> action) {
+        visit(minX, minY, maxX, maxY, false, action);
+    }
+
+    /**
+     * Find every item whose box intersects a region.
+     *
+     * @param minX The region's left edge.
+     * @param minY The region's bottom edge.
+     * @param maxX The region's right edge.
+     * @param maxY The region's top edge.
+     * @return the items found, in no particular order.
+     */
+    public List<T> search(long minX, long minY, long maxX, long maxY) {
+        List<T> found = new ArrayList<>();
+        visit(minX, minY, maxX, maxY, false, found::add);
+        return found;
+    }
+
+    /**
+     * Find every item whose box lies entirely within a region, as a rubber-band selection does.
+     *
+     * @param minX The region's left edge.
+     * @param minY The region's bottom edge.
+     * @param maxX The region's right edge.
+     * @param maxY The region's top edge.
+     * @param action Receives each item found.
+     */
+    public void searchContained(long minX, long minY, long maxX, long maxY, Consumer<? super T> action) {
+        visit(minX, minY, maxX, maxY, true, action);
+    }
+
+    /**
+     * Find the candidates for a click: every item whose box lies within a tolerance of a point. Callers test the
+     * candidates' exact shapes to decide which, if any, was hit.
+     *
+     * @param x The point's x coordinate.
+     * @param y The point's y coordinate.
+     * @param tolerance How far from the point a box may be.
+     * @return the candidates, in no particular order.
+     */
+    public List<T> pick(long x, long y, long tolerance) {
+        return search(x - tolerance, y - tolerance, x + tolerance, y + tolerance);
+    }
+
+    /**
+     * Walk every node intersecting a region without recursion.
+     */
+    @SuppressWarnings("unchecked")
+    private void visit(long minX, long minY, long maxX, long maxY, boolean contained, Consumer<? super T> action) {
+        if (size == 0)
+            return;
+        Node[] stack = new Node[height * MAX_ENTRIES + 1];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            Node node = stack[--top];
+            for (int i = 0; i < node.count; i++) {
+                if (node.maxX[i] < minX || node.minX[i] > maxX || node.maxY[i] < minY || node.minY[i] > maxY)
+                    continue;
+                if (!node.leaf)
+                    stack[top++] = (Node) node.entries[i];
+                else if (!contained || (node.minX[i] >= minX && node.maxX[i] <= maxX
+                        && node.minY[i] >= minY && node.maxY[i] <= maxY))
+                    action.accept((T) node.entries[i]);
+            }
+        }
+    }
+
+    /**
+     * Insert an entry into the leaf whose box needs the least enlargement, splitting nodes that overflow.
+     */
+    private void insertEntry(Object item, long minX, long minY, long maxX, long maxY) {
+        Node node = root;
+        while (!node.leaf) {
+            int best = 0;
+            double bestGrowth = Double.POSITIVE_INFINITY;
+            double bestArea = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < node.count; i++) {
+                double area = area(node.minX[i], node.minY[i], node.maxX[i], node.maxY[i]);
+                double growth = area(Math.min(minX, node.minX[i]), Math.min(minY, node.minY[i]),
+                        Math.max(maxX, node.maxX[i]), Math.max(maxY, node.maxY[i])) - area;
+                if (growth < bestGrowth || (growth == bestGrowth && area < bestArea)) {
+                    best = i;
+                    bestGrowth = growth;
+                    bestArea = area;
+                }
+            }
+            node = (Node) node.entries[best];
+        }
+        node.add(item, minX, minY, maxX, maxY);
+
+        // Walk back up, refreshing each node's box in its parent and splitting overflowing nodes.
+        while (true) {
+            Node sibling = (node.count > MAX_ENTRIES) ? node.split() : null;
+            Node parent = node.parent;
+            if (parent == null) {
+                if (sibling != null) {
+                    root = new Node(false);
+                    root.addNode(node);
+                    root.addNode(sibling);
+                    height++;
+                }
+                return;
+            }
+            parent.refresh(parent.indexOf(node));
+            if (sibling != null)
+                parent.addNode(sibling);
+            node = parent;
+        }
+    }
+
+    /**
+     * Find the leaf holding an item with a given box.
+     */
+    private static Node findLeaf(Node node, Object item, long minX, long minY, long maxX, long maxY) {
+        for (int i = 0; i < node.count; i++) {
+            if (node.minX[i] > minX || node.minY[i] > minY || node.maxX[i] < maxX || node.maxY[i] < maxY)
+                continue;
+            if (node.leaf) {
+                if (node.minX[i] == minX && node.minY[i] == minY && node.maxX[i] == maxX && node.maxY[i] == maxY
+                        && item.equals(node.entries[i]))
+                    return node;
+            } else {
+                Node leaf = findLeaf((Node) node.entries[i], item, minX, minY, maxX, maxY);
+                if (leaf != null)
+                    return leaf;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Restore the tree after removing from a leaf. Nodes left with too few entries are removed and their items
+     * inserted again, and the boxes of the remaining ancestors are shrunk.
+     */
+    private void condense(Node node) {
+        List<Object> orphans = new ArrayList<>();
+        List<long[]> boxes = new ArrayList<>();
+        while (node.parent != null) {
+            Node parent = node.parent;
+            int index = parent.indexOf(node);
+            if (node.count < MIN_ENTRIES) {
+                parent.removeAt(index);
+                node.collect(orphans, boxes);
+            } else
+                parent.refresh(index);
+            node = parent;
+        }
+        while (!root.leaf && root.count == 1) {
+            root = (Node) root.entries[0];
+            root.parent = null;
+            height--;
+        }
+        if (!root.leaf && root.count == 0)
+            clearRoot();
+        for (int i = 0; i < orphans.size(); i++) {
+            long[] box = boxes.get(i);
+            insertEntry(orphans.get(i), box[0], box[1], box[2], box[3]);
+        }
+    }
+
+    private void clearRoot() {
+        root = new Node(true);
+        height = 1;
+    }
+
+    /** Returns the area of a box, as a double since areas of large boxes overflow a long. */
+    private static double area(long minX, long minY, long maxX, long maxY) {
+        return (double) (maxX - minX) * (double) (maxY - minY);
+    }
+
+    /**
+     * Sort a range of indices by their keys. A primitive quicksort so bulk loading millions of items does not
+     * box every index.
+     */
+    private static void sort(int[] order, long[] key, int from, int to) {
+        while (to - from > 16) {
+            int mid = (from + to) >>> 1;
+            long pivot = median(key[order[from]], key[order[mid]], key[order[to - 1]]);
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (key[order[i]] < pivot)
+                    i++;
+                while (key[order[j]] > pivot)
+                    j--;
+                if (i <= j) {
+                    int t = order[i];
+                    order[i++] = order[j];
+                    order[j--] = t;
+                }
+            }
+            // Recurse into the smaller part and loop on the larger to bound the stack depth.
+            if (j - from < to - i) {
+                sort(order, key, from, j + 1);
+                from = i;
+            } else {
+                sort(order, key, i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            int t = order[i];
+            int j = i - 1;
+            while (j >= from && key[order[j]] > key[t]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = t;
+        }
+    }
+
+    private static long median(long a, long b, long c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    /**
+     * A node of the tree. Holds the boxes of its entries in parallel arrays with one spare slot, so a node may
+     * overflow by one entry before it is split.
+     */
+    private static final class Node {
+        final boolean leaf;
+        final long[] minX = new long[MAX_ENTRIES + 1];
+        final long[] minY = new long[MAX_ENTRIES + 1];
+        final long[] maxX = new long[MAX_ENTRIES + 1];
+        final long[] maxY = new long[MAX_ENTRIES + 1];
+        /** Items if this is a leaf, otherwise child nodes. */
+        final Object[] entries = new Object[MAX_ENTRIES + 1];
+        int count;
+        Node parent;
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        void add(Object entry, long x0, long y0, long x1, long y1) {
+            minX[count] = x0;
+            minY[count] = y0;
+            maxX[count] = x1;
+            maxY[count] = y1;
+            entries[count++] = entry;
+            if (entry instanceof Node child && !leaf)
+                child.parent = this;
+        }
+
+        void addNode(Node child) {
+            add(child, 0, 0, 0, 0);
+            refresh(count - 1);
+        }
+
+        /** Remove an entry by moving the last entry into its place. */
+        void removeAt(int i) {
+            int last = --count;
+            minX[i] = minX[last];
+            minY[i] = minY[last];
+            maxX[i] = maxX[last];
+            maxY[i] = maxY[last];
+            entries[i] = entries[last];
+            entries[last] = null;
+        }
+
+        int indexOf(Node child) {
+            for (int i = 0; i < count; i++)
+                if (entries[i] == child)
+                    return i;
+            throw new IllegalStateException("node is not a child of its parent");
+        }
+
+        /** Recompute the box of a child node. */
+        void refresh(int i) {
+            ((Node) entries[i]).bounds(minX, minY, maxX, maxY, i);
+        }
+
+        /** Store the box enclosing all of this node's entries at an index of the given arrays. */
+        void bounds(long[] x0, long[] y0, long[] x1, long[] y1, int index) {
+            long a = Long.MAX_VALUE, b = Long.MAX_VALUE, c = Long.MIN_VALUE, d = Long.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                a = Math.min(a, minX[i]);
+                b = Math.min(b, minY[i]);
+                c = Math.max(c, maxX[i]);
+                d = Math.max(d, maxY[i]);
+            }
+            x0[index] = a;
+            y0[index] = b;
+            x1[index] = c;
+            y1[index] = d;
+        }
+
+        /** Gather every item beneath this node along with its box. */
+        void collect(List<Object> items, List<long[]> boxes) {
+            for (int i = 0; i < count; i++) {
+                if (leaf) {
+                    items.add(entries[i]);
+                    boxes.add(new long[] {minX[i], minY[i], maxX[i], maxY[i]});
+                } else
+                    ((Node) entries[i]).collect(items, boxes);
+            }
+        }
+
+        /**
+         * Split an overflowing node in two. The entries are ordered by centre along whichever axis gives the
+         * halves the smallest total perimeter, then divided where the halves overlap least.
+         *
+         * @return the new sibling holding the second half of the entries.
+         */
+        Node split() {
+            int n = count;
+            int[] best = null;
+            double bestMargin = Double.POSITIVE_INFINITY;
+            for (int axis = 0; axis < 2; axis++) {
+                int[] order = new int[n];
+                long[] key = new long[n];
+                for (int i = 0; i < n; i++) {
+                    order[i] = i;
+                    key[i] = (axis == 0) ? (minX[i] >> 1) + (maxX[i] >> 1) : (minY[i] >> 1) + (maxY[i] >> 1);
+                }
+                sort(order, key, 0, n);
+                double margin = 0;
+                for (int k = MIN_ENTRIES; k <= n - MIN_ENTRIES; k++)
+                    margin += margin(order, 0, k) + margin(order, k, n);
+                if (margin < bestMargin) {
+                    bestMargin = margin;
+                    best = order;
+                }
+            }
+
+            int split = MIN_ENTRIES;
+            double bestOverlap = Double.POSITIVE_INFINITY;
+            double bestArea = Double.POSITIVE_INFINITY;
+            for (int k = MIN_ENTRIES; k <= n - MIN_ENTRIES; k++) {
+                long[] a = box(best, 0, k);
+                long[] b = box(best, k, n);
+                double overlap = Math.max(0, Math.min(a[2], b[2]) - Math.max(a[0], b[0]))
+                        * (double) Math.max(0, Math.min(a[3], b[3]) - Math.max(a[1], b[1]));
+                double area = area(a[0], a[1], a[2], a[3]) + area(b[0], b[1], b[2], b[3]);
+                if (overlap < bestOverlap || (overlap == bestOverlap && area < bestArea)) {
+                    split = k;
+                    bestOverlap = overlap;
+                    bestArea = area;
+                }
+            }
+
+            long[][] saved = {minX.clone(), minY.clone(), maxX.clone(), maxY.clone()};
+            Object[] savedEntries = entries.clone();
+            Node sibling = new Node(leaf);
+            count = 0;
+            for (int i = 0; i < n; i++) {
+                int e = best[i];
+                Node target = (i < split) ? this : sibling;
+                target.add(savedEntries[e], saved[0][e], saved[1][e], saved[2][e], saved[3][e]);
+            }
+            for (int i = count; i < entries.length; i++)
+                entries[i] = null;
+            return sibling;
+        }
+
+        private double margin(int[] order, int from, int to) {
+            long[] b = box(order, from, to);
+            return (double) (b[2] - b[0]) + (double) (b[3] - b[1]);
+        }
+
+        private long[] box(int[] order, int from, int to) {
+            long[] b = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE};
+            for (int i = from; i < to; i++) {
+                int e = order[i];
+                b[0] = Math.min(b[0], minX[e]);
+                b[1] = Math.min(b[1], minY[e]);
+                b[2] = Math.max(b[2], maxX[e]);
+                b[3] = Math.max(b[3], maxY[e]);
+            }
+            return b;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A {@link Memento} made of several {@link Memento}s that are undone and redone as a single unit.<p>
+ *
+ * The members are given in the order they were recorded and are restored in reverse, so the combined state is
+ * rolled back exactly as if each had been undone individually. Restoring produces a {@link CompositeMemento} of
+ * the members' inverses.<p>
+ *
+ * A composite made with {@link #of} whose members are all {@link Spillable} is itself {@link Spillable}, so the
+ * large entries recorded by bulk edits can be spilled to disk like any other.
+ */
+public class CompositeMemento implements Memento {
+    /** The members in the order they were recorded. */
+    private final Memento[] members;
+
+    /** The sum of the members' size estimates. */
+    private final long size;
+
+    /**
+     * Construct a {@link CompositeMemento} from mementos in the order they were recorded.
+     *
+     * @param members The mementos to combine.
+     */
+    public CompositeMemento(List<? extends Memento> members) {
+        this(members.toArray(new Memento[0]));
+    }
+
+    /**
+     * Combine mementos in the order they were recorded, spillably if every member is {@link Spillable}.
+     *
+     * @param members The mementos to combine.
+     * @return the combined memento.
+     */
+    public static CompositeMemento of(List<? extends Memento> members) {
+        return of(members.toArray(new Memento[0]));
+    }
+
+    private static CompositeMemento of(Memento[] members) {
+        for (Memento member : members) {
+            if (!(member instanceof Spillable))
+                return new CompositeMemento(members);
+        }
+        return new SpillableComposite(members);
+    }
+
+    private CompositeMemento(Memento[] members) {
+        this.members = members;
+        long total = DEFAULT_SIZE_ESTIMATE;
+        for (Memento member : members)
+            total += member.sizeEstimate();
+        this.size = total;
+    }
+
+    /**
+     * Returns the number of mementos combined.
+     * @return the number of members.
+     */
+    public int getMemberCount() { return members.length; }
+
+    /**
+     * Returns the mementos combined, in the order they were recorded.
+     * @return an unmodifiable list of the members.
+     */
+    public List<Memento> getMembers() { return List.of(members); }
+
+    @Override
+    public Memento restore() {
+        Memento[] inverse = new Memento[members.length];
+        for (int i = members.length - 1, j = 0; i >= 0; i--, j++)
+            inverse[j] = members[i].restore();
+        return of(inverse);
+    }
+
+    @Override
+    public long sizeEstimate() {
+        return size;
+    }
+
+    /** A composite of {@link Spillable} members, spilled as the members' states together. */
+    private static final class SpillableComposite extends CompositeMemento implements Spillable {
+        SpillableComposite(Memento[] members) {
+            super(members);
+        }
+
+        @Override
+        public Serializable getState() {
+            Memento[] members = ((CompositeMemento) this).members;
+            Serializable[] states = new Serializable[members.length];
+            for (int i = 0; i < members.length; i++)
+                states[i] = ((Spillable) members[i]).getState();
+            return states;
+        }
+
+        @Override
+        public Reloader getReloader() {
+            Memento[] members = ((CompositeMemento) this).members;
+            Reloader[] reloaders = new Reloader[members.length];
+            for (int i = 0; i < members.length; i++)
+                reloaders[i] = ((Spillable) members[i]).getReloader();
+            return state -> {
+                Serializable[] states = (Serializable[]) state;
+                Memento[] reloaded = new Memento[states.length];
+                for (int i = 0; i < states.length; i++)
+                    reloaded[i] = reloaders[i].reload(states[i]);
+                return new SpillableComposite(reloaded);
+            };
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Memento} that remembers only the entries of a keyed model that are about to change instead of a
+ * snapshot of the whole model.<p>
+ *
+ * A {@link DeltaMemento} is captured immediately before a model is modified, naming the keys that the
+ * modification will touch. Restoring it puts back the previous value of just those keys and produces the
+ * inverse {@link DeltaMemento} for redo. Memory used is proportional to the number of keys changed.
+ *
+ * @param <K> the type of keys in the model.
+ * @param <V> the type of values in the model.
+ */
+public class DeltaMemento<K, V> implements Spillable {
+    /** The estimated bytes retained per changed key, excluding the values themselves. */
+    private static final long ENTRY_SIZE_ESTIMATE = 32;
+
+    /** The model the changes apply to. */
+    private final Target<K, V> target;
+
+    /** Alternating keys and their previous values. A null value means the key was absent. */
+    private final Object[] changes;
+
+    /**
+     * Construct a {@link DeltaMemento} from already captured changes.
+     *
+     * @param target The model to restore.
+     * @param changes Alternating keys and their values to restore.
+     */
+    private DeltaMemento(Target<K, V> target, Object[] changes) {
+        this.target = target;
+        this.changes = changes;
+    }
+
+    /**
+     * Capture the current values of the keys a pending modification will change.
+     *
+     * @param target The model about to be modified.
+     * @param keys The keys that will be changed.
+     * @param <K> the type of keys in the model.
+     * @param <V> the type of values in the model.
+     * @return a {@link DeltaMemento} that restores the given keys to their current values.
+     */
+    public static <K, V> DeltaMemento<K, V> capture(Target<K, V> target, Collection<? extends K> keys) {
+        Object[] changes = new Object[2 * keys.size()];
+        int i = 0;
+        for (K key : keys) {
+            changes[i++] = key;
+            changes[i++] = target.get(key);
+        }
+        return new DeltaMemento<>(target, changes);
+    }
+
+    /**
+     * Returns the model the changes apply to.
+     * @return the memento's target.
+     */
+    public Target<K, V> getTarget() { return target; }
+
+    /**
+     * Perform an action for each key this {@link DeltaMemento} restores, such as to find what an edit touched.
+     * @param action The action to perform on each key.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachKey(Consumer<? super K> action) {
+        for (int i = 0; i < changes.length; i += 2)
+            action.accept((K) changes[i]);
+    }
+
+    /**
+     * Returns the number of keys this {@link DeltaMemento} restores.
+     * @return the number of changed keys.
+     */
+    public int getChangeCount() { return changes.length / 2; }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Memento restore() {
+        Object[] inverse = new Object[changes.length];
+        // restore in reverse so a key named more than once ends up at its earliest captured value, and build the
+        // inverse back to front so that restoring it in turn ends at the value the key had before this one.
+        for (int i = changes.length - 2, j = 0; i >= 0; i -= 2, j += 2) {
+            K key = (K) changes[i];
+            inverse[j] = key;
+            inverse[j + 1] = target.get(key);
+            target.set(key, (V) changes[i + 1]);
+        }
+        return new DeltaMemento<>(target, inverse);
+    }
+
+    @Override
+    public long sizeEstimate() {
+        return DEFAULT_SIZE_ESTIMATE + ENTRY_SIZE_ESTIMATE * getChangeCount();
+    }
+
+    @Override
+    public Serializable getState() {
+        return changes.clone();
+    }
+
+    @Override
+    public Reloader getReloader() {
+        Target<K, V> target = this.target; // don't capture this (and thereby the changes) in the reloader.
+        return state -> new DeltaMemento<>(target, (Object[]) state);
+    }
+
+    /**
+     * A keyed model that {@link DeltaMemento}s can capture and restore entries of.
+     *
+     * @param <K> the type of keys in the model.
+     * @param <V> the type of values in the model.
+     */
+    public interface Target<K, V> {
+        /**
+         * Returns the current value of a key.
+         *
+         * @param key The key to look up.
+         * @return the current value or null if the key is absent.
+         */
+        V get(K key);
+
+        /**
+         * Changes the value of a key.
+         *
+         * @param key The key to change.
+         * @param value The new value or null to remove the key.
+         */
+        void set(K key, V value);
+    }
+}
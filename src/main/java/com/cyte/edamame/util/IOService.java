@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+import com.cyte.edamame.EDAmame;
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The application wide service for running I/O off the JavaFX application thread.<p>
+ *
+ * Database access, file loading and saving and exports are all submitted to a small fixed pool of daemon worker
+ * threads so that no I/O ever stalls rendering or input. Work is queued when every worker is busy. Results are
+ * delivered as {@link CompletableFuture}s, and {@link #FX} or the callback form of
+ * {@link #submit(Callable, Consumer, Consumer)} hands them back to the application thread.<p>
+ *
+ * Every future returned can be cancelled. Work cancelled before it starts is skipped.
+ * Work that is already running is only interrupted if {@code cancel(true)} is used, which should be avoided for
+ * database work since interrupting a thread part way through file I/O can close the database's files.
+ */
+public class IOService implements Executor, AutoCloseable {
+    /** The logger for the entire application. All classes/modules should obtain and use this static logger. */
+    private final static Logger LOGGER = Logger.getLogger(EDAmame.class.getName());
+
+    /** The default number of worker threads. I/O bound work gains little from more. */
+    public static final int DEFAULT_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** How long {@link #close()} waits for running work to finish before abandoning it. */
+    private static final long CLOSE_TIMEOUT_MILLIS = 2000;
+
+    /** Runs actions on the JavaFX application thread, for use with the *Async methods of futures. */
+    public static final Executor FX = Platform::runLater;
+
+    /** The worker threads. */
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * Construct the service with the default number of worker threads.
+     */
+    public IOService() {
+        this(DEFAULT_THREADS);
+    }
+
+    /**
+     * Construct the service.
+     *
+     * @param threads The number of worker threads.
+     */
+    public IOService(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "EDAmame-io-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Queue a task for a worker thread. Prefer {@link #submit(Callable)}, which can report failure and be cancelled.
+     *
+     * @param command The task to run.
+     */
+    @Override
+    public void execute(Runnable command) {
+        workers.execute(command);
+    }
+
+    /**
+     * Run work on a worker thread.
+     *
+     * @param work The work to run.
+     * @param <T> The type of the work's result.
+     * @return a cancellable future of the work's result.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> work) {
+        return submit(this, work);
+    }
+
+    /**
+     * Run work on a worker thread and deliver its outcome on the JavaFX application thread. Neither callback is
+     * called if the work is cancelled.
+     *
+     * @param work The work to run.
+     * @param onSuccess Receives the work's result.
+     * @param onFailure Receives the reason the work failed.
+     * @param <T> The type of the work's result.
+     * @return a cancellable future of the work's result.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> work, Consumer<? super T> onSuccess,
+                                           Consumer<? super Throwable> onFailure) {
+        CompletableFuture<T> future = submit(work);
+        future.whenCompleteAsync((result, error) -> {
+            if (future.isCancelled())
+                return;
+            if (error == null)
+                onSuccess.accept(result);
+            else
+                onFailure.accept(unwrap(error));
+        }, FX);
+        return future;
+    }
+
+    /**
+     * Run work on any executor, returning a future whose cancellation reaches the work itself.
+     *
+     * @param executor The executor to run the work on.
+     * @param work The work to run.
+     * @param <T> The type of the work's result.
+     * @return a cancellable future of the work's result.
+     */
+    public static <T> CompletableFuture<T> submit(Executor executor, Callable<T> work) {
+        Task<T> task = new Task<>();
+        task.runner = new Runner(task, () -> {
+            try {
+                task.complete(work.call());
+            } catch (Throwable e) {
+                task.completeExceptionally(e);
+            }
+            return null;
+        });
+        executor.execute(task.runner);
+        return task;
+    }
+
+    /**
+     * Strip the wrapping a future adds around the exception that actually caused a failure.
+     *
+     * @param error The exception a future completed with.
+     * @return the underlying cause.
+     */
+    public static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null)
+            error = error.getCause();
+        return error;
+    }
+
+    /**
+     * Returns the number of workers currently running something.
+     * @return the number of busy workers.
+     */
+    public int getActiveCount() { return workers.getActiveCount(); }
+
+    /**
+     * Returns the number of tasks waiting for a worker.
+     * @return the length of the queue.
+     */
+    public int getQueuedCount() { return workers.getQueue().size(); }
+
+    /**
+     * Stop accepting work, discard anything still queued and wait briefly for running work to finish. Called when
+     * the application exits. The futures of discarded work are cancelled, so anything waiting on them or chained
+     * after them sees a {@link java.util.concurrent.CancellationException} instead of waiting forever.
+     */
+    @Override
+    public void close() {
+        // Running work is deliberately not interrupted. Interrupting database file I/O can damage the database.
+        List<Runnable> discarded = new ArrayList<>();
+        workers.getQueue().drainTo(discarded);
+        workers.shutdown();
+        for (Runnable runnable : discarded) {
+            if (runnable instanceof Runner runner)
+                runner.task.cancel(false);
+        }
+        try {
+            if (!workers.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+                LOGGER.log(Level.WARNING, "Background I/O still running at exit.\n");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!discarded.isEmpty())
+            LOGGER.log(Level.INFO, "Discarded {0} queued background I/O tasks at exit.\n", discarded.size());
+    }
+
+    /** A future that cancels the queued or running work producing it when it is cancelled. */
+    private static final class Task<T> extends CompletableFuture<T> {
+        volatile Runner runner;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && runner != null)
+                runner.cancel(mayInterruptIfRunning);
+            return cancelled;
+        }
+    }
+
+    /** Runs the work of a {@link Task}, which can be found from it when the work is discarded from a queue. */
+    private static final class Runner extends FutureTask<Void> {
+        final Task<?> task;
+
+        Runner(Task<?> task, Callable<Void> work) {
+            super(work);
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+/**
+ * Sorting of primitive arrays by primitive keys, for the geometry engines whose working sets are too large to box.
+ * A quicksort that finishes small ranges with insertion sort and recurses only into the smaller part, so the stack
+ * stays shallow for any input.
+ */
+public final class IndexSort {
+    private IndexSort() {
+    }
+
+    /**
+     * Sort an inclusive range of an array by a parallel array of keys, moving the keys with it. Not stable.
+     *
+     * @param order The values to sort, such as indices.
+     * @param key The key of each value, sorted along with them.
+     * @param from The first index of the range.
+     * @param to The last index of the range.
+     */
+    public static void sort(int[] order, long[] key, int from, int to) {
+        while (to - from > 16) {
+            long pivot = key[(from + to) >>> 1];
+            int i = from, j = to;
+            while (i <= j) {
+                while (key[i] < pivot)
+                    i++;
+                while (key[j] > pivot)
+                    j--;
+                if (i <= j) {
+                    long k = key[i];
+                    key[i] = key[j];
+                    key[j] = k;
+                    int o = order[i];
+                    order[i++] = order[j];
+                    order[j--] = o;
+                }
+            }
+            // Recurse into the smaller part and loop on the larger, bounding the stack depth.
+            if (j - from < to - i) {
+                sort(order, key, from, j);
+                from = i;
+            } else {
+                sort(order, key, i, to);
+                to = j;
+            }
+        }
+        for (int i = from + 1; i <= to; i++) {
+            long k = key[i];
+            int o = order[i];
+            int j = i - 1;
+            for (; j >= from && key[j] > k; j--) {
+                key[j + 1] = key[j];
+                order[j + 1] = order[j];
+            }
+            key[j + 1] = k;
+            order[j + 1] = o;
+        }
+    }
+}
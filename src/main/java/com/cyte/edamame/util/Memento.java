@@ -17,10 +17,24 @@ package com.cyte.edamame.util;
  */
 @FunctionalInterface
 public interface Memento {
+    /** The number of bytes assumed to be retained by a {@link Memento} that does not estimate its own size. */
+    long DEFAULT_SIZE_ESTIMATE = 64;
+
     /**
      * Restores the state of the {@link Originator} instance used to create this {@link Memento}.
      *
      * @return a new {@link Memento} that represents the state of the {@link Originator} prior to restoration.
      */
     Memento restore();
+
+    /**
+     * Estimates the number of heap bytes retained by this {@link Memento}. The estimate is used by the
+     * {@link Recorder} to keep the undo history within its memory budget so it only needs to be roughly
+     * proportional to the amount of state captured, not exact.
+     *
+     * @return the estimated number of bytes retained by this {@link Memento}.
+     */
+    default long sizeEstimate() {
+        return DEFAULT_SIZE_ESTIMATE;
+    }
 }
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable hash map whose modified versions share structure with the version they were derived from.<p>
+ *
+ * {@link PersistentMap} is a hash array mapped trie. Every {@link #plus(Object, Object)} or {@link #minus(Object)}
+ * returns a new map and leaves the original untouched, copying only the handful of trie nodes on the path to the
+ * changed entry. Holding on to an old version therefore costs memory proportional to what changed since, not to
+ * the size of the map, which makes old versions suitable as {@link Memento} state.<p>
+ *
+ * Neither keys nor values may be null.
+ *
+ * @param <K> the type of keys.
+ * @param <V> the type of values.
+ */
+public final class PersistentMap<K, V> {
+    /** The number of hash bits consumed by each level of the trie. */
+    private static final int BITS = 5;
+
+    /** The single empty map. */
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    /** The root of the trie or null if the map is empty. */
+    private final Node root;
+
+    /** The number of entries in the map. */
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty map.
+     *
+     * @param <K> the type of keys.
+     * @param <V> the type of values.
+     * @return an empty {@link PersistentMap}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Returns the value associated with a key.
+     *
+     * @param key The key to look up.
+     * @return the associated value or null if the key is not present.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (root == null || key == null)
+            return null;
+        return (V) root.find(0, hash(key), key);
+    }
+
+    /**
+     * Returns whether a key is present.
+     *
+     * @param key The key to look for.
+     * @return true if the key has an associated value.
+     */
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns a map with the given association added or replaced.
+     *
+     * @param key The key. Must not be null.
+     * @param value The value. Must not be null.
+     * @return a map containing the association. This map if the association was already present.
+     */
+    public PersistentMap<K, V> plus(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        boolean[] added = new boolean[1];
+        Node start = (root == null) ? BitmapNode.EMPTY : root;
+        Node node = start.assoc(0, hash(key), key, value, added);
+        if (node == root)
+            return this;
+        return new PersistentMap<>(node, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map without the given key.
+     *
+     * @param key The key to remove.
+     * @return a map without the key. This map if the key was not present.
+     */
+    public PersistentMap<K, V> minus(Object key) {
+        if (!containsKey(key))
+            return this;
+        return new PersistentMap<>(root.without(0, hash(key), key), size - 1);
+    }
+
+    /**
+     * Returns the number of entries.
+     * @return the number of entries in the map.
+     */
+    public int size() { return size; }
+
+    /**
+     * Returns whether the map is empty.
+     * @return true if there are no entries in the map.
+     */
+    public boolean isEmpty() { return size == 0; }
+
+    /**
+     * Performs an action for every entry in the map in no particular order.
+     *
+     * @param action The action to perform on each key and value.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null)
+            root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    /**
+     * Returns the approximate depth of the trie, which is the number of nodes copied by a single modification.
+     * @return the expected number of levels in the trie.
+     */
+    int depth() {
+        int depth = 1;
+        for (int n = size >>> BITS; n > 0; n >>>= BITS)
+            depth++;
+        return depth;
+    }
+
+    /**
+     * Spread the bits of a key's hash code so that poor hash codes still distribute well across the trie.
+     *
+     * @param key The key to hash.
+     * @return the spread hash.
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the bit representing a hash's index at a given level of the trie.
+     *
+     * @param hash The hash.
+     * @param shift The number of bits already consumed by higher levels.
+     * @return the bitmap bit for the hash at this level.
+     */
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 31);
+    }
+
+    /** A node of the trie. Nodes are never modified once constructed. */
+    private interface Node {
+        Object find(int shift, int hash, Object key);
+
+        Node assoc(int shift, int hash, Object key, Object value, boolean[] added);
+
+        Node without(int shift, int hash, Object key);
+
+        void forEach(BiConsumer<Object, Object> action);
+    }
+
+    /**
+     * An interior node. The array holds a key/value pair for every bit set in the bitmap. A null key means the
+     * value slot holds a child {@link Node} instead.
+     */
+    private static final class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0)
+                return null;
+            int idx = index(bit);
+            Object k = array[2 * idx];
+            Object v = array[2 * idx + 1];
+            if (k == null)
+                return ((Node) v).find(shift + BITS, hash, key);
+            return key.equals(k) ? v : null;
+        }
+
+        @Override
+        public Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bit(hash, shift);
+            int idx = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[array.length + 2];
+                System.arraycopy(array, 0, copy, 0, 2 * idx);
+                copy[2 * idx] = key;
+                copy[2 * idx + 1] = value;
+                System.arraycopy(array, 2 * idx, copy, 2 * (idx + 1), array.length - 2 * idx);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, copy);
+            }
+            Object k = array[2 * idx];
+            Object v = array[2 * idx + 1];
+            if (k == null) {
+                Node child = ((Node) v).assoc(shift + BITS, hash, key, value, added);
+                return (child == v) ? this : with(2 * idx + 1, child);
+            }
+            if (key.equals(k))
+                return (value == v) ? this : with(2 * idx + 1, value);
+            added[0] = true;
+            Node child = pair(shift + BITS, k, v, hash, key, value);
+            Object[] copy = array.clone();
+            copy[2 * idx] = null;
+            copy[2 * idx + 1] = child;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        @Override
+        public Node without(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0)
+                return this;
+            int idx = index(bit);
+            Object k = array[2 * idx];
+            Object v = array[2 * idx + 1];
+            if (k == null) {
+                Node child = ((Node) v).without(shift + BITS, hash, key);
+                if (child == v)
+                    return this;
+                if (child != null)
+                    return with(2 * idx + 1, child);
+            } else if (!key.equals(k))
+                return this;
+            if (bitmap == bit)
+                return null;
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, 2 * idx);
+            System.arraycopy(array, 2 * (idx + 1), copy, 2 * idx, copy.length - 2 * idx);
+            return new BitmapNode(bitmap ^ bit, copy);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null)
+                    ((Node) array[i + 1]).forEach(action);
+                else
+                    action.accept(array[i], array[i + 1]);
+            }
+        }
+
+        private BitmapNode with(int index, Object value) {
+            Object[] copy = array.clone();
+            copy[index] = value;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        /** Create the smallest node holding two distinct keys that collided at the previous level. */
+        private static Node pair(int shift, Object k1, Object v1, int h2, Object k2, Object v2) {
+            int h1 = hash(k1);
+            if (h1 == h2)
+                return new CollisionNode(h1, new Object[] {k1, v1, k2, v2});
+            boolean[] ignored = new boolean[1];
+            return EMPTY.assoc(shift, h1, k1, v1, ignored).assoc(shift, h2, k2, v2, ignored);
+        }
+    }
+
+    /** A leaf holding several distinct keys which share exactly the same hash. */
+    private static final class CollisionNode implements Node {
+        final int hash;
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2)
+                if (key.equals(array[i]))
+                    return i;
+            return -1;
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int i = indexOf(key);
+            return (i < 0) ? null : array[i + 1];
+        }
+
+        @Override
+        public Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash)
+                return new BitmapNode(bit(this.hash, shift), new Object[] {null, this})
+                        .assoc(shift, hash, key, value, added);
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value)
+                    return this;
+                Object[] copy = array.clone();
+                copy[i + 1] = value;
+                return new CollisionNode(hash, copy);
+            }
+            Object[] copy = new Object[array.length + 2];
+            System.arraycopy(array, 0, copy, 0, array.length);
+            copy[array.length] = key;
+            copy[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        public Node without(int shift, int hash, Object key) {
+            int i = indexOf(key);
+            if (i < 0)
+                return this;
+            if (array.length == 2)
+                return null;
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, i);
+            System.arraycopy(array, i + 2, copy, i, copy.length - i);
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2)
+                action.accept(array[i], array[i + 1]);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+import java.util.Collection;
+import java.util.function.BiConsumer;
+
+/**
+ * A mutable keyed model container whose state is held in a {@link PersistentMap}.<p>
+ *
+ * Editors can keep the elements of a design in a {@link PersistentModel} and obtain cheap undo/redo in either
+ * of two ways:
+ * <ul>
+ *     <li>{@link #saveToMemento()} captures the entire state, but because the state is structurally shared it
+ *     only retains what is changed afterwards.</li>
+ *     <li>{@link #saveToMemento(Collection)} captures a {@link DeltaMemento} of just the keys a pending edit
+ *     will touch, which can also be spilled to disk by a {@link Recorder}.</li>
+ * </ul>
+ * {@link #snapshot()} gives readers, such as renderers or checkers on other threads, an immutable view of the
+ * model at no cost.
+ *
+ * @param <K> the type of keys.
+ * @param <V> the type of values.
+ */
+public class PersistentModel<K, V> implements Originator, DeltaMemento.Target<K, V> {
+    /** The estimated bytes of trie nodes copied, and thus retained by a snapshot, per level per edit. */
+    private static final long NODE_SIZE_ESTIMATE = 96;
+
+    /** The current state of the model. */
+    private PersistentMap<K, V> state = PersistentMap.empty();
+
+    /**
+     * Returns the value associated with a key.
+     *
+     * @param key The key to look up.
+     * @return the value or null if the key is absent.
+     */
+    @Override
+    public V get(K key) {
+        return state.get(key);
+    }
+
+    /**
+     * Associates a value with a key, or removes the key if the value is null.
+     *
+     * @param key The key to change.
+     * @param value The new value or null to remove the key.
+     */
+    @Override
+    public void set(K key, V value) {
+        state = (value == null) ? state.minus(key) : state.plus(key, value);
+    }
+
+    /**
+     * Associates a value with a key.
+     *
+     * @param key The key. Must not be null.
+     * @param value The value. Must not be null.
+     * @return the previous value or null if the key was absent.
+     */
+    public V put(K key, V value) {
+        V previous = state.get(key);
+        state = state.plus(key, value);
+        return previous;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key The key to remove.
+     * @return the previous value or null if the key was absent.
+     */
+    public V remove(K key) {
+        V previous = state.get(key);
+        state = state.minus(key);
+        return previous;
+    }
+
+    /**
+     * Returns the number of entries in the model.
+     * @return the number of entries.
+     */
+    public int size() { return state.size(); }
+
+    /**
+     * Performs an action for every entry in the model in no particular order.
+     *
+     * @param action The action to perform on each key and value.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        state.forEach(action);
+    }
+
+    /**
+     * Returns an immutable view of the current state. The view is unaffected by later changes to the model.
+     * @return the current state.
+     */
+    public PersistentMap<K, V> snapshot() { return state; }
+
+    /**
+     * Captures the entire state of the model. The {@link Memento} shares structure with the live model so it
+     * only retains memory for what is subsequently changed.
+     *
+     * @return a {@link Memento} restoring the model to its current state.
+     */
+    @Override
+    public Memento saveToMemento() {
+        PersistentMap<K, V> saved = state;
+        long size = Memento.DEFAULT_SIZE_ESTIMATE + NODE_SIZE_ESTIMATE * saved.depth();
+        return new Memento() {
+            @Override
+            public Memento restore() {
+                Memento inverse = saveToMemento();
+                state = saved;
+                return inverse;
+            }
+
+            @Override
+            public long sizeEstimate() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Captures only the given keys, which a pending edit is about to change.
+     *
+     * @param keys The keys that will be changed.
+     * @return a {@link DeltaMemento} restoring the given keys to their current values.
+     */
+    public DeltaMemento<K, V> saveToMemento(Collection<? extends K> keys) {
+        return DeltaMemento.capture(this, keys);
+    }
+}
@@ -7,21 +7,619 @@
 
 package com.cyte.edamame.util;
 
-import java.util.Stack;
+import com.cyte.edamame.EDAmame;
+import com.cyte.edamame.diagnostics.Metrics;
+import com.cyte.edamame.diagnostics.RecorderEvent;
 
-public class Recorder {
-    private final Stack<Memento> history = new Stack<>();
-    private final Stack<Memento> future = new Stack<>();
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * A {@link Recorder} is the caretaker of the {@link Memento}s used to implement undo and redo.<p>
+ *
+ * The history kept by a {@link Recorder} is bounded by both a maximum number of entries and a maximum number of
+ * (estimated) bytes. When the byte budget is exceeded the oldest {@link Spillable} entries are written to a
+ * temporary file and only reloaded if they are actually undone. When spilling is not possible, or the entry
+ * budget is exceeded, the oldest entries are forgotten entirely, but never the entry just recorded, undone or
+ * redone, however large. A spilled entry still counts {@value #SPILLED_SIZE_ESTIMATE} bytes against the budget
+ * for what it keeps in memory, so a very long history of spilled entries is eventually forgotten too.<p>
+ *
+ * Bulk operations can group everything they record into a single entry with {@link #beginTransaction()} and
+ * {@link #commit()}. Streams of small edits to the same object, such as the intermediate positions of a drag,
+ * can be coalesced into one entry by recording them with {@link #record(Memento, Object)}.<p>
+ *
+ * {@link Listener}s are told of every memento recorded, undone or redone, so derived state such as design rule
+ * violations can be brought up to date for just what each change touched.
+ */
+public class Recorder implements Closeable {
+    /** The logger for the entire application. All classes/modules should obtain and use this static logger. */
+    private final static Logger LOGGER = Logger.getLogger(EDAmame.class.getName());
+
+    /** The default maximum number of undo/redo entries retained. */
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    /** The default maximum number of bytes of undo/redo state retained in memory. */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /** The default time within which consecutive edits to the same object are coalesced. */
+    public static final long DEFAULT_COALESCE_MILLIS = 500;
+
+    /** The number of bytes assumed to be retained by an entry whose state has been spilled to disk. */
+    static final long SPILLED_SIZE_ESTIMATE = 48;
+
+    /** Time recording, undoing and redoing, counting the estimated bytes of the mementos involved. */
+    private static final Metrics.Timer RECORD_TIMER = Metrics.timer("recorder.record", "memento bytes");
+    private static final Metrics.Timer UNDO_TIMER = Metrics.timer("recorder.undo", "memento bytes");
+    private static final Metrics.Timer REDO_TIMER = Metrics.timer("recorder.redo", "memento bytes");
+
+    /** Undoable entries. The most recent entry is at the head. */
+    private final Deque<Entry> history = new ArrayDeque<>();
+
+    /** Redoable entries. The most recently undone entry is at the head. */
+    private final Deque<Entry> future = new ArrayDeque<>();
+
+    /** The maximum number of entries retained across both history and future. */
+    private final int maxEntries;
+
+    /** The maximum number of bytes retained in memory across both history and future. */
+    private final long maxBytes;
+
+    /** The estimated number of bytes currently retained in memory. */
+    private long retainedBytes = 0;
+
+    /** The number of entries whose state currently resides in the spill file. */
+    private int spilledCount = 0;
+
+    /** The file spilled state is written to. Created the first time it is needed. */
+    private SpillFile spillFile = null;
+
+    /** Set once spilling has failed, after which entries over budget are forgotten instead. */
+    private boolean spillFailed = false;
+
+    /** The mementos recorded by each open transaction. The innermost transaction is at the head. */
+    private final Deque<List<Memento>> transactions = new ArrayDeque<>();
+
+    /** The time, in nanoseconds, within which consecutive edits to the same object are coalesced. */
+    private long coalesceNanos = DEFAULT_COALESCE_MILLIS * 1_000_000L;
+
+    /** The coalescing key of the most recently recorded memento or null if it must not be coalesced. */
+    private Object lastKey = null;
+
+    /** When the most recently coalesced edit was recorded, in nanoseconds. */
+    private long lastTime = 0;
+
+    /** The mementos of the burst of edits being coalesced, in the order recorded. The newest entry restores them. */
+    private final List<Memento> burst = new ArrayList<>();
+
+    /** The keys the burst's {@link DeltaMemento}s restore, by their targets. */
+    private final Map<DeltaMemento.Target<?, ?>, Set<Object>> burstKeys = new IdentityHashMap<>();
+
+    /** Told of every memento recorded or restored. */
+    private final List<Listener> listeners = new ArrayList<>();
+
+    /**
+     * Construct a {@link Recorder} using the default entry and byte budgets.
+     */
+    public Recorder() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Construct a {@link Recorder} with the given entry and byte budgets.
+     *
+     * @param maxEntries The maximum number of entries to retain. Must be positive.
+     * @param maxBytes The maximum number of bytes to retain in memory. Must be positive.
+     */
+    public Recorder(int maxEntries, long maxBytes) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Restore the most recently recorded state. The restored state can be re-applied with {@link #redo()}. If the
+     * state cannot be reloaded from disk the entry stays in the history and nothing is restored.
+     */
     public void undo() {
-        future.push(history.pop().restore());
+        checkNoTransaction();
+        long start = System.nanoTime();
+        RecorderEvent event = new RecorderEvent();
+        event.begin();
+        endBurst();
+        Entry entry = history.element();
+        boolean reloaded = entry.memento == null;
+        Memento memento = load(entry); // before popping, so an entry that cannot be reloaded is not lost.
+        history.pop();
+        release(entry);
+        future.push(retain(memento.restore()));
+        enforceBudget(future);
+        fireChanged(memento);
+        measure(UNDO_TIMER, event, start, "undo", memento, false, reloaded);
     }
 
+    /**
+     * Re-apply the state most recently restored by {@link #undo()}. If the state cannot be reloaded from disk the
+     * entry stays in the future and nothing is restored.
+     */
     public void redo() {
-        history.push(future.pop().restore());
+        checkNoTransaction();
+        long start = System.nanoTime();
+        RecorderEvent event = new RecorderEvent();
+        event.begin();
+        endBurst();
+        Entry entry = future.element();
+        boolean reloaded = entry.memento == null;
+        Memento memento = load(entry); // before popping, so an entry that cannot be reloaded is not lost.
+        future.pop();
+        release(entry);
+        history.push(retain(memento.restore()));
+        enforceBudget(history);
+        fireChanged(memento);
+        measure(REDO_TIMER, event, start, "redo", memento, false, reloaded);
     }
 
+    /**
+     * Record the state of an {@link Originator} prior to it being modified. Recording a new state invalidates
+     * everything that could previously have been redone. If a transaction is open the {@link Memento} becomes
+     * part of that transaction instead.
+     *
+     * @param memento The {@link Memento} capturing the state prior to modification.
+     */
     public void record(Memento memento) {
-        history.push(memento);
+        record(memento, null);
+    }
+
+    /**
+     * Record the state of an object prior to it being modified, coalescing it with the previous edit when both
+     * edit the same object in quick succession. A coalesced {@link DeltaMemento} naming only keys the burst's
+     * earlier ones already restore is simply dropped, since those restore the state prior to every edit of the
+     * burst. Any other coalesced {@link Memento} is merged into the burst's entry, which restores its members
+     * newest first so that the state prior to the burst wins.
+     *
+     * @param memento The {@link Memento} capturing the state prior to modification.
+     * @param key Identifies the object being edited, or null if the edit must never be coalesced.
+     */
+    public void record(Memento memento, Object key) {
+        Objects.requireNonNull(memento, "memento");
+        long start = System.nanoTime();
+        RecorderEvent event = new RecorderEvent();
+        event.begin();
+        fireChanged(memento); // even when coalesced, as the edit itself still happens.
+        boolean stored = store(memento, key, start);
+        measure(RECORD_TIMER, event, start, "record", memento, !stored, false);
+    }
+
+    /**
+     * Add a {@link Memento} to the open transaction or the history, coalescing it if possible.
+     *
+     * @param memento The {@link Memento} capturing the state prior to modification.
+     * @param key Identifies the object being edited, or null if the edit must never be coalesced.
+     * @param now When the edit was recorded, in nanoseconds.
+     * @return false if the memento was coalesced with the previous edit.
+     */
+    private boolean store(Memento memento, Object key, long now) {
+        if (key != null && key.equals(lastKey) && now - lastTime <= coalesceNanos) {
+            lastTime = now;
+            if (!coveredByBurst(memento)) {
+                addToBurst(memento);
+                replaceNewest(CompositeMemento.of(burst));
+            }
+            return false;
+        }
+        endBurst();
+        lastKey = key;
+        lastTime = now;
+        if (key != null)
+            addToBurst(memento);
+
+        if (!transactions.isEmpty()) {
+            transactions.peek().add(memento);
+            return true;
+        }
+        clearFuture();
+        history.push(retain(memento));
+        enforceBudget(history);
+        return true;
+    }
+
+    /**
+     * Open a transaction. Everything recorded until the matching {@link #commit()} or {@link #rollback()} is
+     * grouped into a single entry. Transactions may be nested, in which case the inner transaction becomes a
+     * single member of the outer one.
+     */
+    public void beginTransaction() {
+        transactions.push(new ArrayList<>());
+        endBurst();
+    }
+
+    /**
+     * Close the innermost transaction, recording everything recorded within it as a single entry.
+     *
+     * @return the {@link Memento} recorded for the transaction, or null if nothing was recorded within it.
+     */
+    public Memento commit() {
+        if (transactions.isEmpty())
+            throw new IllegalStateException("commit without an open transaction");
+        List<Memento> members = transactions.pop();
+        endBurst();
+        if (members.isEmpty())
+            return null;
+        Memento memento = (members.size() == 1) ? members.get(0) : CompositeMemento.of(members);
+        store(memento, null, System.nanoTime()); // listeners were told of each member as it was recorded.
+        return memento;
+    }
+
+    /**
+     * Close the innermost transaction, restoring everything recorded within it and recording nothing.
+     */
+    public void rollback() {
+        if (transactions.isEmpty())
+            throw new IllegalStateException("rollback without an open transaction");
+        List<Memento> members = transactions.pop();
+        endBurst();
+        if (!members.isEmpty()) {
+            Memento memento = new CompositeMemento(members);
+            memento.restore();
+            fireChanged(memento);
+        }
+    }
+
+    /**
+     * Returns whether a transaction is currently open.
+     * @return true if between {@link #beginTransaction()} and {@link #commit()} or {@link #rollback()}.
+     */
+    public boolean isInTransaction() { return !transactions.isEmpty(); }
+
+    /**
+     * Sets the time within which consecutive edits to the same object are coalesced.
+     *
+     * @param millis The coalescing window in milliseconds. Zero disables coalescing.
+     */
+    public void setCoalesceWindow(long millis) {
+        if (millis < 0)
+            throw new IllegalArgumentException("coalesce window must not be negative: " + millis);
+        coalesceNanos = millis * 1_000_000L;
+        if (millis == 0)
+            endBurst();
+    }
+
+    /**
+     * Returns the time within which consecutive edits to the same object are coalesced.
+     * @return the coalescing window in milliseconds.
+     */
+    public long getCoalesceWindow() { return coalesceNanos / 1_000_000L; }
+
+    /**
+     * Returns whether there is anything to undo.
+     * @return true if {@link #undo()} can be performed.
+     */
+    public boolean canUndo() { return !history.isEmpty(); }
+
+    /**
+     * Returns whether there is anything to redo.
+     * @return true if {@link #redo()} can be performed.
+     */
+    public boolean canRedo() { return !future.isEmpty(); }
+
+    /**
+     * Returns the estimated number of bytes of undo/redo state currently retained in memory.
+     * @return the retained size in bytes.
+     */
+    public long getRetainedSize() { return retainedBytes; }
+
+    /**
+     * Returns the number of entries that can currently be undone.
+     * @return the number of history entries.
+     */
+    public int getHistorySize() { return history.size(); }
+
+    /**
+     * Returns the number of entries that can currently be redone.
+     * @return the number of future entries.
+     */
+    public int getFutureSize() { return future.size(); }
+
+    /**
+     * Returns the number of entries whose state currently resides on disk rather than in memory.
+     * @return the number of spilled entries.
+     */
+    public int getSpilledCount() { return spilledCount; }
+
+    /**
+     * Returns the maximum number of entries this {@link Recorder} retains.
+     * @return the entry budget.
+     */
+    public int getMaxEntries() { return maxEntries; }
+
+    /**
+     * Returns the maximum number of bytes this {@link Recorder} retains in memory.
+     * @return the byte budget.
+     */
+    public long getMaxBytes() { return maxBytes; }
+
+    /**
+     * Register a {@link Listener} to be told of every memento recorded, undone or redone.
+     * @param listener The listener to add.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    /**
+     * Stop telling a {@link Listener} of changes.
+     * @param listener The listener to remove.
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Forget all history, future and open transactions and release the spill file.
+     */
+    @Override
+    public void close() {
+        transactions.clear();
+        endBurst();
+        history.clear();
+        future.clear();
+        retainedBytes = 0;
+        spilledCount = 0;
+        if (spillFile != null) {
+            try {
+                spillFile.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to remove undo spill file: {0}\n", e.getMessage());
+            }
+            spillFile = null;
+        }
+    }
+
+    /** Stop coalescing, so the next edit starts an entry of its own. */
+    private void endBurst() {
+        lastKey = null;
+        burst.clear();
+        burstKeys.clear();
+    }
+
+    /** Add a memento to the burst of edits being coalesced, noting the keys it restores. */
+    private void addToBurst(Memento memento) {
+        burst.add(memento);
+        if (memento instanceof DeltaMemento<?, ?> delta)
+            delta.forEachKey(burstKeys.computeIfAbsent(delta.getTarget(), target -> new HashSet<>())::add);
+    }
+
+    /** Returns whether the burst's earlier mementos already restore everything a memento would. */
+    private boolean coveredByBurst(Memento memento) {
+        if (!(memento instanceof DeltaMemento<?, ?> delta))
+            return false;
+        Set<Object> keys = burstKeys.get(delta.getTarget());
+        if (keys == null)
+            return false;
+        boolean[] covered = {true};
+        delta.forEachKey(key -> covered[0] &= keys.contains(key));
+        return covered[0];
+    }
+
+    /** Replace the most recently stored memento, in the open transaction or the history, with another. */
+    private void replaceNewest(Memento memento) {
+        if (!transactions.isEmpty()) {
+            List<Memento> members = transactions.peek();
+            members.set(members.size() - 1, memento);
+            return;
+        }
+        release(history.pop());
+        history.push(retain(memento));
+        enforceBudget(history);
+    }
+
+    /**
+     * Wrap a {@link Memento} in an {@link Entry} and account for its size.
+     *
+     * @param memento The {@link Memento} to be retained.
+     * @return the {@link Entry} to push onto history or future.
+     */
+    private Entry retain(Memento memento) {
+        Entry entry = new Entry(memento);
+        retainedBytes += entry.size;
+        return entry;
+    }
+
+    /**
+     * Remove an {@link Entry}'s size from the accounting. Called whenever an entry leaves history or future.
+     *
+     * @param entry The {@link Entry} being removed.
+     */
+    private void release(Entry entry) {
+        retainedBytes -= entry.size;
+        if (entry.location != null) {
+            SpillFile.Location location = entry.location;
+            entry.location = null;
+            spilledCount--;
+            freeSpilled(location);
+        }
+    }
+
+    /**
+     * Obtain the {@link Memento} of an {@link Entry}, reading it back from disk if it was spilled.
+     *
+     * @param entry The {@link Entry} to obtain the {@link Memento} for.
+     * @return the {@link Memento} to restore.
+     */
+    private Memento load(Entry entry) {
+        if (entry.memento != null)
+            return entry.memento;
+        try {
+            return entry.reloader.reload(spillFile.read(entry.location));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to reload undo state from disk", e);
+        }
+    }
+
+    /** Record the time taken by a record, undo or redo in the metrics and, if enabled, as a flight recorder event. */
+    private void measure(Metrics.Timer timer, RecorderEvent event, long start, String operation, Memento memento,
+                         boolean coalesced, boolean reloaded) {
+        long bytes = memento.sizeEstimate();
+        timer.record(System.nanoTime() - start, bytes);
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.mementoBytes = bytes;
+            event.coalesced = coalesced;
+            event.reloaded = reloaded;
+            event.historySize = history.size();
+            event.retainedBytes = retainedBytes;
+            event.commit();
+        }
+    }
+
+    /** Tell every listener of a memento recorded or restored. */
+    private void fireChanged(Memento memento) {
+        for (Listener listener : listeners)
+            listener.changed(memento);
+    }
+
+    /** Undo and redo would interleave with the edits of an open transaction so they are refused. */
+    private void checkNoTransaction() {
+        if (!transactions.isEmpty())
+            throw new IllegalStateException("undo/redo while a transaction is open");
+    }
+
+    /** Discard every redoable entry. */
+    private void clearFuture() {
+        while (!future.isEmpty())
+            release(future.pop());
+    }
+
+    /**
+     * Bring the retained entries back within budget. Entries are first spilled, oldest first, until the byte
+     * budget is met. If spilling cannot satisfy the budget then the oldest entries are forgotten, history before
+     * future, but never the entry just pushed.
+     *
+     * @param newest The history or future, whichever an entry was just pushed onto.
+     */
+    private void enforceBudget(Deque<Entry> newest) {
+        if (retainedBytes > maxBytes)
+            spillOldest();
+        Deque<Entry> other = (newest == history) ? future : history;
+        while (history.size() + future.size() > maxEntries || retainedBytes > maxBytes) {
+            if (history.size() > 1)
+                release(history.removeLast());
+            else if (future.size() > 1)
+                release(future.removeLast());
+            else if (!other.isEmpty())
+                release(other.removeLast());
+            else
+                break; // always keep the single most relevant entry regardless of its size.
+        }
+    }
+
+    /**
+     * Spill in-memory {@link Spillable} entries, those furthest from the current state first, until the byte
+     * budget is met or nothing more can be spilled.
+     */
+    private void spillOldest() {
+        spillFrom(history.descendingIterator());
+        spillFrom(future.descendingIterator());
+    }
+
+    /**
+     * Spill in-memory {@link Spillable} entries in iteration order until the byte budget is met or spilling fails.
+     *
+     * @param iterator The entries to consider spilling.
+     */
+    private void spillFrom(Iterator<Entry> iterator) {
+        while (!spillFailed && retainedBytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.memento instanceof Spillable spillable)
+                spill(entry, spillable);
+        }
+    }
+
+    /**
+     * Write a {@link Spillable} entry's state to disk and drop the in-memory copy.
+     *
+     * @param entry The {@link Entry} to spill.
+     * @param spillable The entry's {@link Memento}.
+     */
+    private void spill(Entry entry, Spillable spillable) {
+        try {
+            if (spillFile == null)
+                spillFile = new SpillFile();
+            Serializable state = spillable.getState();
+            entry.location = spillFile.write(state);
+        } catch (IOException e) {
+            spillFailed = true;
+            LOGGER.log(Level.WARNING, "Unable to spill undo history to disk, keeping less history instead: {0}\n",
+                    e.getMessage());
+            return;
+        }
+        retainedBytes -= entry.size;
+        entry.reloader = spillable.getReloader();
+        entry.memento = null;
+        entry.size = SPILLED_SIZE_ESTIMATE;
+        retainedBytes += entry.size;
+        spilledCount++;
+    }
+
+    /** Release spilled state no longer referred to, reclaiming the spill file's disk space as it mounts up. */
+    private void freeSpilled(SpillFile.Location location) {
+        try {
+            spillFile.free(location);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to compact undo spill file: {0}\n", e.getMessage());
+        }
+    }
+
+    /**
+     * Told of the changes made under a {@link Recorder}.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called when a {@link Memento} is recorded, just before its originator is modified, and just after a
+         * {@link Memento} has been restored by undo, redo or rollback. Either way the memento names what changed.
+         *
+         * @param memento The memento recorded or restored.
+         */
+        void changed(Memento memento);
+    }
+
+    /**
+     * A single undo or redo entry. Either the {@link Memento} is held in memory or its state resides in the
+     * spill file and the {@link Spillable.Reloader} is held to rebuild it.
+     */
+    private static class Entry {
+        /** The in memory {@link Memento} or null if spilled. */
+        Memento memento;
+
+        /** The estimated bytes retained in memory by this entry. */
+        long size;
+
+        /** Where the spilled state resides or null if not spilled. */
+        SpillFile.Location location;
+
+        /** Rebuilds the {@link Memento} from spilled state. */
+        Spillable.Reloader reloader;
+
+        Entry(Memento memento) {
+            this.memento = memento;
+            this.size = Math.max(0, memento.sizeEstimate());
+        }
     }
 }
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+import com.cyte.edamame.diagnostics.FileEvent;
+import com.cyte.edamame.diagnostics.Metrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * An append only temporary file used by a {@link Recorder} to hold the state of {@link Spillable} mementos
+ * that no longer fit within its memory budget. The file is deleted when closed or when the JVM exits.<p>
+ *
+ * State no longer needed is {@link #free freed}. Once the freed bytes outnumber the live ones, and there are at
+ * least {@link #MIN_COMPACT_BYTES} of them, the live state is copied to a new file and the old one deleted, so the
+ * file stays within twice the live state however long the session.
+ */
+class SpillFile implements Closeable {
+    /** Time writing and reading spilled state, counting the bytes written or read. */
+    private static final Metrics.Timer WRITE_TIMER = Metrics.timer("file.write.spill", "bytes");
+    private static final Metrics.Timer READ_TIMER = Metrics.timer("file.read.spill", "bytes");
+
+    /** The fewest freed bytes worth compacting the file for. */
+    static final long MIN_COMPACT_BYTES = 1024 * 1024;
+
+    /** The temporary file backing this spill file. */
+    private File file;
+
+    /** Random access to the temporary file so spilled state can be read back in any order. */
+    private RandomAccessFile data;
+
+    /** The state written and not yet freed, in the order it lies in the file. */
+    private final Set<Location> live = new LinkedHashSet<>();
+
+    /** The number of bytes of live state. */
+    private long liveBytes = 0;
+
+    /**
+     * Create a new, empty spill file in the default temporary directory.
+     *
+     * @throws IOException if the temporary file cannot be created.
+     */
+    SpillFile() throws IOException {
+        file = createFile();
+        data = new RandomAccessFile(file, "rw");
+    }
+
+    private static File createFile() throws IOException {
+        File file = File.createTempFile("EDAmame-undo-", ".spill");
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Serialize state to the end of the file.
+     *
+     * @param state The state to write.
+     * @return a {@link Location} that can be used to read the state back.
+     * @throws IOException if the state cannot be serialized or written.
+     */
+    Location write(Serializable state) throws IOException {
+        long start = System.nanoTime();
+        FileEvent event = new FileEvent();
+        event.begin();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(state);
+        }
+        long offset = data.length();
+        data.seek(offset);
+        data.write(bytes.toByteArray());
+        measure(WRITE_TIMER, event, start, "write", bytes.size());
+        Location location = new Location(offset, bytes.size());
+        live.add(location);
+        liveBytes += location.length;
+        return location;
+    }
+
+    /**
+     * Read previously written state back from the file.
+     *
+     * @param location The location returned when the state was written.
+     * @return the deserialized state.
+     * @throws IOException if the state cannot be read or deserialized.
+     */
+    Serializable read(Location location) throws IOException {
+        long start = System.nanoTime();
+        FileEvent event = new FileEvent();
+        event.begin();
+        byte[] bytes = new byte[location.length];
+        data.seek(location.offset);
+        data.readFully(bytes);
+        measure(READ_TIMER, event, start, "read", bytes.length);
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Serializable) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Spilled state refers to an unknown class", e);
+        }
+    }
+
+    /**
+     * Release state that will not be read again, compacting the file if most of it is no longer needed.
+     * Compacting moves the remaining state, which the {@link Location}s returned by {@link #write} follow.
+     *
+     * @param location The location returned when the state was written.
+     * @throws IOException if the file needed compacting and could not be.
+     */
+    void free(Location location) throws IOException {
+        if (!live.remove(location))
+            return;
+        liveBytes -= location.length;
+        long dead = data.length() - liveBytes;
+        if (live.isEmpty())
+            clear();
+        else if (dead > liveBytes && dead >= MIN_COMPACT_BYTES)
+            compact();
+    }
+
+    /** Copy the live state to a new file, in order, and delete the old one. */
+    private void compact() throws IOException {
+        File compacted = createFile();
+        RandomAccessFile copy = new RandomAccessFile(compacted, "rw");
+        try {
+            byte[] buffer = new byte[0];
+            long offset = 0;
+            for (Location location : live) {
+                if (buffer.length < location.length)
+                    buffer = new byte[location.length];
+                data.seek(location.offset);
+                data.readFully(buffer, 0, location.length);
+                copy.write(buffer, 0, location.length);
+                location.moved = offset;
+                offset += location.length;
+            }
+        } catch (IOException e) {
+            copy.close();
+            //noinspection ResultOfMethodCallIgnored
+            compacted.delete();
+            throw e;
+        }
+        for (Location location : live)
+            location.offset = location.moved;
+        close();
+        file = compacted;
+        data = copy;
+    }
+
+    /**
+     * Discard the contents of the file. Only valid once no {@link Location}s are referenced any more.
+     *
+     * @throws IOException if the file cannot be truncated.
+     */
+    void clear() throws IOException {
+        live.clear();
+        liveBytes = 0;
+        data.setLength(0);
+    }
+
+    /**
+     * Returns the number of bytes currently occupied on disk.
+     * @return the length of the file in bytes.
+     * @throws IOException if the length cannot be determined.
+     */
+    long length() throws IOException {
+        return data.length();
+    }
+
+    /** Record the time taken to write or read in the metrics and, if enabled, as a flight recorder event. */
+    private void measure(Metrics.Timer timer, FileEvent event, long start, String operation, long length) {
+        timer.record(System.nanoTime() - start, length);
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.path = file.getPath();
+            event.bytes = length;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        data.close();
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    /**
+     * Where a piece of spilled state resides within the file. The offset changes when the file is compacted.
+     * Locations are compared by identity.
+     */
+    static final class Location {
+        /** The byte offset of the serialized state. */
+        private long offset;
+
+        /** The number of bytes of serialized state. */
+        private final int length;
+
+        /** The offset in the file being compacted into. */
+        private long moved;
+
+        private Location(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Returns the number of bytes of serialized state.
+         * @return the length in bytes.
+         */
+        int length() { return length; }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+import java.io.Serializable;
+
+/**
+ * A {@link Memento} whose captured state can be written to disk by a {@link Recorder} that has exceeded its
+ * memory budget.<p>
+ *
+ * A {@link Memento} normally holds a reference to the live {@link Originator} it restores, which cannot be
+ * serialized meaningfully. A {@link Spillable} therefore separates its captured state, which is written to
+ * disk, from a {@link Reloader} which is kept in memory and knows how to bind state read back from disk to
+ * the live {@link Originator} again. The {@link Reloader} must not retain the captured state itself or
+ * nothing is gained by spilling.
+ */
+public interface Spillable extends Memento {
+    /**
+     * Returns the captured state of this {@link Memento} to be written to disk.
+     *
+     * @return the serializable state captured by this {@link Memento}.
+     */
+    Serializable getState();
+
+    /**
+     * Returns the object used to rebuild this {@link Memento} from its state once read back from disk.
+     *
+     * @return the {@link Reloader} for this {@link Memento}.
+     */
+    Reloader getReloader();
+
+    /**
+     * Rebuilds a {@link Memento} bound to a live {@link Originator} from state previously spilled to disk.
+     */
+    @FunctionalInterface
+    interface Reloader {
+        /**
+         * Rebuild the {@link Memento} that originally produced the given state.
+         *
+         * @param state the state returned by {@link Spillable#getState()} after a round trip through disk.
+         * @return a {@link Memento} equivalent to the one that was spilled.
+         */
+        Memento reload(Serializable state);
+    }
+}
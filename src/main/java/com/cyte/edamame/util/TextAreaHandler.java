@@ -8,25 +8,68 @@
 package com.cyte.edamame.util;
 
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.LogRecord;
 
 import com.cyte.edamame.EDAmame;
+import javafx.application.Platform;
 import javafx.scene.control.TextArea;
 
 /**
  * Logging in {@link EDAmame} is performed primarily through a specific {@link javafx.scene.control.TabPane}
  * {@link javafx.scene.control.Tab} named "Log". Any information logged is directed to a {@link TextArea} in
  * the log tab instead of to stdout. {@link TextAreaHandler} is the class that provides the necessary
- * functionality for a given {@link TextArea}.
+ * functionality for a given {@link TextArea}.<p>
+ *
+ * Records may be logged from any thread, and heavy logging, such as during a design rule check or an import,
+ * must not slow the application. Publishing a record only formats it and places it in a fixed size lock-free
+ * ring buffer; if the buffer is full the record is dropped and counted. The first record placed in an empty
+ * buffer schedules a flush on the JavaFX application thread, which appends everything waiting in one batch, so
+ * the text area is changed at most about once per pulse. The text area keeps only the most recent lines, older
+ * ones being trimmed from the top.
  *
  * @author Jeff Wiegley, Ph.D.
  * @author jeffrey.wiegley@gmail.com
  */
 public class TextAreaHandler extends java.util.logging.Handler {
+    /** The number of records the buffer holds by default. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /** The number of lines the text area keeps by default. */
+    public static final int DEFAULT_MAX_LINES = 10_000;
+
     /**
      * The TextArea that this handler appends log requests to.
      */
-    private TextArea textArea;
+    private volatile TextArea textArea;
+
+    /** The formatted records waiting to be appended. */
+    private final Ring pending;
+
+    /** The greatest number of lines the text area keeps. */
+    private final int maxLines;
+
+    /** Whether a flush has been scheduled and not yet started. */
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    /** The number of records dropped because the buffer was full. */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** The number of dropped records already reported in the text area. Flushing thread only. */
+    private long reported = 0;
+
+    /** The length of each line in the text area including its newline, the last possibly unfinished. */
+    private final ArrayDeque<Integer> lines = new ArrayDeque<>();
+
+    /** The number of characters in the text area, as appended and trimmed here. */
+    private int shown = 0;
+
+    /** Whether the text area's last line has its newline. */
+    private boolean endsLine = true;
 
     /**
      * Construct a {@link TextAreaHandler} suitable for appending log requests to the given {@link TextArea}.
@@ -34,16 +77,95 @@ public class TextAreaHandler extends java.util.logging.Handler {
      * @param target The {@link TextArea} to append the messages to.
      */
     public TextAreaHandler(TextArea target) {
+        this(target, DEFAULT_CAPACITY, DEFAULT_MAX_LINES);
+    }
+
+    /**
+     * Construct a {@link TextAreaHandler} with a given buffer size and number of lines kept.
+     *
+     * @param target The {@link TextArea} to append the messages to.
+     * @param capacity The number of records that may wait to be appended, rounded up to a power of two.
+     * @param maxLines The greatest number of lines the text area keeps.
+     */
+    public TextAreaHandler(TextArea target, int capacity, int maxLines) {
+        if (capacity < 1 || maxLines < 1)
+            throw new IllegalArgumentException("Log capacity and line limit must be positive");
         textArea = target;
+        pending = new Ring(capacity);
+        this.maxLines = maxLines;
     }
 
+    /**
+     * Returns the number of records dropped because they were logged faster than they could be shown.
+     * @return the dropped record count.
+     */
+    public long getDroppedCount() { return dropped.get(); }
+
     @Override
     public void publish(final LogRecord record) {
-        if (textArea != null) {
-            textArea.appendText(MessageFormat.format(record.getMessage(), record.getParameters()));
+        if (textArea == null || !isLoggable(record))
+            return;
+        if (!pending.offer(MessageFormat.format(record.getMessage(), record.getParameters())))
+            dropped.incrementAndGet();
+        if (!scheduled.getAndSet(true))
+            Platform.runLater(this::flushToTextArea);
+    }
+
+    /** Append everything waiting in one batch, then trim the oldest lines. Runs on the JavaFX thread. */
+    private void flushToTextArea() {
+        scheduled.set(false);
+        TextArea target = textArea;
+        if (target == null)
+            return;
+        StringBuilder batch = new StringBuilder();
+        for (String message = pending.poll(); message != null; message = pending.poll())
+            batch.append(message);
+        long lost = dropped.get() - reported;
+        if (lost > 0) {
+            reported += lost;
+            batch.append("[").append(lost).append(" log records dropped]\n");
+        }
+        if (batch.length() == 0)
+            return;
+
+        int length = target.getLength();
+        if (length != shown) {
+            // Changed elsewhere, such as cleared: count its lines again.
+            lines.clear();
+            endsLine = true;
+            countLines(target.getText());
+        }
+        countLines(batch);
+        int excess = lines.size() - maxLines, trim = 0;
+        for (; excess > 0; excess--)
+            trim += lines.removeFirst();
+        shown = length + batch.length() - trim;
+        if (trim >= length) {
+            // Everything shown and the start of the batch are trimmed: replace the lot.
+            target.setText(batch.substring(trim - length));
+        } else {
+            target.appendText(batch.toString());
+            if (trim > 0)
+                target.deleteText(0, trim);
         }
     }
 
+    /** Add the lines of text about to be appended to the line lengths. */
+    private void countLines(CharSequence text) {
+        int unfinished = (lines.isEmpty() || endsLine) ? 0 : lines.removeLast();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines.addLast(unfinished + i + 1 - start);
+                unfinished = 0;
+                start = i + 1;
+            }
+        }
+        endsLine = start == text.length();
+        if (!endsLine)
+            lines.addLast(unfinished + text.length() - start);
+    }
+
     @Override
     public void flush() {
     }
@@ -52,4 +174,63 @@ public class TextAreaHandler extends java.util.logging.Handler {
     public void close() throws SecurityException {
         textArea = null;
     }
+
+    /**
+     * A bounded buffer any number of threads may add to without locking while one thread removes, after Dmitry
+     * Vyukov's bounded queue. Each slot has a sequence number saying whose turn it is: a producer may fill the
+     * slot when it equals the position being claimed, and the consumer may empty it when it is one more.
+     */
+    private static final class Ring {
+        private final AtomicReferenceArray<String> slots;
+        private final AtomicLongArray sequence;
+        private final int mask;
+
+        /** The next position to fill, claimed by producers. */
+        private final AtomicLong tail = new AtomicLong();
+
+        /** The next position to empty. Consumer only. */
+        private long head = 0;
+
+        Ring(int capacity) {
+            int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+            slots = new AtomicReferenceArray<>(size);
+            sequence = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++)
+                sequence.set(i, i);
+            mask = size - 1;
+        }
+
+        /** Add a value, returning false if the buffer is full. */
+        boolean offer(String value) {
+            long position = tail.get();
+            while (true) {
+                int slot = (int) position & mask;
+                long turn = sequence.get(slot) - position;
+                if (turn == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        slots.lazySet(slot, value);
+                        sequence.set(slot, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (turn < 0) {
+                    return false; // the consumer has yet to empty the slot a lap ago.
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        /** Remove the oldest value, or return null if the buffer is empty. */
+        String poll() {
+            int slot = (int) head & mask;
+            if (sequence.get(slot) != head + 1)
+                return null;
+            String value = slots.get(slot);
+            slots.lazySet(slot, null);
+            sequence.set(slot, head + mask + 1);
+            head++;
+            return value;
+        }
+    }
 }
@@ -10,11 +10,16 @@ module com.cyte.edamame {
     requires java.sql;
     requires com.h2database;
     requires java.prefs;
+    requires org.yaml.snakeyaml;
+    requires jdk.jfr;
 
 
     opens com.cyte.edamame to javafx.fxml, javafx.graphics;
     //exports com.cyte.edamame;
     opens com.cyte.edamame.editor to javafx.fxml, javafx.graphics;
     opens com.cyte.edamame.util to javafx.fxml, javafx.graphics;
+    opens com.cyte.edamame.model to org.yaml.snakeyaml;
+    opens com.cyte.edamame.library to org.yaml.snakeyaml;
+    opens com.cyte.edamame.diagnostics to jdk.jfr;
     //exports com.cyte.edamame.editor;
 }
\ No newline at end of file
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame;
+
+import com.cyte.edamame.editor.Editor;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.control.Menu;
+import javafx.scene.control.MenuBar;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.SeparatorMenuItem;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.control.ToolBar;
+import javafx.scene.layout.StackPane;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EditorControlsTest {
+    private final MenuItem newItem = new MenuItem("New"), quitItem = new MenuItem("Quit");
+    private final MenuItem undoItem = new MenuItem("Undo");
+    private final SeparatorMenuItem itemsBegin = new SeparatorMenuItem();
+    private final Tab libraryTab = new Tab("Library");
+
+    private Menu fileMenu, editMenu;
+    private StackPane toolBarStack;
+    private TabPane controlTabPane;
+    private EditorControls controls;
+
+    /** An editor contributing named items to the File and Edit menus, a toolbar and control tabs. */
+    private static final class Probe extends Editor {
+        final MenuItem[] fileItems, editItems;
+        final Tab[] controlTabs;
+
+        Probe(String name, boolean withToolBar, int fileCount, int editCount, int tabCount) {
+            fileItems = items(name + " file ", fileCount);
+            editItems = items(name + " edit ", editCount);
+            controlTabs = new Tab[tabCount];
+            for (int i = 0; i < tabCount; i++)
+                controlTabs[i] = new Tab(name + " tab " + i);
+            if (fileCount > 0)
+                menus.put("_File", FXCollections.observableArrayList(fileItems));
+            if (editCount > 0)
+                menus.put("_Edit", FXCollections.observableArrayList(editItems));
+            menus.put("_Missing", FXCollections.observableArrayList(new MenuItem(name + " missing")));
+            tabs.addAll(controlTabs);
+            if (withToolBar)
+                toolBar = new ToolBar();
+        }
+
+        private static MenuItem[] items(String prefix, int count) {
+            MenuItem[] items = new MenuItem[count];
+            for (int i = 0; i < count; i++)
+                items[i] = new MenuItem(prefix + i);
+            return items;
+        }
+    }
+
+    @BeforeEach
+    void startToolkit() {
+        try {
+            Platform.startup(() -> { });
+        } catch (IllegalStateException alreadyStarted) {
+            // Started by an earlier test.
+        }
+        itemsBegin.setId(EditorControls.ITEMS_BEGIN);
+        fileMenu = new Menu("_File");
+        fileMenu.getItems().addAll(newItem, itemsBegin, quitItem);
+        editMenu = new Menu("_Edit");
+        editMenu.getItems().add(undoItem);
+        toolBarStack = new StackPane();
+        controlTabPane = new TabPane();
+        controlTabPane.getTabs().add(libraryTab);
+        controls = new EditorControls(new MenuBar(fileMenu, editMenu), toolBarStack, controlTabPane);
+    }
+
+    private static <T> List<T> concat(List<T> first, T[] second) {
+        List<T> all = new ArrayList<>(first);
+        all.addAll(List.of(second));
+        return all;
+    }
+
+    /** Assert the window holds exactly the selected editor's controls, or only its own if none is selected. */
+    private void assertShowing(Probe probe) {
+        MenuItem[] fileItems = (probe == null) ? new MenuItem[0] : probe.fileItems;
+        MenuItem[] editItems = (probe == null) ? new MenuItem[0] : probe.editItems;
+        Tab[] tabs = (probe == null) ? new Tab[0] : probe.controlTabs;
+        List<MenuItem> file = concat(List.of(newItem, itemsBegin), fileItems);
+        file.add(quitItem);
+        assertEquals(file, fileMenu.getItems());
+        assertEquals(concat(List.of(undoItem), editItems), editMenu.getItems());
+        assertEquals(concat(List.of(libraryTab), tabs), controlTabPane.getTabs());
+        List<Node> bars = (probe == null || probe.getToolBar() == null) ? List.of() : List.of(probe.getToolBar());
+        assertEquals(bars, toolBarStack.getChildren());
+    }
+
+    /** Count the changes made to a list. */
+    private static int[] countChanges(ObservableList<?> list) {
+        int[] changes = {0};
+        list.addListener((ListChangeListener<Object>) change -> changes[0]++);
+        return changes;
+    }
+
+    @Test
+    void onlyTheSelectedEditorsControlsAreShown() {
+        Probe first = new Probe("first", true, 2, 1, 2), second = new Probe("second", true, 3, 0, 1);
+        controls.add(first);
+        controls.add(second);
+        assertShowing(null);
+
+        controls.select(first);
+        assertShowing(first);
+        assertTrue(first.getToolBar().isVisible());
+        controls.select(second);
+        assertShowing(second);
+        controls.select(first);
+        assertShowing(first);
+        controls.select(null);
+        assertShowing(null);
+        assertEquals(4, controls.getSwitchStats().switches());
+    }
+
+    @Test
+    void eachListChangesOnceASwitch() {
+        Probe first = new Probe("first", true, 5, 0, 3), second = new Probe("second", true, 4, 0, 2);
+        controls.add(first);
+        controls.add(second);
+        controls.select(first);
+        int[] file = countChanges(fileMenu.getItems()), edit = countChanges(editMenu.getItems());
+        int[] bars = countChanges(toolBarStack.getChildren()), tabs = countChanges(controlTabPane.getTabs());
+
+        controls.select(second);
+        assertShowing(second);
+        assertEquals(2, file[0], "items were not removed and inserted in one change each");
+        assertEquals(0, edit[0], "a menu neither editor uses was changed");
+        assertEquals(2, bars[0]);
+        assertEquals(2, tabs[0]);
+    }
+
+    @Test
+    void reselectingIsNotASwitch() {
+        Probe probe = new Probe("probe", true, 1, 1, 1);
+        controls.add(probe);
+        controls.select(probe);
+        int[] file = countChanges(fileMenu.getItems());
+        controls.select(probe);
+        assertShowing(probe);
+        assertEquals(0, file[0]);
+        assertEquals(1, controls.getSwitchStats().switches());
+    }
+
+    @Test
+    void itemsAreAppendedToMenusWithoutASeparator() {
+        Probe probe = new Probe("probe", false, 0, 2, 0);
+        editMenu.getItems().add(new MenuItem("Redo"));
+        controls = new EditorControls(new MenuBar(fileMenu, editMenu), toolBarStack, controlTabPane);
+        controls.add(probe);
+        controls.select(probe);
+        assertEquals("Redo", editMenu.getItems().get(1).getText());
+        assertEquals(List.of(probe.editItems), editMenu.getItems().subList(2, 4));
+        assertEquals(List.of(), toolBarStack.getChildren(), "an editor without a toolbar added one");
+    }
+
+    @Test
+    void removingTheSelectedEditorTakesOutItsControls() {
+        Probe selected = new Probe("selected", true, 2, 2, 2), other = new Probe("other", true, 1, 1, 1);
+        controls.add(selected);
+        controls.add(other);
+        controls.select(selected);
+        controls.remove(other);
+        assertShowing(selected);
+        controls.remove(selected);
+        assertShowing(null);
+        controls.select(other);
+        assertShowing(null);
+    }
+
+    @Test
+    void controlsMovedByOthersAreStillRemoved() {
+        Probe first = new Probe("first", true, 1, 0, 2), second = new Probe("second", false, 1, 0, 1);
+        controls.add(first);
+        controls.add(second);
+        controls.select(first);
+        Tab pinned = new Tab("Pinned");
+        controlTabPane.getTabs().add(0, pinned);
+
+        controls.select(second);
+        assertEquals(List.of(pinned, libraryTab, second.controlTabs[0]), controlTabPane.getTabs());
+        controls.select(null);
+        assertEquals(List.of(pinned, libraryTab), controlTabPane.getTabs());
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.editor;
+
+import javafx.application.Platform;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EditorFactoryTest {
+    private final EditorFactory factory = new EditorFactory();
+
+    /** Every editor made, in order. */
+    private final List<Probe> made = new ArrayList<>();
+
+    /** An editor recording what the factory does with it. */
+    private static final class Probe extends Editor {
+        boolean opened = false, closed = false;
+
+        /** Whether the editor was made on the JavaFX application thread. */
+        final boolean madeOnFx = Platform.isFxApplicationThread();
+
+        @Override
+        public void opened() {
+            opened = true;
+        }
+
+        @Override
+        public boolean close() {
+            closed = true;
+            return true;
+        }
+    }
+
+    @BeforeEach
+    void startToolkit() {
+        try {
+            Platform.startup(() -> { });
+        } catch (IllegalStateException alreadyStarted) {
+            // Started by an earlier test.
+        }
+    }
+
+    @AfterEach
+    void closeFactory() throws Exception {
+        factory.close();
+        onFx(() -> null);
+    }
+
+    /**
+     * Run an action on the JavaFX application thread after everything already posted to it, including editors
+     * being made, and wait for it.
+     */
+    private static <T> T onFx(Callable<T> action) throws Exception {
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            try {
+                result.set(action.call());
+            } catch (Exception e) {
+                failure.set(e);
+            } finally {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS), "the JavaFX application thread is stuck");
+        if (failure.get() != null)
+            throw failure.get();
+        return result.get();
+    }
+
+    private Probe make() {
+        Probe probe = new Probe();
+        made.add(probe);
+        return probe;
+    }
+
+    @Test
+    void poolIsFilledOnStartAndRefilledAfterEachOpen() throws Exception {
+        factory.register(Probe.class, this::make, 2);
+        assertEquals(0, factory.getReadyCount(Probe.class), "editors were made before the factory started");
+        factory.start();
+        onFx(() -> null);
+        assertEquals(2, factory.getReadyCount(Probe.class));
+        assertEquals(2, made.size());
+        assertTrue(made.stream().allMatch(probe -> probe.madeOnFx && !probe.opened));
+
+        Probe opened = onFx(() -> factory.open(Probe.class));
+        assertSame(made.get(0), opened);
+        assertTrue(opened.opened);
+        onFx(() -> null);
+        assertEquals(2, factory.getReadyCount(Probe.class), "the pool was not refilled");
+        assertEquals(3, made.size());
+        EditorFactory.OpenStats stats = onFx(() -> factory.getStats(Probe.class));
+        assertEquals(1, stats.opens());
+        assertEquals(1, stats.warmOpens());
+    }
+
+    @Test
+    void editorsAreMadeOnDemandWithoutAPool() throws Exception {
+        factory.register(Probe.class, this::make, 0);
+        factory.start();
+        onFx(() -> null);
+        assertEquals(0, made.size(), "an editor with no pool was made ahead of time");
+
+        Probe opened = onFx(() -> factory.open(Probe.class));
+        assertTrue(opened.opened);
+        assertEquals(1, made.size());
+        EditorFactory.OpenStats stats = onFx(() -> factory.getStats(Probe.class));
+        assertEquals(1, stats.opens());
+        assertEquals(0, stats.warmOpens());
+    }
+
+    @Test
+    void editorsAreMadeOnDemandUntilStarted() throws Exception {
+        factory.register(Probe.class, this::make, 2);
+        onFx(() -> factory.open(Probe.class));
+        onFx(() -> null);
+        assertEquals(1, made.size());
+        assertEquals(0, factory.getReadyCount(Probe.class));
+    }
+
+    @Test
+    void partsAreLoadedInTheBackgroundAndAssembledOnFx() throws Exception {
+        List<Runnable> background = new ArrayList<>();
+        List<Boolean> loadedOnFx = new ArrayList<>();
+        factory.register(Probe.class, () -> {
+            loadedOnFx.add(Platform.isFxApplicationThread());
+            return "parts";
+        }, parts -> {
+            assertEquals("parts", parts);
+            return make();
+        }, 1, background::add);
+        factory.start();
+        onFx(() -> null);
+        assertEquals(1, background.size());
+        assertEquals(0, made.size(), "the editor was assembled before its parts were loaded");
+
+        background.remove(0).run();
+        onFx(() -> null);
+        assertEquals(List.of(false), loadedOnFx);
+        assertEquals(1, factory.getReadyCount(Probe.class));
+        assertTrue(made.get(0).madeOnFx);
+    }
+
+    @Test
+    void failureStopsMakingEditorsAheadOfTime() throws Exception {
+        boolean[] fail = {true};
+        factory.register(Probe.class, () -> {
+            if (fail[0])
+                throw new IOException("no FXML");
+            return make();
+        }, 2);
+        factory.start();
+        onFx(() -> null);
+        assertEquals(0, factory.getReadyCount(Probe.class));
+
+        assertThrows(IOException.class, () -> onFx(() -> factory.open(Probe.class)));
+        fail[0] = false;
+        assertTrue(onFx(() -> factory.open(Probe.class)).opened);
+        onFx(() -> null);
+        assertEquals(0, factory.getReadyCount(Probe.class), "the pool was refilled after making one failed");
+        assertEquals(1, made.size());
+    }
+
+    @Test
+    void closingClosesEditorsNeverOpened() throws Exception {
+        factory.register(Probe.class, this::make, 2);
+        factory.start();
+        Probe opened = onFx(() -> factory.open(Probe.class));
+        factory.close();
+        onFx(() -> null);
+        assertEquals(0, factory.getReadyCount(Probe.class));
+        assertFalse(opened.closed, "an editor in use was closed");
+        for (Probe probe : made)
+            assertEquals(probe != opened, probe.closed);
+        assertEquals(3, made.size());
+    }
+
+    @Test
+    void unregisteredTypeIsRefused() {
+        assertThrows(IllegalArgumentException.class, () -> factory.open(Probe.class));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.geometry;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PredicatesTest {
+    private static final long BIG = Predicates.LIMIT - 1;
+
+    /** The square of the distance between a point and a segment, as an exact fraction numerator / denominator. */
+    private static BigInteger[] squaredDistance(long px, long py, long ax, long ay, long bx, long by) {
+        BigInteger abx = BigInteger.valueOf(bx).subtract(BigInteger.valueOf(ax));
+        BigInteger aby = BigInteger.valueOf(by).subtract(BigInteger.valueOf(ay));
+        BigInteger apx = BigInteger.valueOf(px).subtract(BigInteger.valueOf(ax));
+        BigInteger apy = BigInteger.valueOf(py).subtract(BigInteger.valueOf(ay));
+        BigInteger length2 = abx.pow(2).add(aby.pow(2));
+        BigInteger dot = apx.multiply(abx).add(apy.multiply(aby));
+        if (length2.signum() == 0 || dot.signum() <= 0)
+            return new BigInteger[] {apx.pow(2).add(apy.pow(2)), BigInteger.ONE};
+        if (dot.compareTo(length2) >= 0) {
+            BigInteger bpx = apx.subtract(abx), bpy = apy.subtract(aby);
+            return new BigInteger[] {bpx.pow(2).add(bpy.pow(2)), BigInteger.ONE};
+        }
+        BigInteger cross = abx.multiply(apy).subtract(aby.multiply(apx));
+        return new BigInteger[] {cross.pow(2), length2};
+    }
+
+    private static int expectedComparison(long px, long py, long ax, long ay, long bx, long by, long distance) {
+        BigInteger[] d2 = squaredDistance(px, py, ax, ay, bx, by);
+        return d2[0].compareTo(BigInteger.valueOf(distance).pow(2).multiply(d2[1]));
+    }
+
+    @Test
+    void orientationIsPositiveCounterclockwise() {
+        assertEquals(1, Predicates.orientation(0, 0, 10, 0, 0, 10));
+        assertEquals(-1, Predicates.orientation(0, 0, 0, 10, 10, 0));
+        assertEquals(0, Predicates.orientation(0, 0, 10, 10, 20, 20));
+        assertEquals(0, Predicates.orientation(5, 5, 5, 5, 7, 9));
+    }
+
+    @Test
+    void orientationIsExactNearTheLimit() {
+        // c is one nanometre off the line through a and b, whose products overflow 64 bits many times over.
+        assertEquals(0, Predicates.orientation(-BIG, -BIG, BIG, BIG, 3, 3));
+        assertEquals(1, Predicates.orientation(-BIG, -BIG, BIG, BIG, 3, 4));
+        assertEquals(-1, Predicates.orientation(-BIG, -BIG, BIG, BIG, 4, 3));
+        assertEquals(1, Predicates.orientation(-BIG, -BIG + 1, BIG, BIG, 0, 1));
+        assertEquals(-1, Predicates.orientation(-BIG, -BIG + 1, BIG, BIG, 0, 0));
+    }
+
+    @Test
+    void orientationMatchesBigIntegers() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            long ax = random.nextLong() >> 2, ay = random.nextLong() >> 2;
+            long bx = random.nextLong() >> 2, by = random.nextLong() >> 2;
+            long cx = random.nextLong() >> 2, cy = random.nextLong() >> 2;
+            if (i % 2 == 0) {
+                // Nearly collinear: c a whole fraction of the way from a to b, nudged by a nanometre or so.
+                long k = 1 + random.nextInt(1 << 20);
+                bx = ax + (bx - ax) / k * k;
+                by = ay + (by - ay) / k * k;
+                cx = ax + (bx - ax) / k * random.nextInt((int) k + 1) + random.nextInt(3) - 1;
+                cy = ay + (by - ay) / k * random.nextInt((int) k + 1);
+            }
+            BigInteger cross = BigInteger.valueOf(bx - ax).multiply(BigInteger.valueOf(cy - ay))
+                    .subtract(BigInteger.valueOf(by - ay).multiply(BigInteger.valueOf(cx - ax)));
+            assertEquals(cross.signum(), Predicates.orientation(ax, ay, bx, by, cx, cy));
+        }
+    }
+
+    @Test
+    void distanceSignsAtEndsAndAlongSegments() {
+        // A 3-4-5 triangle: (3, 4) is exactly 5 from the origin.
+        assertEquals(0, Predicates.compareDistance(3, 4, 0, 0, -10, -10, 5));
+        assertEquals(-1, Predicates.compareDistance(3, 4, 0, 0, -10, -10, 6));
+        assertEquals(1, Predicates.compareDistance(3, 4, 0, 0, -10, -10, 4));
+        // Beside the middle of a segment.
+        assertEquals(0, Predicates.compareDistance(50, 7, 0, 0, 100, 0, 7));
+        assertEquals(1, Predicates.compareDistance(50, 8, 0, 0, 100, 0, 7));
+        // On the segment.
+        assertEquals(0, Predicates.compareDistance(50, 0, 0, 0, 100, 0, 0));
+        assertEquals(-1, Predicates.compareDistance(50, 0, 0, 0, 100, 0, 1));
+        // A segment of no length.
+        assertEquals(0, Predicates.compareDistance(3, 4, 0, 0, 0, 0, 5));
+    }
+
+    @Test
+    void nearTiesBesideLongSegmentsAreExact() {
+        Random random = new Random(2);
+        for (int i = 0; i < 100_000; i++) {
+            long scale = 1L << (40 + random.nextInt(21));
+            long ax = random.nextLong() % scale, ay = random.nextLong() % scale;
+            long bx = random.nextLong() % scale, by = random.nextLong() % scale;
+            // A point a few micrometres beside a random point of the segment.
+            double t = random.nextDouble();
+            long px = ax + (long) (t * (bx - ax)) + random.nextInt(20_001) - 10_000;
+            long py = ay + (long) (t * (by - ay)) + random.nextInt(20_001) - 10_000;
+            long near = Math.round(Predicates.distance(px, py, ax, ay, bx, by));
+            for (long distance = Math.max(0, near - 2); distance <= near + 2; distance++) {
+                int expected = expectedComparison(px, py, ax, ay, bx, by, distance);
+                assertEquals(expected, Predicates.compareDistance(px, py, ax, ay, bx, by, distance),
+                        "(" + px + ", " + py + ") to (" + ax + ", " + ay + ")-(" + bx + ", " + by + ") at "
+                                + distance);
+            }
+        }
+    }
+
+    @Test
+    void exactTiesBesideLongSegments() {
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            // A segment along (3, 4) and a point offset along (-4, 3) from a point of it: exactly 5m away.
+            long k = 1 + random.nextInt(1 << 30), m = 1 + random.nextInt(1 << 20);
+            long ax = random.nextInt() * 1000L, ay = random.nextInt() * 1000L;
+            long bx = ax + 3 * k * (1L << 28), by = ay + 4 * k * (1L << 28);
+            long along = random.nextLong() % (k * (1L << 28));
+            long px = ax + 3 * Math.abs(along) - 4 * m, py = ay + 4 * Math.abs(along) + 3 * m;
+            assertEquals(0, Predicates.compareDistance(px, py, ax, ay, bx, by, 5 * m));
+            assertEquals(1, Predicates.compareDistance(px, py, ax, ay, bx, by, 5 * m - 1));
+            assertEquals(-1, Predicates.compareDistance(px, py, ax, ay, bx, by, 5 * m + 1));
+        }
+    }
+
+    @Test
+    void segmentDistanceSigns() {
+        assertEquals(-1, Predicates.compareSegmentDistance(0, 0, 10, 10, 0, 10, 10, 0, 5));
+        assertEquals(0, Predicates.compareSegmentDistance(0, 0, 10, 10, 0, 10, 10, 0, 0));
+        assertEquals(0, Predicates.compareSegmentDistance(0, 0, 10, 0, 0, 3, 10, 3, 3));
+        assertEquals(1, Predicates.compareSegmentDistance(0, 0, 10, 0, 0, 3, 10, 3, 2));
+        assertEquals(-1, Predicates.compareSegmentDistance(0, 0, 10, 0, 0, 3, 10, 3, 4));
+        assertEquals(0, Predicates.compareSegmentDistance(0, 0, 10, 0, 13, 4, 20, 4, 5));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.geometry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegionTest {
+    /** Returns the winding number of simple polygons about a point off all their boundaries. */
+    private static int winding(List<Polygon> polygons, long x, long y) {
+        int winding = 0;
+        for (Polygon polygon : polygons) {
+            if (polygon.contains(x, y))
+                winding += polygon.orientation();
+        }
+        return winding;
+    }
+
+    /** Returns whether a point off every boundary lies inside a region, which winds about it once or not at all. */
+    private static boolean inside(Region region, long x, long y) {
+        int winding = winding(region.getPolygons(), x, y);
+        assertTrue(winding == 0 || winding == 1, "winding " + winding);
+        return winding == 1;
+    }
+
+    private static boolean expected(Region.Operation operation, boolean a, boolean b) {
+        return switch (operation) {
+            case UNION -> a || b;
+            case INTERSECTION -> a && b;
+            case DIFFERENCE -> a && !b;
+            case XOR -> a != b;
+        };
+    }
+
+    /** Rectangles with even corners, so every crossing is exact and odd points are never on a boundary. */
+    private static List<Polygon> randomRectangles(Random random, int count) {
+        List<Polygon> rectangles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long x = 2 * random.nextInt(100), y = 2 * random.nextInt(100);
+            long w = 2 + 2 * random.nextInt(40), h = 2 + 2 * random.nextInt(40);
+            Polygon rectangle = Polygon.of(new Box(x, y, x + w, y + h));
+            // Some clockwise, cancelling where they overlap counterclockwise ones by the non-zero rule.
+            rectangles.add((i % 3 == 0) ? reverse(rectangle) : rectangle);
+        }
+        return rectangles;
+    }
+
+    private static Polygon reverse(Polygon polygon) {
+        long[] xs = new long[polygon.size()], ys = new long[polygon.size()];
+        for (int i = 0; i < polygon.size(); i++) {
+            xs[i] = polygon.x(polygon.size() - 1 - i);
+            ys[i] = polygon.y(polygon.size() - 1 - i);
+        }
+        return new Polygon(xs, ys);
+    }
+
+    private static void assertWellFormed(Region region) {
+        for (Polygon polygon : region.getPolygons()) {
+            assertTrue(polygon.size() >= 3);
+            assertNotEquals(0, polygon.orientation(), "a boundary with no area");
+        }
+    }
+
+    @Test
+    void booleansOfRectanglesMatchPointTests() {
+        Random random = new Random(1);
+        for (int round = 0; round < 50; round++) {
+            List<Polygon> a = randomRectangles(random, 1 + random.nextInt(8));
+            List<Polygon> b = randomRectangles(random, 1 + random.nextInt(8));
+            for (Region.Operation operation : Region.Operation.values()) {
+                Region result = Region.combine(operation, a, b);
+                assertWellFormed(result);
+                for (int p = 0; p < 500; p++) {
+                    long x = 2 * random.nextInt(125) - 3, y = 2 * random.nextInt(125) - 3;
+                    boolean inA = winding(a, x, y) != 0, inB = winding(b, x, y) != 0;
+                    assertEquals(expected(operation, inA, inB), inside(result, x, y),
+                            operation + " at (" + x + ", " + y + ") of " + a + " and " + b);
+                }
+            }
+        }
+    }
+
+    @Test
+    void areasOfRandomShapesAreConsistent() {
+        Random random = new Random(2);
+        for (int round = 0; round < 100; round++) {
+            Region a = Region.of(Polygon.circle(random.nextInt(1_000_000), random.nextInt(1_000_000),
+                    100_000 + random.nextInt(500_000), 1_000));
+            List<Point> triangle = new ArrayList<>();
+            for (int i = 0; i < 3; i++)
+                triangle.add(new Point(random.nextInt(1_000_000), random.nextInt(1_000_000)));
+            Region b = Region.of(Polygon.of(triangle));
+            double union = a.union(b).area(), intersection = a.intersect(b).area();
+            double tolerance = 1e-9 * (a.area() + b.area()) + 1e7; // crossings are rounded to a nanometre.
+            assertEquals(a.area() + b.area(), union + intersection, tolerance);
+            assertEquals(a.area() - intersection, a.subtract(b).area(), tolerance);
+            assertEquals(union - intersection, a.xor(b).area(), tolerance);
+        }
+    }
+
+    @Test
+    void holesAreClockwise() {
+        Region frame = Region.of(Polygon.of(new Box(0, 0, 100, 100))).subtract(Region.of(
+                Polygon.of(new Box(20, 20, 80, 80))));
+        assertEquals(2, frame.getPolygons().size());
+        assertEquals(100 * 100 - 60 * 60, frame.area(), 0);
+        int outlines = 0, holes = 0;
+        for (Polygon polygon : frame.getPolygons()) {
+            if (polygon.orientation() > 0)
+                outlines++;
+            else
+                holes++;
+        }
+        assertEquals(1, outlines);
+        assertEquals(1, holes);
+        assertTrue(inside(frame, 10, 10));
+        assertFalse(inside(frame, 50, 50));
+    }
+
+    @Test
+    void touchingSquaresMergeAndSeparateCleanly() {
+        Region left = Region.of(Polygon.of(new Box(0, 0, 10, 10)));
+        Region right = Region.of(Polygon.of(new Box(10, 0, 20, 10)));
+        Region union = left.union(right);
+        assertEquals(1, union.getPolygons().size());
+        assertEquals(200, union.area(), 0);
+        assertTrue(left.intersect(right).isEmpty());
+        assertEquals(left.area(), left.subtract(right).area(), 0);
+    }
+
+    @Test
+    void inflatingAndShrinkingASquare() {
+        long side = 1_000_000, distance = 100_000;
+        Region square = Region.of(Polygon.of(new Box(0, 0, side, side)));
+        Region grown = square.inflate(distance, 100);
+        double exact = side * side + 4.0 * side * distance + Math.PI * distance * distance;
+        assertEquals(exact, grown.area(), exact * 1e-3);
+        assertEquals(new Box(-distance, -distance, side + distance, side + distance), grown.bounds());
+        Region shrunk = square.inflate(-distance, 100);
+        assertEquals(Math.pow(side - 2 * distance, 2), shrunk.area(), 0);
+    }
+
+    @Test
+    void parallelOverlayMatchesSerialOverlay() {
+        Random random = new Random(3);
+        List<Polygon> pads = new ArrayList<>();
+        for (int i = 0; i < 8_000; i++) {
+            long x = random.nextInt(100_000_000), y = random.nextInt(100_000_000);
+            pads.add(Polygon.circle(x, y, 100_000 + random.nextInt(300_000), 5_000));
+        }
+        List<Polygon> plane = List.of(Polygon.of(new Box(0, 0, 100_000_000, 100_000_000)));
+        ForkJoinPool serial = new ForkJoinPool(1), parallel = new ForkJoinPool(4);
+        try {
+            Region one = Region.combine(Region.Operation.DIFFERENCE, plane, pads, serial);
+            Region four = Region.combine(Region.Operation.DIFFERENCE, plane, pads, parallel);
+            assertEquals(one.getVertexCount(), four.getVertexCount());
+            assertEquals(one.area(), four.area(), 0);
+            assertEquals(new HashSet<>(one.getPolygons()), new HashSet<>(four.getPolygons()));
+            assertWellFormed(four);
+        } finally {
+            serial.shutdown();
+            parallel.shutdown();
+        }
+    }
+}
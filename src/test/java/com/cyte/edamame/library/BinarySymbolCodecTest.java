@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.model.Graphic;
+import com.cyte.edamame.model.Symbol;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinarySymbolCodecTest {
+    private final BinarySymbolCodec codec = new BinarySymbolCodec();
+
+    @Test
+    void sampleSymbolsRoundTrip() throws IOException {
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            Symbol symbol = SymbolCodecBenchmark.sample(random, i);
+            assertEquals(symbol, codec.decode(codec.encode(symbol)));
+        }
+    }
+
+    @Test
+    void extremeValuesRoundTrip() throws IOException {
+        Symbol symbol = new Symbol();
+        symbol.setName("\u00b5C \u2013 \u03a9");
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("empty", "");
+        attributes.put("absent", null);
+        symbol.setAttributes(attributes);
+        symbol.setGraphics(List.of(
+                new Graphic(Graphic.Kind.LINE, Long.MIN_VALUE, Long.MAX_VALUE, -1, 0, 1, null),
+                new Graphic(Graphic.Kind.PIN, -64, 63, -65, 64, 0, "")));
+
+        Symbol decoded = codec.decode(codec.encode(symbol));
+        assertEquals(symbol, decoded);
+        assertEquals(List.of("empty", "absent"), List.copyOf(decoded.getAttributes().keySet()));
+    }
+
+    @Test
+    void binaryIsSmallerThanYaml() throws IOException {
+        Symbol symbol = SymbolCodecBenchmark.sample(new Random(3), 0);
+        byte[] binary = codec.encode(symbol);
+        byte[] yaml = new YamlSymbolCodec().encode(symbol);
+        assertTrue(binary.length * 3 < yaml.length, "binary " + binary.length + " bytes, YAML " + yaml.length);
+    }
+
+    @Test
+    void malformedBodiesAreRejected() throws IOException {
+        byte[] body = codec.encode(SymbolCodecBenchmark.sample(new Random(5), 0));
+        for (int length = 0; length < body.length; length++) {
+            byte[] truncated = Arrays.copyOf(body, length);
+            assertThrows(IOException.class, () -> codec.decode(truncated));
+        }
+        byte[] future = body.clone();
+        future[0] = BinarySymbolCodec.VERSION + 1;
+        assertThrows(IOException.class, () -> codec.decode(future));
+    }
+}
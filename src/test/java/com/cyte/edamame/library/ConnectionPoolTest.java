@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+    private final ConnectionPool pool = new ConnectionPool(settings(2, 200));
+
+    /** Settings for a private in-memory database. */
+    static LibrarySettings settings(int poolSize, long acquireTimeout) {
+        LibrarySettings settings = new LibrarySettings();
+        settings.setPath("mem:" + UUID.randomUUID());
+        settings.getOptions().put("DB_CLOSE_DELAY", "-1");
+        settings.setPoolSize(poolSize);
+        settings.setAcquireTimeout(acquireTimeout);
+        return settings;
+    }
+
+    @AfterEach
+    void closePool() {
+        pool.close();
+    }
+
+    @Test
+    void releasedConnectionsAreReused() throws SQLException {
+        Connection first;
+        try (PooledConnection connection = pool.acquire()) {
+            first = connection.getConnection();
+        }
+        try (PooledConnection connection = pool.acquire()) {
+            assertSame(first, connection.getConnection());
+        }
+    }
+
+    @Test
+    void exhaustedPoolTimesOutThenRecovers() throws SQLException {
+        PooledConnection a = pool.acquire();
+        PooledConnection b = pool.acquire();
+        assertNotSame(a.getConnection(), b.getConnection());
+        SQLException timeout = assertThrows(SQLException.class, pool::acquire);
+        assertTrue(timeout.getMessage().contains("timed out"), timeout.getMessage());
+
+        a.close();
+        try (PooledConnection c = pool.acquire()) {
+            assertSame(a.getConnection(), c.getConnection());
+        }
+        b.close();
+    }
+
+    @Test
+    void waitingLeaseGetsTheNextConnectionReturned() throws Exception {
+        try (ConnectionPool patient = new ConnectionPool(settings(1, 10_000))) {
+            PooledConnection held = patient.acquire();
+            CompletableFuture<Connection> waiting = CompletableFuture.supplyAsync(() -> {
+                try (PooledConnection connection = patient.acquire()) {
+                    return connection.getConnection();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(100);
+            assertFalse(waiting.isDone(), "a lease was granted beyond the pool's size");
+            held.close();
+            assertSame(held.getConnection(), waiting.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void brokenConnectionIsReplaced() throws SQLException {
+        Connection broken;
+        try (PooledConnection connection = pool.acquire()) {
+            broken = connection.getConnection();
+            broken.close();
+        }
+        PooledConnection a = pool.acquire();
+        PooledConnection b = pool.acquire();
+        assertNotSame(broken, a.getConnection());
+        assertNotSame(broken, b.getConnection());
+        assertTrue(a.getConnection().isValid(1) && b.getConnection().isValid(1));
+        a.close();
+        b.close();
+    }
+
+    @Test
+    void closedPoolRefusesLeases() throws SQLException {
+        PooledConnection leased = pool.acquire();
+        pool.close();
+        assertThrows(SQLException.class, pool::acquire);
+        leased.close();
+        assertTrue(leased.getConnection().isClosed(), "a connection returned to a closed pool was kept open");
+    }
+}
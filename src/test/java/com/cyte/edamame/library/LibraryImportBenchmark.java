@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.model.Symbol;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Compares importing a directory of YAML symbol files with a {@link LibraryImporter} against reading the files
+ * one at a time and storing each with its own {@link SymbolLibrary#insert} statement and commit. Each is run
+ * against a new library database on disk, so the cost of committing is included. Run by the importBenchmark
+ * Gradle task; the arguments are the number of symbol files and the importer's chunk size.
+ */
+public final class LibraryImportBenchmark {
+    private LibraryImportBenchmark() {
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The number of symbol files, default 5000, and the chunk size, default
+     *             {@link LibraryImporter#DEFAULT_CHUNK_SIZE}.
+     * @throws Exception if the files cannot be written or the libraries fail.
+     */
+    public static void main(String[] args) throws Exception {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 5000;
+        int chunkSize = (args.length > 1) ? Integer.parseInt(args[1]) : LibraryImporter.DEFAULT_CHUNK_SIZE;
+        Path scratch = Files.createTempDirectory("edamame-import");
+        try {
+            Path source = Files.createDirectory(scratch.resolve("symbols"));
+            List<Path> files = write(source, count, new Random(42));
+            System.out.printf("%d symbol files, chunks of %d%n", count, chunkSize);
+            System.out.printf("%-12s %10s %12s%n", "import", "seconds", "symbols/s");
+
+            try (SymbolLibrary library = library(scratch.resolve("bulk"))) {
+                long start = System.nanoTime();
+                LibraryImporter.Progress done = new LibraryImporter(library, chunkSize)
+                        .importFrom(source, progress -> { }).join();
+                report("bulk", done.done(), System.nanoTime() - start);
+                if (done.failures() != 0 || done.done() != count)
+                    throw new IllegalStateException("bulk import stored " + done.done() + " of " + count
+                            + " symbols with " + done.failures() + " failures");
+            }
+
+            try (SymbolLibrary library = library(scratch.resolve("single"))) {
+                long start = System.nanoTime();
+                for (Path file : files) {
+                    SymbolDocument document = YamlSymbolCodec.load(Files.readAllBytes(file), SymbolDocument.class);
+                    byte[] body = SymbolFormat.DEFAULT.getCodec().encode(document.getSymbol());
+                    library.insert(SymbolRecord.create(UUID.fromString(document.getId()), document.getAuthor(),
+                            SymbolFormat.DEFAULT, body)).join();
+                }
+                report("row by row", files.size(), System.nanoTime() - start);
+            }
+        } finally {
+            try (Stream<Path> walk = Files.walk(scratch)) {
+                for (Path path : walk.sorted(Comparator.reverseOrder()).toList())
+                    Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /** Open a new library stored at a path. */
+    private static SymbolLibrary library(Path path) {
+        LibrarySettings settings = new LibrarySettings();
+        settings.setPath(path.toString());
+        SymbolLibrary library = new SymbolLibrary(settings);
+        library.open().join();
+        return library;
+    }
+
+    /**
+     * Write symbol files shaped like those of a parts library, each a {@link SymbolDocument} of its own.
+     *
+     * @return the files written.
+     */
+    private static List<Path> write(Path directory, int count, Random random) throws IOException {
+        SymbolCodec codec = SymbolFormat.YAML.getCodec();
+        Path[] files = new Path[count];
+        for (int i = 0; i < count; i++) {
+            Symbol symbol = SymbolCodecBenchmark.sample(random, i);
+            StringBuilder document = new StringBuilder()
+                    .append("id: ").append(new UUID(random.nextLong(), random.nextLong())).append('\n')
+                    .append("version: 1\n")
+                    .append("author: Benchmark\n")
+                    .append("symbol:\n");
+            for (String line : new String(codec.encode(symbol), StandardCharsets.UTF_8).split("\n"))
+                document.append("  ").append(line).append('\n');
+            files[i] = Files.writeString(directory.resolve("part-" + i + ".yaml"), document);
+        }
+        SymbolDocument first = YamlSymbolCodec.load(Files.readAllBytes(files[0]), SymbolDocument.class);
+        if (!SymbolCodecBenchmark.sample(new Random(42), 0).equals(first.getSymbol()))
+            throw new IllegalStateException("symbol files do not read back as written");
+        return List.of(files);
+    }
+
+    private static void report(String name, int symbols, long nanos) {
+        System.out.printf("%-12s %10.2f %12.0f%n", name, nanos / 1e9, symbols * 1e9 / nanos);
+    }
+}
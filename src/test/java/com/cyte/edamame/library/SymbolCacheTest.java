@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.model.Symbol;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolCacheTest {
+    private static SymbolKey key(int id) {
+        return new SymbolKey(new UUID(0, id), (short) 1);
+    }
+
+    private static Symbol symbol(String name) {
+        Symbol symbol = new Symbol();
+        symbol.setName(name);
+        return symbol;
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedToStayWithinByteBudget() {
+        SymbolCache cache = new SymbolCache(100, 1000);
+        Symbol a = symbol("A"), b = symbol("B"), c = symbol("C"), d = symbol("D");
+        cache.put(key(1), a, 400);
+        cache.put(key(2), b, 400);
+        assertEquals(800, cache.getStats().weight());
+        cache.put(key(3), c, 400);
+        assertNull(cache.get(key(1)), "the eldest symbol was kept over budget");
+        assertEquals(800, cache.getStats().weight());
+
+        assertSame(b, cache.get(key(2))); // b is now more recently used than c.
+        cache.put(key(4), d, 400);
+        assertNull(cache.get(key(3)));
+        assertSame(b, cache.get(key(2)));
+        assertSame(d, cache.get(key(4)));
+        SymbolCache.Stats stats = cache.getStats();
+        assertEquals(2, stats.evictions());
+        assertEquals(2, stats.size());
+        assertEquals(800, stats.weight());
+    }
+
+    @Test
+    void evictsToStayWithinEntryCount() {
+        SymbolCache cache = new SymbolCache(2, 1_000_000);
+        for (int i = 1; i <= 3; i++)
+            cache.put(key(i), symbol("S" + i), 10);
+        assertNull(cache.get(key(1)));
+        assertNotNull(cache.get(key(2)));
+        assertNotNull(cache.get(key(3)));
+        assertEquals(1, cache.getStats().evictions());
+    }
+
+    @Test
+    void replacingSymbolReplacesItsWeight() {
+        SymbolCache cache = new SymbolCache(100, 1000);
+        cache.put(key(1), symbol("A"), 900);
+        cache.put(key(1), symbol("A"), 100);
+        cache.put(key(2), symbol("B"), 800);
+        SymbolCache.Stats stats = cache.getStats();
+        assertEquals(0, stats.evictions());
+        assertEquals(900, stats.weight());
+    }
+
+    @Test
+    void symbolOverBudgetIsCachedAlone() {
+        SymbolCache cache = new SymbolCache(100, 1000);
+        Symbol huge = symbol("HUGE");
+        cache.put(key(1), symbol("A"), 100);
+        cache.put(key(2), huge, 5000);
+        assertNull(cache.get(key(1)));
+        assertSame(huge, cache.get(key(2)));
+        assertEquals(5000, cache.getStats().weight());
+    }
+
+    @Test
+    void versionsAreCachedSeparately() {
+        SymbolCache cache = new SymbolCache();
+        UUID id = UUID.randomUUID();
+        Symbol first = symbol("V1"), second = symbol("V2");
+        cache.put(new SymbolKey(id, (short) 1), first, 10);
+        cache.put(new SymbolKey(id, (short) 2), second, 10);
+        assertSame(first, cache.get(new SymbolKey(id, (short) 1)));
+        assertSame(second, cache.get(new SymbolKey(id, (short) 2)));
+        assertNull(cache.get(new SymbolKey(id, (short) 3)));
+    }
+
+    @Test
+    void statsCountHitsAndMisses() {
+        SymbolCache cache = new SymbolCache();
+        assertEquals(0.0, cache.getStats().hitRatio());
+        cache.put(key(1), symbol("A"), 10);
+        cache.get(key(1));
+        cache.get(key(1));
+        cache.get(key(1));
+        cache.get(key(2));
+        SymbolCache.Stats stats = cache.getStats();
+        assertEquals(3, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(0.75, stats.hitRatio());
+
+        cache.clear();
+        assertEquals(0, cache.getStats().size());
+        assertEquals(0, cache.getStats().weight());
+        assertEquals(3, cache.getStats().hits(), "clearing reset the counters");
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.model.Graphic;
+import com.cyte.edamame.model.Symbol;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the size and throughput of the YAML and binary symbol encodings over a set of symbols shaped like those
+ * of a parts library. Run by the codecBenchmark Gradle task; the arguments are the number of symbols and the
+ * number of measured passes over them.
+ */
+public final class SymbolCodecBenchmark {
+    private SymbolCodecBenchmark() {
+    }
+
+    /**
+     * Make a symbol shaped like a typical library part: a handful of attributes, a body outline, some text and a
+     * number of pins on a 100 mil grid.
+     *
+     * @param random The source of the symbol's contents.
+     * @param index A number distinguishing the symbol's name.
+     * @return the symbol.
+     */
+    static Symbol sample(Random random, int index) {
+        Symbol symbol = new Symbol();
+        symbol.setName("PART-" + index);
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("value", random.nextInt(1000) + "k");
+        attributes.put("package", "SOIC-" + (8 + 2 * random.nextInt(8)));
+        attributes.put("manufacturer", "Maker " + random.nextInt(50));
+        attributes.put("description", "Sample part number " + index + " for benchmarking");
+        symbol.setAttributes(attributes);
+
+        long grid = 2_540_000; // 100 mil in nanometres.
+        int pins = 2 + random.nextInt(31);
+        long height = grid * ((pins + 1) / 2 + 1);
+        List<Graphic> graphics = new ArrayList<>();
+        graphics.add(new Graphic(Graphic.Kind.RECTANGLE, 0, 0, 4 * grid, -height, 254_000, null));
+        graphics.add(new Graphic(Graphic.Kind.TEXT, 0, grid, grid, 0, 0, "PART-" + index));
+        for (int pin = 0; pin < pins; pin++) {
+            boolean left = pin % 2 == 0;
+            long y = -grid * (pin / 2 + 1);
+            long x = left ? -2 * grid : 6 * grid;
+            graphics.add(new Graphic(Graphic.Kind.PIN, x, y, left ? 0 : 4 * grid, y, 152_400, "P" + (pin + 1)));
+        }
+        symbol.setGraphics(graphics);
+        return symbol;
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The number of symbols, default 2000, and the number of measured passes, default 5.
+     * @throws IOException if a symbol cannot be encoded or decoded.
+     */
+    public static void main(String[] args) throws IOException {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        int passes = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        Random random = new Random(42);
+        List<Symbol> symbols = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            symbols.add(sample(random, i));
+
+        System.out.printf("%d symbols, %d passes%n", count, passes);
+        System.out.printf("%-8s %12s %14s %14s%n", "format", "bytes/symbol", "encode sym/s", "decode sym/s");
+        for (SymbolFormat format : SymbolFormat.values())
+            measure(format, symbols, passes);
+    }
+
+    private static void measure(SymbolFormat format, List<Symbol> symbols, int passes) throws IOException {
+        SymbolCodec codec = format.getCodec();
+        List<byte[]> bodies = new ArrayList<>(symbols.size());
+        long bytes = 0;
+        for (Symbol symbol : symbols) {
+            byte[] body = codec.encode(symbol);
+            bodies.add(body);
+            bytes += body.length;
+        }
+        for (int i = 0; i < symbols.size(); i++) { // warm up, checking the round trip on the way.
+            if (!symbols.get(i).equals(codec.decode(bodies.get(i))))
+                throw new IllegalStateException(format + " did not round trip symbol " + i);
+        }
+
+        long encodeNanos = Long.MAX_VALUE, decodeNanos = Long.MAX_VALUE;
+        for (int pass = 0; pass < passes; pass++) {
+            long start = System.nanoTime();
+            for (Symbol symbol : symbols)
+                codec.encode(symbol);
+            long middle = System.nanoTime();
+            for (byte[] body : bodies)
+                codec.decode(body);
+            long end = System.nanoTime();
+            encodeNanos = Math.min(encodeNanos, middle - start);
+            decodeNanos = Math.min(decodeNanos, end - middle);
+        }
+        System.out.printf("%-8s %12d %14.0f %14.0f%n", format, bytes / symbols.size(),
+                symbols.size() * 1e9 / encodeNanos, symbols.size() * 1e9 / decodeNanos);
+    }
+}
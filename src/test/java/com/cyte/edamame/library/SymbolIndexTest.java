@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.model.Symbol;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolIndexTest {
+    private final SymbolIndex index = new SymbolIndex();
+
+    /** Index a symbol with a name and attribute values, returning its UUID. */
+    private UUID put(UUID id, String name, String author, String... values) {
+        Symbol symbol = new Symbol();
+        symbol.setName(name);
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++)
+            attributes.put("attribute" + i, values[i]);
+        symbol.setAttributes(attributes);
+        index.put(new SymbolMetadata(id, (short) 1, author, null), symbol);
+        return id;
+    }
+
+    private UUID put(String name, String... values) {
+        return put(UUID.randomUUID(), name, "Tester", values);
+    }
+
+    /** Returns the UUIDs of the symbols matching a query. */
+    private Set<UUID> search(String query) {
+        Set<UUID> ids = new LinkedHashSet<>();
+        for (SymbolMetadata metadata : index.search(query, 100))
+            ids.add(metadata.id());
+        return ids;
+    }
+
+    @Test
+    void wordsMatchPrefixesOfAnyField() {
+        UUID opAmp = put("LM358", "dual op amp", "SOIC-8");
+        assertEquals(Set.of(opAmp), search("lm3"));
+        assertEquals(Set.of(opAmp), search("SOIC"));
+        assertEquals(Set.of(opAmp), search("amp"));
+        assertEquals(Set.of(opAmp), search("test"), "authors are searchable");
+        assertEquals(Set.of(), search("sot"));
+        assertEquals(Set.of(), search("358"), "matched the middle of a token");
+    }
+
+    @Test
+    void everyWordMustMatch() {
+        UUID soic = put("LM358", "op amp", "SOIC-8");
+        UUID sot = put("LMV321", "op amp", "SOT-23-5");
+        assertEquals(Set.of(soic, sot), search("op lm"));
+        assertEquals(Set.of(soic), search("op soic"));
+        assertEquals(Set.of(sot), search("amp sot 23"));
+        assertEquals(Set.of(), search("op soic 23"));
+    }
+
+    @Test
+    void valuesKeepTheirDecimalPoints() {
+        UUID resistor = put("R", "4.7k", "0603");
+        put("R", "47k", "0603");
+        assertEquals(Set.of(resistor), search("4.7"));
+        assertEquals(Set.of(), search("..."));
+    }
+
+    @Test
+    void symbolMatchingSeveralTokensIsFoundOnce() {
+        UUID resistor = put("RES", "resistor", "reservoir");
+        assertEquals(List.of(resistor), index.search("res", 10).stream().map(SymbolMetadata::id).toList());
+    }
+
+    @Test
+    void searchStopsAtTheLimit() {
+        for (int i = 0; i < 20; i++)
+            put("CAP" + i, "capacitor");
+        assertEquals(5, index.search("cap", 5).size());
+        assertEquals(20, index.search("cap", 100).size());
+        assertEquals(0, index.search("cap", 0).size());
+        assertEquals(0, index.search("  ", 10).size());
+    }
+
+    @Test
+    void replacingSymbolForgetsItsOldTokens() {
+        UUID id = UUID.randomUUID();
+        put(id, "OLDNAME", "Tester", "first");
+        put(id, "NEWNAME", "Tester", "second");
+        assertEquals(1, index.size());
+        assertEquals(Set.of(), search("oldname"));
+        assertEquals(Set.of(), search("first"));
+        assertEquals(Set.of(id), search("newname second"));
+    }
+
+    @Test
+    void removedSymbolsAreNotFound() {
+        UUID kept = put("DIODE", "1N4148");
+        UUID removed = put("DIODE", "1N4007");
+        index.remove(removed);
+        assertEquals(Set.of(kept), search("diode"));
+        assertEquals(1, index.size());
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(Set.of(), search("diode"));
+    }
+}
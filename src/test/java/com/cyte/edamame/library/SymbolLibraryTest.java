@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolLibraryTest {
+    private final Random random = new Random(5);
+
+    private SymbolLibrary library;
+
+    @BeforeEach
+    void openLibrary() {
+        library = new SymbolLibrary(ConnectionPoolTest.settings(2, 10_000));
+        library.open().join();
+    }
+
+    @AfterEach
+    void closeLibrary() {
+        library.close();
+    }
+
+    /** Store a number of new symbols. */
+    private Set<UUID> insert(int count) throws IOException {
+        Set<UUID> ids = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            UUID id = new UUID(random.nextLong(), random.nextLong());
+            byte[] body = SymbolFormat.DEFAULT.getCodec().encode(SymbolCodecBenchmark.sample(random, i));
+            library.insert(SymbolRecord.create(id, "Tester", SymbolFormat.DEFAULT, body)).join();
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    /** Read pages from a key to the end, checking the keys ascend across pages. */
+    private List<UUID> pagesFrom(UUID after, int limit, List<Integer> sizes) {
+        List<UUID> ids = new ArrayList<>();
+        byte[] previous = (after == null) ? null : SymbolLibrary.toBytes(after);
+        SymbolPage page;
+        do {
+            page = library.page(after, limit).join();
+            sizes.add(page.items().size());
+            for (SymbolMetadata item : page.items()) {
+                byte[] key = SymbolLibrary.toBytes(item.id());
+                assertTrue(previous == null || Arrays.compareUnsigned(previous, key) < 0,
+                        "page keys out of order at " + item.id());
+                previous = key;
+                ids.add(item.id());
+            }
+            after = page.next();
+        } while (page.hasNext());
+        return ids;
+    }
+
+    @Test
+    void pagingVisitsEveryRowOnce() throws IOException {
+        Set<UUID> stored = insert(53);
+        List<Integer> sizes = new ArrayList<>();
+        List<UUID> paged = pagesFrom(null, 10, sizes);
+        assertEquals(53, paged.size());
+        assertEquals(stored, new HashSet<>(paged));
+        assertEquals(List.of(10, 10, 10, 10, 10, 3), sizes);
+    }
+
+    @Test
+    void fullLastPageHasNoEmptyPageAfterIt() throws IOException {
+        insert(30);
+        List<Integer> sizes = new ArrayList<>();
+        assertEquals(30, pagesFrom(null, 10, sizes).size());
+        assertEquals(List.of(10, 10, 10), sizes);
+    }
+
+    @Test
+    void emptyLibraryHasOneEmptyPage() {
+        SymbolPage page = library.page(null, 10).join();
+        assertEquals(List.of(), page.items());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void rowsAddedWhilePagingAreNeitherRepeatedNorSkipped() throws IOException {
+        Set<UUID> stored = insert(40);
+        SymbolPage first = library.page(null, 10).join();
+        assertTrue(first.hasNext());
+        Set<UUID> added = insert(20);
+
+        List<UUID> paged = new ArrayList<>();
+        first.items().forEach(item -> paged.add(item.id()));
+        paged.addAll(pagesFrom(first.next(), 10, new ArrayList<>()));
+        assertEquals(paged.size(), new HashSet<>(paged).size(), "a row was repeated");
+
+        byte[] cursor = SymbolLibrary.toBytes(first.next());
+        Set<UUID> expected = new HashSet<>(stored);
+        for (UUID id : added)
+            if (Arrays.compareUnsigned(SymbolLibrary.toBytes(id), cursor) > 0)
+                expected.add(id);
+        assertEquals(expected, new HashSet<>(paged));
+    }
+}
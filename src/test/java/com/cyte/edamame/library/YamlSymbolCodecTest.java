@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.library;
+
+import com.cyte.edamame.model.Symbol;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class YamlSymbolCodecTest {
+    private final YamlSymbolCodec codec = new YamlSymbolCodec();
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void sampleSymbolsRoundTrip() throws IOException {
+        Random random = new Random(11);
+        for (int i = 0; i < 50; i++) {
+            Symbol symbol = SymbolCodecBenchmark.sample(random, i);
+            byte[] body = codec.encode(symbol);
+            assertFalse(new String(body, StandardCharsets.UTF_8).contains("!!"), "encoding carries class tags");
+            assertEquals(symbol, codec.decode(body));
+        }
+    }
+
+    @Test
+    void documentsLoadWithNestedBeans() throws IOException {
+        SymbolDocument document = YamlSymbolCodec.load(utf8("""
+                id: 3f2504e0-4f89-11d3-9a0c-0305e82c3301
+                version: 3
+                symbol:
+                  name: R
+                  attributes: {value: 10k}
+                  graphics:
+                  - {kind: PIN, x1: 0, y1: 0, x2: 100, y2: 0, width: 1, text: '1'}
+                """), SymbolDocument.class);
+        assertEquals(3, document.getVersion());
+        assertEquals("R", document.getSymbol().getName());
+        assertEquals("10k", document.getSymbol().getAttributes().get("value"));
+        assertEquals("1", document.getSymbol().getGraphics().get(0).getText());
+    }
+
+    @Test
+    void foreignClassTagsAreRejected() {
+        String[] documents = {
+                """
+                name: x
+                attributes: !!javax.script.ScriptEngineManager [!!java.net.URLClassLoader [[!!java.net.URL \
+                ["http://localhost/"]]]]
+                """,
+                """
+                name: x
+                graphics:
+                - !!java.io.File ["/tmp"]
+                """,
+                "!!java.util.Date {}\n"
+        };
+        for (String document : documents)
+            assertThrows(IOException.class, () -> codec.decode(utf8(document)));
+    }
+
+    @Test
+    void libraryClassTagsAreAccepted() throws IOException {
+        Symbol symbol = codec.decode(utf8("""
+                name: x
+                graphics:
+                - !!com.cyte.edamame.model.Graphic {kind: LINE, x2: 5}
+                """));
+        assertEquals(5, symbol.getGraphics().get(0).getX2());
+    }
+
+    @Test
+    void emptyDocumentsAreRejected() {
+        assertThrows(IOException.class, () -> codec.decode(new byte[0]));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.netlist;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectivityTest {
+    /** The connections of each node present, the graph the nets are checked against. */
+    private final Map<Integer, Set<Integer>> graph = new HashMap<>();
+
+    private final Connectivity connectivity = new Connectivity();
+
+    /** Returns the nodes reachable from a node by breadth first search. */
+    private Set<Integer> reachable(int start) {
+        Set<Integer> seen = new HashSet<>(List.of(start));
+        Queue<Integer> queue = new ArrayDeque<>(seen);
+        while (!queue.isEmpty()) {
+            for (int next : graph.get(queue.poll())) {
+                if (seen.add(next))
+                    queue.add(next);
+            }
+        }
+        return seen;
+    }
+
+    private void assertMatchesSearch() {
+        Set<Integer> visited = new HashSet<>();
+        int nets = 0, connections = 0;
+        for (int node : graph.keySet()) {
+            assertTrue(connectivity.contains(node));
+            connections += graph.get(node).size();
+            if (visited.contains(node))
+                continue;
+            Set<Integer> net = reachable(node);
+            visited.addAll(net);
+            nets++;
+            assertEquals(net.size(), connectivity.netSize(node));
+            Set<Integer> members = new HashSet<>();
+            connectivity.forEachMember(node, members::add);
+            assertEquals(net, members);
+            for (int member : net)
+                assertEquals(connectivity.netOf(node), connectivity.netOf(member));
+        }
+        assertEquals(graph.size(), connectivity.getNodeCount());
+        assertEquals(nets, connectivity.getNetCount());
+        assertEquals(connections / 2, connectivity.getConnectionCount());
+    }
+
+    private void add(int node) {
+        connectivity.add(node);
+        graph.putIfAbsent(node, new HashSet<>());
+    }
+
+    private void remove(int node) {
+        connectivity.remove(node);
+        forget(node);
+    }
+
+    /** Take a node removed from the connectivity out of the graph. */
+    private void forget(int node) {
+        Set<Integer> neighbours = graph.remove(node);
+        if (neighbours != null)
+            neighbours.forEach(other -> graph.get(other).remove(node));
+    }
+
+    @Test
+    void randomEditsMatchSearch() {
+        Random random = new Random(1);
+        int nodes = 400;
+        for (int round = 0; round < 20_000; round++) {
+            int a = random.nextInt(nodes), b = random.nextInt(nodes);
+            switch (random.nextInt(10)) {
+                case 0, 1 -> add(a);
+                case 2 -> remove(a);
+                case 3 -> {
+                    connectivity.disconnect(a, b);
+                    if (graph.containsKey(a) && graph.containsKey(b)) {
+                        graph.get(a).remove(b);
+                        graph.get(b).remove(a);
+                    }
+                }
+                case 4 -> {
+                    BitSet removed = new BitSet();
+                    for (int k = 0; k < 5; k++)
+                        removed.set(random.nextInt(nodes));
+                    connectivity.removeAll(removed);
+                    removed.stream().forEach(this::forget);
+                }
+                default -> {
+                    if (a != b && graph.containsKey(a) && graph.containsKey(b)) {
+                        connectivity.connect(a, b);
+                        graph.get(a).add(b);
+                        graph.get(b).add(a);
+                    }
+                }
+            }
+            if (round % 500 == 0)
+                assertMatchesSearch();
+        }
+        assertMatchesSearch();
+    }
+
+    @Test
+    void removingTheMiddleOfAChainSplitsIt() {
+        for (int node = 0; node < 5; node++)
+            add(node);
+        for (int node = 0; node < 4; node++)
+            connectivity.connect(node, node + 1);
+        assertTrue(connectivity.connected(0, 4));
+        assertEquals(1, connectivity.getNetCount());
+        connectivity.remove(2);
+        assertTrue(connectivity.connected(0, 1));
+        assertTrue(connectivity.connected(3, 4));
+        assertFalse(connectivity.connected(1, 3));
+        assertEquals(2, connectivity.getNetCount());
+        connectivity.disconnect(3, 4);
+        assertEquals(3, connectivity.getNetCount());
+        assertEquals(1, connectivity.netSize(4));
+    }
+
+    @Test
+    void cyclesSurviveLosingOneConnection() {
+        List<Integer> ring = new ArrayList<>();
+        for (int node = 0; node < 6; node++) {
+            add(node);
+            ring.add(node);
+        }
+        for (int i = 0; i < ring.size(); i++)
+            connectivity.connect(ring.get(i), ring.get((i + 1) % ring.size()));
+        connectivity.disconnect(0, 1);
+        assertTrue(connectivity.connected(0, 1));
+        assertEquals(1, connectivity.getNetCount());
+    }
+}
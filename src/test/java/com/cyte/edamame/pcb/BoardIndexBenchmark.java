@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures the latency of the queries an editor makes of a {@link BoardIndex} on a large board: picking under
+ * the cursor, rubber-band selection, finding what a viewport shows and moving a primitive. Picking by scanning
+ * every primitive is measured too, for comparison. Run by the indexBenchmark Gradle task; the arguments are the
+ * number of primitives and the number of queries of each kind.
+ */
+public final class BoardIndexBenchmark {
+    /** The side of the square board: 400 mm. */
+    private static final long SIDE = 400_000_000;
+
+    /** How far from the cursor a click picks primitives: 0.1 mm. */
+    private static final long TOLERANCE = 100_000;
+
+    /** The number of picks made by scanning, which are too slow to make as many of as the others. */
+    private static final int SCANS = 100;
+
+    private BoardIndexBenchmark() {
+    }
+
+    /** A query measured individually. */
+    private interface Query {
+        /** Make the query at a point, returning the number of primitives found. */
+        int run(long x, long y);
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The number of primitives, default 1000000, and the number of queries of each kind,
+     *             default 10000.
+     */
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+        int queries = (args.length > 1) ? Integer.parseInt(args[1]) : 10_000;
+        PrimitiveStore store = board(new Random(42), count);
+        BoardIndex index = new BoardIndex(store, Runnable::run);
+        long start = System.nanoTime();
+        index.rebuild();
+        System.out.printf("%d primitives indexed in %.0f ms, %d queries of each kind%n", count,
+                (System.nanoTime() - start) / 1e6, queries);
+        System.out.printf("%-14s %8s %12s %12s %12s%n", "query", "found", "median us", "p99 us", "max us");
+
+        int[] found = new int[1];
+        measure("pick", queries, (x, y) -> {
+            found[0] = 0;
+            index.pick(x, y, TOLERANCE, handle -> found[0]++);
+            return found[0];
+        });
+        measure("rubber band", queries, (x, y) -> {
+            found[0] = 0;
+            index.searchContained(x, y, x + 5_000_000, y + 5_000_000, handle -> found[0]++);
+            return found[0];
+        });
+        measure("viewport", queries, (x, y) -> {
+            found[0] = 0;
+            index.search(x, y, x + 25_000_000, y + 15_000_000, handle -> found[0]++);
+            return found[0];
+        });
+        Random moves = new Random(3);
+        measure("move", queries, (x, y) -> {
+            int handle = store.handleAt(moves.nextInt(store.size()));
+            store.translate(handle, 254_000, -254_000);
+            index.markDirty(handle);
+            return 1;
+        });
+        long[] box = new long[4];
+        measure("pick by scan", Math.min(queries, SCANS), (x, y) -> {
+            int hits = 0;
+            for (int slot = 0; slot < store.size(); slot++) {
+                store.boundsAt(slot, box);
+                if (box[0] <= x + TOLERANCE && box[2] >= x - TOLERANCE && box[1] <= y + TOLERANCE
+                        && box[3] >= y - TOLERANCE)
+                    hits++;
+            }
+            return hits;
+        });
+    }
+
+    /**
+     * Make a number of queries at random points, warming up first, and report the number of primitives found on
+     * average and the distribution of the time each query took.
+     */
+    private static void measure(String name, int queries, Query query) {
+        Random random = new Random(7);
+        for (int i = 0; i < Math.min(queries, 1000); i++)
+            query.run(random.nextLong(SIDE), random.nextLong(SIDE));
+        long[] nanos = new long[queries];
+        long found = 0;
+        for (int i = 0; i < queries; i++) {
+            long x = random.nextLong(SIDE), y = random.nextLong(SIDE);
+            long start = System.nanoTime();
+            found += query.run(x, y);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-14s %8.1f %12.2f %12.2f %12.2f%n", name, found / (double) queries,
+                nanos[queries / 2] / 1e3, nanos[(int) (queries * 0.99)] / 1e3, nanos[queries - 1] / 1e3);
+    }
+
+    /** A board of short tracks, pads and vias spread evenly over both sides. */
+    private static PrimitiveStore board(Random random, int count) {
+        PrimitiveStore store = new PrimitiveStore();
+        for (int i = 0; i < count; i++) {
+            long x = random.nextLong(SIDE), y = random.nextLong(SIDE);
+            int layer = random.nextInt(2), net = random.nextInt(count / 10 + 1);
+            switch (random.nextInt(4)) {
+                case 0, 1 -> store.add(PrimitiveStore.Kind.SEGMENT, layer, net, x, y,
+                        x + random.nextLong(-3_000_000, 3_000_000), y + random.nextLong(-3_000_000, 3_000_000),
+                        200_000, 0, 0);
+                case 2 -> store.add(PrimitiveStore.Kind.RECT_PAD, layer, net, x, y, x + 600_000, y + 900_000,
+                        0, 0, 0);
+                default -> store.add(PrimitiveStore.Kind.VIA, 0, net, x, y, x, y, 600_000, 300_000, 0);
+            }
+        }
+        return store;
+    }
+}
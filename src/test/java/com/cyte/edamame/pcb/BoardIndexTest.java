@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+package com.cyte.edamame.pcb;
+
+import com.cyte.edamame.util.Recorder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoardIndexTest {
+    /** Updates scheduled by the index, run when the test says the edit has been applied. */
+    private final Queue<Runnable> scheduled = new ArrayDeque<>();
+
+    private final PrimitiveStore store = new PrimitiveStore();
+    private final BoardIndex index = new BoardIndex(store, scheduled::add);
+    private final Recorder recorder = new Recorder();
+
+    /** Remembers what it was told, to check watchers are driven by the index. */
+    private static final class Log extends BoardWatcher {
+        final List<String> events = new ArrayList<>();
+        final List<BitSet> refreshed = new ArrayList<>();
+
+        Log(BoardIndex index) {
+            super(index);
+        }
+
+        @Override
+        protected void rebuildAll() {
+            events.add("rebuild " + store.size());
+        }
+
+        @Override
+        protected void forget(BitSet touched) {
+            events.add("forget " + touched);
+        }
+
+        @Override
+        protected void refresh(BitSet touched) {
+            events.add("refresh " + touched);
+            refreshed.add(touched);
+        }
+
+        Set<Integer> near(int handle) {
+            Set<Integer> found = new TreeSet<>();
+            near(handle, 0, found::add);
+            return found;
+        }
+    }
+
+    private int addVia(long x, long y) {
+        int handle = store.nextHandle();
+        recorder.record(store.capture(List.of(handle)));
+        store.add(PrimitiveStore.Kind.VIA, 0, 1, x, y, 0, 0, 100, 50, 0);
+        return handle;
+    }
+
+    private void runScheduled() {
+        while (!scheduled.isEmpty())
+            scheduled.poll().run();
+    }
+
+    private Set<Integer> search(long minX, long minY, long maxX, long maxY) {
+        Set<Integer> found = new TreeSet<>();
+        index.search(minX, minY, maxX, maxY, found::add);
+        return found;
+    }
+
+    @Test
+    void followsEditsUndoAndRedo() {
+        recorder.addListener(index);
+        int a = addVia(0, 0);
+        int b = addVia(1_000, 0);
+        runScheduled();
+        assertEquals(Set.of(a, b), search(-100, -100, 2_000, 100));
+
+        recorder.record(store.capture(List.of(b)));
+        store.translate(b, 10_000, 0);
+        assertEquals(Set.of(a), search(-100, -100, 2_000, 100), "queries must see the edit before it is updated");
+        runScheduled();
+        assertEquals(Set.of(b), search(10_000, -100, 12_000, 100));
+
+        recorder.undo();
+        assertEquals(Set.of(a, b), search(-100, -100, 2_000, 100));
+        recorder.undo();
+        recorder.undo();
+        runScheduled();
+        assertEquals(0, index.size());
+        recorder.redo();
+        assertEquals(Set.of(a), search(-100, -100, 2_000, 100));
+    }
+
+    @Test
+    void everyWatcherSharesOneUpdate() {
+        recorder.addListener(index);
+        Log first = new Log(index);
+        Log second = new Log(index);
+        index.addWatcher(first);
+        index.addWatcher(second);
+        int a = addVia(0, 0);
+        int b = addVia(40, 0);
+        runScheduled();
+        assertEquals(List.of("forget {0, 1}", "refresh {0, 1}"), first.events);
+        assertEquals(first.events, second.events);
+        assertEquals(Set.of(a, b), first.near(a));
+
+        recorder.record(store.capture(List.of(b)));
+        store.remove(b);
+        runScheduled();
+        assertEquals("forget {1}", first.events.get(2));
+        assertEquals("refresh {}", first.events.get(3));
+        assertEquals(Set.of(a), second.near(a));
+
+        index.removeWatcher(second);
+        addVia(5, 5);
+        runScheduled();
+        assertEquals(6, first.events.size());
+        assertEquals(4, second.events.size());
+    }
+
+    @Test
+    void rebuildIndexesTheWholeBoard() {
+        for (int i = 0; i < 1_000; i++)
+            store.add(PrimitiveStore.Kind.ROUND_PAD, 0, 0, i * 1_000L, 0, 0, 0, 500, 0, 0);
+        Log log = new Log(index);
+        index.addWatcher(log);
+        index.rebuild();
+        assertEquals(List.of("rebuild 1000"), log.events);
+        assertEquals(1_000, index.size());
+        assertEquals(Set.of(10, 11), search(10_100, -1, 10_900, 1));
+        Set<Integer> picked = new TreeSet<>();
+        index.pick(20_000, 0, 10, picked::add);
+        assertEquals(Set.of(20), picked);
+    }
+
+    @Test
+    void watchersOfAnotherBoardAreRefused() {
+        BoardIndex other = new BoardIndex(new PrimitiveStore(), Runnable::run);
+        assertThrows(IllegalArgumentException.class, () -> index.addWatcher(new Log(other)));
+    }
+}
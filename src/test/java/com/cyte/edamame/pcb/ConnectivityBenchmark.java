@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import com.cyte.edamame.netlist.Connectivity;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures connectivity on designs of many nets, comparing the cost of following an edit incrementally with
+ * finding every net again from scratch. The schematic case connects the pins of each net with a
+ * {@link Connectivity} directly; the board case lays each net out as two pads joined by a track and follows the
+ * copper with a {@link CopperConnectivity}. Run by the connectivityBenchmark Gradle task; the arguments are the
+ * number of nets and the number of edits measured.
+ */
+public final class ConnectivityBenchmark {
+    /** The pins of each schematic net, joined in a chain by wires. */
+    private static final int PINS = 4;
+
+    /** The pitch of the grid board nets are laid out on: 100 mil. */
+    private static final long CELL = 2_540_000;
+
+    private ConnectivityBenchmark() {
+    }
+
+    /** An edit measured individually. */
+    private interface Edit {
+        void run(int net);
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The number of nets, default 100000, and the number of edits, default 10000.
+     */
+    public static void main(String[] args) {
+        int nets = (args.length > 0) ? Integer.parseInt(args[0]) : 100_000;
+        int edits = (args.length > 1) ? Integer.parseInt(args[1]) : 10_000;
+        System.out.printf("%d nets, %d edits%n", nets, edits);
+        System.out.printf("%-20s %10s %10s %10s%n", "operation", "median us", "p99 us", "max us");
+        schematic(nets, edits);
+        board(nets, edits);
+    }
+
+    private static void schematic(int nets, int edits) {
+        Connectivity connectivity = new Connectivity();
+        long start = System.nanoTime();
+        chains(connectivity, nets);
+        report("schematic build", System.nanoTime() - start);
+        check("schematic", connectivity.getNetCount(), nets);
+
+        Random random = new Random(7);
+        long[] nanos = new long[edits];
+        for (int i = 0; i < edits; i++) {
+            int a = random.nextInt(nets * PINS), b = random.nextInt(nets * PINS);
+            long begin = System.nanoTime();
+            connectivity.connected(a, b);
+            nanos[i] = System.nanoTime() - begin;
+        }
+        report("same net query", nanos);
+        measure("cut and rejoin", nets, edits, net -> {
+            int pin = net * PINS + 1;
+            connectivity.disconnect(pin, pin + 1);
+            connectivity.connect(pin, pin + 1);
+        });
+        check("schematic", connectivity.getNetCount(), nets);
+
+        start = System.nanoTime();
+        connectivity.clear();
+        chains(connectivity, nets);
+        report("schematic rebuild", System.nanoTime() - start);
+    }
+
+    private static void board(int nets, int edits) {
+        PrimitiveStore store = new PrimitiveStore();
+        int perRow = (int) Math.ceil(Math.sqrt(nets));
+        int[] tracks = new int[nets];
+        for (int net = 0; net < nets; net++) {
+            long x = (net % perRow) * CELL, y = (net / perRow) * CELL;
+            store.add(PrimitiveStore.Kind.ROUND_PAD, 0, net + 1, x, y, x, y, 800_000, 0, 0);
+            tracks[net] = store.add(PrimitiveStore.Kind.SEGMENT, 0, net + 1, x, y, x + CELL / 2, y, 200_000, 0, 0);
+            store.add(PrimitiveStore.Kind.ROUND_PAD, 0, net + 1, x + CELL / 2, y, x + CELL / 2, y, 800_000, 0, 0);
+        }
+        BoardIndex index = new BoardIndex(store, Runnable::run);
+        CopperConnectivity copper = new CopperConnectivity(index);
+        index.addWatcher(copper);
+        long start = System.nanoTime();
+        index.rebuild();
+        report("board build", System.nanoTime() - start);
+        check("board", copper.getConnectivity().getNetCount(), nets);
+
+        measure("move track off/on", nets, edits, net -> {
+            store.translate(tracks[net], 0, CELL / 3);
+            index.markDirty(tracks[net]);
+            store.translate(tracks[net], 0, -CELL / 3);
+            index.markDirty(tracks[net]);
+        });
+        check("board", copper.getConnectivity().getNetCount(), nets);
+
+        start = System.nanoTime();
+        copper.rebuild();
+        report("board rebuild", System.nanoTime() - start);
+    }
+
+    /** Add the pins of every schematic net, wired in a chain. */
+    private static void chains(Connectivity connectivity, int nets) {
+        for (int net = 0; net < nets; net++) {
+            int first = net * PINS;
+            connectivity.add(first);
+            for (int pin = 1; pin < PINS; pin++)
+                connectivity.connect(first + pin - 1, first + pin);
+        }
+    }
+
+    /** Make a number of edits of random nets, after as many again to warm up, and report their latency. */
+    private static void measure(String name, int nets, int edits, Edit edit) {
+        Random random = new Random(11);
+        for (int i = 0; i < edits; i++)
+            edit.run(random.nextInt(nets));
+        long[] nanos = new long[edits];
+        for (int i = 0; i < edits; i++) {
+            int net = random.nextInt(nets);
+            long start = System.nanoTime();
+            edit.run(net);
+            nanos[i] = System.nanoTime() - start;
+        }
+        report(name, nanos);
+    }
+
+    private static void check(String design, int found, int nets) {
+        if (found != nets)
+            throw new IllegalStateException("the " + design + " has " + found + " nets, not " + nets);
+    }
+
+    private static void report(String name, long[] nanos) {
+        Arrays.sort(nanos);
+        System.out.printf("%-20s %10.2f %10.2f %10.2f%n", name, nanos[nanos.length / 2] / 1e3,
+                nanos[(int) (nanos.length * 0.99)] / 1e3, nanos[nanos.length - 1] / 1e3);
+    }
+
+    /** Report an operation made once. */
+    private static void report(String name, long nanos) {
+        System.out.printf("%-20s %10.0f   (made once)%n", name, nanos / 1e3);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import com.cyte.edamame.netlist.Connectivity;
+import com.cyte.edamame.util.Recorder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CopperConnectivityTest {
+    /** Updates scheduled by the index, run once each edit has been applied. */
+    private final Queue<Runnable> scheduled = new ArrayDeque<>();
+
+    private final Recorder recorder = new Recorder();
+
+    /** Returns the islands found by breadth first search over every pair of primitives whose copper touches. */
+    private static int[] islands(PrimitiveStore store) {
+        DesignRuleChecker.Snapshot snapshot = new DesignRuleChecker.Snapshot(store, null, null, 0,
+                ForkJoinPool.commonPool());
+        int[] island = new int[snapshot.size];
+        Arrays.fill(island, -1);
+        for (int start = 0; start < snapshot.size; start++) {
+            if (island[start] >= 0)
+                continue;
+            Queue<Integer> queue = new ArrayDeque<>(List.of(start));
+            island[start] = start;
+            while (!queue.isEmpty()) {
+                int i = queue.poll();
+                for (int j = 0; j < snapshot.size; j++) {
+                    if (island[j] < 0 && snapshot.touches(i, j)) {
+                        island[j] = start;
+                        queue.add(j);
+                    }
+                }
+            }
+        }
+        return island;
+    }
+
+    private static void assertMatchesSearch(PrimitiveStore store, CopperConnectivity copper) {
+        int[] island = islands(store);
+        Connectivity connectivity = copper.getConnectivity();
+        assertEquals(store.size(), connectivity.getNodeCount());
+        for (int i = 0; i < store.size(); i++) {
+            for (int j = i + 1; j < store.size(); j++) {
+                assertEquals(island[i] == island[j], copper.connected(store.handleAt(i), store.handleAt(j)),
+                        "handles " + store.handleAt(i) + " and " + store.handleAt(j));
+            }
+        }
+    }
+
+    private void runScheduled() {
+        while (!scheduled.isEmpty())
+            scheduled.poll().run();
+    }
+
+    @Test
+    void incrementalIslandsMatchSearch() {
+        Random random = new Random(1);
+        PrimitiveStore store = DesignRuleCheckerTest.randomBoard(random, 200);
+        BoardIndex index = new BoardIndex(store, scheduled::add);
+        CopperConnectivity copper = new CopperConnectivity(index);
+        index.addWatcher(copper);
+        recorder.addListener(index);
+        index.rebuild();
+        assertMatchesSearch(store, copper);
+
+        for (int round = 0; round < 300; round++) {
+            int handle = store.handleAt(random.nextInt(store.size()));
+            switch (random.nextInt(5)) {
+                case 0 -> {
+                    recorder.record(store.capture(List.of(handle)));
+                    store.remove(handle);
+                }
+                case 1 -> {
+                    int added = store.nextHandle();
+                    recorder.record(store.capture(List.of(added)));
+                    long x = random.nextLong(20_000_000), y = random.nextLong(20_000_000);
+                    store.add(PrimitiveStore.Kind.VIA, 0, 1, x, y, x, y, 600_000, 300_000, 0);
+                }
+                case 2 -> {
+                    if (recorder.canUndo())
+                        recorder.undo();
+                }
+                case 3 -> {
+                    if (recorder.canRedo())
+                        recorder.redo();
+                }
+                default -> {
+                    recorder.record(store.capture(List.of(handle)));
+                    store.translate(handle, random.nextLong(-1_000_000, 1_000_000),
+                            random.nextLong(-1_000_000, 1_000_000));
+                }
+            }
+            runScheduled();
+            if (round % 50 == 0)
+                assertMatchesSearch(store, copper);
+        }
+        assertMatchesSearch(store, copper);
+    }
+
+    @Test
+    void viaJoinsCopperOnEveryLayer() {
+        PrimitiveStore store = new PrimitiveStore();
+        BoardIndex index = new BoardIndex(store, Runnable::run);
+        CopperConnectivity copper = new CopperConnectivity(index);
+        index.addWatcher(copper);
+        int top = store.add(PrimitiveStore.Kind.SEGMENT, 0, 1, 0, 0, 1_000_000, 0, 200_000, 0, 0);
+        int bottom = store.add(PrimitiveStore.Kind.SEGMENT, 1, 1, 0, 0, 1_000_000, 0, 200_000, 0, 0);
+        index.rebuild();
+        assertFalse(copper.connected(top, bottom));
+
+        int via = store.add(PrimitiveStore.Kind.VIA, 0, 1, 1_000_000, 0, 1_000_000, 0, 600_000, 300_000, 0);
+        index.markDirty(via);
+        assertTrue(copper.connected(top, bottom));
+        assertTrue(copper.connected(via, bottom));
+    }
+}
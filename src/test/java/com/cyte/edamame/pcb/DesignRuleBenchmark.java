@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how the throughput of a {@link DesignRuleChecker} scales with the number of threads checking a large
+ * board, doubling the threads up to the number of processors. Run by the drcBenchmark Gradle task; the arguments
+ * are the number of primitives, the number of measured checks per thread count and the most threads to use.
+ */
+public final class DesignRuleBenchmark {
+    /** The pitch of the grid primitives are placed on: 50 mil. */
+    private static final long CELL = 1_270_000;
+
+    private DesignRuleBenchmark() {
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The number of primitives, default 200000, the number of measured checks, default 3, and the
+     *             most threads, default the number of processors.
+     */
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 200_000;
+        int checks = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+        int most = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        PrimitiveStore store = board(new Random(42), count);
+        List<Integer> threads = new ArrayList<>();
+        for (int n = 1; n < most; n *= 2)
+            threads.add(n);
+        threads.add(most);
+
+        System.out.printf("%d primitives, %d checks per thread count%n", count, checks);
+        System.out.printf("%-8s %10s %14s %9s %11s %11s%n", "threads", "best ms", "primitives/s", "speedup",
+                "efficiency", "violations");
+        long serial = 0;
+        int expected = -1;
+        for (int n : threads) {
+            ForkJoinPool pool = new ForkJoinPool(n);
+            try {
+                DesignRuleChecker checker = new DesignRuleChecker(new DesignRules(), pool);
+                int violations = checker.check(store).size(); // warms up.
+                if (expected >= 0 && violations != expected)
+                    throw new IllegalStateException(n + " threads found " + violations + " violations, not "
+                            + expected);
+                expected = violations;
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < checks; i++) {
+                    long start = System.nanoTime();
+                    checker.check(store);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                if (n == 1)
+                    serial = best;
+                double speedup = serial / (double) best;
+                System.out.printf("%-8d %10.1f %14.0f %9.2f %10.0f%% %11d%n", n, best / 1e6, count * 1e9 / best,
+                        speedup, 100 * speedup / n, violations);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * A board with a primitive in each cell of a 50 mil grid, clear of its neighbours, on one of four layers.
+     * One track in a hundred is long enough to reach into the next cell, so the board has the odd violation.
+     */
+    private static PrimitiveStore board(Random random, int count) {
+        PrimitiveStore store = new PrimitiveStore();
+        int perRow = (int) Math.ceil(Math.sqrt(count));
+        for (int i = 0; i < count; i++) {
+            long x = (i % perRow) * CELL + CELL / 2, y = (i / perRow) * CELL + CELL / 2;
+            int layer = random.nextInt(4), net = 1 + random.nextInt(count / 20 + 1);
+            switch (random.nextInt(5)) {
+                case 0, 1 -> {
+                    long length = random.nextInt(100) == 0 ? CELL : random.nextLong(200_000, 700_000);
+                    boolean across = random.nextBoolean();
+                    store.add(PrimitiveStore.Kind.SEGMENT, layer, net, x - 350_000, y,
+                            across ? x - 350_000 + length : x - 350_000, across ? y : y + length,
+                            150_000 + random.nextLong(50_000), 0, 0);
+                }
+                case 2 -> store.add(PrimitiveStore.Kind.ARC, layer, net, x, y, x + 300_000, y, 150_000, 0,
+                        random.nextLong(-180_000_000, 180_000_000));
+                case 3 -> store.add(PrimitiveStore.Kind.RECT_PAD, layer, net, x - 300_000, y - 400_000,
+                        x + 300_000, y + 400_000, 0, 0, 0);
+                default -> store.add(PrimitiveStore.Kind.VIA, 0, net, x, y, x, y, 600_000, 300_000, 0);
+            }
+        }
+        return store;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DesignRuleCheckerTest {
+    /** The side of the square the random boards are drawn in: 20 mm. */
+    private static final long SIDE = 20_000_000;
+
+    /** A crowded board of every kind of primitive on two layers, so it has plenty of violations. */
+    static PrimitiveStore randomBoard(Random random, int count) {
+        PrimitiveStore store = new PrimitiveStore();
+        for (int i = 0; i < count; i++) {
+            long x = random.nextLong(SIDE), y = random.nextLong(SIDE);
+            long width = 80_000 + random.nextLong(300_000);
+            int layer = random.nextInt(2), net = random.nextInt(6);
+            switch (random.nextInt(5)) {
+                case 0 -> store.add(PrimitiveStore.Kind.SEGMENT, layer, net, x, y,
+                        x + random.nextLong(-2_000_000, 2_000_000), y + random.nextLong(-2_000_000, 2_000_000),
+                        width, 0, 0);
+                case 1 -> store.add(PrimitiveStore.Kind.ARC, layer, net, x, y,
+                        x + random.nextLong(200_000, 1_500_000), y, width, 0,
+                        random.nextLong(-270_000_000, 270_000_000));
+                case 2 -> store.add(PrimitiveStore.Kind.ROUND_PAD, layer, net, x, y, x, y, 4 * width,
+                        random.nextBoolean() ? width : 0, 0);
+                case 3 -> store.add(PrimitiveStore.Kind.RECT_PAD, layer, net, x, y, x + 3 * width, y + 2 * width,
+                        0, 0, 0);
+                default -> store.add(PrimitiveStore.Kind.VIA, 0, net, x, y, x, y, 2 * width, width, 0);
+            }
+        }
+        return store;
+    }
+
+    /** Returns rules checked as a single tile, which compares every pair of primitives. */
+    private static DesignRules untiled() {
+        DesignRules rules = new DesignRules();
+        rules.setTileSize(4 * SIDE);
+        return rules;
+    }
+
+    @Test
+    void tiledCheckMatchesSerialCheck() {
+        Random random = new Random(1);
+        ForkJoinPool serial = new ForkJoinPool(1);
+        ForkJoinPool parallel = new ForkJoinPool(4);
+        try {
+            for (int board = 0; board < 3; board++) {
+                PrimitiveStore store = randomBoard(random, 1_000);
+                List<Violation> expected = new DesignRuleChecker(untiled(), serial).check(store);
+                assertFalse(expected.isEmpty());
+                for (long tile : new long[] {0, 400_000, 1_000_000, 3_000_000}) {
+                    DesignRules rules = new DesignRules();
+                    rules.setTileSize(tile);
+                    List<Violation> tiled = new DesignRuleChecker(rules, parallel).check(store);
+                    assertEquals(expected, tiled, "tile size " + tile);
+                }
+            }
+        } finally {
+            serial.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    void pairSpanningManyTilesIsReportedOnce() {
+        PrimitiveStore store = new PrimitiveStore();
+        int a = store.add(PrimitiveStore.Kind.SEGMENT, 0, 1, 0, 0, 10_000_000, 0, 200_000, 0, 0);
+        int b = store.add(PrimitiveStore.Kind.SEGMENT, 0, 2, 0, 300_000, 10_000_000, 300_000, 200_000, 0, 0);
+        store.add(PrimitiveStore.Kind.SEGMENT, 1, 3, 0, 300_000, 10_000_000, 300_000, 200_000, 0, 0);
+        DesignRules rules = new DesignRules();
+        rules.setTileSize(600_000);
+        List<Violation> violations = new DesignRuleChecker(rules).check(store);
+        assertEquals(List.of(new Violation(Violation.Rule.CLEARANCE, a, b, null)), violations);
+    }
+
+    @Test
+    void clearanceIsMeasuredBetweenCopperEdges() {
+        PrimitiveStore store = new PrimitiveStore();
+        // Edges 150 um apart exactly: allowed.
+        store.add(PrimitiveStore.Kind.SEGMENT, 0, 1, 0, 0, 1_000_000, 0, 200_000, 0, 0);
+        store.add(PrimitiveStore.Kind.ROUND_PAD, 0, 2, 500_000, 400_000, 500_000, 400_000, 300_000, 0, 0);
+        assertTrue(new DesignRuleChecker(new DesignRules()).check(store).isEmpty());
+        store.translate(1, 0, -1);
+        assertEquals(1, new DesignRuleChecker(new DesignRules()).check(store).size());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Compares the heap occupied by a board's primitives, and the rate a pass over them runs at, when they are kept
+ * in a {@link PrimitiveStore} and when each is an object of its own, either with primitive fields or with boxed
+ * coordinates. The pass totals the length of the tracks on one layer, reading the kind, layer and coordinates of
+ * every primitive as a design rule check or a repaint does. Run by the storeBenchmark Gradle task; the arguments
+ * are the number of primitives and the number of measured passes.
+ */
+public final class PrimitiveStoreBenchmark {
+    private PrimitiveStoreBenchmark() {
+    }
+
+    /** A primitive as an object of its own with boxed coordinates. */
+    private static final class Boxed {
+        final PrimitiveStore.Kind kind;
+        final Integer layer, net;
+        final Long x0, y0, x1, y1, width, drill, aux;
+
+        Boxed(PrimitiveStore.Kind kind, int layer, int net, long x0, long y0, long x1, long y1, long width,
+              long drill, long aux) {
+            this.kind = kind;
+            this.layer = layer;
+            this.net = net;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.width = width;
+            this.drill = drill;
+            this.aux = aux;
+        }
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The number of primitives, default 1000000, and the number of measured passes, default 20.
+     * @throws InterruptedException if interrupted while waiting for the garbage collector.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+        int passes = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        System.out.printf("%d primitives, %d passes%n", count, passes);
+        System.out.printf("%-9s %16s %16s %10s%n", "model", "bytes/primitive", "Mprimitives/s", "checksum");
+
+        long before = usedHeap();
+        PrimitiveStore store = new PrimitiveStore();
+        board(count, (kind, layer, net, x0, y0, x1, y1, width, drill, aux) ->
+                store.add(kind, layer, net, x0, y0, x1, y1, width, drill, aux));
+        store.compact();
+        measure("store", count, usedHeap() - before, passes, store, PrimitiveStoreBenchmark::trackLength);
+
+        before = usedHeap();
+        List<PrimitiveStore.Primitive> records = new ArrayList<>(count);
+        board(count, (kind, layer, net, x0, y0, x1, y1, width, drill, aux) ->
+                records.add(new PrimitiveStore.Primitive(kind, layer, net, x0, y0, x1, y1, width, drill, aux)));
+        measure("objects", count, usedHeap() - before, passes, records, board -> {
+            double length = 0;
+            for (PrimitiveStore.Primitive p : board)
+                if (p.kind() == PrimitiveStore.Kind.SEGMENT && p.layer() == 0)
+                    length += length(p.x1() - p.x0(), p.y1() - p.y0());
+            return length;
+        });
+
+        before = usedHeap();
+        List<Boxed> boxed = new ArrayList<>(count);
+        board(count, (kind, layer, net, x0, y0, x1, y1, width, drill, aux) ->
+                boxed.add(new Boxed(kind, layer, net, x0, y0, x1, y1, width, drill, aux)));
+        measure("boxed", count, usedHeap() - before, passes, boxed, board -> {
+            double length = 0;
+            for (Boxed p : board)
+                if (p.kind == PrimitiveStore.Kind.SEGMENT && p.layer == 0)
+                    length += length(p.x1 - p.x0, p.y1 - p.y0);
+            return length;
+        });
+    }
+
+    /** Total the length of the tracks on layer 0, looping over the store's columns as its engines do. */
+    private static double trackLength(PrimitiveStore store) {
+        double length = 0;
+        byte segment = (byte) PrimitiveStore.Kind.SEGMENT.ordinal();
+        for (int slot = 0; slot < store.size(); slot++)
+            if (store.kind[slot] == segment && store.layer[slot] == 0)
+                length += length(store.x1[slot] - store.x0[slot], store.y1[slot] - store.y0[slot]);
+        return length;
+    }
+
+    private static double length(long dx, long dy) {
+        return Math.sqrt((double) dx * dx + (double) dy * dy);
+    }
+
+    /**
+     * Report the heap a model of the board occupies and the best rate of a number of passes over it, after a
+     * warm-up pass.
+     */
+    private static <B> void measure(String name, int count, long bytes, int passes, B board,
+                                    ToDoubleFunction<B> pass) {
+        double checksum = pass.applyAsDouble(board);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < passes; i++) {
+            long start = System.nanoTime();
+            checksum = pass.applyAsDouble(board);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-9s %16d %16.1f %10.3e%n", name, bytes / count, count * 1e3 / best, checksum);
+    }
+
+    /** Receives the attributes of each primitive of a board. */
+    private interface Sink {
+        void add(PrimitiveStore.Kind kind, int layer, int net, long x0, long y0, long x1, long y1, long width,
+                 long drill, long aux);
+    }
+
+    /** Generate the same board of tracks, arcs, pads and vias for every model. */
+    private static void board(int count, Sink sink) {
+        Random random = new Random(42);
+        long side = 400_000_000; // 400 mm.
+        for (int i = 0; i < count; i++) {
+            long x = random.nextLong(side), y = random.nextLong(side);
+            int layer = random.nextInt(4), net = random.nextInt(count / 10 + 1);
+            switch (random.nextInt(5)) {
+                case 0, 1 -> sink.add(PrimitiveStore.Kind.SEGMENT, layer, net, x, y,
+                        x + random.nextLong(-3_000_000, 3_000_000), y + random.nextLong(-3_000_000, 3_000_000),
+                        200_000, 0, 0);
+                case 2 -> sink.add(PrimitiveStore.Kind.ARC, layer, net, x, y, x + 1_000_000, y, 200_000, 0,
+                        90_000_000);
+                case 3 -> sink.add(PrimitiveStore.Kind.RECT_PAD, layer, net, x, y, x + 600_000, y + 900_000, 0, 0,
+                        0);
+                default -> sink.add(PrimitiveStore.Kind.VIA, 0, net, x, y, x, y, 600_000, 300_000, 0);
+            }
+        }
+    }
+
+    /** The heap in use once the garbage collector has settled. */
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import com.cyte.edamame.util.DeltaMemento;
+import com.cyte.edamame.util.Memento;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimitiveStoreTest {
+    private static final PrimitiveStore.Primitive VIA =
+            new PrimitiveStore.Primitive(PrimitiveStore.Kind.VIA, 0, 1, 0, 0, 0, 0, 600, 300, 0);
+
+    private static int addVia(PrimitiveStore store, long x) {
+        return store.add(PrimitiveStore.Kind.VIA, 0, 1, x, 0, x, 0, 600, 300, 0);
+    }
+
+    @Test
+    void handlesSkippedByReviveAreNotInUse() {
+        PrimitiveStore store = new PrimitiveStore();
+        store.set(5, VIA);
+        assertEquals(1, store.size());
+        assertTrue(store.contains(5));
+        for (int handle = 0; handle < 5; handle++) {
+            assertFalse(store.contains(handle), "handle " + handle);
+            assertNull(store.get(handle));
+        }
+        assertEquals(0, store.slot(5));
+    }
+
+    @Test
+    void handlesRevivedBeyondTheCapacityAreNotInUse() {
+        PrimitiveStore store = new PrimitiveStore();
+        store.set(1_000, VIA);
+        for (int handle = 0; handle < 1_000; handle++)
+            assertFalse(store.contains(handle), "handle " + handle);
+        int added = addVia(store, 10);
+        assertTrue(added < 1_000);
+        assertTrue(store.contains(added));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void handlesIssuedBeforeClearAreNotInUse() {
+        PrimitiveStore store = new PrimitiveStore();
+        for (int i = 0; i < 200; i++)
+            addVia(store, i);
+        store.clear();
+        assertEquals(0, store.size());
+        store.set(100, VIA);
+        for (int handle = 0; handle < 100; handle++)
+            assertFalse(store.contains(handle), "handle " + handle);
+        assertEquals(1, store.size());
+        assertEquals(100, store.handleAt(0));
+    }
+
+    private static PrimitiveStore.Primitive randomPrimitive(Random random) {
+        PrimitiveStore.Kind kind = PrimitiveStore.Kind.values()[random.nextInt(PrimitiveStore.Kind.values().length)];
+        return new PrimitiveStore.Primitive(kind, random.nextInt(4), random.nextInt(10), random.nextInt(1_000_000),
+                random.nextInt(1_000_000), random.nextInt(1_000_000), random.nextInt(1_000_000),
+                random.nextInt(1_000), random.nextInt(500), random.nextInt(90_000_000));
+    }
+
+    private static int add(PrimitiveStore store, PrimitiveStore.Primitive p) {
+        return store.add(p.kind(), p.layer(), p.net(), p.x0(), p.y0(), p.x1(), p.y1(), p.width(), p.drill(), p.aux());
+    }
+
+    /** Check the store holds exactly the expected primitives, each in its own slot. */
+    private static void assertHolds(Map<Integer, PrimitiveStore.Primitive> expected, PrimitiveStore store,
+                                    int maxHandle) {
+        assertEquals(expected.size(), store.size());
+        for (int slot = 0; slot < store.size(); slot++)
+            assertEquals(slot, store.slot(store.handleAt(slot)));
+        for (int handle = 0; handle <= maxHandle; handle++) {
+            assertEquals(expected.containsKey(handle), store.contains(handle), "handle " + handle);
+            assertEquals(expected.get(handle), store.get(handle));
+        }
+    }
+
+    @Test
+    void handlesStayValidUntilRemovedAndAreReused() {
+        Random random = new Random(1);
+        PrimitiveStore store = new PrimitiveStore();
+        Map<Integer, PrimitiveStore.Primitive> expected = new HashMap<>();
+        List<Integer> live = new ArrayList<>();
+        int maxHandle = 0;
+        for (int round = 0; round < 20_000; round++) {
+            if (!live.isEmpty() && random.nextInt(3) == 0) {
+                int handle = live.remove(random.nextInt(live.size()));
+                store.remove(handle);
+                expected.remove(handle);
+                assertFalse(store.contains(handle));
+                assertThrows(IllegalArgumentException.class, () -> store.slot(handle));
+            } else {
+                PrimitiveStore.Primitive primitive = randomPrimitive(random);
+                int next = store.nextHandle();
+                int handle = add(store, primitive);
+                assertEquals(next, handle);
+                assertFalse(expected.containsKey(handle));
+                expected.put(handle, primitive);
+                live.add(handle);
+                maxHandle = Math.max(maxHandle, handle);
+            }
+            if (round % 1_000 == 0)
+                assertHolds(expected, store, maxHandle);
+        }
+        assertHolds(expected, store, maxHandle);
+        assertTrue(maxHandle < 20_000, "removed handles are reused");
+    }
+
+    @Test
+    void compactionKeepsLivePrimitivesAndReleasesCapacity() {
+        Random random = new Random(2);
+        PrimitiveStore store = new PrimitiveStore();
+        Map<Integer, PrimitiveStore.Primitive> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            PrimitiveStore.Primitive primitive = randomPrimitive(random);
+            expected.put(add(store, primitive), primitive);
+        }
+        long full = store.getMemoryBytes();
+        for (int handle = 100; handle < 10_000; handle++) {
+            if (handle % 7 != 0) {
+                store.remove(handle);
+                expected.remove(handle);
+            }
+        }
+        store.compact();
+        assertTrue(store.getMemoryBytes() < full / 4, store.getMemoryBytes() + " of " + full);
+        assertHolds(expected, store, 10_000);
+
+        PrimitiveStore.Primitive primitive = randomPrimitive(random);
+        int handle = add(store, primitive);
+        assertFalse(expected.containsKey(handle));
+        expected.put(handle, primitive);
+        assertHolds(expected, store, 10_000);
+    }
+
+    @Test
+    void capturedStateUndoesAdditionsChangesAndRemovals() {
+        Random random = new Random(3);
+        PrimitiveStore store = new PrimitiveStore();
+        Map<Integer, PrimitiveStore.Primitive> before = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            PrimitiveStore.Primitive primitive = randomPrimitive(random);
+            before.put(add(store, primitive), primitive);
+        }
+        store.remove(10);
+        before.remove(10);
+
+        int added = store.nextHandle();
+        DeltaMemento<Integer, PrimitiveStore.Primitive> memento = store.capture(List.of(3, 20, 30, added));
+        store.setNet(3, 99);
+        store.translate(20, 5, 5);
+        PrimitiveStore.Primitive primitive = randomPrimitive(random);
+        assertEquals(added, add(store, primitive));
+        store.remove(30);
+        Map<Integer, PrimitiveStore.Primitive> after = new HashMap<>();
+        for (int slot = 0; slot < store.size(); slot++)
+            after.put(store.handleAt(slot), store.get(store.handleAt(slot)));
+
+        Memento redo = memento.restore();
+        assertHolds(before, store, 60);
+        redo.restore();
+        assertHolds(after, store, 60);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RatsnestTest {
+    /** A net of distinct random anchors spread over some islands, each with at least one anchor. */
+    private static Ratsnest.Span randomSpan(Random random, int count, int islands, long side) {
+        Ratsnest.Span span = new Ratsnest.Span(1, count);
+        Set<List<Long>> used = new HashSet<>();
+        while (span.count < count) {
+            long x = random.nextLong(side), y = random.nextLong(side);
+            if (used.add(List.of(x, y)))
+                span.add(x, y, (span.count < islands) ? span.count : random.nextInt(islands));
+        }
+        span.islands = islands;
+        return span;
+    }
+
+    /** Returns the weight of a minimum spanning tree of the islands by Prim's algorithm over every pair. */
+    private static double minimumWeight(Ratsnest.Span span) {
+        double[] cost = new double[span.islands];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        boolean[] reached = new boolean[span.islands];
+        double total = 0;
+        int next = 0;
+        cost[0] = 0;
+        for (int step = 0; step < span.islands; step++) {
+            reached[next] = true;
+            total += cost[next];
+            for (int a = 0; a < span.count; a++) {
+                if (span.island[a] != next)
+                    continue;
+                for (int b = 0; b < span.count; b++) {
+                    int other = span.island[b];
+                    if (!reached[other]) {
+                        double d = Math.hypot(span.xs[a] - span.xs[b], span.ys[a] - span.ys[b]);
+                        cost[other] = Math.min(cost[other], d);
+                    }
+                }
+            }
+            next = -1;
+            for (int island = 0; island < span.islands; island++) {
+                if (!reached[island] && (next < 0 || cost[island] < cost[next]))
+                    next = island;
+            }
+            if (next < 0)
+                break;
+        }
+        return total;
+    }
+
+    /** Check the lines join every island, and return their total length. */
+    private static double assertSpans(Ratsnest.Span span) {
+        Map<List<Long>, Integer> islandAt = new HashMap<>();
+        for (int i = 0; i < span.count; i++)
+            islandAt.put(List.of(span.xs[i], span.ys[i]), span.island[i]);
+        int[] parent = new int[span.islands];
+        for (int island = 0; island < span.islands; island++)
+            parent[island] = island;
+        double total = 0;
+        assertEquals(4 * (span.islands - 1), span.lines.length);
+        for (int i = 0; i < span.lines.length; i += 4) {
+            Integer a = islandAt.get(List.of(span.lines[i], span.lines[i + 1]));
+            Integer b = islandAt.get(List.of(span.lines[i + 2], span.lines[i + 3]));
+            assertNotNull(a);
+            assertNotNull(b);
+            int ra = find(parent, a), rb = find(parent, b);
+            assertNotEquals(ra, rb, "a line within an island or closing a loop");
+            parent[ra] = rb;
+            total += Math.hypot(span.lines[i] - span.lines[i + 2], span.lines[i + 1] - span.lines[i + 3]);
+        }
+        return total;
+    }
+
+    private static int find(int[] parent, int island) {
+        while (parent[island] != island)
+            island = parent[island];
+        return island;
+    }
+
+    private static void assertMinimal(Ratsnest.Span span) {
+        double expected = minimumWeight(span);
+        span.run();
+        assertEquals(expected, assertSpans(span), expected * 1e-12);
+    }
+
+    @Test
+    void denseNetsAreSpannedMinimally() {
+        Random random = new Random(1);
+        for (int net = 0; net < 200; net++) {
+            int count = 2 + random.nextInt(Ratsnest.DENSE_LIMIT - 1);
+            assertMinimal(randomSpan(random, count, 2 + random.nextInt(count - 1), 1 + random.nextInt(50_000_000)));
+        }
+    }
+
+    @Test
+    void sparseNetsAreSpannedMinimally() {
+        Random random = new Random(2);
+        for (int net = 0; net < 20; net++) {
+            int count = Ratsnest.DENSE_LIMIT + 1 + random.nextInt(3_000);
+            int islands = (net % 2 == 0) ? count : 2 + random.nextInt(count / 4);
+            assertMinimal(randomSpan(random, count, islands, 1 + random.nextInt(50_000_000)));
+        }
+    }
+
+    @Test
+    void sparseNetsOnAGridAreSpannedMinimally() {
+        // Many equal distances, and anchors in line with each other across sector boundaries.
+        Ratsnest.Span span = new Ratsnest.Span(1, 1_000);
+        for (int i = 0; i < 1_000; i++)
+            span.add((i % 40) * 1_000_000L, (i / 40) * 1_000_000L, i);
+        span.islands = 1_000;
+        assertMinimal(span);
+    }
+
+    @Test
+    void joinedPadsNeedNoLine() {
+        PrimitiveStore store = new PrimitiveStore();
+        BoardIndex index = new BoardIndex(store, Runnable::run);
+        CopperConnectivity copper = new CopperConnectivity(index);
+        Ratsnest ratsnest = new Ratsnest(index, copper);
+        index.addWatcher(copper);
+        index.addWatcher(ratsnest);
+        for (int i = 0; i < 3; i++)
+            store.add(PrimitiveStore.Kind.ROUND_PAD, 0, 7, i * 1_000_000L, 0, 0, 0, 500_000, 0, 0);
+        index.rebuild();
+        assertEquals(2, ratsnest.getLineCount());
+
+        int track = store.add(PrimitiveStore.Kind.SEGMENT, 0, 7, 0, 0, 1_000_000, 0, 200_000, 0, 0);
+        index.markDirty(track);
+        assertEquals(1, ratsnest.getLineCount());
+        List<long[]> lines = new ArrayList<>();
+        ratsnest.forEachLine((net, x0, y0, x1, y1) -> lines.add(new long[] {net, Math.min(x0, x1), Math.max(x0, x1)}));
+        assertEquals(1, lines.size());
+        assertArrayEquals(new long[] {7, 1_000_000, 2_000_000}, lines.get(0));
+        assertEquals(Set.of(7), ratsnest.getChangedNets());
+    }
+}
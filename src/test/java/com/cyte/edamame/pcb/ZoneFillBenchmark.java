@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.pcb;
+
+import com.cyte.edamame.geometry.Box;
+import com.cyte.edamame.geometry.Polygon;
+import com.cyte.edamame.geometry.Region;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures filling a ground plane poured around thousands of pads, tracks and vias: filling it all with
+ * increasing numbers of threads, and filling it again after moving one track. Run by the zoneBenchmark Gradle
+ * task; the arguments are the number of parts on the board, the number of measured fills and moves, and the most
+ * threads to use.
+ */
+public final class ZoneFillBenchmark {
+    /** The pitch of the grid parts are placed on: 3 mm. */
+    private static final long CELL = 3_000_000;
+
+    /** How far a moved track is moved: 0.1 mm. */
+    private static final long NUDGE = 100_000;
+
+    private ZoneFillBenchmark() {
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The number of parts, default 3000, the number of measured fills and moves, default 5 and 1000,
+     *             and the most threads, default the number of processors.
+     */
+    public static void main(String[] args) {
+        int parts = (args.length > 0) ? Integer.parseInt(args[0]) : 3000;
+        int fills = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        int moves = (args.length > 2) ? Integer.parseInt(args[2]) : 1000;
+        int most = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        PrimitiveStore store = new PrimitiveStore();
+        List<Integer> tracks = new ArrayList<>();
+        Box board = board(store, tracks, parts, new Random(42));
+        BoardIndex index = new BoardIndex(store, Runnable::run);
+        index.rebuild();
+        DesignRules rules = new DesignRules();
+        Zone plane = new Zone(1, 0, Polygon.of(board));
+
+        System.out.printf("%d parts, %d primitives, a %d x %d mm plane in %d tiles%n", parts, store.size(),
+                board.width() / 1_000_000, board.height() / 1_000_000, tiles(board));
+        System.out.printf("%-8s %12s %14s%n", "threads", "fill ms", "fill vertices");
+        List<Integer> threads = new ArrayList<>();
+        for (int n = 1; n < most; n *= 2)
+            threads.add(n);
+        threads.add(most);
+        for (int n : threads) {
+            ForkJoinPool pool = new ForkJoinPool(n);
+            ZoneFiller filler = new ZoneFiller(index, rules, pool);
+            index.addWatcher(filler);
+            try {
+                filler.rebuild();
+                filler.addZone(plane); // warms up.
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < fills; i++) {
+                    long start = System.nanoTime();
+                    filler.setRules(rules);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                System.out.printf("%-8d %12.1f %14d%n", n, best / 1e6, plane.getFill().getVertexCount());
+                if (n == most)
+                    move(store, index, tracks, plane, moves);
+                filler.removeZone(plane);
+            } finally {
+                index.removeWatcher(filler);
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Nudge random tracks back and forth, each move refilling the tiles of the plane it affects, and report the
+     * latency of a move. The plane is filled the same after an even number of moves of each track as before.
+     */
+    private static void move(PrimitiveStore store, BoardIndex index, List<Integer> tracks, Zone plane, int moves) {
+        Region before = plane.getFill();
+        boolean[] moved = new boolean[tracks.size()];
+        Random random = new Random(7);
+        long[] nanos = new long[moves];
+        for (int i = 0; i < 2 * moves; i++) { // the first half warms up.
+            int k = random.nextInt(tracks.size()), handle = tracks.get(k);
+            long start = System.nanoTime();
+            store.translate(handle, moved[k] ? -NUDGE : NUDGE, 0);
+            index.markDirty(handle);
+            if (i >= moves)
+                nanos[i - moves] = System.nanoTime() - start;
+            moved[k] = !moved[k];
+        }
+        for (int k = 0; k < moved.length; k++) {
+            if (moved[k]) {
+                store.translate(tracks.get(k), -NUDGE, 0);
+                index.markDirty(tracks.get(k));
+            }
+        }
+        if (Math.abs(plane.getFill().area() - before.area()) > 1e-6 * before.area())
+            throw new IllegalStateException("moving tracks back did not restore the fill");
+        Arrays.sort(nanos);
+        System.out.printf("move a track and refill: median %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                nanos[moves / 2] / 1e6, nanos[(int) (moves * 0.99)] / 1e6, nanos[moves - 1] / 1e6);
+    }
+
+    /**
+     * Place parts on a grid, each two pads on the plane's layer, one joined by a track to a via. One part in ten
+     * is on the plane's own net, which the plane joins rather than clears.
+     *
+     * @return the bounds of the board.
+     */
+    private static Box board(PrimitiveStore store, List<Integer> tracks, int parts, Random random) {
+        int columns = (int) Math.ceil(Math.sqrt(parts * 1.6));
+        int rows = (parts + columns - 1) / columns;
+        long margin = 2_000_000;
+        for (int i = 0; i < parts; i++) {
+            long x = margin + (i % columns) * CELL, y = margin + (i / columns) * CELL;
+            int net = (random.nextInt(10) == 0) ? 1 : 2 + random.nextInt(200);
+            store.add(PrimitiveStore.Kind.RECT_PAD, 0, net, x, y, x + 600_000, y + 900_000, 0, 0, 0);
+            store.add(PrimitiveStore.Kind.RECT_PAD, 0, 2 + random.nextInt(200), x + 1_600_000, y,
+                    x + 2_200_000, y + 900_000, 0, 0, 0);
+            tracks.add(store.add(PrimitiveStore.Kind.SEGMENT, 0, net, x + 300_000, y + 450_000, x + 300_000,
+                    y + 2_200_000, 250_000, 0, 0));
+            store.add(PrimitiveStore.Kind.VIA, 0, net, x + 300_000, y + 2_200_000, x + 300_000, y + 2_200_000,
+                    600_000, 300_000, 0);
+        }
+        return new Box(0, 0, 2 * margin + columns * CELL, 2 * margin + rows * CELL);
+    }
+
+    private static int tiles(Box board) {
+        long columns = (board.width() + ZoneFiller.TILE_SIZE - 1) / ZoneFiller.TILE_SIZE;
+        long rows = (board.height() + ZoneFiller.TILE_SIZE - 1) / ZoneFiller.TILE_SIZE;
+        return (int) (columns * rows);
+    }
+}
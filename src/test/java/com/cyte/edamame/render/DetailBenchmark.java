@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.render;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Measures the effect of the level-of-detail rules on frame time, painting a large sheet of symbols at several
+ * zoom levels with the rules off and on. Each frame draws the sheet's display list onto a canvas and snapshots
+ * the canvas, so the time includes rasterising what was drawn. Run by the detailBenchmark Gradle task, which
+ * needs a display; the arguments are the number of symbols and the number of measured frames per zoom level.
+ */
+public final class DetailBenchmark {
+    /** The size of the canvas painted, in pixels. */
+    private static final int WIDTH = 1920, HEIGHT = 1080;
+
+    /** 100 mil in nanometres, the grid symbols are placed on. */
+    private static final long GRID = 2_540_000;
+
+    private DetailBenchmark() {
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The number of symbols, default 20000, and the number of measured frames, default 20.
+     * @throws Exception if the JavaFX platform fails.
+     */
+    public static void main(String[] args) throws Exception {
+        int symbols = (args.length > 0) ? Integer.parseInt(args[0]) : 20_000;
+        int frames = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Platform.startup(() -> {
+            try {
+                run(symbols, frames);
+                done.complete(null);
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        });
+        try {
+            done.join();
+        } finally {
+            Platform.exit();
+        }
+    }
+
+    private static void run(int symbols, int frames) {
+        DisplayList sheet = new DisplayList(new DisplayList.Invalidator() {
+            @Override
+            public void invalidate(long minX, long minY, long maxX, long maxY) {
+            }
+
+            @Override
+            public void invalidateAll() {
+            }
+        });
+        long side = sheet(sheet, symbols, new Random(42));
+        Canvas canvas = new Canvas(WIDTH, HEIGHT);
+        WritableImage image = new WritableImage(WIDTH, HEIGHT);
+        DetailSettings off = new DetailSettings();
+        off.setEnabled(false);
+        DetailSettings on = new DetailSettings();
+
+        System.out.printf("%d symbols, %d primitives, %d frames of %dx%d%n", symbols, sheet.size(), frames, WIDTH,
+                HEIGHT);
+        System.out.printf("%-6s %-4s %10s %10s   %s%n", "zoom", "lod", "median ms", "max ms", "last frame");
+        for (int zoom = 1; zoom <= 64; zoom *= 4) {
+            Viewport viewport = new Viewport();
+            long shown = side / zoom;
+            viewport.fit(0, 0, shown, shown, WIDTH, HEIGHT);
+            for (DetailSettings detail : new DetailSettings[] {off, on}) {
+                long[] nanos = new long[frames];
+                FrameCounts counts = null;
+                for (int frame = -1; frame < frames; frame++) { // frame -1 warms up.
+                    long start = System.nanoTime();
+                    counts = paint(canvas, sheet, viewport, detail);
+                    canvas.snapshot(null, image);
+                    if (frame >= 0)
+                        nanos[frame] = System.nanoTime() - start;
+                }
+                Arrays.sort(nanos);
+                System.out.printf("%-6s %-4s %10.2f %10.2f   %s%n", zoom + "x", detail.isEnabled() ? "on" : "off",
+                        nanos[frames / 2] / 1e6, nanos[frames - 1] / 1e6, counts);
+            }
+        }
+    }
+
+    /** Paint the whole canvas as the renderer does for a full repaint. */
+    private static FrameCounts paint(Canvas canvas, DisplayList sheet, Viewport viewport, DetailSettings detail) {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFill(Color.BLACK);
+        gc.fillRect(0, 0, WIDTH, HEIGHT);
+        gc.setStroke(Color.WHITE);
+        gc.setFill(Color.WHITE);
+        FrameCounts counts = new FrameCounts();
+        sheet.draw(gc, viewport, detail, counts, viewport.toWorldX(0), viewport.toWorldY(0),
+                viewport.toWorldX(WIDTH), viewport.toWorldY(HEIGHT));
+        return counts;
+    }
+
+    /**
+     * Fill a display list with symbols shaped like those of a large schematic sheet, each a group of a body,
+     * a reference designator and pins with their names, on a square grid.
+     *
+     * @return the side of the square the symbols are spread over.
+     */
+    private static long sheet(DisplayList sheet, int symbols, Random random) {
+        int perRow = (int) Math.ceil(Math.sqrt(symbols));
+        long pitch = 12 * GRID;
+        sheet.beginBatch();
+        for (int i = 0; i < symbols; i++) {
+            long x = (i % perRow) * pitch, y = (i / perRow) * pitch;
+            int pins = 2 + random.nextInt(15);
+            long height = GRID * ((pins + 1) / 2 + 1);
+            int group = sheet.addGroup(x - 2 * GRID, y - GRID, x + 6 * GRID, y + height);
+            sheet.add(group, DisplayList.Kind.SEGMENT, x, y, x + 4 * GRID, y, 254_000);
+            sheet.add(group, DisplayList.Kind.SEGMENT, x + 4 * GRID, y, x + 4 * GRID, y + height, 254_000);
+            sheet.add(group, DisplayList.Kind.SEGMENT, x + 4 * GRID, y + height, x, y + height, 254_000);
+            sheet.add(group, DisplayList.Kind.SEGMENT, x, y + height, x, y, 254_000);
+            sheet.addText(group, "U" + i, x, y - GRID / 4, x + 2 * GRID, y - GRID, GRID / 2);
+            for (int pin = 0; pin < pins; pin++) {
+                boolean left = pin % 2 == 0;
+                long pinY = y + GRID * (pin / 2 + 1);
+                long pinX = left ? x - 2 * GRID : x + 4 * GRID;
+                sheet.add(group, DisplayList.Kind.SEGMENT, pinX, pinY, pinX + 2 * GRID, pinY, 152_400);
+                sheet.addText(group, "P" + (pin + 1), left ? x + GRID / 4 : x + 3 * GRID, pinY + GRID / 6,
+                        left ? x + GRID : x + 3 * GRID + 3 * GRID / 4, pinY - GRID / 6, GRID / 3);
+            }
+        }
+        sheet.endBatch();
+        return perRow * pitch;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+package com.cyte.edamame.spatial;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RTreeTest {
+    private static final long WORLD = 1_000_000;
+
+    /** The boxes of the items, by item. */
+    private final List<long[]> boxes = new ArrayList<>();
+
+    private long[] randomBox(Random random) {
+        long x = random.nextInt((int) WORLD), y = random.nextInt((int) WORLD);
+        long w = random.nextInt(20_000), h = random.nextInt(20_000);
+        return new long[] {x, y, x + w, y + h};
+    }
+
+    private RTree<Integer> bulkLoad(Random random, int count) {
+        List<Integer> items = new ArrayList<>();
+        long[][] columns = new long[4][count];
+        for (int i = 0; i < count; i++) {
+            long[] box = randomBox(random);
+            boxes.add(box);
+            items.add(i);
+            for (int k = 0; k < 4; k++)
+                columns[k][i] = box[k];
+        }
+        return RTree.bulkLoad(items, columns[0], columns[1], columns[2], columns[3]);
+    }
+
+    /** The items a scan of every box finds in a region, ignoring removed items. */
+    private Set<Integer> scan(Set<Integer> present, long[] region, boolean contained) {
+        Set<Integer> found = new HashSet<>();
+        for (int item : present) {
+            long[] b = boxes.get(item);
+            boolean hit = contained
+                    ? b[0] >= region[0] && b[1] >= region[1] && b[2] <= region[2] && b[3] <= region[3]
+                    : b[2] >= region[0] && b[0] <= region[2] && b[3] >= region[1] && b[1] <= region[3];
+            if (hit)
+                found.add(item);
+        }
+        return found;
+    }
+
+    private void assertMatchesScan(RTree<Integer> tree, Set<Integer> present, Random random) {
+        assertEquals(present.size(), tree.size());
+        for (int q = 0; q < 200; q++) {
+            long[] region = randomBox(random);
+            region[2] += random.nextInt(100_000);
+            region[3] += random.nextInt(100_000);
+            List<Integer> found = tree.search(region[0], region[1], region[2], region[3]);
+            assertEquals(found.size(), new HashSet<>(found).size(), "an item was found twice");
+            assertEquals(scan(present, region, false), new HashSet<>(found));
+
+            Set<Integer> contained = new HashSet<>();
+            tree.searchContained(region[0], region[1], region[2], region[3], contained::add);
+            assertEquals(scan(present, region, true), contained);
+        }
+    }
+
+    @Test
+    void bulkLoadedTreeMatchesScan() {
+        Random random = new Random(1);
+        RTree<Integer> tree = bulkLoad(random, 20_000);
+        Set<Integer> present = new HashSet<>();
+        for (int i = 0; i < boxes.size(); i++)
+            present.add(i);
+        assertMatchesScan(tree, present, random);
+        assertTrue(tree.getHeight() <= 5, "height " + tree.getHeight());
+    }
+
+    @Test
+    void editedTreeMatchesScan() {
+        Random random = new Random(2);
+        RTree<Integer> tree = bulkLoad(random, 5_000);
+        Set<Integer> present = new HashSet<>();
+        for (int i = 0; i < boxes.size(); i++)
+            present.add(i);
+        for (int round = 0; round < 20_000; round++) {
+            if (!present.isEmpty() && random.nextBoolean()) {
+                int item = random.nextInt(boxes.size());
+                long[] b = boxes.get(item);
+                assertEquals(present.remove(item), tree.remove(item, b[0], b[1], b[2], b[3]));
+            } else {
+                long[] box = randomBox(random);
+                int item = boxes.size();
+                boxes.add(box);
+                tree.insert(item, box[0], box[1], box[2], box[3]);
+                present.add(item);
+            }
+        }
+        assertMatchesScan(tree, present, random);
+    }
+
+    @Test
+    void removingEverythingEmptiesTheTree() {
+        Random random = new Random(3);
+        RTree<Integer> tree = new RTree<>();
+        for (int i = 0; i < 1_000; i++) {
+            long[] box = randomBox(random);
+            boxes.add(box);
+            tree.insert(i, box[0], box[1], box[2], box[3]);
+        }
+        for (int i = 0; i < boxes.size(); i++) {
+            long[] b = boxes.get(i);
+            assertTrue(tree.remove(i, b[0], b[1], b[2], b[3]));
+        }
+        assertTrue(tree.isEmpty());
+        assertEquals(1, tree.getHeight());
+        assertTrue(tree.search(0, 0, WORLD * 2, WORLD * 2).isEmpty());
+    }
+
+    @Test
+    void touchingBoxesIntersectAndRemovalNeedsTheExactBox() {
+        RTree<String> tree = new RTree<>();
+        tree.insert("a", 0, 0, 10, 10);
+        assertEquals(List.of("a"), tree.search(10, 10, 20, 20));
+        assertEquals(List.of("a"), tree.pick(12, 12, 2));
+        assertTrue(tree.pick(13, 13, 2).isEmpty());
+        assertFalse(tree.remove("a", 0, 0, 10, 11));
+        assertTrue(tree.remove("a", 0, 0, 10, 10));
+        assertThrows(IllegalArgumentException.class, () -> tree.insert("b", 1, 0, 0, 0));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IOServiceTest {
+    /** Occupy the only worker of a service until the returned latch is released. */
+    private static CountDownLatch block(IOService io) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        io.submit(() -> {
+            started.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS), "the worker never started");
+        return release;
+    }
+
+    @Test
+    void cancellingQueuedWorkSkipsIt() throws Exception {
+        try (IOService io = new IOService(1)) {
+            CountDownLatch release = block(io);
+            AtomicBoolean ran = new AtomicBoolean();
+            CompletableFuture<String> queued = io.submit(() -> {
+                ran.set(true);
+                return "ran";
+            });
+            assertTrue(queued.cancel(false));
+            assertTrue(queued.isCancelled());
+            release.countDown();
+
+            assertEquals("after", io.submit(() -> "after").get(10, TimeUnit.SECONDS));
+            assertFalse(ran.get(), "cancelled work ran once the worker was free");
+        }
+    }
+
+    @Test
+    void cancellingWithInterruptReachesRunningWork() throws Exception {
+        try (IOService io = new IOService(1)) {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch interrupted = new CountDownLatch(1);
+            CompletableFuture<Boolean> running = io.submit(() -> {
+                started.countDown();
+                try {
+                    return new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            running.cancel(true);
+            assertTrue(interrupted.await(10, TimeUnit.SECONDS), "the running work was not interrupted");
+            assertTrue(running.isCancelled());
+        }
+    }
+
+    @Test
+    void cancellationReachesWorkQueuedOnAnyExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            executor.execute(() -> {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            AtomicBoolean ran = new AtomicBoolean();
+            CompletableFuture<String> queued = IOService.submit(executor, () -> {
+                ran.set(true);
+                return "ran";
+            });
+            queued.cancel(false);
+            release.countDown();
+            executor.submit(() -> { }).get(10, TimeUnit.SECONDS);
+            assertFalse(ran.get(), "cancelled work ran once the executor was free");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void closingCancelsQueuedWork() throws Exception {
+        IOService io = new IOService(1);
+        CountDownLatch release = block(io);
+        boolean[] ran = {false};
+        CompletableFuture<String> queued = io.submit(() -> {
+            ran[0] = true;
+            return "ran";
+        });
+        CompletableFuture<String> chained = queued.thenApply(result -> result + " and chained");
+        assertEquals(1, io.getQueuedCount());
+
+        Thread closer = new Thread(io::close);
+        closer.start();
+        try {
+            assertThrows(CancellationException.class, () -> queued.get(10, TimeUnit.SECONDS));
+            assertTrue(queued.isCancelled());
+            assertTrue(chained.isCompletedExceptionally(), "work chained after discarded work must not hang");
+        } finally {
+            release.countDown();
+            closer.join();
+        }
+        assertFalse(ran[0]);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Compares the heap retained by the undo history of a large model when each edit is recorded as a full copy of
+ * the model, as a structurally shared snapshot of a {@link PersistentModel} and as a {@link DeltaMemento} of the
+ * key edited. Each edit nudges one track of the model. Full copies of a large model quickly exhaust the heap, so
+ * they are measured over fewer edits and scaled up. Run by the mementoBenchmark Gradle task; the arguments are
+ * the number of tracks in the model, the number of edits and the number of edits recorded as full copies.
+ */
+public final class MementoBenchmark {
+    /** The number of edits the heap retained is reported for. */
+    private static final int REPORTED_EDITS = 10_000;
+
+    private MementoBenchmark() {
+    }
+
+    /** A track of a board, the value kept under each key of the model. */
+    private record Track(int net, long x0, long y0, long x1, long y1, long width) {
+        Track nudge(long dx, long dy) {
+            return new Track(net, x0 + dx, y0 + dy, x1 + dx, y1 + dy, width);
+        }
+    }
+
+    /** A way of recording an edit of a model and applying it. */
+    private interface Scheme {
+        /** Record the state the edit of a key is about to change, then make the edit. */
+        Memento edit(int key, long dx, long dy);
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args The number of tracks, default 100000, the number of edits, default 10000, and the number of
+     *             edits recorded as full copies, default 100.
+     * @throws InterruptedException if interrupted while waiting for the garbage collector.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int tracks = (args.length > 0) ? Integer.parseInt(args[0]) : 100_000;
+        int edits = (args.length > 1) ? Integer.parseInt(args[1]) : 10_000;
+        int copies = (args.length > 2) ? Integer.parseInt(args[2]) : 100;
+        Random random = new Random(42);
+        Map<Integer, Track> initial = new HashMap<>();
+        for (int key = 0; key < tracks; key++) {
+            long x = random.nextInt(100_000_000), y = random.nextInt(100_000_000);
+            initial.put(key, new Track(random.nextInt(1000), x, y, x + 2_540_000, y, 254_000));
+        }
+
+        System.out.printf("%d tracks, %d edits (%d recorded as full copies)%n", tracks, edits, copies);
+        System.out.printf("%-11s %10s %18s %14s%n", "memento", "bytes/edit", "MB per 10k edits", "edits/s");
+
+        Map<Integer, Track> copied = new HashMap<>(initial);
+        List<Memento> copiedHistory = measure("full copy", tracks, Math.min(copies, edits), (key, dx, dy) -> {
+            Memento memento = copyOf(copied);
+            copied.put(key, copied.get(key).nudge(dx, dy));
+            return memento;
+        });
+        verify("full copy", copied::get, copiedHistory, initial);
+
+        PersistentModel<Integer, Track> shared = model(initial);
+        List<Memento> sharedHistory = measure("persistent", tracks, edits, (key, dx, dy) -> {
+            Memento memento = shared.saveToMemento();
+            shared.put(key, shared.get(key).nudge(dx, dy));
+            return memento;
+        });
+        verify("persistent", shared::get, sharedHistory, initial);
+
+        PersistentModel<Integer, Track> delta = model(initial);
+        List<Memento> deltaHistory = measure("delta", tracks, edits, (key, dx, dy) -> {
+            Memento memento = delta.saveToMemento(List.of(key));
+            delta.put(key, delta.get(key).nudge(dx, dy));
+            return memento;
+        });
+        verify("delta", delta::get, deltaHistory, initial);
+    }
+
+    /** Capture a model the way a plain {@link Originator} does, by copying all of it. */
+    private static Memento copyOf(Map<Integer, Track> model) {
+        Map<Integer, Track> saved = new HashMap<>(model);
+        return () -> {
+            Memento inverse = copyOf(model);
+            model.clear();
+            model.putAll(saved);
+            return inverse;
+        };
+    }
+
+    private static PersistentModel<Integer, Track> model(Map<Integer, Track> contents) {
+        PersistentModel<Integer, Track> model = new PersistentModel<>();
+        contents.forEach(model::put);
+        return model;
+    }
+
+    /**
+     * Make a number of edits under a scheme, keeping every memento as an undo history does, and report the heap
+     * they retain and the rate they were made at.
+     *
+     * @return the mementos, oldest first.
+     */
+    private static List<Memento> measure(String name, int tracks, int edits, Scheme scheme)
+            throws InterruptedException {
+        Random random = new Random(7);
+        List<Memento> history = new ArrayList<>(edits);
+        long before = usedHeap();
+        long start = System.nanoTime();
+        for (int i = 0; i < edits; i++)
+            history.add(scheme.edit(random.nextInt(tracks), random.nextInt(200_000) - 100_000, 0));
+        long nanos = System.nanoTime() - start;
+        long bytes = Math.max(0, usedHeap() - before) / edits;
+        System.out.printf("%-11s %10d %18.1f %14.0f%n", name, bytes, bytes * (double) REPORTED_EDITS / (1 << 20),
+                edits * 1e9 / nanos);
+        return history;
+    }
+
+    /** Undo every edit, newest first, and check the model is back where it started. */
+    private static void verify(String name, Function<Integer, Track> model, List<Memento> history,
+                               Map<Integer, Track> initial) {
+        for (int i = history.size() - 1; i >= 0; i--)
+            history.get(i).restore();
+        initial.forEach((key, track) -> {
+            if (!track.equals(model.apply(key)))
+                throw new IllegalStateException(name + " did not undo the edits of track " + key);
+        });
+    }
+
+    /** The heap in use once the garbage collector has settled. */
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
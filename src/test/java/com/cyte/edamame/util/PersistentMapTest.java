@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentMapTest {
+    /** A key whose hash codes collide in groups, to exercise the collision nodes. */
+    private record Colliding(int id) {
+        @Override
+        public int hashCode() { return id / 4; }
+    }
+
+    private static <K, V> void assertSameContents(Map<K, V> expected, PersistentMap<K, V> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (Map.Entry<K, V> entry : expected.entrySet())
+            assertEquals(entry.getValue(), actual.get(entry.getKey()));
+        Map<K, V> visited = new HashMap<>();
+        actual.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    void emptyMapHasNothing() {
+        PersistentMap<String, String> map = PersistentMap.empty();
+        assertTrue(map.isEmpty());
+        assertNull(map.get("a"));
+        assertNull(map.get(null));
+        assertSame(map, map.minus("a"));
+    }
+
+    @Test
+    void matchesHashMapUnderRandomEdits() {
+        Random random = new Random(1);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentMap<Integer, Integer> map = PersistentMap.empty();
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                expected.put(key, i);
+                map = map.plus(key, i);
+            }
+        }
+        assertSameContents(expected, map);
+    }
+
+    @Test
+    void collidingKeysAreKeptApart() {
+        Map<Colliding, Integer> expected = new HashMap<>();
+        PersistentMap<Colliding, Integer> map = PersistentMap.empty();
+        for (int i = 0; i < 400; i++) {
+            expected.put(new Colliding(i), i);
+            map = map.plus(new Colliding(i), i);
+        }
+        for (int i = 0; i < 400; i += 3) {
+            expected.remove(new Colliding(i));
+            map = map.minus(new Colliding(i));
+        }
+        assertSameContents(expected, map);
+    }
+
+    @Test
+    void earlierVersionsAreUnchanged() {
+        List<PersistentMap<Integer, String>> versions = new ArrayList<>();
+        List<Map<Integer, String>> expected = new ArrayList<>();
+        PersistentMap<Integer, String> map = PersistentMap.empty();
+        Map<Integer, String> copy = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            map = (i % 5 == 4) ? map.minus(i - 2) : map.plus(i % 100, "v" + i);
+            if (i % 5 == 4)
+                copy.remove(i - 2);
+            else
+                copy.put(i % 100, "v" + i);
+            versions.add(map);
+            expected.add(new HashMap<>(copy));
+        }
+        for (int i = 0; i < versions.size(); i++)
+            assertSameContents(expected.get(i), versions.get(i));
+    }
+
+    @Test
+    void unchangedAssociationReturnsSameMap() {
+        String value = "value";
+        PersistentMap<String, String> map = PersistentMap.<String, String>empty().plus("key", value);
+        assertSame(map, map.plus("key", value));
+        assertNotSame(map, map.plus("key", "other"));
+    }
+}
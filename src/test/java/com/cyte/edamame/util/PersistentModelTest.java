@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentModelTest {
+    @Test
+    void deltaMementoRestoresOnlyCapturedKeys() {
+        PersistentModel<String, Integer> model = new PersistentModel<>();
+        model.put("a", 1);
+        model.put("b", 2);
+
+        DeltaMemento<String, Integer> memento = model.saveToMemento(List.of("a", "c"));
+        assertEquals(2, memento.getChangeCount());
+        model.put("a", 10);
+        model.put("c", 30);
+
+        Memento redo = memento.restore();
+        assertEquals(1, model.get("a"));
+        assertNull(model.get("c"));
+        assertEquals(2, model.get("b"));
+
+        redo.restore();
+        assertEquals(10, model.get("a"));
+        assertEquals(30, model.get("c"));
+    }
+
+    @Test
+    void keyNamedTwiceRestoresItsEarliestValue() {
+        PersistentModel<String, Integer> model = new PersistentModel<>();
+        model.put("a", 1);
+        DeltaMemento<String, Integer> memento = model.saveToMemento(List.of("a", "a"));
+        model.put("a", 2);
+        Memento redo = memento.restore();
+        assertEquals(1, model.get("a"));
+        redo.restore();
+        assertEquals(2, model.get("a"));
+    }
+
+    @Test
+    void reloadedDeltaMementoRestoresLikeTheOriginal() {
+        PersistentModel<String, Integer> model = new PersistentModel<>();
+        model.put("a", 1);
+        DeltaMemento<String, Integer> memento = model.saveToMemento(List.of("a", "b"));
+        model.put("a", 2);
+        model.put("b", 3);
+
+        Memento reloaded = memento.getReloader().reload(memento.getState());
+        reloaded.restore();
+        assertEquals(1, model.get("a"));
+        assertNull(model.get("b"));
+    }
+
+    @Test
+    void wholeStateMementoRestoresEverything() {
+        PersistentModel<Integer, String> model = new PersistentModel<>();
+        for (int i = 0; i < 100; i++)
+            model.put(i, "v" + i);
+        PersistentMap<Integer, String> before = model.snapshot();
+        Memento memento = model.saveToMemento();
+        for (int i = 0; i < 100; i += 2)
+            model.remove(i);
+        model.put(500, "new");
+        assertEquals(51, model.size());
+        assertEquals(100, before.size());
+
+        Memento redo = memento.restore();
+        assertSame(before, model.snapshot());
+        redo.restore();
+        assertEquals(51, model.size());
+        assertEquals("new", model.get(500));
+    }
+
+    @Test
+    void recorderUndoesDeltaEdits() {
+        PersistentModel<String, Integer> model = new PersistentModel<>();
+        try (Recorder recorder = new Recorder()) {
+            for (int i = 0; i < 10; i++) {
+                recorder.record(model.saveToMemento(List.of("x")));
+                model.put("x", i);
+            }
+            for (int i = 8; i >= 0; i--) {
+                recorder.undo();
+                assertEquals(i, model.get("x"));
+            }
+            recorder.undo();
+            assertNull(model.get("x"));
+        }
+    }
+}
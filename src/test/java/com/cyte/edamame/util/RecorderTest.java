@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecorderTest {
+    /** A value edited under a recorder. */
+    private static final class Cell {
+        int value;
+    }
+
+    /** The value of a {@link Cell} prior to an edit, claiming to retain a given number of bytes. */
+    private record Value(Cell cell, int value, long size) implements Spillable {
+        @Override
+        public Memento restore() {
+            Value inverse = new Value(cell, cell.value, size);
+            cell.value = value;
+            return inverse;
+        }
+
+        @Override
+        public long sizeEstimate() { return size; }
+
+        @Override
+        public Serializable getState() { return value; }
+
+        @Override
+        public Reloader getReloader() { return state -> new Value(cell, (Integer) state, size); }
+    }
+
+    /** A {@link Value} that cannot be spilled. */
+    private record Unspillable(Cell cell, int value, long size) implements Memento {
+        @Override
+        public Memento restore() {
+            Unspillable inverse = new Unspillable(cell, cell.value, size);
+            cell.value = value;
+            return inverse;
+        }
+
+        @Override
+        public long sizeEstimate() { return size; }
+    }
+
+    /** A {@link Value} whose spilled state fails to reload as many times as a counter says. */
+    private record Flaky(Cell cell, int value, long size, int[] failures) implements Spillable {
+        @Override
+        public Memento restore() {
+            Value inverse = new Value(cell, cell.value, size);
+            cell.value = value;
+            return inverse;
+        }
+
+        @Override
+        public long sizeEstimate() { return size; }
+
+        @Override
+        public Serializable getState() { return value; }
+
+        @Override
+        public Reloader getReloader() {
+            return state -> {
+                if (failures[0]-- > 0)
+                    throw new UncheckedIOException(new IOException("the disk failed"));
+                return new Value(cell, (Integer) state, size);
+            };
+        }
+    }
+
+    private static void set(Recorder recorder, Cell cell, int value, long size) {
+        recorder.record(new Value(cell, cell.value, size));
+        cell.value = value;
+    }
+
+    @Test
+    void undoAndRedoRestoreValues() {
+        Cell cell = new Cell();
+        try (Recorder recorder = new Recorder()) {
+            for (int i = 1; i <= 5; i++)
+                set(recorder, cell, i, 100);
+            for (int i = 4; i >= 0; i--) {
+                recorder.undo();
+                assertEquals(i, cell.value);
+            }
+            assertFalse(recorder.canUndo());
+            for (int i = 1; i <= 5; i++) {
+                recorder.redo();
+                assertEquals(i, cell.value);
+            }
+            assertFalse(recorder.canRedo());
+        }
+    }
+
+    @Test
+    void newestEntryIsKeptWhenLargerThanBudget() {
+        Cell cell = new Cell();
+        try (Recorder recorder = new Recorder(100, 100)) {
+            set(recorder, cell, 1, 10);
+            recorder.record(new Unspillable(cell, cell.value, 1_000));
+            cell.value = 2;
+            assertEquals(1, recorder.getHistorySize());
+            recorder.undo();
+            assertEquals(1, cell.value);
+            assertEquals(1, recorder.getFutureSize());
+            recorder.redo();
+            assertEquals(2, cell.value);
+        }
+    }
+
+    @Test
+    void transactionOfSpillablesIsSpilled() {
+        Cell a = new Cell();
+        Cell b = new Cell();
+        try (Recorder recorder = new Recorder(100, 1_000)) {
+            recorder.beginTransaction();
+            set(recorder, a, 1, 400);
+            set(recorder, b, 2, 400);
+            Memento committed = recorder.commit();
+            assertTrue(committed instanceof Spillable);
+
+            set(recorder, a, 3, 400);
+            assertEquals(2, recorder.getHistorySize());
+            assertEquals(1, recorder.getSpilledCount());
+            assertTrue(recorder.getRetainedSize() <= recorder.getMaxBytes());
+
+            recorder.undo();
+            recorder.undo();
+            assertEquals(0, a.value);
+            assertEquals(0, b.value);
+            recorder.redo();
+            assertEquals(1, a.value);
+            assertEquals(2, b.value);
+        }
+    }
+
+    @Test
+    void compositeOfMixedMembersIsNotSpillable() {
+        Cell cell = new Cell();
+        List<Memento> members = new ArrayList<>();
+        members.add(new Value(cell, 0, 10));
+        members.add(new Unspillable(cell, 1, 10));
+        assertFalse(CompositeMemento.of(members) instanceof Spillable);
+        assertTrue(CompositeMemento.of(members.subList(0, 1)) instanceof Spillable);
+    }
+
+    @Test
+    void spilledEntriesReloadAfterOthersAreFreed() {
+        Cell cell = new Cell();
+        long size = 64 * 1024;
+        try (Recorder recorder = new Recorder(1_000, size)) {
+            for (int i = 1; i <= 300; i++)
+                set(recorder, cell, i, size);
+            // undoing and re-editing frees the spilled state of the discarded redo entries.
+            for (int round = 0; round < 3; round++) {
+                for (int i = 0; i < 250; i++)
+                    recorder.undo();
+                for (int i = 0; i < 250; i++)
+                    set(recorder, cell, 1_000 + i, size);
+            }
+            int expected = cell.value;
+            for (int i = 0; i < 10; i++)
+                recorder.undo();
+            assertEquals(expected - 10, cell.value);
+        }
+    }
+
+    @Test
+    void entryThatFailsToReloadIsKept() {
+        Cell cell = new Cell();
+        try (Recorder recorder = new Recorder(100, 1_000)) {
+            recorder.record(new Flaky(cell, cell.value, 600, new int[] {1}));
+            cell.value = 1;
+            set(recorder, cell, 2, 600);
+            assertEquals(1, recorder.getSpilledCount());
+
+            recorder.undo();
+            assertEquals(1, cell.value);
+            assertThrows(UncheckedIOException.class, recorder::undo);
+            assertEquals(1, cell.value);
+            assertEquals(1, recorder.getHistorySize());
+            assertEquals(1, recorder.getFutureSize());
+
+            recorder.undo();
+            assertEquals(0, cell.value);
+            recorder.redo();
+            recorder.redo();
+            assertEquals(2, cell.value);
+        }
+    }
+
+    @Test
+    void coalescedEditsTouchingNewKeysAreUndone() {
+        PersistentModel<String, Integer> model = new PersistentModel<>();
+        model.put("a", 0);
+        try (Recorder recorder = new Recorder()) {
+            recorder.setCoalesceWindow(60_000);
+            recorder.record(model.saveToMemento(List.of("a")), "drag");
+            model.put("a", 1);
+            long retained = recorder.getRetainedSize();
+            recorder.record(model.saveToMemento(List.of("a")), "drag");
+            model.put("a", 2);
+            assertEquals(retained, recorder.getRetainedSize(), "an edit of the same keys is dropped");
+            recorder.record(model.saveToMemento(List.of("a", "b")), "drag");
+            model.put("a", 3);
+            model.put("b", 3);
+            recorder.record(model.saveToMemento(List.of("b")), "drag");
+            model.put("b", 4);
+            assertEquals(1, recorder.getHistorySize());
+
+            recorder.undo();
+            assertEquals(0, model.get("a"));
+            assertNull(model.get("b"), "a key first touched part way through the burst must be restored too");
+            recorder.redo();
+            assertEquals(3, model.get("a"));
+            assertEquals(4, model.get("b"));
+        }
+    }
+
+    @Test
+    void coalescingStopsAtAnotherKeyOrAnUndo() {
+        Cell cell = new Cell();
+        try (Recorder recorder = new Recorder()) {
+            recorder.setCoalesceWindow(60_000);
+            recorder.record(new Value(cell, cell.value, 10), "first");
+            cell.value = 1;
+            recorder.record(new Value(cell, cell.value, 10), "first");
+            cell.value = 2;
+            recorder.record(new Value(cell, cell.value, 10), "second");
+            cell.value = 3;
+            assertEquals(2, recorder.getHistorySize());
+            recorder.undo();
+            assertEquals(2, cell.value);
+            recorder.record(new Value(cell, cell.value, 10), "first");
+            cell.value = 5;
+            assertEquals(2, recorder.getHistorySize());
+            recorder.undo();
+            recorder.undo();
+            assertEquals(0, cell.value);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillFileTest {
+    private static byte[] payload(int seed, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = (byte) (seed * 31 + i);
+        return bytes;
+    }
+
+    @Test
+    void writtenStateReadsBack() throws IOException {
+        try (SpillFile file = new SpillFile()) {
+            SpillFile.Location first = file.write("first");
+            SpillFile.Location second = file.write(payload(2, 1000));
+            assertEquals("first", file.read(first));
+            assertArrayEquals(payload(2, 1000), (byte[]) file.read(second));
+        }
+    }
+
+    @Test
+    void freeingEverythingEmptiesTheFile() throws IOException {
+        try (SpillFile file = new SpillFile()) {
+            SpillFile.Location a = file.write(payload(1, 100));
+            SpillFile.Location b = file.write(payload(2, 100));
+            file.free(a);
+            assertTrue(file.length() > 0);
+            file.free(b);
+            assertEquals(0, file.length());
+        }
+    }
+
+    @Test
+    void compactionBoundsTheFileAndKeepsLiveState() throws IOException {
+        int length = 64 * 1024;
+        try (SpillFile file = new SpillFile()) {
+            List<SpillFile.Location> locations = new ArrayList<>();
+            for (int i = 0; i < 200; i++)
+                locations.add(file.write(payload(i, length)));
+            long full = file.length();
+            // free all but every tenth, leaving far more dead bytes than live.
+            for (int i = 0; i < locations.size(); i++) {
+                if (i % 10 != 0)
+                    file.free(locations.get(i));
+            }
+            assertTrue(file.length() < full / 2, "file was not compacted");
+            for (int i = 0; i < locations.size(); i += 10)
+                assertArrayEquals(payload(i, length), (byte[]) file.read(locations.get(i)));
+            SpillFile.Location after = file.write(payload(-1, length));
+            assertArrayEquals(payload(-1, length), (byte[]) file.read(after));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2022. Jeff Wiegley
+ * This work is distributed and licensed under the AGPLv3 license.
+ * Terms and conditions of the AGPLv3 are documented
+ * in the LICENSE.TXT file included in the EDAmame sources.
+ */
+
+package com.cyte.edamame.util;
+
+import javafx.application.Platform;
+import javafx.scene.control.TextArea;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextAreaHandlerTest {
+    private TextArea area;
+
+    @BeforeEach
+    void startToolkit() throws InterruptedException {
+        try {
+            Platform.startup(() -> { });
+        } catch (IllegalStateException alreadyStarted) {
+            // Started by an earlier test.
+        }
+        area = onFx(TextArea::new);
+    }
+
+    /** Run an action on the JavaFX application thread after everything already posted to it, and wait for it. */
+    private static <T> T onFx(Supplier<T> action) throws InterruptedException {
+        AtomicReference<T> result = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            try {
+                result.set(action.get());
+            } finally {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS), "the JavaFX application thread is stuck");
+        return result.get();
+    }
+
+    /** Hold the JavaFX application thread, so nothing is flushed, until the returned latch is released. */
+    private static CountDownLatch holdFx() throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            held.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(held.await(10, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private static void publish(TextAreaHandler handler, int from, int to) {
+        for (int i = from; i < to; i++) {
+            LogRecord record = new LogRecord(Level.INFO, "record {0}\n");
+            record.setParameters(new Object[] {i});
+            handler.publish(record);
+        }
+    }
+
+    private static String records(int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++)
+            text.append("record ").append(i).append('\n');
+        return text.toString();
+    }
+
+    @Test
+    void recordsArriveInOneBatch() throws InterruptedException {
+        TextAreaHandler handler = new TextAreaHandler(area, 64, 100);
+        CountDownLatch release = holdFx();
+        publish(handler, 0, 10);
+        release.countDown();
+        assertEquals(records(0, 10), onFx(area::getText));
+        assertEquals(0, handler.getDroppedCount());
+    }
+
+    @Test
+    void overflowDropsAndCountsRecords() throws InterruptedException {
+        TextAreaHandler handler = new TextAreaHandler(area, 8, 100);
+        CountDownLatch release = holdFx();
+        publish(handler, 0, 20);
+        assertEquals(12, handler.getDroppedCount());
+        release.countDown();
+        assertEquals(records(0, 8) + "[12 log records dropped]\n", onFx(area::getText));
+
+        publish(handler, 20, 21);
+        assertEquals(records(0, 8) + "[12 log records dropped]\n" + records(20, 21), onFx(area::getText),
+                "drops already reported were reported again");
+        assertEquals(12, handler.getDroppedCount());
+    }
+
+    @Test
+    void oldestLinesAreTrimmed() throws InterruptedException {
+        TextAreaHandler handler = new TextAreaHandler(area, 64, 3);
+        publish(handler, 0, 2);
+        assertEquals(records(0, 2), onFx(area::getText));
+        publish(handler, 2, 5);
+        assertEquals(records(2, 5), onFx(area::getText));
+
+        CountDownLatch release = holdFx();
+        publish(handler, 5, 12);
+        release.countDown();
+        assertEquals(records(9, 12), onFx(area::getText), "a batch longer than the limit was not trimmed");
+    }
+
+    @Test
+    void closedHandlerIgnoresRecords() throws InterruptedException {
+        TextAreaHandler handler = new TextAreaHandler(area, 64, 100);
+        handler.close();
+        publish(handler, 0, 3);
+        assertEquals("", onFx(area::getText));
+    }
+}